@@ -0,0 +1,108 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.core;
+
+import microsoft.exchange.webservices.data.core.enumeration.misc.error.ServiceError;
+import microsoft.exchange.webservices.data.core.enumeration.notification.EventType;
+import microsoft.exchange.webservices.data.core.enumeration.property.Importance;
+import microsoft.exchange.webservices.data.util.DateTimeUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversion of element values: {@link EwsUtilities#parse(Class, String)} for
+ * enumerations, numbers, booleans and dates, and the date conversions of
+ * {@link DateTimeUtils} and {@link EwsUtilities}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EwsUtilitiesBenchmark {
+
+  private final Date date = new Date(1433154645000L);
+
+  @Benchmark
+  public Importance parseEnum() throws Exception {
+    return EwsUtilities.parse(Importance.class, "High");
+  }
+
+  @Benchmark
+  public EventType parseEnumWithSchemaName() throws Exception {
+    return EwsUtilities.parse(EventType.class, "NewMailEvent");
+  }
+
+  @Benchmark
+  public ServiceError parseLargeEnum() throws Exception {
+    return EwsUtilities.parse(ServiceError.class, "ErrorWrongServerVersionDelegate");
+  }
+
+  @Benchmark
+  public Integer parseInteger() throws Exception {
+    return EwsUtilities.parse(Integer.class, "1048576");
+  }
+
+  @Benchmark
+  public Boolean parseBoolean() throws Exception {
+    return EwsUtilities.parse(Boolean.class, "true");
+  }
+
+  @Benchmark
+  public Date parseDate() throws Exception {
+    return EwsUtilities.parse(Date.class, "2015-06-01T10:30:45Z");
+  }
+
+  @Benchmark
+  public Date convertDateTime() {
+    return DateTimeUtils.convertDateTimeStringToDate("2015-06-01T10:30:45Z");
+  }
+
+  @Benchmark
+  public Date convertDateTimeWithOffset() {
+    return DateTimeUtils.convertDateTimeStringToDate("2015-06-01T12:30:45.123+02:00");
+  }
+
+  @Benchmark
+  public Date convertDate() {
+    return DateTimeUtils.convertDateStringToDate("2015-06-01Z");
+  }
+
+  @Benchmark
+  public String formatDateTime() {
+    return EwsUtilities.dateTimeToXSDateTime(date);
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.core;
+
+import microsoft.exchange.webservices.data.core.enumeration.misc.ExchangeVersion;
+import microsoft.exchange.webservices.data.core.service.item.Appointment;
+import microsoft.exchange.webservices.data.core.service.item.Contact;
+import microsoft.exchange.webservices.data.core.service.item.EmailMessage;
+import microsoft.exchange.webservices.data.core.service.item.Item;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the loading of the property bag of a message, an appointment and a contact
+ * from their XML elements. Run with {@code -prof gc} to see the bytes allocated per item.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PropertyBagBenchmark {
+
+  private ExchangeService service;
+
+  private byte[] message;
+
+  private byte[] appointment;
+
+  private byte[] contact;
+
+  @Setup
+  public void setUp() throws Exception {
+    service = new ExchangeService(ExchangeVersion.Exchange2010_SP2);
+    message = SoapPayloads.toBytes(SoapPayloads.items(SoapPayloads.message(1)));
+    appointment = SoapPayloads.toBytes(SoapPayloads.items(SoapPayloads.calendarItem(1)));
+    contact = SoapPayloads.toBytes(SoapPayloads.items(SoapPayloads.contact(1)));
+  }
+
+  @Benchmark
+  public Item loadMessage() throws Exception {
+    return load(new EmailMessage(service), message);
+  }
+
+  @Benchmark
+  public Item loadAppointment() throws Exception {
+    return load(new Appointment(service), appointment);
+  }
+
+  @Benchmark
+  public Item loadContact() throws Exception {
+    return load(new Contact(service), contact);
+  }
+
+  private Item load(Item item, byte[] xml) throws Exception {
+    item.loadFromXml(SoapPayloads.createItemReader(service, xml), true);
+    return item;
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package microsoft.exchange.webservices.data.core;
+
+import microsoft.exchange.webservices.data.core.enumeration.misc.ExchangeVersion;
+import microsoft.exchange.webservices.data.core.service.item.Appointment;
+import microsoft.exchange.webservices.data.core.service.item.Contact;
+import microsoft.exchange.webservices.data.core.service.item.EmailMessage;
+import microsoft.exchange.webservices.data.core.service.item.Item;
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Prints the retained size of a loaded message, appointment and contact. Objects shared by
+ * all items, such as the service, the schemas and the property definitions, are left out:
+ * the size of an item is the growth of the object graph when a second item is loaded.
+ * <p>
+ * Run with {@code mvn -Pbenchmarks test-compile exec:exec
+ * -Dbenchmark.main=microsoft.exchange.webservices.data.core.PropertyBagFootprint}.
+ * </p>
+ */
+public final class PropertyBagFootprint {
+
+  private PropertyBagFootprint() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    ExchangeService service = new ExchangeService(ExchangeVersion.Exchange2010_SP2);
+    byte[] message = SoapPayloads.toBytes(SoapPayloads.items(SoapPayloads.message(1)));
+    byte[] appointment = SoapPayloads.toBytes(SoapPayloads.items(SoapPayloads.calendarItem(1)));
+    byte[] contact = SoapPayloads.toBytes(SoapPayloads.items(SoapPayloads.contact(1)));
+
+    System.out.println("message:     " + retainedSize(
+        load(service, new EmailMessage(service), message),
+        load(service, new EmailMessage(service), message)) + " bytes");
+    System.out.println("appointment: " + retainedSize(
+        load(service, new Appointment(service), appointment),
+        load(service, new Appointment(service), appointment)) + " bytes");
+    System.out.println("contact:     " + retainedSize(
+        load(service, new Contact(service), contact),
+        load(service, new Contact(service), contact)) + " bytes");
+  }
+
+  /**
+   * Gets the size of the objects reachable from the second item only.
+   */
+  private static long retainedSize(Item first, Item second) {
+    return GraphLayout.parseInstance(first, second).totalSize()
+        - GraphLayout.parseInstance(first).totalSize();
+  }
+
+  private static Item load(ExchangeService service, Item item, byte[] xml) throws Exception {
+    item.loadFromXml(SoapPayloads.createItemReader(service, xml), true);
+    return item;
+  }
+}
@@ -0,0 +1,333 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.core;
+
+import microsoft.exchange.webservices.data.core.enumeration.misc.XmlNamespace;
+import microsoft.exchange.webservices.data.security.XmlNodeType;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Canned EWS payloads for the benchmarks, shaped after responses of an Exchange 2010 SP2
+ * server. The items carry their index in their ids and values so that generated
+ * collections do not repeat one another.
+ */
+public final class SoapPayloads {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /**
+   * The namespace declarations of the messages (m) and types (t) prefixes.
+   */
+  public static final String NAMESPACES =
+      " xmlns:m=\"" + XmlNamespace.Messages.getNameSpaceUri() + "\""
+      + " xmlns:t=\"" + XmlNamespace.Types.getNameSpaceUri() + "\"";
+
+  private static final String ENVELOPE_START =
+      "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+      + "<s:Envelope xmlns:s=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+      + "<s:Header><h:ServerVersionInfo MajorVersion=\"14\" MinorVersion=\"3\" MajorBuildNumber=\"248\""
+      + " MinorBuildNumber=\"2\" Version=\"Exchange2010_SP2\""
+      + " xmlns:h=\"http://schemas.microsoft.com/exchange/services/2006/types\""
+      + " xmlns=\"http://schemas.microsoft.com/exchange/services/2006/types\""
+      + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+      + " xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\"/></s:Header>"
+      + "<s:Body xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+      + " xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\">";
+
+  private static final String ENVELOPE_END = "</s:Body></s:Envelope>";
+
+  private static final String ITEM_ID =
+      "AAMkADk0N2E4YjU1LTI5NDctNDk0Ni1hMDNjLTJiNDUzZmQ1ZTYwNgBGAAAAAAC7";
+
+  private static final String FOLDER_ID =
+      "AAMkADk0N2E4YjU1LTI5NDctNDk0Ni1hMDNjLTJiNDUzZmQ1ZTYwNgAuAAAAAAC7";
+
+  private static final String MESSAGE =
+      "<t:Message>"
+      + "<t:ItemId Id=\"" + ITEM_ID + "%1$d\" ChangeKey=\"CQAAABYAAAB2ZlqG2tF7Q6Xj0XfT+QjuAAAB%1$d\"/>"
+      + "<t:ParentFolderId Id=\"" + FOLDER_ID + "\" ChangeKey=\"AQAAAA==\"/>"
+      + "<t:ItemClass>IPM.Note</t:ItemClass>"
+      + "<t:Subject>Quarterly report, revision %1$d</t:Subject>"
+      + "<t:Sensitivity>Normal</t:Sensitivity>"
+      + "<t:DateTimeReceived>2015-06-01T10:%2$02d:00Z</t:DateTimeReceived>"
+      + "<t:Size>%3$d</t:Size>"
+      + "<t:Categories><t:String>Finance</t:String><t:String>Reports</t:String></t:Categories>"
+      + "<t:Importance>Normal</t:Importance>"
+      + "<t:IsSubmitted>false</t:IsSubmitted>"
+      + "<t:IsDraft>false</t:IsDraft>"
+      + "<t:IsFromMe>false</t:IsFromMe>"
+      + "<t:IsResend>false</t:IsResend>"
+      + "<t:IsUnmodified>true</t:IsUnmodified>"
+      + "<t:DateTimeSent>2015-06-01T10:%2$02d:00Z</t:DateTimeSent>"
+      + "<t:DateTimeCreated>2015-06-01T10:%2$02d:00Z</t:DateTimeCreated>"
+      + "<t:DisplayCc/>"
+      + "<t:DisplayTo>Alex Wilber</t:DisplayTo>"
+      + "<t:HasAttachments>false</t:HasAttachments>"
+      + "<t:Culture>en-US</t:Culture>"
+      + "<t:EffectiveRights><t:CreateAssociated>false</t:CreateAssociated>"
+      + "<t:CreateContents>false</t:CreateContents><t:CreateHierarchy>false</t:CreateHierarchy>"
+      + "<t:Delete>true</t:Delete><t:Modify>true</t:Modify><t:Read>true</t:Read></t:EffectiveRights>"
+      + "<t:LastModifiedName>Megan Bowen</t:LastModifiedName>"
+      + "<t:LastModifiedTime>2015-06-01T10:%2$02d:00Z</t:LastModifiedTime>"
+      + "<t:ConversationId Id=\"AAQkADk0N2E4YjU1LTI5NDctNDk0Ni1hMDNjLTJiNDUzZmQ1ZTYwNgAQAN%1$d\"/>"
+      + "<t:Sender><t:Mailbox><t:Name>Megan Bowen</t:Name>"
+      + "<t:EmailAddress>megan.bowen@contoso.com</t:EmailAddress>"
+      + "<t:RoutingType>SMTP</t:RoutingType></t:Mailbox></t:Sender>"
+      + "<t:ToRecipients><t:Mailbox><t:Name>Alex Wilber</t:Name>"
+      + "<t:EmailAddress>alex.wilber@contoso.com</t:EmailAddress>"
+      + "<t:RoutingType>SMTP</t:RoutingType></t:Mailbox></t:ToRecipients>"
+      + "<t:IsReadReceiptRequested>false</t:IsReadReceiptRequested>"
+      + "<t:ConversationIndex>AdCcW3xTm2mqEYLCQ1mP1k2g%1$d</t:ConversationIndex>"
+      + "<t:ConversationTopic>Quarterly report</t:ConversationTopic>"
+      + "<t:From><t:Mailbox><t:Name>Megan Bowen</t:Name>"
+      + "<t:EmailAddress>megan.bowen@contoso.com</t:EmailAddress>"
+      + "<t:RoutingType>SMTP</t:RoutingType></t:Mailbox></t:From>"
+      + "<t:InternetMessageId>&lt;%1$d@contoso.com&gt;</t:InternetMessageId>"
+      + "<t:IsRead>%4$s</t:IsRead>"
+      + "</t:Message>";
+
+  private static final String CALENDAR_ITEM =
+      "<t:CalendarItem>"
+      + "<t:ItemId Id=\"" + ITEM_ID + "%1$d\" ChangeKey=\"DwAAABYAAAB2ZlqG2tF7Q6Xj0XfT+QjuAAAB%1$d\"/>"
+      + "<t:ParentFolderId Id=\"" + FOLDER_ID + "\" ChangeKey=\"AQAAAA==\"/>"
+      + "<t:ItemClass>IPM.Appointment</t:ItemClass>"
+      + "<t:Subject>Project sync %1$d</t:Subject>"
+      + "<t:Sensitivity>Normal</t:Sensitivity>"
+      + "<t:DateTimeReceived>2015-06-01T08:%2$02d:00Z</t:DateTimeReceived>"
+      + "<t:Size>%3$d</t:Size>"
+      + "<t:Importance>Normal</t:Importance>"
+      + "<t:IsDraft>false</t:IsDraft>"
+      + "<t:DateTimeCreated>2015-06-01T08:%2$02d:00Z</t:DateTimeCreated>"
+      + "<t:HasAttachments>false</t:HasAttachments>"
+      + "<t:ReminderIsSet>true</t:ReminderIsSet>"
+      + "<t:ReminderMinutesBeforeStart>15</t:ReminderMinutesBeforeStart>"
+      + "<t:UID>040000008200E00074C5B7101A82E0080000000010B0FD2D%1$d</t:UID>"
+      + "<t:Start>2015-06-02T14:%2$02d:00Z</t:Start>"
+      + "<t:End>2015-06-02T15:%2$02d:00Z</t:End>"
+      + "<t:IsAllDayEvent>false</t:IsAllDayEvent>"
+      + "<t:LegacyFreeBusyStatus>Busy</t:LegacyFreeBusyStatus>"
+      + "<t:Location>Conference Room 4</t:Location>"
+      + "<t:IsMeeting>true</t:IsMeeting>"
+      + "<t:IsCancelled>false</t:IsCancelled>"
+      + "<t:IsRecurring>false</t:IsRecurring>"
+      + "<t:MeetingRequestWasSent>true</t:MeetingRequestWasSent>"
+      + "<t:IsResponseRequested>true</t:IsResponseRequested>"
+      + "<t:CalendarItemType>Single</t:CalendarItemType>"
+      + "<t:MyResponseType>Organizer</t:MyResponseType>"
+      + "<t:Organizer><t:Mailbox><t:Name>Megan Bowen</t:Name>"
+      + "<t:EmailAddress>megan.bowen@contoso.com</t:EmailAddress>"
+      + "<t:RoutingType>SMTP</t:RoutingType></t:Mailbox></t:Organizer>"
+      + "<t:RequiredAttendees>"
+      + "<t:Attendee><t:Mailbox><t:Name>Alex Wilber</t:Name>"
+      + "<t:EmailAddress>alex.wilber@contoso.com</t:EmailAddress>"
+      + "<t:RoutingType>SMTP</t:RoutingType></t:Mailbox><t:ResponseType>Accept</t:ResponseType>"
+      + "<t:LastResponseTime>2015-06-01T09:00:00Z</t:LastResponseTime></t:Attendee>"
+      + "<t:Attendee><t:Mailbox><t:Name>Diego Siciliani</t:Name>"
+      + "<t:EmailAddress>diego.siciliani@contoso.com</t:EmailAddress>"
+      + "<t:RoutingType>SMTP</t:RoutingType></t:Mailbox><t:ResponseType>Unknown</t:ResponseType>"
+      + "</t:Attendee>"
+      + "</t:RequiredAttendees>"
+      + "<t:Duration>PT1H</t:Duration>"
+      + "<t:TimeZone>(UTC) Coordinated Universal Time</t:TimeZone>"
+      + "<t:AppointmentSequenceNumber>0</t:AppointmentSequenceNumber>"
+      + "<t:AppointmentState>1</t:AppointmentState>"
+      + "<t:IsOnlineMeeting>false</t:IsOnlineMeeting>"
+      + "</t:CalendarItem>";
+
+  private static final String CONTACT =
+      "<t:Contact>"
+      + "<t:ItemId Id=\"" + ITEM_ID + "%1$d\" ChangeKey=\"EQAAABYAAAB2ZlqG2tF7Q6Xj0XfT+QjuAAAB%1$d\"/>"
+      + "<t:ParentFolderId Id=\"" + FOLDER_ID + "\" ChangeKey=\"AQAAAA==\"/>"
+      + "<t:ItemClass>IPM.Contact</t:ItemClass>"
+      + "<t:Subject>Wilber, Alex %1$d</t:Subject>"
+      + "<t:Sensitivity>Normal</t:Sensitivity>"
+      + "<t:DateTimeReceived>2015-06-01T07:%2$02d:00Z</t:DateTimeReceived>"
+      + "<t:Size>%3$d</t:Size>"
+      + "<t:Importance>Normal</t:Importance>"
+      + "<t:DateTimeCreated>2015-06-01T07:%2$02d:00Z</t:DateTimeCreated>"
+      + "<t:HasAttachments>false</t:HasAttachments>"
+      + "<t:FileAs>Wilber, Alex %1$d</t:FileAs>"
+      + "<t:FileAsMapping>LastCommaFirst</t:FileAsMapping>"
+      + "<t:DisplayName>Alex Wilber %1$d</t:DisplayName>"
+      + "<t:GivenName>Alex</t:GivenName>"
+      + "<t:CompanyName>Contoso</t:CompanyName>"
+      + "<t:EmailAddresses>"
+      + "<t:Entry Key=\"EmailAddress1\">alex.wilber%1$d@contoso.com</t:Entry>"
+      + "<t:Entry Key=\"EmailAddress2\">alex%1$d@example.com</t:Entry>"
+      + "</t:EmailAddresses>"
+      + "<t:PhysicalAddresses>"
+      + "<t:Entry Key=\"Business\"><t:Street>1 Microsoft Way</t:Street><t:City>Redmond</t:City>"
+      + "<t:State>WA</t:State><t:CountryOrRegion>United States</t:CountryOrRegion>"
+      + "<t:PostalCode>98052</t:PostalCode></t:Entry>"
+      + "</t:PhysicalAddresses>"
+      + "<t:PhoneNumbers>"
+      + "<t:Entry Key=\"BusinessPhone\">+1 425 555 %1$04d</t:Entry>"
+      + "<t:Entry Key=\"MobilePhone\">+1 206 555 %1$04d</t:Entry>"
+      + "</t:PhoneNumbers>"
+      + "<t:JobTitle>Marketing Assistant</t:JobTitle>"
+      + "<t:Department>Marketing</t:Department>"
+      + "<t:Surname>Wilber</t:Surname>"
+      + "</t:Contact>";
+
+  private SoapPayloads() {
+  }
+
+  /**
+   * Wraps a response body in a SOAP envelope, with the ServerVersionInfo header
+   * of an Exchange 2010 SP2 server.
+   *
+   * @param body the content of the SOAP body
+   * @return the SOAP response
+   */
+  public static String envelope(String body) {
+    return ENVELOPE_START + body + ENVELOPE_END;
+  }
+
+  /**
+   * Wraps item elements in an element declaring the messages and types namespaces.
+   *
+   * @param items the item elements
+   * @return the document
+   */
+  public static String items(String items) {
+    return "<t:Items" + NAMESPACES + ">" + items + "</t:Items>";
+  }
+
+  /**
+   * Gets a Message element, as returned by GetItem for the first class properties.
+   *
+   * @param index the index of the message
+   * @return the Message element
+   */
+  public static String message(int index) {
+    return String.format(MESSAGE, index, index % 60, 1024 + index, index % 2 == 0);
+  }
+
+  /**
+   * Gets a CalendarItem element of a meeting with two attendees.
+   *
+   * @param index the index of the appointment
+   * @return the CalendarItem element
+   */
+  public static String calendarItem(int index) {
+    return String.format(CALENDAR_ITEM, index, index % 60, 2048 + index);
+  }
+
+  /**
+   * Gets a Contact element with email addresses, a postal address and phone numbers.
+   *
+   * @param index the index of the contact
+   * @return the Contact element
+   */
+  public static String contact(int index) {
+    return String.format(CONTACT, index, index % 60, 4096 + index);
+  }
+
+  /**
+   * Gets a GetEvents Notification element, cycling through created, modified,
+   * moved and folder modified events.
+   *
+   * @param eventCount the number of events
+   * @return the Notification element
+   */
+  public static String notification(int eventCount) {
+    StringBuilder builder = new StringBuilder("<m:Notification").append(NAMESPACES).append(">")
+        .append("<t:SubscriptionId>FgBsdGhwcjA2bWIwNjQ0Lm5hbXByZDA2LnByb2Qub3V0bG9vay5jb20QAAAA</t:SubscriptionId>")
+        .append("<t:PreviousWatermark>AQAAAAbLqxbnpE1JuLZWfeSiB9y3lQAAAAAAAAE=</t:PreviousWatermark>")
+        .append("<t:MoreEvents>false</t:MoreEvents>");
+    for (int i = 0; i < eventCount; i++) {
+      String watermark = "<t:Watermark>AQAAAAbLqxbnpE1JuLZWfeSiB9y3lQAAAAAA" + i + "</t:Watermark>"
+          + "<t:TimeStamp>2015-06-01T10:" + String.format("%02d", i % 60) + ":00Z</t:TimeStamp>";
+      String itemId = "<t:ItemId Id=\"" + ITEM_ID + i + "\" ChangeKey=\"CQAAAA==\"/>";
+      String parentFolderId = "<t:ParentFolderId Id=\"" + FOLDER_ID + "\" ChangeKey=\"AQAAAA==\"/>";
+      switch (i % 4) {
+        case 0:
+          builder.append("<t:CreatedEvent>").append(watermark).append(itemId).append(parentFolderId)
+              .append("</t:CreatedEvent>");
+          break;
+        case 1:
+          builder.append("<t:ModifiedEvent>").append(watermark).append(itemId).append(parentFolderId)
+              .append("</t:ModifiedEvent>");
+          break;
+        case 2:
+          builder.append("<t:MovedEvent>").append(watermark).append(itemId).append(parentFolderId)
+              .append("<t:OldItemId Id=\"").append(ITEM_ID).append("old").append(i)
+              .append("\" ChangeKey=\"CQAAAA==\"/>")
+              .append("<t:OldParentFolderId Id=\"").append(FOLDER_ID).append("old")
+              .append("\" ChangeKey=\"AQAAAA==\"/>")
+              .append("</t:MovedEvent>");
+          break;
+        default:
+          builder.append("<t:ModifiedEvent>").append(watermark)
+              .append("<t:FolderId Id=\"").append(FOLDER_ID).append("\" ChangeKey=\"AQAAAA==\"/>")
+              .append(parentFolderId)
+              .append("<t:UnreadCount>").append(i).append("</t:UnreadCount>")
+              .append("</t:ModifiedEvent>");
+          break;
+      }
+    }
+    return builder.append("</m:Notification>").toString();
+  }
+
+  /**
+   * Gets the id of an item of the canned payloads.
+   *
+   * @param index the index of the item
+   * @return the unique id of the item
+   */
+  public static String itemId(int index) {
+    return ITEM_ID + index;
+  }
+
+  /**
+   * Encodes a payload in UTF-8.
+   *
+   * @param payload the payload
+   * @return the encoded payload
+   */
+  public static byte[] toBytes(String payload) {
+    return payload.getBytes(UTF8);
+  }
+
+  /**
+   * Creates a reader over a document made by {@link #items(String)}, positioned on the
+   * start element of the first item.
+   *
+   * @param service the service
+   * @param items   the encoded document
+   * @return the reader
+   * @throws Exception on error
+   */
+  public static EwsServiceXmlReader createItemReader(ExchangeService service, byte[] items)
+      throws Exception {
+    EwsServiceXmlReader reader = new EwsServiceXmlReader(new ByteArrayInputStream(items), service);
+    reader.read(new XmlNodeType(XmlNodeType.START_DOCUMENT));
+    reader.readStartElement(XmlNamespace.Types, XmlElementNames.Items);
+    reader.read(new XmlNodeType(XmlNodeType.START_ELEMENT));
+    return reader;
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.core.request;
+
+import microsoft.exchange.webservices.data.core.EwsServiceXmlReader;
+import microsoft.exchange.webservices.data.core.EwsServiceXmlWriter;
+import microsoft.exchange.webservices.data.core.ExchangeService;
+import microsoft.exchange.webservices.data.core.SoapPayloads;
+import microsoft.exchange.webservices.data.core.enumeration.misc.ExchangeVersion;
+import microsoft.exchange.webservices.data.core.enumeration.property.DefaultExtendedPropertySet;
+import microsoft.exchange.webservices.data.core.enumeration.property.Importance;
+import microsoft.exchange.webservices.data.core.enumeration.property.MapiPropertyType;
+import microsoft.exchange.webservices.data.core.enumeration.property.WellKnownFolderName;
+import microsoft.exchange.webservices.data.core.enumeration.service.ConflictResolutionMode;
+import microsoft.exchange.webservices.data.core.enumeration.service.MessageDisposition;
+import microsoft.exchange.webservices.data.core.enumeration.service.error.ServiceErrorHandling;
+import microsoft.exchange.webservices.data.core.service.item.EmailMessage;
+import microsoft.exchange.webservices.data.core.service.item.Item;
+import microsoft.exchange.webservices.data.property.complex.FolderId;
+import microsoft.exchange.webservices.data.property.complex.MessageBody;
+import microsoft.exchange.webservices.data.property.complex.StringList;
+import microsoft.exchange.webservices.data.property.definition.ExtendedPropertyDefinition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the serialization of CreateItem and UpdateItem requests to SOAP.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestSerializationBenchmark {
+
+  /**
+   * The number of items in each request.
+   */
+  @Param({"1", "50"})
+  public int itemCount;
+
+  private ExchangeService service;
+
+  private List<Item> newMessages;
+
+  private List<Item> changedMessages;
+
+  private ByteArrayOutputStream output;
+
+  @Setup
+  public void setUp() throws Exception {
+    service = new ExchangeService(ExchangeVersion.Exchange2010_SP2);
+    output = new ByteArrayOutputStream(64 * 1024);
+
+    ExtendedPropertyDefinition trackingId = new ExtendedPropertyDefinition(
+        DefaultExtendedPropertySet.PublicStrings, "SyncTrackingId", MapiPropertyType.String);
+
+    newMessages = new ArrayList<Item>(itemCount);
+    for (int i = 0; i < itemCount; i++) {
+      EmailMessage message = new EmailMessage(service);
+      message.setSubject("Quarterly report, revision " + i);
+      message.setBody(MessageBody.getMessageBodyFromText(
+          "Hi all,\n\nPlease find the figures for this quarter below.\n\nRegards,\nMegan"));
+      message.getToRecipients().add("Alex Wilber", "alex.wilber@contoso.com");
+      message.getCcRecipients().add("diego.siciliani@contoso.com");
+      message.setCategories(new StringList(Arrays.asList("Finance", "Reports")));
+      message.setImportance(Importance.High);
+      message.setExtendedProperty(trackingId, "tracking-" + i);
+      newMessages.add(message);
+    }
+
+    StringBuilder items = new StringBuilder();
+    for (int i = 0; i < itemCount; i++) {
+      items.append(SoapPayloads.message(i));
+    }
+    EwsServiceXmlReader reader = SoapPayloads.createItemReader(service,
+        SoapPayloads.toBytes(SoapPayloads.items(items.toString())));
+    changedMessages = new ArrayList<Item>(itemCount);
+    for (int i = 0; i < itemCount; i++) {
+      if (i > 0) {
+        reader.read();
+      }
+      EmailMessage message = new EmailMessage(service);
+      message.loadFromXml(reader, true);
+      message.setSubject("Quarterly report, final " + i);
+      message.setIsRead(false);
+      message.setImportance(Importance.Low);
+      message.setExtendedProperty(trackingId, "tracking-" + i);
+      changedMessages.add(message);
+    }
+  }
+
+  @Benchmark
+  public int createItem() throws Exception {
+    CreateItemRequest request = new CreateItemRequest(service, ServiceErrorHandling.ThrowOnError);
+    request.setParentFolderId(new FolderId(WellKnownFolderName.Drafts));
+    request.setMessageDisposition(MessageDisposition.SaveOnly);
+    request.setItems(newMessages);
+    return write(request);
+  }
+
+  @Benchmark
+  public int updateItem() throws Exception {
+    UpdateItemRequest request = new UpdateItemRequest(service, ServiceErrorHandling.ThrowOnError);
+    request.getItems().addAll(changedMessages);
+    request.setMessageDisposition(MessageDisposition.SaveOnly);
+    request.setConflictResolutionMode(ConflictResolutionMode.AutoResolve);
+    return write(request);
+  }
+
+  private int write(ServiceRequestBase<?> request) throws Exception {
+    output.reset();
+    EwsServiceXmlWriter writer = new EwsServiceXmlWriter(service, output);
+    request.writeToXml(writer);
+    writer.flush();
+    return output.size();
+  }
+}
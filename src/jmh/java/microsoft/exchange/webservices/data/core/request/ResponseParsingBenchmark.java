@@ -0,0 +1,164 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.core.request;
+
+import microsoft.exchange.webservices.data.core.EwsServiceXmlReader;
+import microsoft.exchange.webservices.data.core.ExchangeService;
+import microsoft.exchange.webservices.data.core.PropertySet;
+import microsoft.exchange.webservices.data.core.SoapPayloads;
+import microsoft.exchange.webservices.data.core.enumeration.misc.ExchangeVersion;
+import microsoft.exchange.webservices.data.core.enumeration.property.WellKnownFolderName;
+import microsoft.exchange.webservices.data.core.enumeration.service.error.ServiceErrorHandling;
+import microsoft.exchange.webservices.data.core.response.FindItemResponse;
+import microsoft.exchange.webservices.data.core.response.GetItemResponse;
+import microsoft.exchange.webservices.data.core.response.ServiceResponseCollection;
+import microsoft.exchange.webservices.data.core.service.item.Appointment;
+import microsoft.exchange.webservices.data.core.service.item.Item;
+import microsoft.exchange.webservices.data.property.complex.FolderId;
+import microsoft.exchange.webservices.data.property.complex.ItemId;
+import microsoft.exchange.webservices.data.search.CalendarView;
+import microsoft.exchange.webservices.data.search.ItemView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the parsing of FindItem, FindAppointments and GetItem responses, from the SOAP
+ * envelope down to the item properties, as done for a response read from the network.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseParsingBenchmark {
+
+  /**
+   * The number of items in each response.
+   */
+  @Param({"10", "100"})
+  public int itemCount;
+
+  private ExchangeService service;
+
+  private byte[] findItemResponse;
+
+  private byte[] getItemResponse;
+
+  private byte[] findAppointmentsResponse;
+
+  private List<ItemId> itemIds;
+
+  @Setup
+  public void setUp() throws Exception {
+    service = new ExchangeService(ExchangeVersion.Exchange2010_SP2);
+
+    StringBuilder findItem = new StringBuilder()
+        .append("<m:FindItemResponse").append(SoapPayloads.NAMESPACES).append(">")
+        .append("<m:ResponseMessages><m:FindItemResponseMessage ResponseClass=\"Success\">")
+        .append("<m:ResponseCode>NoError</m:ResponseCode>")
+        .append("<m:RootFolder IndexedPagingOffset=\"").append(itemCount)
+        .append("\" TotalItemsInView=\"").append(itemCount)
+        .append("\" IncludesLastItemInRange=\"true\"><t:Items>");
+    for (int i = 0; i < itemCount; i++) {
+      findItem.append(SoapPayloads.message(i));
+    }
+    findItem.append("</t:Items></m:RootFolder></m:FindItemResponseMessage></m:ResponseMessages>")
+        .append("</m:FindItemResponse>");
+    findItemResponse = SoapPayloads.toBytes(SoapPayloads.envelope(findItem.toString()));
+
+    StringBuilder findAppointments = new StringBuilder()
+        .append("<m:FindItemResponse").append(SoapPayloads.NAMESPACES).append(">")
+        .append("<m:ResponseMessages><m:FindItemResponseMessage ResponseClass=\"Success\">")
+        .append("<m:ResponseCode>NoError</m:ResponseCode>")
+        .append("<m:RootFolder TotalItemsInView=\"").append(itemCount)
+        .append("\" IncludesLastItemInRange=\"true\"><t:Items>");
+    for (int i = 0; i < itemCount; i++) {
+      findAppointments.append(SoapPayloads.calendarItem(i));
+    }
+    findAppointments.append("</t:Items></m:RootFolder></m:FindItemResponseMessage>")
+        .append("</m:ResponseMessages></m:FindItemResponse>");
+    findAppointmentsResponse =
+        SoapPayloads.toBytes(SoapPayloads.envelope(findAppointments.toString()));
+
+    StringBuilder getItem = new StringBuilder()
+        .append("<m:GetItemResponse").append(SoapPayloads.NAMESPACES).append("><m:ResponseMessages>");
+    itemIds = new ArrayList<ItemId>(itemCount);
+    for (int i = 0; i < itemCount; i++) {
+      getItem.append("<m:GetItemResponseMessage ResponseClass=\"Success\">")
+          .append("<m:ResponseCode>NoError</m:ResponseCode><m:Items>")
+          .append(SoapPayloads.message(i))
+          .append("</m:Items></m:GetItemResponseMessage>");
+      itemIds.add(new ItemId(SoapPayloads.itemId(i)));
+    }
+    getItem.append("</m:ResponseMessages></m:GetItemResponse>");
+    getItemResponse = SoapPayloads.toBytes(SoapPayloads.envelope(getItem.toString()));
+  }
+
+  @Benchmark
+  public ServiceResponseCollection<FindItemResponse<Item>> findItem() throws Exception {
+    FindItemRequest<Item> request = new FindItemRequest<Item>(service, ServiceErrorHandling.ThrowOnError);
+    request.getParentFolderIds().add(new FolderId(WellKnownFolderName.Inbox));
+    request.setView(new ItemView(itemCount));
+    return request.readResponse(
+        new EwsServiceXmlReader(new ByteArrayInputStream(findItemResponse), service));
+  }
+
+  @Benchmark
+  public ServiceResponseCollection<FindItemResponse<Appointment>> findAppointments()
+      throws Exception {
+    FindItemRequest<Appointment> request =
+        new FindItemRequest<Appointment>(service, ServiceErrorHandling.ThrowOnError);
+    request.getParentFolderIds().add(new FolderId(WellKnownFolderName.Calendar));
+    request.setView(new CalendarView(new Date(1433116800000L), new Date(1433289600000L)));
+    return request.readResponse(
+        new EwsServiceXmlReader(new ByteArrayInputStream(findAppointmentsResponse), service));
+  }
+
+  @Benchmark
+  public ServiceResponseCollection<GetItemResponse> getItem() throws Exception {
+    GetItemRequest request = new GetItemRequest(service, ServiceErrorHandling.ReturnErrors);
+    request.getItemIds().addRange(itemIds);
+    request.setPropertySet(PropertySet.FirstClassProperties);
+    return request.readResponse(
+        new EwsServiceXmlReader(new ByteArrayInputStream(getItemResponse), service));
+  }
+
+}
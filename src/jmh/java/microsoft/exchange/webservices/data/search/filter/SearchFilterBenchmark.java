@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.search.filter;
+
+import microsoft.exchange.webservices.data.core.EwsServiceXmlWriter;
+import microsoft.exchange.webservices.data.core.ExchangeService;
+import microsoft.exchange.webservices.data.core.enumeration.misc.ExchangeVersion;
+import microsoft.exchange.webservices.data.core.enumeration.property.DefaultExtendedPropertySet;
+import microsoft.exchange.webservices.data.core.enumeration.property.MapiPropertyType;
+import microsoft.exchange.webservices.data.core.enumeration.search.ComparisonMode;
+import microsoft.exchange.webservices.data.core.enumeration.search.ContainmentMode;
+import microsoft.exchange.webservices.data.core.enumeration.search.LogicalOperator;
+import microsoft.exchange.webservices.data.core.service.schema.EmailMessageSchema;
+import microsoft.exchange.webservices.data.core.service.schema.ItemSchema;
+import microsoft.exchange.webservices.data.property.definition.ExtendedPropertyDefinition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the serialization of search filters: a typical restriction mixing relational,
+ * substring and existence filters, and a large disjunction as used to look up many items
+ * at once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchFilterBenchmark {
+
+  private ExchangeService service;
+
+  private SearchFilter restriction;
+
+  private SearchFilter disjunction;
+
+  private ByteArrayOutputStream output;
+
+  @Setup
+  public void setUp() throws Exception {
+    service = new ExchangeService(ExchangeVersion.Exchange2010_SP2);
+    output = new ByteArrayOutputStream(64 * 1024);
+
+    ExtendedPropertyDefinition trackingId = new ExtendedPropertyDefinition(
+        DefaultExtendedPropertySet.PublicStrings, "SyncTrackingId", MapiPropertyType.String);
+
+    restriction = new SearchFilter.SearchFilterCollection(LogicalOperator.And,
+        new SearchFilter.IsGreaterThanOrEqualTo(ItemSchema.DateTimeReceived, new Date(1433152800000L)),
+        new SearchFilter.IsEqualTo(EmailMessageSchema.IsRead, false),
+        new SearchFilter.SearchFilterCollection(LogicalOperator.Or,
+            new SearchFilter.ContainsSubstring(ItemSchema.Subject, "report",
+                ContainmentMode.Substring, ComparisonMode.IgnoreCase),
+            new SearchFilter.ContainsSubstring(ItemSchema.Categories, "Finance",
+                ContainmentMode.FullString, ComparisonMode.Exact)),
+        new SearchFilter.Not(new SearchFilter.Exists(trackingId)),
+        new SearchFilter.IsNotEqualTo(ItemSchema.ItemClass, "IPM.Note.Rules.OofTemplate.Microsoft"));
+
+    SearchFilter.SearchFilterCollection trackingIds =
+        new SearchFilter.SearchFilterCollection(LogicalOperator.Or);
+    for (int i = 0; i < 100; i++) {
+      trackingIds.add(new SearchFilter.IsEqualTo(trackingId, "tracking-" + i));
+    }
+    disjunction = trackingIds;
+  }
+
+  @Benchmark
+  public int writeRestriction() throws Exception {
+    return write(restriction);
+  }
+
+  @Benchmark
+  public int writeDisjunction() throws Exception {
+    return write(disjunction);
+  }
+
+  private int write(SearchFilter filter) throws Exception {
+    output.reset();
+    EwsServiceXmlWriter writer = new EwsServiceXmlWriter(service, output);
+    filter.writeToXml(writer);
+    writer.flush();
+    return output.size();
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.util;
+
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the single-pass parser and formatter of {@link DateTimeUtils} with the Joda
+ * formatters tried in sequence and the SimpleDateFormat built per call they replace, on
+ * the values of FindItem (DateTimeReceived, LastModifiedTime) and FindAppointments (Start,
+ * End, unbiased and offset times) responses.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DateTimeUtilsBenchmark {
+
+  private static final DateTimeFormatter[] LEGACY_FORMATS = {
+      DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ssZ").withZoneUTC(),
+      DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ").withZoneUTC(),
+      DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSSSZ").withZoneUTC(),
+      DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss").withZoneUTC(),
+      DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss.SSS").withZoneUTC(),
+      DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSSS").withZoneUTC(),
+      DateTimeFormat.forPattern("yyyy-MM-ddZ").withZoneUTC(),
+      DateTimeFormat.forPattern("yyyy-MM-dd").withZoneUTC()
+  };
+
+  /**
+   * The value parsed.
+   */
+  @Param({"2015-06-01T10:30:00Z", "2015-06-02T14:30:00.1234567Z", "2015-06-02T16:30:00+02:00",
+      "2015-06-02T14:30:00", "2015-06-02Z"})
+  public String value;
+
+  private final Date date = new Date(1433154645000L);
+
+  @Benchmark
+  public Date parse() {
+    return DateTimeUtils.convertDateTimeStringToDate(value);
+  }
+
+  @Benchmark
+  public Date parseWithJoda() {
+    for (DateTimeFormatter format : LEGACY_FORMATS) {
+      try {
+        return format.parseDateTime(value).toDate();
+      } catch (IllegalArgumentException e) {
+        // Ignore and try the next pattern.
+      }
+    }
+    throw new IllegalArgumentException(value);
+  }
+
+  @Benchmark
+  public String format() {
+    return DateTimeUtils.formatUniversalDateTime(date);
+  }
+
+  @Benchmark
+  public String formatWithSimpleDateFormat() {
+    DateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    return format.format(date);
+  }
+
+}
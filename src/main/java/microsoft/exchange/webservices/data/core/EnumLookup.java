@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Precomputed lookups between the constants of an enum and their strings, so that parsing
+ * or serializing a constant is a single hash or array lookup.
+ */
+final class EnumLookup {
+
+  /**
+   * The constants by string representation.
+   */
+  private final Map<String, Object> constantsByString;
+
+  /**
+   * The constants by schema name, falling back to the string representation.
+   */
+  private final Map<String, Object> constantsBySchemaName;
+
+  /**
+   * The schema names, falling back to the string representation, by ordinal.
+   */
+  private final String[] schemaNames;
+
+  /**
+   * Initializes a new instance.
+   *
+   * @param cls          the enum class
+   * @param schemaToEnum the schema names mapped to constant names, or null
+   * @param enumToSchema the constant names mapped to schema names, or null
+   */
+  EnumLookup(Class<?> cls, Map<String, String> schemaToEnum,
+      Map<String, String> enumToSchema) {
+    Object[] constants = cls.getEnumConstants();
+    this.constantsByString = new HashMap<String, Object>(constants.length * 2);
+    this.schemaNames = new String[constants.length];
+
+    // Reversed, so that the first of two constants with the same string wins.
+    for (int i = constants.length - 1; i >= 0; i--) {
+      this.constantsByString.put(constants[i].toString(), constants[i]);
+    }
+    this.constantsBySchemaName = new HashMap<String, Object>(this.constantsByString);
+    if (schemaToEnum != null) {
+      for (Map.Entry<String, String> entry : schemaToEnum.entrySet()) {
+        Object constant = this.constantsByString.get(entry.getValue());
+        if (constant != null) {
+          this.constantsBySchemaName.put(entry.getKey(), constant);
+        } else {
+          this.constantsBySchemaName.remove(entry.getKey());
+        }
+      }
+    }
+
+    for (int i = 0; i < constants.length; i++) {
+      String schemaName = enumToSchema != null
+          ? enumToSchema.get(((Enum<?>) constants[i]).name()) : null;
+      this.schemaNames[i] = schemaName != null ? schemaName : constants[i].toString();
+    }
+  }
+
+  /**
+   * Gets the constant with a string representation.
+   *
+   * @param value the string representation
+   * @return the constant, or null if there is none
+   */
+  Object fromString(String value) {
+    return this.constantsByString.get(value);
+  }
+
+  /**
+   * Gets the constant with a schema name.
+   *
+   * @param value the schema name, or the string representation of a constant without one
+   * @return the constant, or null if there is none
+   */
+  Object fromSchemaName(String value) {
+    return this.constantsBySchemaName.get(value);
+  }
+
+  /**
+   * Gets the schema name of a constant.
+   *
+   * @param value the constant
+   * @return the schema name, or the string representation of a constant without one
+   */
+  String toSchemaName(Enum<?> value) {
+    return this.schemaNames[value.ordinal()];
+  }
+
+}
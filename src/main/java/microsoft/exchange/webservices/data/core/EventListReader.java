@@ -0,0 +1,119 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.core;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads XML events from a list, such as the events recorded by
+ * {@link EwsXmlReader#stopRecording()}, so that they can be parsed again.
+ */
+final class EventListReader implements XMLEventReader {
+
+  private final List<XMLEvent> events;
+
+  private int position;
+
+  EventListReader(List<XMLEvent> events) {
+    this.events = events;
+  }
+
+  @Override
+  public XMLEvent nextEvent() throws XMLStreamException {
+    if (position == events.size()) {
+      throw new NoSuchElementException();
+    }
+    return events.get(position++);
+  }
+
+  @Override
+  public boolean hasNext() {
+    return position < events.size();
+  }
+
+  @Override
+  public XMLEvent peek() throws XMLStreamException {
+    return position < events.size() ? events.get(position) : null;
+  }
+
+  @Override
+  public String getElementText() throws XMLStreamException {
+    StringBuilder text = new StringBuilder();
+    XMLEvent event = nextEvent();
+    while (!event.isEndElement()) {
+      if (event.isCharacters()) {
+        text.append(event.asCharacters().getData());
+      } else if (event.getEventType() != XMLStreamConstants.COMMENT
+          && event.getEventType() != XMLStreamConstants.PROCESSING_INSTRUCTION) {
+        throw new XMLStreamException("Unexpected event in element text: " + event);
+      }
+      event = nextEvent();
+    }
+    return text.toString();
+  }
+
+  @Override
+  public XMLEvent nextTag() throws XMLStreamException {
+    XMLEvent event = nextEvent();
+    while ((event.isCharacters() && event.asCharacters().isWhiteSpace())
+        || event.getEventType() == XMLStreamConstants.COMMENT
+        || event.getEventType() == XMLStreamConstants.PROCESSING_INSTRUCTION) {
+      event = nextEvent();
+    }
+    if (!event.isStartElement() && !event.isEndElement()) {
+      throw new XMLStreamException("Expected a start or end element: " + event);
+    }
+    return event;
+  }
+
+  @Override
+  public Object getProperty(String name) {
+    throw new IllegalArgumentException(name);
+  }
+
+  @Override
+  public void close() {
+  }
+
+  @Override
+  public Object next() {
+    try {
+      return nextEvent();
+    } catch (XMLStreamException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+}
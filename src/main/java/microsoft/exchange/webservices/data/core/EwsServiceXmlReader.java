@@ -29,13 +29,12 @@ import microsoft.exchange.webservices.data.core.enumeration.misc.XmlNamespace;
 import microsoft.exchange.webservices.data.core.exception.service.local.ServiceLocalException;
 import microsoft.exchange.webservices.data.util.DateTimeUtils;
 
+import javax.xml.stream.XMLEventReader;
+
 import java.io.InputStream;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.TimeZone;
 
 /**
  * XML reader.
@@ -60,6 +59,18 @@ public class EwsServiceXmlReader extends EwsXmlReader {
     this.service = service;
   }
 
+  /**
+   * Initializes a new instance of the EwsServiceXmlReader class reading events that
+   * have already been parsed.
+   *
+   * @param xmlReader the event reader
+   * @param service   the service
+   */
+  public EwsServiceXmlReader(XMLEventReader xmlReader, ExchangeService service) {
+    super(xmlReader);
+    this.service = service;
+  }
+
   /**
    * Reads the element value as date time.
    *
@@ -90,19 +101,7 @@ public class EwsServiceXmlReader extends EwsXmlReader {
   public Date readElementValueAsUnbiasedDateTimeScopedToServiceTimeZone()
       throws Exception {
     // Convert the element's value to a DateTime with no adjustment.
-    String date = this.readElementValue();
-
-    try {
-      DateFormat formatter =
-          new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-      formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-      return formatter.parse(date);
-    } catch (Exception e) {
-      DateFormat formatter = new SimpleDateFormat(
-          "yyyy-MM-dd'T'HH:mm:ss.SSS");
-      formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-      return formatter.parse(date);
-    }
+    return DateTimeUtils.convertUnbiasedDateTimeStringToDate(this.readElementValue());
   }
 
   /**
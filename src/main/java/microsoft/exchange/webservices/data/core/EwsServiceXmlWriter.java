@@ -27,6 +27,7 @@ import microsoft.exchange.webservices.data.core.enumeration.misc.XmlNamespace;
 import microsoft.exchange.webservices.data.core.exception.service.local.ServiceXmlSerializationException;
 import microsoft.exchange.webservices.data.misc.OutParam;
 import microsoft.exchange.webservices.data.property.complex.ISearchStringProvider;
+import microsoft.exchange.webservices.data.security.SafeXmlFactory;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -45,10 +46,11 @@ import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Date;
 
 /**
@@ -83,6 +85,12 @@ public class EwsServiceXmlWriter implements IDisposable {
    */
   private static final int BufferSize = 4096;
 
+  /**
+   * The number of bytes base64-encoded at a time. A multiple of three, so
+   * that only the last chunk of a value is padded.
+   */
+  private static final int Base64ChunkSize = 3 * BufferSize;
+
   /**
    * The  requireWSSecurityUtilityNamespace *
    */
@@ -98,7 +106,7 @@ public class EwsServiceXmlWriter implements IDisposable {
    */
   public EwsServiceXmlWriter(ExchangeServiceBase service, OutputStream stream) throws XMLStreamException {
     this.service = service;
-    XMLOutputFactory xmlof = XMLOutputFactory.newInstance();
+    XMLOutputFactory xmlof = SafeXmlFactory.getOutputFactory();
     xmlWriter = xmlof.createXMLStreamWriter(stream, "utf-8");
 
   }
@@ -496,13 +504,21 @@ public class EwsServiceXmlWriter implements IDisposable {
    */
   public void writeBase64ElementValue(byte[] buffer)
       throws XMLStreamException {
-
-    String strValue = Base64.encodeBase64String(buffer);
-    this.xmlWriter.writeCharacters(strValue);//Base64.encode(buffer));
+    if (buffer.length <= Base64ChunkSize) {
+      this.xmlWriter.writeCharacters(Base64.encodeBase64String(buffer));
+    } else {
+      try {
+        this.writeBase64ElementValue(new ByteArrayInputStream(buffer));
+      } catch (IOException e) {
+        // A ByteArrayInputStream does not throw.
+        throw new XMLStreamException(e);
+      }
+    }
   }
 
   /**
-   * Writes the base64-encoded element value.
+   * Writes the base64-encoded element value. The stream is encoded in
+   * fixed-size chunks, so memory use does not depend on the stream length.
    *
    * @param stream the stream
    * @throws IOException signals that an I/O exception has occurred
@@ -510,22 +526,40 @@ public class EwsServiceXmlWriter implements IDisposable {
    */
   public void writeBase64ElementValue(InputStream stream) throws IOException,
       XMLStreamException {
-
-    ByteArrayOutputStream bos = new ByteArrayOutputStream();
-    byte[] buf = new byte[BufferSize];
-    try {
-      for (int readNum; (readNum = stream.read(buf)) != -1; ) {
-        bos.write(buf, 0, readNum);
+    final byte[] chunk = new byte[Base64ChunkSize];
+    final char[] encoded = new char[Base64ChunkSize / 3 * 4];
+
+    int length;
+    do {
+      // Fill the whole chunk, so that only the last one may need padding.
+      length = 0;
+      int readNum;
+      while (length < chunk.length
+          && (readNum = stream.read(chunk, length, chunk.length - length)) != -1) {
+        length += readNum;
       }
-    } catch (IOException ex) {
-      LOG.error(ex);
-    } finally {
-      bos.close();
-    }
-    byte[] bytes = bos.toByteArray();
-    String strValue = Base64.encodeBase64String(bytes);
-    this.xmlWriter.writeCharacters(strValue);
+      if (length > 0) {
+        this.writeBase64Chunk(chunk, length, encoded);
+      }
+    } while (length == chunk.length);
+  }
 
+  /**
+   * Base64-encodes the first bytes of a chunk and writes them as characters.
+   *
+   * @param chunk   the bytes to encode
+   * @param length  the number of bytes of the chunk to encode
+   * @param encoded a buffer large enough to hold the encoded chunk
+   * @throws XMLStreamException the XML stream exception
+   */
+  private void writeBase64Chunk(byte[] chunk, int length, char[] encoded)
+      throws XMLStreamException {
+    final byte[] bytes = Base64.encodeBase64(
+        length == chunk.length ? chunk : Arrays.copyOf(chunk, length));
+    for (int i = 0; i < bytes.length; i++) {
+      encoded[i] = (char) bytes[i];
+    }
+    this.xmlWriter.writeCharacters(encoded, 0, bytes.length);
   }
 
   /**
@@ -50,6 +50,8 @@ import microsoft.exchange.webservices.data.core.exception.service.local.ServiceV
 import microsoft.exchange.webservices.data.core.exception.service.local.ServiceVersionException;
 import microsoft.exchange.webservices.data.misc.TimeSpan;
 import microsoft.exchange.webservices.data.property.complex.ItemAttachment;
+import microsoft.exchange.webservices.data.security.SafeXmlFactory;
+import microsoft.exchange.webservices.data.util.DateTimeUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -73,6 +75,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -226,12 +230,7 @@ public final class EwsUtilities {
         }
       );
 
-  private static final String XML_SCHEMA_DATE_FORMAT = "yyyy-MM-dd'Z'";
-  private static final String XML_SCHEMA_DATE_TIME_FORMAT = "yyyy-MM-dd'T'HH:mm:ss'Z'";
-
   private static final Pattern PATTERN_TIME_SPAN = Pattern.compile("-P");
-  private static final Pattern PATTERN_YEAR = Pattern.compile("(\\d+)Y");
-  private static final Pattern PATTERN_MONTH = Pattern.compile("(\\d+)M");
   private static final Pattern PATTERN_DAY = Pattern.compile("(\\d+)D");
   private static final Pattern PATTERN_HOUR = Pattern.compile("(\\d+)H");
   private static final Pattern PATTERN_MINUTES = Pattern.compile("(\\d+)M");
@@ -327,6 +326,12 @@ public final class EwsUtilities {
             }
           });
 
+  /**
+   * The lookups of the enums parsed or serialized so far.
+   */
+  private static final ConcurrentMap<Class<?>, EnumLookup> ENUM_LOOKUPS =
+      new ConcurrentHashMap<Class<?>, EnumLookup>();
+
   /**
    * Regular expression for legal domain names.
    */
@@ -404,7 +409,7 @@ public final class EwsUtilities {
    * @param itemClass        the item class
    * @param service          the service
    * @param xmlElementName   the xml element name
-   * @return the t service object
+   * @return the t service object, or null if no service object is represented by the element
    * @throws Exception the exception
    */
   @SuppressWarnings("unchecked")
@@ -412,25 +417,16 @@ public final class EwsUtilities {
   TServiceObject createEwsObjectFromXmlElementName(
       Class<?> itemClass, ExchangeService service, String xmlElementName)
       throws Exception {
-    final ServiceObjectInfo member = EwsUtilities.SERVICE_OBJECT_INFO.getMember();
-    final Map<String, Class<?>> map = member.getXmlElementNameToServiceObjectClassMap();
+    final ICreateServiceObjectWithServiceParam creationDelegate = EwsUtilities.SERVICE_OBJECT_INFO
+        .getMember().getServiceObjectConstructorsByXmlElementName().get(xmlElementName);
 
-    final Class<?> ic = map.get(xmlElementName);
-    if (ic != null) {
-      final Map<Class<?>, ICreateServiceObjectWithServiceParam>
-          serviceParam = member.getServiceObjectConstructorsWithServiceParam();
-      final ICreateServiceObjectWithServiceParam creationDelegate =
-          serviceParam.get(ic);
-
-      if (creationDelegate != null) {
-        return (TServiceObject) creationDelegate
-            .createServiceObjectWithServiceParam(service);
-      } else {
-        throw new IllegalArgumentException("No appropriate constructor could be found for this item class.");
-      }
+    if (creationDelegate != null) {
+      return (TServiceObject) creationDelegate
+          .createServiceObjectWithServiceParam(service);
     }
 
-    return (TServiceObject) itemClass.newInstance();
+    // Unknown elements, such as item types added by later versions of Exchange, are skipped.
+    return null;
   }
 
   /**
@@ -549,7 +545,7 @@ public final class EwsUtilities {
       throws XMLStreamException, IOException {
     String lineSeparator = System.getProperty("line.separator");
     ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-    XMLOutputFactory factory = XMLOutputFactory.newInstance();
+    XMLOutputFactory factory = SafeXmlFactory.getOutputFactory();
     XMLStreamWriter writer = factory.createXMLStreamWriter(outStream);
     EwsUtilities.writeTraceStartElement(writer, entryKind, false);
     writer.writeCharacters(lineSeparator);
@@ -666,11 +662,11 @@ public final class EwsUtilities {
 
     String[] enumValues = value.split(regexp.toString());
 
+    EnumLookup lookup = getEnumLookup(c);
     for (String enumValue : enumValues) {
-      for (T o : c.getEnumConstants()) {
-        if (o.toString().equals(enumValue)) {
-          list.add(o);
-        }
+      Object o = lookup.fromString(enumValue);
+      if (o != null) {
+        list.add(c.cast(o));
       }
     }
   }
@@ -683,19 +679,31 @@ public final class EwsUtilities {
    * @return String representation of enum to be used in the protocol
    */
   public static String serializeEnum(Object value) {
-    String strValue = value.toString();
-    final Map<Class<?>, Map<String, String>> member =
-      ENUM_TO_SCHEMA_DICTIONARIES.getMember();
-
-    final Map<String, String> enumToStringDict = member.get(value.getClass());
-    if (enumToStringDict != null) {
+    if (value instanceof Enum) {
       final Enum<?> e = (Enum<?>) value;
-      final String enumStr = enumToStringDict.get(e.name());
-      if (enumStr != null) {
-        strValue = enumStr;
+      return getEnumLookup(e.getDeclaringClass()).toSchemaName(e);
+    }
+    return value.toString();
+  }
+
+  /**
+   * Gets the precomputed lookup of an enum, built on first use from the
+   * mapping dictionaries.
+   *
+   * @param cls the enum class
+   * @return the lookup
+   */
+  private static EnumLookup getEnumLookup(Class<?> cls) {
+    EnumLookup lookup = ENUM_LOOKUPS.get(cls);
+    if (lookup == null) {
+      lookup = new EnumLookup(cls, SCHEMA_TO_ENUM_DICTIONARIES.getMember().get(cls),
+          ENUM_TO_SCHEMA_DICTIONARIES.getMember().get(cls));
+      EnumLookup existing = ENUM_LOOKUPS.putIfAbsent(cls, lookup);
+      if (existing != null) {
+        lookup = existing;
       }
     }
-    return strValue;
+    return lookup;
   }
 
   /**
@@ -710,22 +718,7 @@ public final class EwsUtilities {
   @SuppressWarnings("unchecked")
   public static <T> T parse(Class<T> cls, String value) throws ParseException {
     if (cls.isEnum()) {
-      final Map<Class<?>, Map<String, String>> member = SCHEMA_TO_ENUM_DICTIONARIES.getMember();
-
-      String val = value;
-      final Map<String, String> stringToEnumDict = member.get(cls);
-      if (stringToEnumDict != null) {
-        final String strEnumName = stringToEnumDict.get(value);
-        if (strEnumName != null) {
-          val = strEnumName;
-        }
-      }
-      for (T o : cls.getEnumConstants()) {
-        if (o.toString().equals(val)) {
-          return o;
-        }
-      }
-      return null;
+      return (T) getEnumLookup(cls).fromSchemaName(value);
     }else if (Number.class.isAssignableFrom(cls)){
       if (Double.class.isAssignableFrom(cls)){
         return (T) ((Double) Double.parseDouble(value));
@@ -745,8 +738,11 @@ public final class EwsUtilities {
         return (T) (new BigDecimal(value));
       }
     } else if (Date.class.isAssignableFrom(cls)) {
-      DateFormat df = createDateFormat(XML_SCHEMA_DATE_TIME_FORMAT);
-      return (T) df.parse(value);
+      try {
+        return (T) DateTimeUtils.convertDateTimeStringToDate(value);
+      } catch (IllegalArgumentException e) {
+        throw new ParseException(e.getMessage(), 0);
+      }
     } else if (Boolean.class.isAssignableFrom(cls)) {
       return (T) ((Boolean) Boolean.parseBoolean(value));
     } else if (String.class.isAssignableFrom(cls)) {
@@ -818,7 +814,7 @@ public final class EwsUtilities {
    * @return String representation of DateTime.
    */
   public static String dateTimeToXSDate(Date date) {
-    return formatDate(date, XML_SCHEMA_DATE_FORMAT);
+    return DateTimeUtils.formatUniversalDate(date);
   }
 
   /**
@@ -828,7 +824,7 @@ public final class EwsUtilities {
    * @return String representation of DateTime.
    */
   public static String dateTimeToXSDateTime(Date date) {
-    return formatDate(date, XML_SCHEMA_DATE_TIME_FORMAT);
+    return DateTimeUtils.formatUniversalDateTime(date);
   }
 
   /**
@@ -861,102 +857,69 @@ public final class EwsUtilities {
    * Recommendation "XML Schema Part 2: Datatypes Second Edition",
    * http://www.w3.org/TR/xmlschema-2/#duration, and converts it into a
    * System.TimeSpan structure This method uses the following approximations:
-   * 1 year = 365 days 1 month = 30 days Additionally, it only allows for four
-   * decimal points of seconds precision.
+   * 1 year = 365 days 1 month = 30 days Additionally, fractions of seconds
+   * are rounded to the millisecond.
    *
    * @param xsDuration xs:duration string to convert
    * @return System.TimeSpan structure
+   * @throws IllegalArgumentException if the string is not a valid xs:duration
    */
   public static TimeSpan getXSDurationToTimeSpan(String xsDuration) {
-    // TODO: Need to check whether this should be the equivalent or not
-    Matcher m = PATTERN_TIME_SPAN.matcher(xsDuration);
-    boolean negative = false;
-    LOG.debug(m.find());
-    if (m.find()) {
-      negative = true;
-    }
-    LOG.debug(m.group());
-
-    // Year
-    m = PATTERN_YEAR.matcher(xsDuration);
-    LOG.debug(m.find());
-    int year = 0;
-    if (m.find()) {
-      year = Integer.parseInt(m.group().substring(0,
-          m.group().indexOf("Y")));
-    }
-
-    // Month
-    m = PATTERN_MONTH.matcher(xsDuration);
-    LOG.debug(m.find());
-    int month = 0;
-    if (m.find()) {
-      month = Integer.parseInt(m.group().substring(0,
-          m.group().indexOf("M")));
-    }
-
-    // Day
-    m = PATTERN_DAY.matcher(xsDuration);
-    LOG.debug(m.find());
-    int day = 0;
-    if (m.find()) {
-      day = Integer.parseInt(m.group().substring(0,
-          m.group().indexOf("D")));
+    int length = xsDuration.length();
+    int index = 0;
+    boolean negative = index < length && xsDuration.charAt(index) == '-';
+    if (negative) {
+      index++;
     }
-
-    // Hour
-    m = PATTERN_HOUR.matcher(xsDuration);
-    LOG.debug(m.find());
-    int hour = 0;
-    if (m.find()) {
-      hour = Integer.parseInt(m.group().substring(0,
-          m.group().indexOf("H")));
+    if (index >= length || xsDuration.charAt(index++) != 'P') {
+      throw new IllegalArgumentException(
+          String.format("'%s' is not a valid xs:duration.", xsDuration));
     }
 
-    // Minute
-    m = PATTERN_MINUTES.matcher(xsDuration);
-    LOG.debug(m.find());
-    int minute = 0;
-    if (m.find()) {
-      minute = Integer.parseInt(m.group().substring(0,
-          m.group().indexOf("M")));
-    }
+    long days = 0;
+    long hours = 0;
+    long minutes = 0;
+    long milliseconds = 0;
+    boolean time = false;
+    while (index < length) {
+      if (!time && xsDuration.charAt(index) == 'T') {
+        time = true;
+        index++;
+        continue;
+      }
 
-    // Seconds
-    m = PATTERN_SECONDS.matcher(xsDuration);
-    LOG.debug(m.find());
-    int seconds = 0;
-    if (m.find()) {
-      seconds = Integer.parseInt(m.group().substring(0,
-          m.group().indexOf(".")));
-    }
+      int start = index;
+      while (index < length && (Character.isDigit(xsDuration.charAt(index))
+          || xsDuration.charAt(index) == '.')) {
+        index++;
+      }
+      if (index == start || index == length) {
+        throw new IllegalArgumentException(
+            String.format("'%s' is not a valid xs:duration.", xsDuration));
+      }
 
-    int milliseconds = 0;
-    m = PATTERN_MILLISECONDS.matcher(xsDuration);
-    LOG.debug(m.find());
-    if (m.find()) {
-      // Only allowed 4 digits of precision
-      if (m.group().length() > 5) {
-        milliseconds = Integer.parseInt(m.group().substring(0, 4));
+      String value = xsDuration.substring(start, index);
+      char designator = xsDuration.charAt(index++);
+      if (designator == 'S' && time) {
+        milliseconds += Math.round(Double.parseDouble(value) * 1000);
+      } else if (designator == 'H' && time) {
+        hours += Long.parseLong(value);
+      } else if (designator == 'M' && time) {
+        minutes += Long.parseLong(value);
+      } else if (designator == 'D' && !time) {
+        days += Long.parseLong(value);
+      } else if (designator == 'M') {
+        days += Long.parseLong(value) * 30;
+      } else if (designator == 'Y' && !time) {
+        days += Long.parseLong(value) * 365;
       } else {
-        seconds = Integer.parseInt(m.group().substring(0,
-            m.group().indexOf("S")));
+        throw new IllegalArgumentException(
+            String.format("'%s' is not a valid xs:duration.", xsDuration));
       }
     }
 
-    // Apply conversions of year and months to days.
-    // Year = 365 days
-    // Month = 30 days
-    day = day + (year * 365) + (month * 30);
-    // TimeSpan retval = new TimeSpan(day, hour, minute, seconds,
-    // milliseconds);
-    long retval = (((((((day * 24) + hour) * 60) + minute) * 60) +
-        seconds) * 1000) + milliseconds;
-    if (negative) {
-      retval = -retval;
-    }
-    return new TimeSpan(retval);
-
+    long retval = (((days * 24 + hours) * 60) + minutes) * 60 * 1000 + milliseconds;
+    return new TimeSpan(negative ? -retval : retval);
   }
 
   /**
@@ -1487,16 +1450,4 @@ public final class EwsUtilities {
     }
   }
 
-
-  private static String formatDate(Date date, String format) {
-    final DateFormat utcFormatter = createDateFormat(format);
-    return utcFormatter.format(date);
-  }
-
-  private static DateFormat createDateFormat(String format) {
-    final DateFormat utcFormatter = new SimpleDateFormat(format);
-    utcFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-    return utcFormatter;
-  }
-
 }
@@ -26,9 +26,11 @@ package microsoft.exchange.webservices.data.core;
 import microsoft.exchange.webservices.data.core.enumeration.misc.XmlNamespace;
 import microsoft.exchange.webservices.data.core.exception.service.local.ServiceXmlDeserializationException;
 import microsoft.exchange.webservices.data.misc.OutParam;
+import microsoft.exchange.webservices.data.security.NameTable;
+import microsoft.exchange.webservices.data.security.XmlNameTable;
 import microsoft.exchange.webservices.data.security.XmlNodeType;
+import microsoft.exchange.webservices.data.security.SafeXmlFactory;
 import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -39,9 +41,9 @@ import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.events.Attribute;
 import javax.xml.stream.events.Characters;
-import javax.xml.stream.events.EndElement;
 import javax.xml.stream.events.StartElement;
 import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.util.EventReaderDelegate;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -50,6 +52,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Defines the EwsXmlReader class.
@@ -63,6 +72,17 @@ public class EwsXmlReader {
    */
   private static final int ReadWriteBufferSize = 4096;
 
+  /**
+   * The element names of the EWS schema, atomized to the constants of {@link XmlElementNames}.
+   * The table is filled once and only read afterwards, so names sent by the server never grow it.
+   */
+  private static final XmlNameTable NAME_TABLE = createNameTable();
+
+  /**
+   * The known namespaces, by namespace URI.
+   */
+  private static final Map<String, XmlNamespace> NAMESPACES_BY_URI = createNamespaceMap();
+
   /**
    * The xml reader.
    */
@@ -78,6 +98,31 @@ public class EwsXmlReader {
    */
   private XMLEvent prevEvent;
 
+  /**
+   * The event the present name fields were resolved from.
+   */
+  private XMLEvent namedEvent;
+
+  /**
+   * The local name of the present element, atomized when it is a schema name.
+   */
+  private String presentLocalName;
+
+  /**
+   * The namespace prefix of the present element.
+   */
+  private String presentNamespacePrefix;
+
+  /**
+   * The namespace URI of the present element.
+   */
+  private String presentNamespaceUri;
+
+  /**
+   * The namespace of the present element; null if the namespace URI is unknown.
+   */
+  private XmlNamespace presentNamespace;
+
   /**
    * Initializes a new instance of the EwsXmlReader class.
    *
@@ -88,6 +133,16 @@ public class EwsXmlReader {
     this.xmlReader = initializeXmlReader(stream);
   }
 
+  /**
+   * Initializes a new instance of the EwsXmlReader class reading events that have
+   * already been parsed, such as the events returned by {@link #stopRecording()}.
+   *
+   * @param xmlReader the event reader
+   */
+  protected EwsXmlReader(XMLEventReader xmlReader) {
+    this.xmlReader = xmlReader;
+  }
+
   /**
    * Initializes the XML reader.
    *
@@ -96,12 +151,81 @@ public class EwsXmlReader {
    * @throws Exception on error
    */
   protected XMLEventReader initializeXmlReader(InputStream stream) throws Exception {
-    XMLInputFactory inputFactory = XMLInputFactory.newInstance();
-    inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    return SafeXmlFactory.getInputFactory().createXMLEventReader(stream);
+  }
 
-    return inputFactory.createXMLEventReader(stream);
+  /**
+   * Starts recording the events read, beginning with the present event.
+   */
+  public void startRecording() {
+    EwsUtilities.ewsAssert(!(this.xmlReader instanceof RecordingEventReader),
+        "EwsXmlReader.startRecording", "already recording");
+
+    RecordingEventReader recorder = new RecordingEventReader(this.xmlReader);
+    if (this.presentEvent != null) {
+      recorder.events.add(this.presentEvent);
+    }
+    this.xmlReader = recorder;
   }
 
+  /**
+   * Stops recording the events read.
+   *
+   * @return the events read since recording started
+   */
+  public List<XMLEvent> stopRecording() {
+    EwsUtilities.ewsAssert(this.xmlReader instanceof RecordingEventReader,
+        "EwsXmlReader.stopRecording", "not recording");
+
+    RecordingEventReader recorder = (RecordingEventReader) this.xmlReader;
+    this.xmlReader = (XMLEventReader) recorder.getParent();
+    return recorder.events;
+  }
+
+
+  /**
+   * Creates the name table of the element names of the EWS schema.
+   *
+   * @return the name table
+   */
+  private static XmlNameTable createNameTable() {
+    XmlNameTable nameTable = new NameTable();
+    addConstants(nameTable, XmlElementNames.class);
+    return nameTable;
+  }
+
+  /**
+   * Adds the values of the public String constants of a class to a name table.
+   *
+   * @param nameTable the name table
+   * @param cls       the class declaring the constants
+   */
+  private static void addConstants(XmlNameTable nameTable, Class<?> cls) {
+    for (Field field : cls.getFields()) {
+      int modifiers = field.getModifiers();
+      if (Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers)
+          && field.getType() == String.class) {
+        try {
+          nameTable.Add((String) field.get(null));
+        } catch (IllegalAccessException e) {
+          LOG.error(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Creates the map of the known namespaces by namespace URI.
+   *
+   * @return the map
+   */
+  private static Map<String, XmlNamespace> createNamespaceMap() {
+    Map<String, XmlNamespace> namespaces = new HashMap<String, XmlNamespace>();
+    for (XmlNamespace xmlNamespace : XmlNamespace.values()) {
+      namespaces.put(xmlNamespace.getNameSpaceUri(), xmlNamespace);
+    }
+    return namespaces;
+  }
 
   /**
    * Formats the name of the element.
@@ -126,16 +250,16 @@ public class EwsXmlReader {
    * @throws Exception the exception
    */
   private void internalReadElement(XmlNamespace xmlNamespace,
-      String localName, XmlNodeType nodeType) throws Exception {
+      String localName, int nodeType) throws Exception {
 
     if (xmlNamespace == XmlNamespace.NotSpecified) {
       this.internalReadElement("", localName, nodeType);
     } else {
       this.read(nodeType);
+      this.resolvePresentName();
 
-      if ((!this.getLocalName().equals(localName)) ||
-          (!this.getNamespaceUri().equals(EwsUtilities
-              .getNamespaceUri(xmlNamespace)))) {
+      if ((!this.presentLocalName.equals(localName)) ||
+          (this.presentNamespace != xmlNamespace)) {
         throw new ServiceXmlDeserializationException(
             String
                 .format(
@@ -143,7 +267,7 @@ public class EwsXmlReader {
                     EwsUtilities
                         .getNamespacePrefix(
                             xmlNamespace),
-                    localName, nodeType.toString(), this
+                    localName, XmlNodeType.getString(nodeType), this
                         .getName(), this.getNodeType()
                         .toString()));
       }
@@ -159,14 +283,15 @@ public class EwsXmlReader {
    * @throws Exception the exception
    */
   private void internalReadElement(String namespacePrefix, String localName,
-      XmlNodeType nodeType) throws Exception {
+      int nodeType) throws Exception {
     read(nodeType);
+    this.resolvePresentName();
 
-    if ((!this.getLocalName().equals(localName)) ||
-        (!this.getNamespacePrefix().equals(namespacePrefix))) {
+    if ((!this.presentLocalName.equals(localName)) ||
+        (!this.presentNamespacePrefix.equals(namespacePrefix))) {
       throw new ServiceXmlDeserializationException(String.format(
           "An element node '%s:%s' of the type %s was expected, but node '%s' of type %s was found.", namespacePrefix, localName,
-          nodeType.toString(), this.getName(), this.getNodeType()
+          XmlNodeType.getString(nodeType), this.getName(), this.getNodeType()
               .toString()));
     }
   }
@@ -221,11 +346,21 @@ public class EwsXmlReader {
    * @throws Exception the exception
    */
   public void read(XmlNodeType nodeType) throws Exception {
+    this.read(nodeType.nodeType);
+  }
+
+  /**
+   * Reads the specified node type.
+   *
+   * @param nodeType Type of the node, one of the {@link XmlNodeType} constants.
+   * @throws Exception the exception
+   */
+  private void read(int nodeType) throws Exception {
     this.read();
-    if (!this.getNodeType().equals(nodeType)) {
+    if (this.presentEvent.getEventType() != nodeType) {
       throw new ServiceXmlDeserializationException(String
-          .format("The expected XML node type was %s, but the actual type is %s.", nodeType, this
-              .getNodeType()));
+          .format("The expected XML node type was %s, but the actual type is %s.",
+              XmlNodeType.getString(nodeType), this.getNodeType()));
     }
   }
 
@@ -559,32 +694,58 @@ public class EwsXmlReader {
   public byte[] readBase64ElementValue()
       throws ServiceXmlDeserializationException, XMLStreamException,
       IOException {
-    this.ensureCurrentNodeIsStartElement();
-
-    byte[] buffer = null;
-
     ByteArrayOutputStream byteArrayStream = new ByteArrayOutputStream();
-
-    buffer = Base64.decodeBase64(this.xmlReader.getElementText().toString());
-    byteArrayStream.write(buffer);
-
+    this.readBase64ElementValue(byteArrayStream);
     return byteArrayStream.toByteArray();
-
   }
 
   /**
-   * Reads the base64 element value.
+   * Reads the base64 element value. The text is decoded in fixed-size
+   * blocks as it is read, so memory use does not depend on the length of
+   * the value. After executing this function the present event is the
+   * END ELEMENT.
    *
    * @param outputStream the output stream
-   * @throws Exception the exception
+   * @throws ServiceXmlDeserializationException the service xml deserialization exception
+   * @throws XMLStreamException the XML stream exception
+   * @throws IOException signals that an I/O exception has occurred
    */
   public void readBase64ElementValue(OutputStream outputStream)
-      throws Exception {
+      throws ServiceXmlDeserializationException, XMLStreamException,
+      IOException {
     this.ensureCurrentNodeIsStartElement();
 
-    byte[] buffer = null;
-    buffer = Base64.decodeBase64(this.xmlReader.getElementText().toString());
-    outputStream.write(buffer);
+    final byte[] block = new byte[ReadWriteBufferSize];
+    int blockLength = 0;
+
+    this.read(true);
+    while (!this.presentEvent.isEndElement()) {
+      if (this.presentEvent.getEventType() == XMLStreamConstants.COMMENT) {
+        this.read(true);
+        continue;
+      }
+      if (!this.presentEvent.isCharacters()) {
+        throw new ServiceXmlDeserializationException(
+            getReadValueErrMsg("Could not find " + XmlNodeType.getString(XmlNodeType.CHARACTERS)));
+      }
+
+      final String data = this.presentEvent.asCharacters().getData();
+      for (int i = 0; i < data.length(); i++) {
+        final char c = data.charAt(i);
+        if (!Character.isWhitespace(c)) {
+          block[blockLength++] = (byte) c;
+          if (blockLength == block.length) {
+            outputStream.write(Base64.decodeBase64(block));
+            blockLength = 0;
+          }
+        }
+      }
+      this.read(true);
+    }
+
+    if (blockLength > 0) {
+      outputStream.write(Base64.decodeBase64(Arrays.copyOf(block, blockLength)));
+    }
     outputStream.flush();
   }
 
@@ -597,8 +758,7 @@ public class EwsXmlReader {
    */
   public void readStartElement(String namespacePrefix, String localName)
       throws Exception {
-    this.internalReadElement(namespacePrefix, localName, new XmlNodeType(
-        XmlNodeType.START_ELEMENT));
+    this.internalReadElement(namespacePrefix, localName, XmlNodeType.START_ELEMENT);
   }
 
   /**
@@ -610,8 +770,7 @@ public class EwsXmlReader {
    */
   public void readStartElement(XmlNamespace xmlNamespace, String localName)
       throws Exception {
-    this.internalReadElement(xmlNamespace, localName, new XmlNodeType(
-        XmlNodeType.START_ELEMENT));
+    this.internalReadElement(xmlNamespace, localName, XmlNodeType.START_ELEMENT);
   }
 
   /**
@@ -623,8 +782,7 @@ public class EwsXmlReader {
    */
   public void readEndElement(String namespacePrefix, String elementName)
       throws Exception {
-    this.internalReadElement(namespacePrefix, elementName, new XmlNodeType(
-        XmlNodeType.END_ELEMENT));
+    this.internalReadElement(namespacePrefix, elementName, XmlNodeType.END_ELEMENT);
   }
 
   /**
@@ -637,8 +795,7 @@ public class EwsXmlReader {
   public void readEndElement(XmlNamespace xmlNamespace, String localName)
       throws Exception {
 
-    this.internalReadElement(xmlNamespace, localName, new XmlNodeType(
-        XmlNodeType.END_ELEMENT));
+    this.internalReadElement(xmlNamespace, localName, XmlNodeType.END_ELEMENT);
 
   }
 
@@ -677,14 +834,8 @@ public class EwsXmlReader {
    * @return boolean
    */
   public boolean isStartElement(String namespacePrefix, String localName) {
-    boolean isStart = false;
-    if (this.presentEvent.isStartElement()) {
-      StartElement startElement = this.presentEvent.asStartElement();
-      QName qName = startElement.getName();
-      isStart = qName.getLocalPart().equals(localName)
-          && qName.getPrefix().equals(namespacePrefix);
-    }
-    return isStart;
+    return this.presentEvent.isStartElement()
+        && this.isPresentName(namespacePrefix, localName);
   }
 
   /**
@@ -695,11 +846,8 @@ public class EwsXmlReader {
    * @return true for matching start element; false otherwise.
    */
   public boolean isStartElement(XmlNamespace xmlNamespace, String localName) {
-    return this.isStartElement()
-      && StringUtils.equals(getLocalName(), localName)
-      && (
-         StringUtils.equals(getNamespacePrefix(), EwsUtilities.getNamespacePrefix(xmlNamespace)) ||
-         StringUtils.equals(getNamespaceUri(), EwsUtilities.getNamespaceUri(xmlNamespace)));
+    return this.presentEvent.isStartElement()
+        && this.isPresentName(xmlNamespace, localName);
   }
 
   /**
@@ -710,15 +858,8 @@ public class EwsXmlReader {
    * @return boolean
    */
   public boolean isEndElement(String namespacePrefix, String localName) {
-    boolean isEndElement = false;
-    if (this.presentEvent.isEndElement()) {
-      EndElement endElement = this.presentEvent.asEndElement();
-      QName qName = endElement.getName();
-      isEndElement = qName.getLocalPart().equals(localName)
-          && qName.getPrefix().equals(namespacePrefix);
-
-    }
-    return isEndElement;
+    return this.presentEvent.isEndElement()
+        && this.isPresentName(namespacePrefix, localName);
   }
 
   /**
@@ -729,23 +870,60 @@ public class EwsXmlReader {
    * @return boolean
    */
   public boolean isEndElement(XmlNamespace xmlNamespace, String localName) {
+    return this.presentEvent.isEndElement()
+        && this.isPresentName(xmlNamespace, localName);
+  }
 
-    boolean isEndElement = false;
-		/*
-		 * if(localName.equals("Body")) { return true; } else
-		 */
-    if (this.presentEvent.isEndElement()) {
-      EndElement endElement = this.presentEvent.asEndElement();
-      QName qName = endElement.getName();
-      isEndElement = qName.getLocalPart().equals(localName)
-          && (qName.getPrefix().equals(
-          EwsUtilities.getNamespacePrefix(xmlNamespace)) ||
-          qName.getNamespaceURI().equals(
-              EwsUtilities.getNamespaceUri(
-                  xmlNamespace)));
+  /**
+   * Determines whether the present element has the given name.
+   *
+   * @param namespacePrefix the namespace prefix
+   * @param localName       the local name
+   * @return true if the present element has the given name
+   */
+  private boolean isPresentName(String namespacePrefix, String localName) {
+    this.resolvePresentName();
+    return this.presentLocalName.equals(localName)
+        && this.presentNamespacePrefix.equals(namespacePrefix);
+  }
 
+  /**
+   * Determines whether the present element has the given name. The namespace matches
+   * by namespace URI or by prefix.
+   *
+   * @param xmlNamespace the xml namespace
+   * @param localName    the local name
+   * @return true if the present element has the given name
+   */
+  private boolean isPresentName(XmlNamespace xmlNamespace, String localName) {
+    this.resolvePresentName();
+    return this.presentLocalName.equals(localName)
+        && (this.presentNamespace == xmlNamespace
+        || this.presentNamespacePrefix.equals(xmlNamespace.getNameSpacePrefix()));
+  }
+
+  /**
+   * Resolves the name of the present element, once per event. The local name is atomized
+   * against the schema names, so matching it against an {@link XmlElementNames} constant
+   * is a reference comparison, and the namespace URI is resolved to its
+   * {@link XmlNamespace} so that namespaces compare by identity.
+   */
+  private void resolvePresentName() {
+    if (this.namedEvent == this.presentEvent) {
+      return;
     }
-    return isEndElement;
+
+    QName qName = this.presentEvent.isStartElement()
+        ? this.presentEvent.asStartElement().getName()
+        : this.presentEvent.asEndElement().getName();
+    String localName = qName.getLocalPart();
+    String atomizedName = NAME_TABLE.Get(localName);
+
+    this.presentLocalName = atomizedName != null ? atomizedName : localName;
+    this.presentNamespacePrefix = qName.getPrefix();
+    this.presentNamespaceUri = qName.getNamespaceURI();
+    this.presentNamespace = NAMESPACES_BY_URI.get(this.presentNamespaceUri);
+    this.namedEvent = this.presentEvent;
   }
 
   /**
@@ -826,12 +1004,10 @@ public class EwsXmlReader {
    */
   public void ensureCurrentNodeIsStartElement()
       throws ServiceXmlDeserializationException {
-    XmlNodeType presentNodeType = new XmlNodeType(this.presentEvent
-        .getEventType());
     if (!this.presentEvent.isStartElement()) {
       throw new ServiceXmlDeserializationException(String.format(
           "The start element was expected, but node '%s' of type %s was found.",
-          this.presentEvent.toString(), presentNodeType.toString()));
+          this.presentEvent.toString(), XmlNodeType.getString(this.presentEvent.getEventType())));
     }
   }
 
@@ -960,7 +1136,7 @@ public class EwsXmlReader {
 
     try {
 
-      XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+      XMLInputFactory inputFactory = SafeXmlFactory.getInputFactory();
 
       try {
         in = new ByteArrayInputStream(str.toString().getBytes("UTF-8"));
@@ -1043,18 +1219,8 @@ public class EwsXmlReader {
    * @return String
    */
   public String getLocalName() {
-
-    String localName = null;
-
-    if (this.presentEvent.isStartElement()) {
-      localName = this.presentEvent.asStartElement().getName()
-          .getLocalPart();
-    } else {
-
-      localName = this.presentEvent.asEndElement().getName()
-          .getLocalPart();
-    }
-    return localName;
+    this.resolvePresentName();
+    return this.presentLocalName;
   }
 
   /**
@@ -1063,11 +1229,9 @@ public class EwsXmlReader {
    * @return String
    */
   protected String getNamespacePrefix() {
-    if (this.presentEvent.isStartElement()) {
-      return this.presentEvent.asStartElement().getName().getPrefix();
-    }
-    if (this.presentEvent.isEndElement()) {
-      return this.presentEvent.asEndElement().getName().getPrefix();
+    if (this.presentEvent.isStartElement() || this.presentEvent.isEndElement()) {
+      this.resolvePresentName();
+      return this.presentNamespacePrefix;
     }
     return null;
   }
@@ -1078,17 +1242,8 @@ public class EwsXmlReader {
    * @return String
    */
   public String getNamespaceUri() {
-
-    String nameSpaceUri = null;
-    if (this.presentEvent.isStartElement()) {
-      nameSpaceUri = this.presentEvent.asStartElement().getName()
-          .getNamespaceURI();
-    } else {
-
-      nameSpaceUri = this.presentEvent.asEndElement().getName()
-          .getNamespaceURI();
-    }
-    return nameSpaceUri;
+    this.resolvePresentName();
+    return this.presentNamespaceUri;
   }
 
   /**
@@ -1140,4 +1295,30 @@ public class EwsXmlReader {
     return "Could not read value from " + XmlNodeType.getString(eventType) + "." + details;
   }
 
+
+  /**
+   * Keeps the events read from an event reader.
+   */
+  private static final class RecordingEventReader extends EventReaderDelegate {
+
+    private final List<XMLEvent> events = new ArrayList<XMLEvent>();
+
+    RecordingEventReader(XMLEventReader reader) {
+      super(reader);
+    }
+
+    @Override
+    public XMLEvent nextEvent() throws XMLStreamException {
+      XMLEvent event = super.nextEvent();
+      events.add(event);
+      return event;
+    }
+
+    @Override
+    public Object next() {
+      XMLEvent event = (XMLEvent) super.next();
+      events.add(event);
+      return event;
+    }
+  }
 }
@@ -0,0 +1,301 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package microsoft.exchange.webservices.data.core;
+
+import microsoft.exchange.webservices.data.EWSConstants;
+import org.apache.http.HttpHost;
+import org.apache.http.config.Registry;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents a pool of HTTP connections that can be shared by several
+ * {@link ExchangeServiceBase} instances.
+ * <p>
+ * By default every service owns a single connection, so concurrent calls on the same
+ * service are serialized. Assigning a pool with
+ * {@link ExchangeServiceBase#setConnectionPool(ExchangeConnectionPool)} lets any number
+ * of services lease connections from a common, bounded set. The pool is not closed when a
+ * service using it is closed; call {@link #close()} once all services are done with it.
+ * </p>
+ */
+public class ExchangeConnectionPool implements Closeable {
+
+  /**
+   * The default maximum number of connections in the pool.
+   */
+  public static final int DEFAULT_MAX_TOTAL = 20;
+
+  /**
+   * The default maximum number of connections per route.
+   */
+  public static final int DEFAULT_MAX_PER_ROUTE = 10;
+
+  /**
+   * The default period of inactivity after which a connection is validated before being leased.
+   */
+  public static final int DEFAULT_VALIDATE_AFTER_INACTIVITY = 2000;
+
+  /**
+   * The underlying connection manager.
+   */
+  private final PoolingHttpClientConnectionManager connectionManager;
+
+  /**
+   * The idle connection evictor, if one has been scheduled.
+   */
+  private ScheduledExecutorService idleConnectionEvictor;
+
+  /**
+   * The idle connection timeout, in milliseconds.
+   */
+  private long idleConnectionTimeout = -1;
+
+  /**
+   * Initializes a new instance using the default socket factories and no connection
+   * time-to-live.
+   */
+  public ExchangeConnectionPool() {
+    this(ExchangeServiceBase.createDefaultConnectionSocketFactoryRegistry(), -1, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Initializes a new instance.
+   *
+   * @param registry   the socket factories used to open connections, by scheme
+   * @param timeToLive maximum life span of a connection, regardless of its activity;
+   *                   zero or negative for no limit
+   * @param unit       the time unit of the time-to-live
+   */
+  public ExchangeConnectionPool(Registry<ConnectionSocketFactory> registry, long timeToLive, TimeUnit unit) {
+    EwsUtilities.ewsAssert(registry != null, "ExchangeConnectionPool.ctor", "registry is null");
+
+    connectionManager = new PoolingHttpClientConnectionManager(registry, null, null, null, timeToLive, unit);
+    connectionManager.setMaxTotal(DEFAULT_MAX_TOTAL);
+    connectionManager.setDefaultMaxPerRoute(DEFAULT_MAX_PER_ROUTE);
+    connectionManager.setValidateAfterInactivity(DEFAULT_VALIDATE_AFTER_INACTIVITY);
+  }
+
+  /**
+   * Gets the connection manager backing this pool.
+   *
+   * @return the connection manager
+   */
+  public HttpClientConnectionManager getConnectionManager() {
+    return connectionManager;
+  }
+
+  /**
+   * Gets the maximum number of connections in the pool.
+   *
+   * @return the maximum number of connections
+   */
+  public int getMaxTotal() {
+    return connectionManager.getMaxTotal();
+  }
+
+  /**
+   * Sets the maximum number of connections in the pool.
+   *
+   * @param maxTotal the maximum number of connections
+   */
+  public void setMaxTotal(int maxTotal) {
+    if (maxTotal < 1) {
+      throw new IllegalArgumentException("Maximum total connections must be greater than zero.");
+    }
+    connectionManager.setMaxTotal(maxTotal);
+  }
+
+  /**
+   * Gets the maximum number of connections per route.
+   *
+   * @return the maximum number of connections per route
+   */
+  public int getDefaultMaxPerRoute() {
+    return connectionManager.getDefaultMaxPerRoute();
+  }
+
+  /**
+   * Sets the maximum number of connections per route. Applies to every route
+   * that has no limit of its own.
+   *
+   * @param maxPerRoute the maximum number of connections per route
+   */
+  public void setDefaultMaxPerRoute(int maxPerRoute) {
+    if (maxPerRoute < 1) {
+      throw new IllegalArgumentException("Maximum connections per route must be greater than zero.");
+    }
+    connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+  }
+
+  /**
+   * Gets the maximum number of connections to the given endpoint.
+   *
+   * @param url the endpoint URL, for example the EWS URL of a service
+   * @return the maximum number of connections to the endpoint
+   */
+  public int getMaxPerRoute(URI url) {
+    return connectionManager.getMaxPerRoute(createRoute(url));
+  }
+
+  /**
+   * Sets the maximum number of connections to the given endpoint.
+   *
+   * @param url         the endpoint URL, for example the EWS URL of a service
+   * @param maxPerRoute the maximum number of connections to the endpoint
+   */
+  public void setMaxPerRoute(URI url, int maxPerRoute) {
+    if (maxPerRoute < 1) {
+      throw new IllegalArgumentException("Maximum connections per route must be greater than zero.");
+    }
+    connectionManager.setMaxPerRoute(createRoute(url), maxPerRoute);
+  }
+
+  /**
+   * Gets the period of inactivity, in milliseconds, after which a pooled connection is
+   * validated before being leased.
+   *
+   * @return the period in milliseconds; zero or negative if validation is disabled
+   */
+  public int getValidateAfterInactivity() {
+    return connectionManager.getValidateAfterInactivity();
+  }
+
+  /**
+   * Sets the period of inactivity, in milliseconds, after which a pooled connection is
+   * validated before being leased. Defaults to 2000.
+   *
+   * @param milliseconds the period in milliseconds; zero or negative disables validation
+   */
+  public void setValidateAfterInactivity(int milliseconds) {
+    connectionManager.setValidateAfterInactivity(milliseconds);
+  }
+
+  /**
+   * Gets the time, in milliseconds, after which idle connections are evicted from the pool.
+   *
+   * @return the idle timeout in milliseconds; negative if idle connections are not evicted
+   */
+  public long getIdleConnectionTimeout() {
+    return idleConnectionTimeout;
+  }
+
+  /**
+   * Sets the time after which idle connections are evicted from the pool. Expired
+   * connections are evicted at the same time. A background daemon thread checks the pool
+   * at the given interval.
+   *
+   * @param timeout the idle timeout; zero or negative stops eviction
+   * @param unit    the time unit of the timeout
+   */
+  public synchronized void setIdleConnectionTimeout(long timeout, TimeUnit unit) {
+    if (idleConnectionEvictor != null) {
+      idleConnectionEvictor.shutdownNow();
+      idleConnectionEvictor = null;
+    }
+
+    if (timeout <= 0) {
+      idleConnectionTimeout = -1;
+      return;
+    }
+
+    idleConnectionTimeout = unit.toMillis(timeout);
+    idleConnectionEvictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "ews-connection-evictor");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+    final long idleTimeout = idleConnectionTimeout;
+    idleConnectionEvictor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+      }
+    }, idleTimeout, idleTimeout, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Gets the statistics of the whole pool: leased, pending and available connections.
+   *
+   * @return the pool statistics
+   */
+  public PoolStats getTotalStats() {
+    return connectionManager.getTotalStats();
+  }
+
+  /**
+   * Gets the statistics of the connections to the given endpoint.
+   *
+   * @param url the endpoint URL, for example the EWS URL of a service
+   * @return the route statistics
+   */
+  public PoolStats getStats(URI url) {
+    return connectionManager.getStats(createRoute(url));
+  }
+
+  /**
+   * Closes all pooled connections and stops idle connection eviction.
+   */
+  @Override
+  public synchronized void close() {
+    if (idleConnectionEvictor != null) {
+      idleConnectionEvictor.shutdownNow();
+      idleConnectionEvictor = null;
+    }
+    connectionManager.shutdown();
+  }
+
+  /**
+   * Creates the direct route HttpClient uses for the given URL.
+   *
+   * @param url the URL
+   * @return the route
+   */
+  private static HttpRoute createRoute(URI url) {
+    EwsUtilities.ewsAssert(url != null, "ExchangeConnectionPool.createRoute", "url is null");
+
+    String scheme = url.getScheme();
+    boolean secure = EWSConstants.HTTPS_SCHEME.equalsIgnoreCase(scheme);
+    int port = url.getPort();
+    if (port < 0) {
+      port = secure ? 443 : 80;
+    }
+    return new HttpRoute(new HttpHost(url.getHost(), port, scheme), null, secure);
+  }
+}
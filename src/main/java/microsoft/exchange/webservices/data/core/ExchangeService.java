@@ -57,6 +57,7 @@ import microsoft.exchange.webservices.data.core.request.GetItemRequest;
 import microsoft.exchange.webservices.data.core.request.GetItemRequestForLoad;
 import microsoft.exchange.webservices.data.core.request.GetPasswordExpirationDateRequest;
 import microsoft.exchange.webservices.data.core.request.GetRoomListsRequest;
+import microsoft.exchange.webservices.data.core.request.GetServerTimeZonesRequest;
 import microsoft.exchange.webservices.data.core.request.GetRoomsRequest;
 import microsoft.exchange.webservices.data.core.request.GetUserAvailabilityRequest;
 import microsoft.exchange.webservices.data.core.request.GetUserConfigurationRequest;
@@ -91,6 +92,7 @@ import microsoft.exchange.webservices.data.core.response.GetAttachmentResponse;
 import microsoft.exchange.webservices.data.core.response.GetDelegateResponse;
 import microsoft.exchange.webservices.data.core.response.GetFolderResponse;
 import microsoft.exchange.webservices.data.core.response.GetItemResponse;
+import microsoft.exchange.webservices.data.core.response.GetServerTimeZonesResponse;
 import microsoft.exchange.webservices.data.core.response.MoveCopyFolderResponse;
 import microsoft.exchange.webservices.data.core.response.MoveCopyItemResponse;
 import microsoft.exchange.webservices.data.core.response.ServiceResponse;
@@ -160,6 +162,7 @@ import microsoft.exchange.webservices.data.property.complex.ItemId;
 import microsoft.exchange.webservices.data.property.complex.Mailbox;
 import microsoft.exchange.webservices.data.property.complex.RuleCollection;
 import microsoft.exchange.webservices.data.property.complex.RuleOperation;
+import microsoft.exchange.webservices.data.property.complex.ServiceId;
 import microsoft.exchange.webservices.data.property.complex.StringList;
 import microsoft.exchange.webservices.data.property.complex.UserId;
 import microsoft.exchange.webservices.data.property.complex.availability.OofSettings;
@@ -169,6 +172,7 @@ import microsoft.exchange.webservices.data.search.CalendarView;
 import microsoft.exchange.webservices.data.search.ConversationIndexedItemView;
 import microsoft.exchange.webservices.data.search.FindFoldersResults;
 import microsoft.exchange.webservices.data.search.FindItemsResults;
+import microsoft.exchange.webservices.data.search.FindItemsStream;
 import microsoft.exchange.webservices.data.search.FolderView;
 import microsoft.exchange.webservices.data.search.GroupedFindItemsResults;
 import microsoft.exchange.webservices.data.search.Grouping;
@@ -192,12 +196,20 @@ import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.TimeZone;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 /**
  * Represents a binding to the Exchange Web Services.
+ * <p>
+ * A configured service is safe for use by several threads at the same time; see
+ * {@link ExchangeServiceBase}.
+ * </p>
  */
 public class ExchangeService extends ExchangeServiceBase implements IAutodiscoverRedirectionUrl {
 
@@ -242,6 +254,24 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
    */
   private boolean exchange2007CompatibilityMode = false;
 
+  /**
+   * The default maximum number of items requested by a single GetItem call.
+   */
+  public static final int DEFAULT_MAX_GET_ITEM_BATCH_SIZE = 500;
+
+  /**
+   * The default maximum estimated size, in bytes, of the response to a single GetItem call.
+   */
+  public static final long DEFAULT_MAX_GET_ITEM_RESPONSE_SIZE = 4L * 1024 * 1024;
+
+  private int maxGetItemBatchSize = DEFAULT_MAX_GET_ITEM_BATCH_SIZE;
+
+  private long maxGetItemResponseSize = DEFAULT_MAX_GET_ITEM_RESPONSE_SIZE;
+
+  private volatile ServiceObjectCache serviceObjectCache;
+
+  private volatile ServerTimeZoneCache serverTimeZoneCache = ServerTimeZoneCache.getDefault();
+
   /**
    * Create response object.
    *
@@ -299,7 +329,11 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
 
     request.getFolders().add(folder);
 
-    request.execute();
+    try {
+      request.execute();
+    } finally {
+      this.invalidateCachedObject(folder.getId());
+    }
   }
 
   /**
@@ -340,8 +374,12 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
     request.setDestinationFolderId(destinationFolderId);
     request.getFolderIds().add(folderId);
 
-    ServiceResponseCollection<MoveCopyFolderResponse> responses = request
-        .execute();
+    ServiceResponseCollection<MoveCopyFolderResponse> responses;
+    try {
+      responses = request.execute();
+    } finally {
+      this.invalidateCachedObject(folderId);
+    }
 
     return responses.getResponseAtIndex(0).getFolder();
   }
@@ -467,6 +505,12 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
     EwsUtilities.validateParam(folder, "folder");
     EwsUtilities.validateParam(propertySet, "propertySet");
 
+    ServiceObjectCache cache = this.serviceObjectCache;
+    if (cache != null && cache.load(this, folder.getId(), propertySet,
+        new GetFolderResponse(folder, propertySet), XmlElementNames.GetFolderResponseMessage)) {
+      return;
+    }
+
     GetFolderRequestForLoad request = new GetFolderRequestForLoad(this,
         ServiceErrorHandling.ThrowOnError);
 
@@ -490,6 +534,14 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
     EwsUtilities.validateParam(folderId, "folderId");
     EwsUtilities.validateParam(propertySet, "propertySet");
 
+    ServiceObjectCache cache = this.serviceObjectCache;
+    if (cache != null) {
+      GetFolderResponse response = new GetFolderResponse(null, propertySet);
+      if (cache.load(this, folderId, propertySet, response, XmlElementNames.GetFolderResponseMessage)) {
+        return response.getFolder();
+      }
+    }
+
     GetFolderRequest request = new GetFolderRequest(this,
         ServiceErrorHandling.ThrowOnError);
 
@@ -543,7 +595,11 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
     request.getFolderIds().add(folderId);
     request.setDeleteMode(deleteMode);
 
-    request.execute();
+    try {
+      request.execute();
+    } finally {
+      this.invalidateCachedObject(folderId);
+    }
   }
 
   /**
@@ -683,7 +739,13 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
     request
         .setSendInvitationsOrCancellationsMode(sendInvitationsOrCancellationsMode);
 
-    return request.execute();
+    try {
+      return request.execute();
+    } finally {
+      for (Item item : items) {
+        this.invalidateCachedObject(item.getId());
+      }
+    }
   }
 
   /**
@@ -885,7 +947,11 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
     request.getItemIds().addRange(itemIds);
     request.setDestinationFolderId(destinationFolderId);
     request.setReturnNewItemIds(returnNewItemIds);
-    return request.execute();
+    try {
+      return request.execute();
+    } finally {
+      this.invalidateCachedObjects(itemIds);
+    }
   }
 
   /**
@@ -1099,6 +1165,94 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
     return this.findItems(new FolderId(parentFolderName), (SearchFilter) null, view);
   }
 
+  /**
+   * Obtains a list of item by searching the contents of a specific folder, on the
+   * async executor of this service. Calling this method results in a call to EWS.
+   *
+   * @param parentFolderId the parent folder id
+   * @param searchFilter   the search filter
+   * @param view           the view
+   * @return The future results of the search operation.
+   * @throws Exception the exception
+   * @see #setAsyncExecutor(java.util.concurrent.Executor)
+   */
+  public Future<FindItemsResults<Item>> findItemsAsync(final FolderId parentFolderId,
+      final SearchFilter searchFilter, final ItemView view) throws Exception {
+    EwsUtilities.validateParamAllowNull(searchFilter, "searchFilter");
+    return this.submitAsync(new Callable<FindItemsResults<Item>>() {
+      @Override
+      public FindItemsResults<Item> call() throws Exception {
+        return findItems(parentFolderId, searchFilter, view);
+      }
+    });
+  }
+
+  /**
+   * Obtains a list of item by searching the contents of a specific folder, on the
+   * async executor of this service. Calling this method results in a call to EWS.
+   *
+   * @param parentFolderId the parent folder id
+   * @param view           the view
+   * @return The future results of the search operation.
+   * @throws Exception the exception
+   * @see #setAsyncExecutor(java.util.concurrent.Executor)
+   */
+  public Future<FindItemsResults<Item>> findItemsAsync(FolderId parentFolderId,
+      ItemView view) throws Exception {
+    return this.findItemsAsync(parentFolderId, null, view);
+  }
+
+  /**
+   * Obtains a list of item by searching the contents of a specific folder, on the
+   * async executor of this service. Calling this method results in a call to EWS.
+   *
+   * @param parentFolderName the parent folder name
+   * @param view             the view
+   * @return The future results of the search operation.
+   * @throws Exception the exception
+   * @see #setAsyncExecutor(java.util.concurrent.Executor)
+   */
+  public Future<FindItemsResults<Item>> findItemsAsync(
+      WellKnownFolderName parentFolderName, ItemView view) throws Exception {
+    return this.findItemsAsync(new FolderId(parentFolderName), null, view);
+  }
+
+  /**
+   * Obtains all item matching a search in a specific folder, as a stream requesting one
+   * page at a time. Over a connection pool, the next page is requested while the items of
+   * the current page are processed. Iterating the stream results in calls to EWS.
+   *
+   * @param parentFolderId the parent folder id
+   * @param searchFilter   the search filter, or null
+   * @param view           the view; its page size and offset give the first page
+   * @return the stream of the item found
+   * @see #setConnectionPool(ExchangeConnectionPool)
+   */
+  public FindItemsStream findItemsStream(FolderId parentFolderId,
+      SearchFilter searchFilter, ItemView view) {
+    return this.findItemsStream(parentFolderId, searchFilter, view,
+        FindItemsStream.DEFAULT_LOOK_AHEAD);
+  }
+
+  /**
+   * Obtains all item matching a search in a specific folder, as a stream requesting one
+   * page at a time. Over a connection pool, up to lookAhead pages are requested while the
+   * items of the current page are processed. Iterating the stream results in calls to EWS.
+   *
+   * @param parentFolderId the parent folder id
+   * @param searchFilter   the search filter, or null
+   * @param view           the view; its page size and offset give the first page
+   * @param lookAhead      the maximum number of pages requested ahead, or 0 to request
+   *                       each page when it is needed
+   * @return the stream of the item found
+   * @see #setConnectionPool(ExchangeConnectionPool)
+   */
+  public FindItemsStream findItemsStream(FolderId parentFolderId,
+      SearchFilter searchFilter, ItemView view, int lookAhead) {
+    return new FindItemsStream(this, parentFolderId, searchFilter, view, lookAhead,
+        this.getParallelExecutor());
+  }
+
   /**
    * Obtains a grouped list of item by searching the contents of a specific
    * folder. Calling this method results in a call to EWS.
@@ -1281,7 +1435,8 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
   }
 
   /**
-   * Loads the property of multiple item in a single call to EWS.
+   * Loads the property of multiple item. Large sets of item are split into several calls
+   * to EWS, see {@link #setMaxGetItemBatchSize(int)}.
    *
    * @param items       the item
    * @param propertySet the property set
@@ -1308,15 +1463,41 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
    * @throws Exception the exception
    */
   public ServiceResponseCollection<ServiceResponse> internalLoadPropertiesForItems(Iterable<Item> items,
-      PropertySet propertySet, ServiceErrorHandling errorHandling) throws Exception {
-    GetItemRequestForLoad request = new GetItemRequestForLoad(this,
-        errorHandling);
-    // return null;
-
-    request.getItemIds().addRangeItem(items);
-    request.setPropertySet(propertySet);
+      final PropertySet propertySet, final ServiceErrorHandling errorHandling) throws Exception {
+    List<ServiceResponse> cachedResponses = null;
+    ServiceObjectCache cache = this.serviceObjectCache;
+    if (cache != null) {
+      cachedResponses = new ArrayList<ServiceResponse>();
+      List<Item> misses = new ArrayList<Item>();
+      for (Item item : items) {
+        GetItemResponse response = new GetItemResponse(item, propertySet);
+        if (cache.load(this, item.getId(), propertySet, response, XmlElementNames.GetItemResponseMessage)) {
+          cachedResponses.add(response);
+        } else {
+          cachedResponses.add(null);
+          misses.add(item);
+        }
+      }
+      items = misses;
+    }
 
-    return request.execute();
+    List<Callable<ServiceResponseCollection<ServiceResponse>>> batches =
+        new ArrayList<Callable<ServiceResponseCollection<ServiceResponse>>>();
+    for (final List<Item> batch : RequestBatcher.split(items, this.getGetItemBatchSize(propertySet))) {
+      batches.add(new Callable<ServiceResponseCollection<ServiceResponse>>() {
+        @Override
+        public ServiceResponseCollection<ServiceResponse> call() throws Exception {
+          GetItemRequestForLoad request = new GetItemRequestForLoad(ExchangeService.this,
+              errorHandling);
+          request.getItemIds().addRangeItem(batch);
+          request.setPropertySet(propertySet);
+          return request.execute();
+        }
+      });
+    }
+    ServiceResponseCollection<ServiceResponse> responses =
+        RequestBatcher.execute(batches, this.getParallelExecutor());
+    return cachedResponses != null ? mergeResponses(cachedResponses, responses) : responses;
   }
 
   /**
@@ -1330,16 +1511,114 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
    * @throws Exception the exception
    */
   private ServiceResponseCollection<GetItemResponse> internalBindToItems(
-      Iterable<ItemId> itemIds, PropertySet propertySet,
-      ServiceErrorHandling errorHandling) throws Exception {
-    GetItemRequest request = new GetItemRequest(this, errorHandling);
-    request.getItemIds().addRange(itemIds);
-    request.setPropertySet(propertySet);
-    return request.execute();
+      Iterable<ItemId> itemIds, final PropertySet propertySet,
+      final ServiceErrorHandling errorHandling) throws Exception {
+    List<GetItemResponse> cachedResponses = null;
+    ServiceObjectCache cache = this.serviceObjectCache;
+    if (cache != null) {
+      cachedResponses = new ArrayList<GetItemResponse>();
+      List<ItemId> misses = new ArrayList<ItemId>();
+      for (ItemId itemId : itemIds) {
+        GetItemResponse response = new GetItemResponse(null, propertySet);
+        if (cache.load(this, itemId, propertySet, response, XmlElementNames.GetItemResponseMessage)) {
+          cachedResponses.add(response);
+        } else {
+          cachedResponses.add(null);
+          misses.add(itemId);
+        }
+      }
+      itemIds = misses;
+    }
+
+    List<Callable<ServiceResponseCollection<GetItemResponse>>> batches =
+        new ArrayList<Callable<ServiceResponseCollection<GetItemResponse>>>();
+    for (final List<ItemId> batch : RequestBatcher.split(itemIds, this.getGetItemBatchSize(propertySet))) {
+      batches.add(new Callable<ServiceResponseCollection<GetItemResponse>>() {
+        @Override
+        public ServiceResponseCollection<GetItemResponse> call() throws Exception {
+          GetItemRequest request = new GetItemRequest(ExchangeService.this, errorHandling);
+          request.getItemIds().addRange(batch);
+          request.setPropertySet(propertySet);
+          return request.execute();
+        }
+      });
+    }
+    ServiceResponseCollection<GetItemResponse> responses =
+        RequestBatcher.execute(batches, this.getParallelExecutor());
+    return cachedResponses != null ? mergeResponses(cachedResponses, responses) : responses;
   }
 
   /**
-   * Binds to multiple item in a single call to EWS.
+   * Merges the responses loaded from the cache with the responses received from EWS.
+   *
+   * @param cachedResponses the responses loaded from the cache, null where the response
+   *                        was requested from EWS
+   * @param responses       the responses received from EWS, in the same order
+   * @param <TResponse>     the type of the responses
+   * @return all responses, in order
+   */
+  private static <TResponse extends ServiceResponse> ServiceResponseCollection<TResponse> mergeResponses(
+      List<TResponse> cachedResponses, ServiceResponseCollection<TResponse> responses) {
+    ServiceResponseCollection<TResponse> merged = new ServiceResponseCollection<TResponse>();
+    int next = 0;
+    for (TResponse response : cachedResponses) {
+      merged.add(response != null ? response : responses.getResponseAtIndex(next++));
+    }
+    merged.setHttpResponseHeaders(responses.getHttpResponseHeaders());
+    return merged;
+  }
+
+  /**
+   * Removes an item or folder from the cache of this service, if any.
+   *
+   * @param id the id of the item or folder
+   */
+  private void invalidateCachedObject(ServiceId id) {
+    ServiceObjectCache cache = this.serviceObjectCache;
+    if (cache != null) {
+      cache.invalidate(id);
+    }
+  }
+
+  /**
+   * Removes items from the cache of this service, if any.
+   *
+   * @param itemIds the ids of the items
+   */
+  private void invalidateCachedObjects(Iterable<ItemId> itemIds) {
+    ServiceObjectCache cache = this.serviceObjectCache;
+    if (cache != null) {
+      for (ItemId itemId : itemIds) {
+        cache.invalidate(itemId);
+      }
+    }
+  }
+
+  /**
+   * Gets the number of items requested by a single GetItem call.
+   *
+   * @param propertySet the properties requested for each item
+   * @return the number of items in a batch
+   */
+  private int getGetItemBatchSize(PropertySet propertySet) {
+    return RequestBatcher.computeBatchSize(propertySet, this.maxGetItemBatchSize,
+        this.maxGetItemResponseSize);
+  }
+
+  /**
+   * Gets the executor running calls in parallel with the calling thread, such as batches
+   * or pages requested ahead. Parallel calls need several connections, so calls only run
+   * in parallel over a connection pool.
+   *
+   * @return the executor, or null to run calls one after the other
+   */
+  private Executor getParallelExecutor() {
+    return this.getConnectionPool() != null ? this.getAsyncExecutor() : null;
+  }
+
+  /**
+   * Binds to multiple item. Large sets of item ids are split into several calls to EWS,
+   * see {@link #setMaxGetItemBatchSize(int)}.
    *
    * @param itemIds     the item ids
    * @param propertySet the property set
@@ -1355,6 +1634,29 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
     return this.internalBindToItems(itemIds, propertySet, ServiceErrorHandling.ReturnErrors);
   }
 
+  /**
+   * Binds to multiple item in a single call to EWS, on the async executor of this service.
+   *
+   * @param itemIds     the item ids
+   * @param propertySet the property set
+   * @return The future ServiceResponseCollection providing results for each of the
+   * specified item Ids.
+   * @throws Exception the exception
+   * @see #setAsyncExecutor(java.util.concurrent.Executor)
+   */
+  public Future<ServiceResponseCollection<GetItemResponse>> bindToItemsAsync(
+      final Iterable<ItemId> itemIds, final PropertySet propertySet) throws Exception {
+    EwsUtilities.validateParamCollection(itemIds.iterator(), "itemIds");
+    EwsUtilities.validateParam(propertySet, "propertySet");
+
+    return this.submitAsync(new Callable<ServiceResponseCollection<GetItemResponse>>() {
+      @Override
+      public ServiceResponseCollection<GetItemResponse> call() throws Exception {
+        return internalBindToItems(itemIds, propertySet, ServiceErrorHandling.ReturnErrors);
+      }
+    });
+  }
+
   /**
    * Binds to multiple item in a single call to EWS.
    *
@@ -1421,7 +1723,11 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
     request.setSendCancellationsMode(sendCancellationsMode);
     request.setAffectedTaskOccurrences(affectedTaskOccurrences);
 
-    return request.execute();
+    try {
+      return request.execute();
+    } finally {
+      this.invalidateCachedObjects(itemIds);
+    }
   }
 
   /**
@@ -3910,58 +4216,180 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
     this.exchange2007CompatibilityMode = value;
   }
 
+  /**
+   * Gets the maximum number of items requested by a single GetItem call.
+   *
+   * @return the maximum number of items in a batch
+   */
+  public int getMaxGetItemBatchSize() {
+    return this.maxGetItemBatchSize;
+  }
+
+  /**
+   * Sets the maximum number of items requested by a single GetItem call. Defaults to 500.
+   * <p>
+   * {@link #bindToItems(Iterable, PropertySet)} and
+   * {@link #loadPropertiesForItems(Iterable, PropertySet)} split larger sets of items into
+   * batches, and merge the responses of all batches in the order of the items. When this
+   * service uses a connection pool, batches run in parallel on its async executor.
+   * </p>
+   *
+   * @param maxGetItemBatchSize the maximum number of items in a batch
+   * @see #setConnectionPool(ExchangeConnectionPool)
+   */
+  public void setMaxGetItemBatchSize(int maxGetItemBatchSize) {
+    if (maxGetItemBatchSize < 1) {
+      throw new IllegalArgumentException("Maximum batch size must be greater than zero.");
+    }
+    this.maxGetItemBatchSize = maxGetItemBatchSize;
+  }
+
+  /**
+   * Gets the maximum estimated size, in bytes, of the response to a single GetItem call.
+   *
+   * @return the maximum estimated response size
+   */
+  public long getMaxGetItemResponseSize() {
+    return this.maxGetItemResponseSize;
+  }
+
+  /**
+   * Sets the maximum estimated size, in bytes, of the response to a single GetItem call.
+   * Defaults to 4 MB.
+   * <p>
+   * The size of an item is estimated from the requested properties, so that batches
+   * requesting bodies or MIME content hold fewer items than batches requesting ids only.
+   * A batch always holds at least one item.
+   * </p>
+   *
+   * @param maxGetItemResponseSize the maximum estimated response size
+   */
+  public void setMaxGetItemResponseSize(long maxGetItemResponseSize) {
+    if (maxGetItemResponseSize < 1) {
+      throw new IllegalArgumentException("Maximum response size must be greater than zero.");
+    }
+    this.maxGetItemResponseSize = maxGetItemResponseSize;
+  }
+
+  /**
+   * Gets the cache of the items and folders loaded by this service.
+   *
+   * @return the cache, or null if loaded items and folders are not cached
+   */
+  public ServiceObjectCache getServiceObjectCache() {
+    return this.serviceObjectCache;
+  }
+
+  /**
+   * Sets the cache of the items and folders loaded by this service. No cache is used
+   * by default.
+   *
+   * @param serviceObjectCache the cache, or null to stop caching
+   * @see ServiceObjectCache
+   */
+  public void setServiceObjectCache(ServiceObjectCache serviceObjectCache) {
+    this.serviceObjectCache = serviceObjectCache;
+  }
+
+  /**
+   * Gets the cache of the time zone definitions retrieved by this service.
+   *
+   * @return the cache, or null if time zone definitions are not cached
+   */
+  public ServerTimeZoneCache getServerTimeZoneCache() {
+    return this.serverTimeZoneCache;
+  }
+
+  /**
+   * Sets the cache of the time zone definitions retrieved by this service. The shared
+   * {@link ServerTimeZoneCache#getDefault() default cache} is used by default.
+   *
+   * @param serverTimeZoneCache the cache, or null to stop caching
+   * @see ServerTimeZoneCache
+   */
+  public void setServerTimeZoneCache(ServerTimeZoneCache serverTimeZoneCache) {
+    this.serverTimeZoneCache = serverTimeZoneCache;
+  }
+
   /**
    * Retrieves the definitions of the specified server-side time zones.
+   * Definitions found in the time zone cache are not requested again.
    *
    * @param timeZoneIds the time zone ids
    * @return A Collection containing the definitions of the specified time
    * zones.
+   * @throws Exception on error
    */
   public Collection<TimeZoneDefinition> getServerTimeZones(
-      Iterable<String> timeZoneIds) {
-    Date today = new Date();
-    Collection<TimeZoneDefinition> timeZoneList = new ArrayList<TimeZoneDefinition>();
+      Iterable<String> timeZoneIds) throws Exception {
+    EwsUtilities.validateParam(timeZoneIds, "timeZoneIds");
+
+    ServerTimeZoneCache cache = this.serverTimeZoneCache;
+    ExchangeVersion version = this.getRequestedServerVersion();
+    Map<String, TimeZoneDefinition> timeZones = new LinkedHashMap<String, TimeZoneDefinition>();
+    List<String> missingTimeZoneIds = new ArrayList<String>();
     for (String timeZoneId : timeZoneIds) {
-      TimeZoneDefinition timeZoneDefinition = new TimeZoneDefinition();
-      timeZoneList.add(timeZoneDefinition);
-      TimeZone timeZone = TimeZone.getTimeZone(timeZoneId);
-      timeZoneDefinition.id = timeZone.getID();
-      timeZoneDefinition.name = timeZone.getDisplayName(timeZone
-          .inDaylightTime(today), TimeZone.LONG);
-			/*
-			 * String shortName =
-			 * timeZone.getDisplayName(timeZone.inDaylightTime(today),
-			 * TimeZone.SHORT); String longName =
-			 * timeZone.getDisplayName(timeZone.inDaylightTime(today),
-			 * TimeZone.LONG); int rawOffset = timeZone.getRawOffset(); int hour
-			 * = rawOffset / (60*60*1000); int min = Math.abs(rawOffset /
-			 * (60*1000)) % 60; boolean hasDST = timeZone.useDaylightTime();
-			 * boolean inDST = timeZone.inDaylightTime(today);
-			 */
+      TimeZoneDefinition timeZoneDefinition = cache != null ? cache.get(version, timeZoneId) : null;
+      if (timeZoneDefinition == null) {
+        missingTimeZoneIds.add(timeZoneId);
+      }
+      timeZones.put(timeZoneId, timeZoneDefinition);
+    }
+
+    if (!missingTimeZoneIds.isEmpty()) {
+      GetServerTimeZonesResponse response = this.internalGetServerTimeZones(missingTimeZoneIds);
+      if (cache != null) {
+        cache.put(version, response.getTimeZoneEvents());
+      }
+      for (TimeZoneDefinition timeZoneDefinition : response.getTimeZones()) {
+        timeZones.put(timeZoneDefinition.getId(), timeZoneDefinition);
+      }
     }
 
+    Collection<TimeZoneDefinition> timeZoneList = new ArrayList<TimeZoneDefinition>();
+    for (TimeZoneDefinition timeZoneDefinition : timeZones.values()) {
+      if (timeZoneDefinition != null) {
+        timeZoneList.add(timeZoneDefinition);
+      }
+    }
     return timeZoneList;
   }
 
   /**
    * Retrieves the definitions of all server-side time zones.
+   * The definitions are kept in the time zone cache.
    *
    * @return A Collection containing the definitions of the specified time
    * zones.
+   * @throws Exception on error
    */
-  public Collection<TimeZoneDefinition> getServerTimeZones() {
-    Date today = new Date();
-    Collection<TimeZoneDefinition> timeZoneList = new ArrayList<TimeZoneDefinition>();
-    for (String timeZoneId : TimeZone.getAvailableIDs()) {
-      TimeZoneDefinition timeZoneDefinition = new TimeZoneDefinition();
-      timeZoneList.add(timeZoneDefinition);
-      TimeZone timeZone = TimeZone.getTimeZone(timeZoneId);
-      timeZoneDefinition.id = timeZone.getID();
-      timeZoneDefinition.name = timeZone.getDisplayName(timeZone
-          .inDaylightTime(today), TimeZone.LONG);
+  public Collection<TimeZoneDefinition> getServerTimeZones() throws Exception {
+    ServerTimeZoneCache cache = this.serverTimeZoneCache;
+    ExchangeVersion version = this.getRequestedServerVersion();
+    Collection<TimeZoneDefinition> timeZoneDefinitions =
+        cache != null ? cache.getAll(version) : null;
+    if (timeZoneDefinitions == null) {
+      GetServerTimeZonesResponse response = this.internalGetServerTimeZones(null);
+      if (cache != null) {
+        cache.putAll(version, response.getTimeZoneEvents());
+      }
+      timeZoneDefinitions = response.getTimeZones();
     }
+    return timeZoneDefinitions;
+  }
 
-    return timeZoneList;
+  /**
+   * Retrieves the definitions of server-side time zones from EWS.
+   *
+   * @param timeZoneIds the time zone ids, or null for all time zones
+   * @return the response
+   * @throws Exception on error
+   */
+  private GetServerTimeZonesResponse internalGetServerTimeZones(
+      Iterable<String> timeZoneIds) throws Exception {
+    GetServerTimeZonesRequest request = new GetServerTimeZonesRequest(this);
+    request.setIds(timeZoneIds);
+    return request.execute().getResponseAtIndex(0);
   }
 
   /*
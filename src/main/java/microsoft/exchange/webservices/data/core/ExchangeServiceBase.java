@@ -32,8 +32,13 @@ import microsoft.exchange.webservices.data.core.enumeration.misc.TraceFlags;
 import microsoft.exchange.webservices.data.core.exception.service.remote.AccountIsLockedException;
 import microsoft.exchange.webservices.data.core.exception.http.EWSHttpException;
 import microsoft.exchange.webservices.data.core.exception.service.local.ServiceLocalException;
+import microsoft.exchange.webservices.data.misc.AsyncExecutor;
 import microsoft.exchange.webservices.data.misc.EwsTraceListener;
 import microsoft.exchange.webservices.data.misc.ITraceListener;
+import microsoft.exchange.webservices.data.util.DateTimeUtils;
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScheme;
+import org.apache.http.client.AuthCache;
 import org.apache.http.client.AuthenticationStrategy;
 import org.apache.http.client.CookieStore;
 import org.apache.http.client.protocol.HttpClientContext;
@@ -42,10 +47,12 @@ import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.HttpClientConnectionManager;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.impl.client.BasicAuthCache;
 import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.BasicHttpClientConnectionManager;
+import org.apache.http.protocol.BasicHttpContext;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
@@ -58,18 +65,27 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.GeneralSecurityException;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Represents an abstract binding to an Exchange Service.
+ * <p>
+ * Once configured, a service can be used by several threads at the same time: every call
+ * prepares its own HTTP request and context, and returns the HTTP response headers it
+ * received with its response. Calls running at the same time need as many connections; see
+ * {@link #setConnectionPool(ExchangeConnectionPool)}. Changing the configuration of a
+ * service, such as its credentials or URL, while calls are running is not supported.
+ * </p>
  */
 public abstract class ExchangeServiceBase implements Closeable {
   /**
@@ -107,6 +123,16 @@ public abstract class ExchangeServiceBase implements Closeable {
    */
   private ITraceListener traceListener = new EwsTraceListener();
 
+  /**
+   * The maximum number of response bytes passed to the trace listener.
+   */
+  private int maximumResponseTraceSize = 1024 * 1024;
+
+  /**
+   * Whether request bodies may be written straight to the connection.
+   */
+  private boolean requestStreamingEnabled;
+
   /**
    * The pre authenticate.
    */
@@ -130,19 +156,39 @@ public abstract class ExchangeServiceBase implements Closeable {
   /**
    * The server info.
    */
-  private ExchangeServerInfo serverInfo;
+  private volatile ExchangeServerInfo serverInfo;
 
   private Map<String, String> httpHeaders = new HashMap<String, String>();
 
-  private Map<String, String> httpResponseHeaders = new HashMap<String, String>();
+  /**
+   * The HTTP response headers of the last response received by any call.
+   */
+  private volatile Map<String, String> httpResponseHeaders = Collections.emptyMap();
 
   private WebProxy webProxy;
 
   protected CloseableHttpClient httpClient;
 
-  protected HttpClientContext httpContext;
+  /**
+   * The context shared by all calls; holds the cookies and the connection state.
+   */
+  protected volatile HttpClientContext httpContext;
+
+  /**
+   * The shared connection pool, or null if this service owns its connection.
+   */
+  private ExchangeConnectionPool connectionPool;
 
-  protected HttpClientWebRequest request = null;
+  /**
+   * The executor running the asynchronous calls of this service; created on first use
+   * unless one is supplied.
+   */
+  private Executor asyncExecutor;
+
+  /**
+   * Whether the async executor was created by this service, which then shuts it down.
+   */
+  private boolean ownsAsyncExecutor;
 
   // protected static HttpStatusCode AccountIsLocked = (HttpStatusCode)456;
 
@@ -175,11 +221,21 @@ public abstract class ExchangeServiceBase implements Closeable {
     this.traceEnabled = service.isTraceEnabled();
     this.traceListener = service.getTraceListener();
     this.traceFlags = service.getTraceFlags();
+    this.maximumResponseTraceSize = service.getMaximumResponseTraceSize();
+    this.requestStreamingEnabled = service.isRequestStreamingEnabled();
     this.timeout = service.getTimeout();
     this.preAuthenticate = service.isPreAuthenticate();
     this.userAgent = service.getUserAgent();
     this.acceptGzipEncoding = service.getAcceptGzipEncoding();
     this.httpHeaders = service.getHttpHeaders();
+    if (service.getConnectionPool() != null) {
+      setConnectionPool(service.getConnectionPool());
+    }
+    synchronized (service) {
+      if (!service.ownsAsyncExecutor) {
+        this.asyncExecutor = service.asyncExecutor;
+      }
+    }
   }
 
   private void initializeHttpClient() {
@@ -193,6 +249,22 @@ public abstract class ExchangeServiceBase implements Closeable {
       .build();
   }
 
+  /**
+   * Builds an HttpClient that leases its connections from the given pool. The pool is
+   * marked as shared, so closing the client leaves the pool open.
+   *
+   * @param pool the connection pool
+   */
+  private void initializeHttpPoolingClient(ExchangeConnectionPool pool) {
+    AuthenticationStrategy authStrategy = new CookieProcessingTargetAuthenticationStrategy();
+
+    httpClient = HttpClients.custom()
+      .setConnectionManager(pool.getConnectionManager())
+      .setConnectionManagerShared(true)
+      .setTargetAuthenticationStrategy(authStrategy)
+      .build();
+  }
+
   /**
    * Create registry with configured {@link ConnectionSocketFactory} instances.
    * Override this method to change how to work with different schemas.
@@ -200,6 +272,16 @@ public abstract class ExchangeServiceBase implements Closeable {
    * @return registry object
    */
   protected Registry<ConnectionSocketFactory> createConnectionSocketFactoryRegistry() {
+    return createDefaultConnectionSocketFactoryRegistry();
+  }
+
+  /**
+   * Create registry with the default {@link ConnectionSocketFactory} instances for
+   * HTTP and HTTPS.
+   *
+   * @return registry object
+   */
+  static Registry<ConnectionSocketFactory> createDefaultConnectionSocketFactoryRegistry() {
     try {
       return RegistryBuilder.<ConnectionSocketFactory>create()
         .register(EWSConstants.HTTP_SCHEME, new PlainConnectionSocketFactory())
@@ -220,10 +302,44 @@ public abstract class ExchangeServiceBase implements Closeable {
     CookieStore cookieStore = new BasicCookieStore();
     httpContext = HttpClientContext.create();
     httpContext.setCookieStore(cookieStore);
+    httpContext.setAuthCache(new SynchronizedAuthCache());
+  }
+
+  /**
+   * Creates the context of a single call. Attributes set during the call, such as the
+   * authentication state, stay local to the call, except for the user token identifying
+   * stateful connections, which is shared with later calls so they can reuse them.
+   * Other attributes, such as the cookie store and the authentication cache that lets
+   * later calls authenticate preemptively, are read from the shared context.
+   *
+   * @return the context of a call
+   */
+  protected HttpClientContext createHttpContext() {
+    final HttpClientContext sharedContext = httpContext;
+    return HttpClientContext.adapt(new BasicHttpContext(sharedContext) {
+      @Override
+      public void setAttribute(String id, Object obj) {
+        super.setAttribute(id, obj);
+        if (HttpClientContext.USER_TOKEN.equals(id)) {
+          sharedContext.setAttribute(id, obj);
+        }
+      }
+    });
   }
 
   @Override
   public void close() {
+    closeHttpClient();
+    synchronized (this) {
+      if (ownsAsyncExecutor) {
+        ((ExecutorService) asyncExecutor).shutdown();
+        asyncExecutor = null;
+        ownsAsyncExecutor = false;
+      }
+    }
+  }
+
+  private void closeHttpClient() {
     try {
       httpClient.close();
     } catch (IOException e) {
@@ -231,6 +347,87 @@ public abstract class ExchangeServiceBase implements Closeable {
     }
   }
 
+  /**
+   * Gets the connection pool this service leases its connections from.
+   *
+   * @return the connection pool, or null if this service owns a single connection
+   */
+  public ExchangeConnectionPool getConnectionPool() {
+    return connectionPool;
+  }
+
+  /**
+   * Sets the connection pool this service leases its connections from. The same pool
+   * can be assigned to several services. Setting the pool to null makes this service
+   * use a single connection of its own again.
+   * <p>
+   * The pool is not closed when this service is closed.
+   * </p>
+   *
+   * @param connectionPool the connection pool, or null
+   */
+  public void setConnectionPool(ExchangeConnectionPool connectionPool) {
+    if (this.connectionPool == connectionPool) {
+      return;
+    }
+
+    closeHttpClient();
+    this.connectionPool = connectionPool;
+    if (connectionPool != null) {
+      initializeHttpPoolingClient(connectionPool);
+    } else {
+      initializeHttpClient();
+    }
+  }
+
+  /**
+   * Gets the executor running the asynchronous calls of this service.
+   * <p>
+   * Unless an executor was supplied, one is created on first use and shut down when this
+   * service is closed. It runs as many calls at a time as the connection pool allows per
+   * route, or one call at a time if this service owns a single connection.
+   * </p>
+   *
+   * @return the executor
+   */
+  public synchronized Executor getAsyncExecutor() {
+    if (asyncExecutor == null) {
+      asyncExecutor = new AsyncExecutor(
+          connectionPool != null ? connectionPool.getDefaultMaxPerRoute() : 1);
+      ownsAsyncExecutor = true;
+    }
+    return asyncExecutor;
+  }
+
+  /**
+   * Sets the executor running the asynchronous calls of this service, for example one
+   * shared by several services. The executor is not shut down when this service is closed.
+   * <p>
+   * Calls running at the same time need as many connections; see
+   * {@link #setConnectionPool(ExchangeConnectionPool)}.
+   * </p>
+   *
+   * @param executor the executor, or null to use an executor created by this service
+   */
+  public synchronized void setAsyncExecutor(Executor executor) {
+    if (ownsAsyncExecutor) {
+      ((ExecutorService) asyncExecutor).shutdown();
+    }
+    asyncExecutor = executor;
+    ownsAsyncExecutor = false;
+  }
+
+  /**
+   * Runs a call on the async executor of this service.
+   *
+   * @param call the call
+   * @param <T>  the type of the result of the call
+   * @return the future result of the call
+   */
+  protected <T> Future<T> submitAsync(Callable<T> call) {
+    return AsyncExecutor.submit(getAsyncExecutor(), call, null);
+  }
+
   // Event handlers
 
   /**
@@ -274,7 +471,7 @@ public abstract class ExchangeServiceBase implements Closeable {
       throw new ServiceLocalException(strErr);
     }
 
-    request = new HttpClientWebRequest(httpClient, httpContext);
+    HttpClientWebRequest request = new HttpClientWebRequest(httpClient, createHttpContext());
     request.setProxy(getWebProxy());
 
     try {
@@ -297,8 +494,6 @@ public abstract class ExchangeServiceBase implements Closeable {
 
     request.prepareConnection();
 
-    httpResponseHeaders.clear();
-
     return request;
   }
 
@@ -458,10 +653,7 @@ public abstract class ExchangeServiceBase implements Closeable {
    * @return String representation of DateTime in yyyy-MM-ddTHH:mm:ssZ format.
    */
   public String convertDateTimeToUniversalDateTimeString(Date dt) {
-    String utcPattern = "yyyy-MM-dd'T'HH:mm:ss'Z'";
-    DateFormat utcFormatter = new SimpleDateFormat(utcPattern);
-    utcFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-    return utcFormatter.format(dt);
+    return DateTimeUtils.formatUniversalDateTime(dt);
   }
 
   /**
@@ -539,6 +731,31 @@ public abstract class ExchangeServiceBase implements Closeable {
     this.traceEnabled = (traceListener != null);
   }
 
+  /**
+   * Gets the maximum number of bytes of a response that are passed to the
+   * trace listener.
+   *
+   * @return the maximum response trace size, in bytes
+   */
+  public int getMaximumResponseTraceSize() {
+    return maximumResponseTraceSize;
+  }
+
+  /**
+   * Sets the maximum number of bytes of a response that are passed to the
+   * trace listener. Responses are parsed as they arrive and only this many
+   * bytes are kept for tracing; the rest is reported as truncated. Defaults
+   * to 1 MB.
+   *
+   * @param maximumResponseTraceSize the maximum response trace size, in bytes
+   */
+  public void setMaximumResponseTraceSize(int maximumResponseTraceSize) {
+    if (maximumResponseTraceSize < 0) {
+      throw new IllegalArgumentException("Maximum response trace size must not be negative.");
+    }
+    this.maximumResponseTraceSize = maximumResponseTraceSize;
+  }
+
   /**
    * Gets the credential used to authenticate with the Exchange Web Services.
    *
@@ -615,6 +832,31 @@ public abstract class ExchangeServiceBase implements Closeable {
     this.timeout = timeout;
   }
 
+  /**
+   * Gets a value indicating whether request bodies are written straight to
+   * the connection.
+   *
+   * @return true if request streaming is enabled
+   */
+  public boolean isRequestStreamingEnabled() {
+    return requestStreamingEnabled;
+  }
+
+  /**
+   * Sets a value indicating whether request bodies are written straight to
+   * the connection while the request is sent, with chunked transfer
+   * encoding, instead of being buffered in memory first. Requests are still
+   * buffered while request tracing is enabled or when the credentials sign
+   * the request. Streamed requests send "Expect: 100-continue", so the server
+   * or proxies in between must support it when authentication is negotiated.
+   * Defaults to false.
+   *
+   * @param requestStreamingEnabled true to enable request streaming
+   */
+  public void setRequestStreamingEnabled(boolean requestStreamingEnabled) {
+    this.requestStreamingEnabled = requestStreamingEnabled;
+  }
+
   /**
    * Gets a value that indicates whether HTTP pre-authentication should be
    * performed.
@@ -767,31 +1009,24 @@ public abstract class ExchangeServiceBase implements Closeable {
    *
    * @param traceType kind of trace entry
    * @param request   The request
+   * @return the response headers, which cannot be modified
    * @throws EWSHttpException EWS http exception
    * @throws IOException signals that an I/O exception has occurred
    * @throws XMLStreamException the XML stream exception
    */
-  public void processHttpResponseHeaders(TraceFlags traceType, HttpWebRequest request)
+  public Map<String, String> processHttpResponseHeaders(TraceFlags traceType, HttpWebRequest request)
       throws XMLStreamException, IOException, EWSHttpException {
     this.traceHttpResponseHeaders(traceType, request);
-    this.saveHttpResponseHeaders(request.getResponseHeaders());
-  }
-
-  /**
-   * Save the HTTP response headers.
-   *
-   * @param headers The response headers
-   */
-  private void saveHttpResponseHeaders(Map<String, String> headers) {
-    this.httpResponseHeaders.clear();
-
-    for (String key : headers.keySet()) {
-      this.httpResponseHeaders.put(key, headers.get(key));
-    }
+    Map<String, String> headers = Collections.unmodifiableMap(
+        new HashMap<String, String>(request.getResponseHeaders()));
+    this.httpResponseHeaders = headers;
+    return headers;
   }
 
   /**
-   * Gets a collection of HTTP headers from the last response.
+   * Gets a collection of HTTP headers from the last response received by this
+   * service. When calls run at the same time, for instance asynchronously, use the
+   * headers returned with the response of each call instead.
    * @return HTTP response headers
    */
   public Map<String, String> getHttpResponseHeaders() {
@@ -814,4 +1049,35 @@ public abstract class ExchangeServiceBase implements Closeable {
       return ExchangeServiceBase.binarySecret;
     }
   }
+
+
+  /**
+   * An authentication cache shared by the calls of a service, which may run at the
+   * same time.
+   */
+  private static final class SynchronizedAuthCache implements AuthCache {
+
+    private final BasicAuthCache authCache = new BasicAuthCache();
+
+    @Override
+    public synchronized void put(HttpHost host, AuthScheme authScheme) {
+      this.authCache.put(host, authScheme);
+    }
+
+    @Override
+    public synchronized AuthScheme get(HttpHost host) {
+      return this.authCache.get(host);
+    }
+
+    @Override
+    public synchronized void remove(HttpHost host) {
+      this.authCache.remove(host);
+    }
+
+    @Override
+    public synchronized void clear() {
+      this.authCache.clear();
+    }
+  }
+
 }
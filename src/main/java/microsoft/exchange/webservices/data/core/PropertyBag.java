@@ -26,6 +26,7 @@ package microsoft.exchange.webservices.data.core;
 import microsoft.exchange.webservices.data.ISelfValidate;
 import microsoft.exchange.webservices.data.core.service.ServiceObject;
 import microsoft.exchange.webservices.data.core.service.item.Item;
+import microsoft.exchange.webservices.data.core.service.schema.ServiceObjectSchema;
 import microsoft.exchange.webservices.data.core.enumeration.property.BasePropertySet;
 import microsoft.exchange.webservices.data.core.enumeration.property.PropertyDefinitionFlags;
 import microsoft.exchange.webservices.data.core.enumeration.misc.XmlNamespace;
@@ -42,23 +43,62 @@ import microsoft.exchange.webservices.data.property.definition.ComplexPropertyDe
 import microsoft.exchange.webservices.data.property.definition.PropertyDefinition;
 import microsoft.exchange.webservices.data.security.XmlNodeType;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * Represents a property bag keyed on PropertyDefinition objects.
+ * <p>
+ * Values are stored in an array indexed by the ordinal of each property in
+ * the owner's schema, and the loaded, modified, added and deleted state of
+ * each property is kept in bit sets over the same ordinals. Property that are
+ * not registered in the owner's schema get ordinals past the schema's.
+ * </p>
  */
 public class PropertyBag implements IComplexPropertyChanged, IComplexPropertyChangedDelegate {
 
+  /**
+   * The index of the loaded property bit set in the flags.
+   */
+  private static final int LOADED = 0;
+
+  /**
+   * The index of the modified property bit set in the flags.
+   */
+  private static final int MODIFIED = 1;
+
+  /**
+   * The index of the added property bit set in the flags.
+   */
+  private static final int ADDED = 2;
+
+  /**
+   * The index of the deleted property bit set in the flags.
+   */
+  private static final int DELETED = 3;
+
+  /**
+   * The number of bit sets in the flags.
+   */
+  private static final int FLAG_SETS = 4;
+
   /**
    * The owner.
    */
   private ServiceObject owner;
 
+  /**
+   * The schema of the owner, which assigns property ordinals.
+   */
+  private ServiceObjectSchema schema;
+
   /**
    * The is dirty.
    */
@@ -75,34 +115,27 @@ public class PropertyBag implements IComplexPropertyChanged, IComplexPropertyCha
   private boolean onlySummaryPropertiesRequested;
 
   /**
-   * The loaded property.
-   */
-  private List<PropertyDefinition> loadedProperties =
-      new ArrayList<PropertyDefinition>();
-
-  /**
-   * The property.
+   * The property that are not registered in the owner's schema, in ordinal
+   * order after the schema's property. Null until one is used.
    */
-  private Map<PropertyDefinition, Object> properties =
-      new HashMap<PropertyDefinition, Object>();
+  private List<PropertyDefinition> foreignProperties;
 
   /**
-   * The deleted property.
+   * The property values, by ordinal. Null until a value is set.
    */
-  private Map<PropertyDefinition, Object> deletedProperties =
-      new HashMap<PropertyDefinition, Object>();
+  private Object[] values;
 
   /**
-   * The modified property.
+   * The values of the deleted property at the time they were deleted, by
+   * ordinal. Null until a property with a value is deleted.
    */
-  private List<PropertyDefinition> modifiedProperties =
-      new ArrayList<PropertyDefinition>();
+  private Object[] deletedValues;
 
   /**
-   * The added property.
+   * The loaded, modified, added and deleted property bit sets, one after the
+   * other. Null until a flag is set.
    */
-  private List<PropertyDefinition> addedProperties =
-      new ArrayList<PropertyDefinition>();
+  private long[] flags;
 
   /**
    * The requested property set.
@@ -126,7 +159,7 @@ public class PropertyBag implements IComplexPropertyChanged, IComplexPropertyCha
    * @return A Map holding the bag's property.
    */
   public Map<PropertyDefinition, Object> getProperties() {
-    return this.properties;
+    return new PropertyMap();
   }
 
   /**
@@ -144,9 +177,8 @@ public class PropertyBag implements IComplexPropertyChanged, IComplexPropertyCha
    * @return True if the bag has pending changes, false otherwise.
    */
   public boolean getIsDirty() {
-    int changes = this.modifiedProperties.size() +
-        this.deletedProperties.size() + this.addedProperties.size();
-    return changes > 0 || this.isDirty;
+    return this.hasAnyFlag(MODIFIED) || this.hasAnyFlag(DELETED) ||
+        this.hasAnyFlag(ADDED) || this.isDirty;
   }
 
   /**
@@ -172,7 +204,7 @@ public class PropertyBag implements IComplexPropertyChanged, IComplexPropertyCha
    */
   public boolean isPropertyLoaded(PropertyDefinition propertyDefinition) {
     // Is the property loaded?
-    if (this.loadedProperties.contains(propertyDefinition)) {
+    if (this.hasFlag(LOADED, this.getOrdinal(propertyDefinition))) {
       return true;
     } else {
       // Was the property requested?
@@ -219,8 +251,8 @@ public class PropertyBag implements IComplexPropertyChanged, IComplexPropertyCha
    * false.
    */
   public boolean isPropertyUpdated(PropertyDefinition propertyDefinition) {
-    return this.modifiedProperties.contains(propertyDefinition) ||
-        this.addedProperties.contains(propertyDefinition);
+    int ordinal = this.getOrdinal(propertyDefinition);
+    return this.hasFlag(MODIFIED, ordinal) || this.hasFlag(ADDED, ordinal);
   }
 
   /**
@@ -321,7 +353,7 @@ public class PropertyBag implements IComplexPropertyChanged, IComplexPropertyCha
         propertyValueOutParam.setParam((T) propertyValue);
         if (propertyValue != null) {
           this.initComplexProperty(propertyValue);
-          this.properties.put(propertyDefinition, propertyValue);
+          this.setValue(this.getOrAddOrdinal(propertyDefinition), propertyValue);
         }
       } else {
         // If the property is not the Id (we need to let developers read
@@ -371,7 +403,7 @@ public class PropertyBag implements IComplexPropertyChanged, IComplexPropertyCha
    * @return True if the specified property is in the bag, false otherwise.
    */
   public boolean contains(PropertyDefinition propertyDefinition) {
-    return this.properties.containsKey(propertyDefinition);
+    return this.getValue(this.getOrdinal(propertyDefinition)) != null;
   }
 
 
@@ -384,9 +416,9 @@ public class PropertyBag implements IComplexPropertyChanged, IComplexPropertyCha
    * @return true if the value could be retrieved, false otherwise
    */
   public <T> boolean tryGetValue(PropertyDefinition propertyDefinition, OutParam<T> propertyValueOutParam) {
-    if (this.properties.containsKey(propertyDefinition)) {
-      T param = (T) properties.get(propertyDefinition);
-      propertyValueOutParam.setParam(param);
+    Object value = this.getValue(this.getOrdinal(propertyDefinition));
+    if (value != null) {
+      propertyValueOutParam.setParam((T) value);
       return true;
     } else {
       propertyValueOutParam.setParam(null);
@@ -400,14 +432,15 @@ public class PropertyBag implements IComplexPropertyChanged, IComplexPropertyCha
    * @param complexProperty The property that changes.
    */
   protected void propertyChanged(ComplexProperty complexProperty) {
-    Iterator<Entry<PropertyDefinition, Object>> it = this.properties
-        .entrySet().iterator();
-    while (it.hasNext()) {
-      Entry<PropertyDefinition, Object> keyValuePair = it.next();
-      if (keyValuePair.getValue().equals(complexProperty)) {
-        if (!this.deletedProperties.containsKey(keyValuePair.getKey())) {
-          addToChangeList(keyValuePair.getKey(),
-              this.modifiedProperties);
+    if (this.values == null) {
+      return;
+    }
+
+    for (int ordinal = 0; ordinal < this.values.length; ordinal++) {
+      Object value = this.values[ordinal];
+      if (value != null && value.equals(complexProperty)) {
+        if (!this.hasFlag(DELETED, ordinal)) {
+          this.setFlag(MODIFIED, ordinal);
           this.changed();
         }
       }
@@ -420,16 +453,14 @@ public class PropertyBag implements IComplexPropertyChanged, IComplexPropertyCha
    * @param propertyDefinition The property to delete.
    */
   protected void deleteProperty(PropertyDefinition propertyDefinition) {
-    if (!this.deletedProperties.containsKey(propertyDefinition)) {
-      Object propertyValue = null;
+    int ordinal = this.getOrAddOrdinal(propertyDefinition);
+    if (!this.hasFlag(DELETED, ordinal)) {
+      Object propertyValue = this.getValue(ordinal);
 
-      if (this.properties.containsKey(propertyDefinition)) {
-        propertyValue = this.properties.get(propertyDefinition);
-      }
-
-      this.properties.remove(propertyDefinition);
-      this.modifiedProperties.remove(propertyDefinition);
-      this.deletedProperties.put(propertyDefinition, propertyValue);
+      this.setValue(ordinal, null);
+      this.clearFlag(MODIFIED, ordinal);
+      this.setFlag(DELETED, ordinal);
+      this.setDeletedValue(ordinal, propertyValue);
 
       if (propertyValue instanceof ComplexProperty) {
         ComplexProperty complexProperty =
@@ -444,8 +475,8 @@ public class PropertyBag implements IComplexPropertyChanged, IComplexPropertyCha
    */
   protected void clear() {
     this.clearChangeLog();
-    this.properties.clear();
-    this.loadedProperties.clear();
+    this.values = null;
+    this.clearFlags(LOADED);
     this.requestedPropertySet = null;
   }
 
@@ -453,18 +484,17 @@ public class PropertyBag implements IComplexPropertyChanged, IComplexPropertyCha
    * Clears the bag's change log.
    */
   public void clearChangeLog() {
-    this.deletedProperties.clear();
-    this.modifiedProperties.clear();
-    this.addedProperties.clear();
-
-    Iterator<Entry<PropertyDefinition, Object>> it = this.properties
-        .entrySet().iterator();
-    while (it.hasNext()) {
-      Entry<PropertyDefinition, Object> keyValuePair = it.next();
-      if (keyValuePair.getValue() instanceof ComplexProperty) {
-        ComplexProperty complexProperty = (ComplexProperty) keyValuePair
-            .getValue();
-        complexProperty.clearChangeLog();
+    this.clearFlags(DELETED);
+    this.clearFlags(MODIFIED);
+    this.clearFlags(ADDED);
+    this.deletedValues = null;
+
+    if (this.values != null) {
+      for (Object value : this.values) {
+        if (value instanceof ComplexProperty) {
+          ComplexProperty complexProperty = (ComplexProperty) value;
+          complexProperty.clearChangeLog();
+        }
       }
     }
 
@@ -510,7 +540,7 @@ public class PropertyBag implements IComplexPropertyChanged, IComplexPropertyCha
             propertyDefinition.loadPropertyValueFromXml(reader,
                 this);
 
-            this.loadedProperties.add(propertyDefinition);
+            this.setFlag(LOADED, this.getOrAddOrdinal(propertyDefinition));
           } else {
             reader.skipCurrentElement();
           }
@@ -570,20 +600,20 @@ public class PropertyBag implements IComplexPropertyChanged, IComplexPropertyCha
 
     writer.writeStartElement(XmlNamespace.Types, XmlElementNames.Updates);
 
-    for (PropertyDefinition propertyDefinition : this.addedProperties) {
-      this.writeSetUpdateToXml(writer, propertyDefinition);
+    for (int ordinal = this.nextFlag(ADDED, 0); ordinal >= 0;
+        ordinal = this.nextFlag(ADDED, ordinal + 1)) {
+      this.writeSetUpdateToXml(writer, this.getPropertyDefinition(ordinal));
     }
 
-    for (PropertyDefinition propertyDefinition : this.modifiedProperties) {
-      this.writeSetUpdateToXml(writer, propertyDefinition);
+    for (int ordinal = this.nextFlag(MODIFIED, 0); ordinal >= 0;
+        ordinal = this.nextFlag(MODIFIED, ordinal + 1)) {
+      this.writeSetUpdateToXml(writer, this.getPropertyDefinition(ordinal));
     }
 
-    Iterator<Entry<PropertyDefinition, Object>> it = this.deletedProperties
-        .entrySet().iterator();
-    while (it.hasNext()) {
-      Entry<PropertyDefinition, Object> property = it.next();
-      this.writeDeleteUpdateToXml(writer, property.getKey(), property
-          .getValue());
+    for (int ordinal = this.nextFlag(DELETED, 0); ordinal >= 0;
+        ordinal = this.nextFlag(DELETED, ordinal + 1)) {
+      this.writeDeleteUpdateToXml(writer, this.getPropertyDefinition(ordinal),
+          this.getDeletedValue(ordinal));
     }
 
     writer.writeEndElement();
@@ -598,14 +628,13 @@ public class PropertyBag implements IComplexPropertyChanged, IComplexPropertyCha
    * otherwise.
    */
   public boolean getIsUpdateCallNecessary() {
-    List<PropertyDefinition> propertyDefinitions =
-        new ArrayList<PropertyDefinition>();
-    propertyDefinitions.addAll(this.addedProperties);
-    propertyDefinitions.addAll(this.modifiedProperties);
-    propertyDefinitions.addAll(this.deletedProperties.keySet());
-    for (PropertyDefinition propertyDefinition : propertyDefinitions) {
-      if (propertyDefinition.hasFlag(PropertyDefinitionFlags.CanUpdate)) {
-        return true;
+    int propertyCount = this.getPropertyCount();
+    for (int ordinal = 0; ordinal < propertyCount; ordinal++) {
+      if (this.hasFlag(ADDED, ordinal) || this.hasFlag(MODIFIED, ordinal) ||
+          this.hasFlag(DELETED, ordinal)) {
+        if (this.getPropertyDefinition(ordinal).hasFlag(PropertyDefinitionFlags.CanUpdate)) {
+          return true;
+        }
       }
     }
     return false;
@@ -714,12 +743,14 @@ public class PropertyBag implements IComplexPropertyChanged, IComplexPropertyCha
    * @throws Exception the exception
    */
   public void validate() throws Exception {
-    for (PropertyDefinition propertyDefinition : this.addedProperties) {
-      this.validatePropertyValue(propertyDefinition);
+    for (int ordinal = this.nextFlag(ADDED, 0); ordinal >= 0;
+        ordinal = this.nextFlag(ADDED, ordinal + 1)) {
+      this.validatePropertyValue(this.getPropertyDefinition(ordinal));
     }
 
-    for (PropertyDefinition propertyDefinition : this.modifiedProperties) {
-      this.validatePropertyValue(propertyDefinition);
+    for (int ordinal = this.nextFlag(MODIFIED, 0); ordinal >= 0;
+        ordinal = this.nextFlag(MODIFIED, ordinal + 1)) {
+      this.validatePropertyValue(this.getPropertyDefinition(ordinal));
     }
   }
 
@@ -828,46 +859,355 @@ public class PropertyBag implements IComplexPropertyChanged, IComplexPropertyCha
     if (object == null) {
       this.deleteProperty(propertyDefinition);
     } else {
-      ComplexProperty complexProperty = null;
-      Object currentValue = null;
-
-      if (this.properties.containsKey(propertyDefinition)) {
-        currentValue = this.properties.get(propertyDefinition);
+      int ordinal = this.getOrAddOrdinal(propertyDefinition);
+      Object currentValue = this.getValue(ordinal);
 
-        if (currentValue instanceof ComplexProperty) {
-          complexProperty = (ComplexProperty) currentValue;
-          complexProperty.removeChangeEvent(this);
-        }
+      if (currentValue instanceof ComplexProperty) {
+        ComplexProperty complexProperty = (ComplexProperty) currentValue;
+        complexProperty.removeChangeEvent(this);
       }
 
       // If the property was to be deleted, the deletion becomes an
       // update.
-      if (this.deletedProperties.containsKey(propertyDefinition)) {
-        this.deletedProperties.remove(propertyDefinition);
-        addToChangeList(propertyDefinition, this.modifiedProperties);
+      if (this.hasFlag(DELETED, ordinal)) {
+        this.clearFlag(DELETED, ordinal);
+        this.setDeletedValue(ordinal, null);
+        this.setFlag(MODIFIED, ordinal);
       } else {
         // If the property value was not set, we have a newly set
         // property.
-        if (!this.properties.containsKey(propertyDefinition)) {
-          addToChangeList(propertyDefinition, this.addedProperties);
+        if (currentValue == null) {
+          this.setFlag(ADDED, ordinal);
         } else {
           // The last case is that we have a modified property.
-          if (!this.modifiedProperties.contains(propertyDefinition)) {
-            addToChangeList(propertyDefinition,
-                this.modifiedProperties);
-          }
+          this.setFlag(MODIFIED, ordinal);
         }
       }
 
       if (object instanceof ComplexProperty) {
         this.initComplexProperty((ComplexProperty) object);
       }
-      this.properties.put(propertyDefinition, object);
+      this.setValue(ordinal, object);
       this.changed();
     }
 
   }
 
+  /**
+   * Gets the schema of the owner, which assigns property ordinals.
+   *
+   * @return the schema
+   */
+  private ServiceObjectSchema getOwnerSchema() {
+    if (this.schema == null) {
+      this.schema = this.getOwner().getSchema();
+    }
+    return this.schema;
+  }
+
+  /**
+   * Gets the number of property ordinals in use by this bag.
+   *
+   * @return the property count
+   */
+  private int getPropertyCount() {
+    int propertyCount = this.getOwnerSchema().getPropertyCount();
+    return this.foreignProperties != null ? propertyCount + this.foreignProperties.size()
+                                          : propertyCount;
+  }
+
+  /**
+   * Gets the ordinal of a property.
+   *
+   * @param propertyDefinition The property definition.
+   * @return the ordinal, or -1 if the bag never held the property
+   */
+  private int getOrdinal(PropertyDefinition propertyDefinition) {
+    ServiceObjectSchema ownerSchema = this.getOwnerSchema();
+    int ordinal = ownerSchema.getPropertyOrdinal(propertyDefinition);
+    if (ordinal < 0 && this.foreignProperties != null) {
+      int index = this.foreignProperties.indexOf(propertyDefinition);
+      if (index >= 0) {
+        ordinal = ownerSchema.getPropertyCount() + index;
+      }
+    }
+    return ordinal;
+  }
+
+  /**
+   * Gets the ordinal of a property, assigning one if the property is not
+   * registered in the owner's schema.
+   *
+   * @param propertyDefinition The property definition.
+   * @return the ordinal
+   */
+  private int getOrAddOrdinal(PropertyDefinition propertyDefinition) {
+    int ordinal = this.getOrdinal(propertyDefinition);
+    if (ordinal < 0) {
+      if (this.foreignProperties == null) {
+        this.foreignProperties = new ArrayList<PropertyDefinition>(1);
+      }
+      this.foreignProperties.add(propertyDefinition);
+      ordinal = this.getPropertyCount() - 1;
+    }
+    return ordinal;
+  }
+
+  /**
+   * Gets the property with the specified ordinal.
+   *
+   * @param ordinal The ordinal.
+   * @return the property definition
+   */
+  private PropertyDefinition getPropertyDefinition(int ordinal) {
+    ServiceObjectSchema ownerSchema = this.getOwnerSchema();
+    int schemaPropertyCount = ownerSchema.getPropertyCount();
+    return ordinal < schemaPropertyCount ? ownerSchema.getPropertyDefinition(ordinal)
+                                         : this.foreignProperties.get(ordinal - schemaPropertyCount);
+  }
+
+  /**
+   * Gets the value of a property.
+   *
+   * @param ordinal The ordinal of the property, or -1.
+   * @return the value, or null if the property is not in the bag
+   */
+  private Object getValue(int ordinal) {
+    return ordinal >= 0 && this.values != null && ordinal < this.values.length
+           ? this.values[ordinal] : null;
+  }
+
+  /**
+   * Sets the value of a property.
+   *
+   * @param ordinal The ordinal of the property.
+   * @param value   The value, or null to remove the property from the bag.
+   */
+  private void setValue(int ordinal, Object value) {
+    if (value != null || this.getValue(ordinal) != null) {
+      this.values = this.ensureCapacity(this.values, ordinal);
+      this.values[ordinal] = value;
+    }
+  }
+
+  /**
+   * Gets the value a deleted property had when it was deleted.
+   *
+   * @param ordinal The ordinal of the property.
+   * @return the value, or null
+   */
+  private Object getDeletedValue(int ordinal) {
+    return this.deletedValues != null && ordinal < this.deletedValues.length
+           ? this.deletedValues[ordinal] : null;
+  }
+
+  /**
+   * Sets the value a deleted property had when it was deleted.
+   *
+   * @param ordinal The ordinal of the property.
+   * @param value   The value, or null.
+   */
+  private void setDeletedValue(int ordinal, Object value) {
+    if (value != null || this.getDeletedValue(ordinal) != null) {
+      this.deletedValues = this.ensureCapacity(this.deletedValues, ordinal);
+      this.deletedValues[ordinal] = value;
+    }
+  }
+
+  /**
+   * Allocates or grows an array of values to hold the specified ordinal.
+   *
+   * @param array   The array, or null.
+   * @param ordinal The ordinal.
+   * @return the array, or a larger copy of it
+   */
+  private Object[] ensureCapacity(Object[] array, int ordinal) {
+    if (array == null) {
+      return new Object[Math.max(this.getPropertyCount(), ordinal + 1)];
+    } else if (ordinal >= array.length) {
+      return Arrays.copyOf(array, Math.max(this.getPropertyCount(), ordinal + 1));
+    }
+    return array;
+  }
+
+  /**
+   * Gets the number of words of each bit set in the flags.
+   *
+   * @return the number of words
+   */
+  private int getFlagWords() {
+    return this.flags != null ? this.flags.length / FLAG_SETS : 0;
+  }
+
+  /**
+   * Determines whether a property is in a bit set.
+   *
+   * @param set     The bit set.
+   * @param ordinal The ordinal of the property, or -1.
+   * @return true if the property is in the bit set
+   */
+  private boolean hasFlag(int set, int ordinal) {
+    int words = this.getFlagWords();
+    int word = ordinal >>> 6;
+    return ordinal >= 0 && word < words &&
+        (this.flags[set * words + word] & (1L << ordinal)) != 0;
+  }
+
+  /**
+   * Adds a property to a bit set.
+   *
+   * @param set     The bit set.
+   * @param ordinal The ordinal of the property.
+   */
+  private void setFlag(int set, int ordinal) {
+    int words = this.getFlagWords();
+    if ((ordinal >>> 6) >= words) {
+      int newWords = (Math.max(this.getPropertyCount(), ordinal + 1) + 63) >>> 6;
+      long[] newFlags = new long[FLAG_SETS * newWords];
+      for (int i = 0; i < FLAG_SETS && words > 0; i++) {
+        System.arraycopy(this.flags, i * words, newFlags, i * newWords, words);
+      }
+      this.flags = newFlags;
+      words = newWords;
+    }
+    this.flags[set * words + (ordinal >>> 6)] |= 1L << ordinal;
+  }
+
+  /**
+   * Removes a property from a bit set.
+   *
+   * @param set     The bit set.
+   * @param ordinal The ordinal of the property.
+   */
+  private void clearFlag(int set, int ordinal) {
+    if (this.hasFlag(set, ordinal)) {
+      this.flags[set * this.getFlagWords() + (ordinal >>> 6)] &= ~(1L << ordinal);
+    }
+  }
+
+  /**
+   * Removes all property from a bit set.
+   *
+   * @param set The bit set.
+   */
+  private void clearFlags(int set) {
+    int words = this.getFlagWords();
+    if (words > 0) {
+      Arrays.fill(this.flags, set * words, (set + 1) * words, 0L);
+    }
+  }
+
+  /**
+   * Determines whether a bit set holds any property.
+   *
+   * @param set The bit set.
+   * @return true if the bit set is not empty
+   */
+  private boolean hasAnyFlag(int set) {
+    return this.nextFlag(set, 0) >= 0;
+  }
+
+  /**
+   * Gets the first property in a bit set from the specified ordinal on.
+   *
+   * @param set         The bit set.
+   * @param fromOrdinal The ordinal to start from.
+   * @return the ordinal of the property, or -1 if there is none
+   */
+  private int nextFlag(int set, int fromOrdinal) {
+    int words = this.getFlagWords();
+    int word = fromOrdinal >>> 6;
+    if (word >= words) {
+      return -1;
+    }
+
+    long bits = this.flags[set * words + word] & (-1L << fromOrdinal);
+    while (bits == 0) {
+      if (++word == words) {
+        return -1;
+      }
+      bits = this.flags[set * words + word];
+    }
+    return (word << 6) + Long.numberOfTrailingZeros(bits);
+  }
+
+  /**
+   * A read-only view of the property in the bag and their values.
+   */
+  private class PropertyMap extends AbstractMap<PropertyDefinition, Object> {
+
+    @Override
+    public boolean containsKey(Object key) {
+      return key instanceof PropertyDefinition && contains((PropertyDefinition) key);
+    }
+
+    @Override
+    public Object get(Object key) {
+      return key instanceof PropertyDefinition ? getValue(getOrdinal((PropertyDefinition) key)) : null;
+    }
+
+    @Override
+    public Set<Entry<PropertyDefinition, Object>> entrySet() {
+      return new AbstractSet<Entry<PropertyDefinition, Object>>() {
+        @Override
+        public Iterator<Entry<PropertyDefinition, Object>> iterator() {
+          return new PropertyIterator();
+        }
+
+        @Override
+        public int size() {
+          int size = 0;
+          if (values != null) {
+            for (Object value : values) {
+              if (value != null) {
+                size++;
+              }
+            }
+          }
+          return size;
+        }
+      };
+    }
+  }
+
+  /**
+   * Iterates over the property in the bag and their values, in ordinal
+   * order.
+   */
+  private class PropertyIterator implements Iterator<Map.Entry<PropertyDefinition, Object>> {
+
+    private int nextOrdinal = this.findValue(0);
+
+    private int findValue(int fromOrdinal) {
+      int ordinal = fromOrdinal;
+      while (values != null && ordinal < values.length && values[ordinal] == null) {
+        ordinal++;
+      }
+      return values != null && ordinal < values.length ? ordinal : -1;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.nextOrdinal >= 0;
+    }
+
+    @Override
+    public Map.Entry<PropertyDefinition, Object> next() {
+      if (this.nextOrdinal < 0) {
+        throw new NoSuchElementException();
+      }
+      int ordinal = this.nextOrdinal;
+      this.nextOrdinal = this.findValue(ordinal + 1);
+      return new AbstractMap.SimpleImmutableEntry<PropertyDefinition, Object>(
+          getPropertyDefinition(ordinal), values[ordinal]);
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
   /*
    * (non-Javadoc)
    *
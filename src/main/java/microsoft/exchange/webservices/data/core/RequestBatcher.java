@@ -0,0 +1,210 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.core;
+
+import microsoft.exchange.webservices.data.core.enumeration.property.BasePropertySet;
+import microsoft.exchange.webservices.data.core.response.ServiceResponse;
+import microsoft.exchange.webservices.data.core.response.ServiceResponseCollection;
+import microsoft.exchange.webservices.data.core.service.schema.ItemSchema;
+import microsoft.exchange.webservices.data.property.definition.PropertyDefinitionBase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Splits requests on many items into batches, and runs the batches in parallel.
+ */
+final class RequestBatcher {
+
+  /**
+   * Rough size, in bytes, of an item returned with the IdOnly base property set.
+   */
+  static final int ID_ONLY_ITEM_SIZE = 512;
+
+  /**
+   * Rough size, in bytes, of an item returned with the FirstClassProperties base property
+   * set, body included.
+   */
+  static final int FIRST_CLASS_ITEM_SIZE = 8192;
+
+  /**
+   * Rough size, in bytes, of an additional property.
+   */
+  static final int PROPERTY_SIZE = 256;
+
+  /**
+   * Rough size, in bytes, of an additional body property.
+   */
+  static final int BODY_SIZE = 8192;
+
+  /**
+   * Rough size, in bytes, of the MIME content of an item.
+   */
+  static final int MIME_CONTENT_SIZE = 65536;
+
+  private RequestBatcher() {
+  }
+
+  /**
+   * Estimates the size of an item in a response.
+   *
+   * @param propertySet the properties returned for the item
+   * @return the estimated size, in bytes
+   */
+  static long estimateItemSize(PropertySet propertySet) {
+    long size = propertySet.getBasePropertySet() == BasePropertySet.IdOnly
+        ? ID_ONLY_ITEM_SIZE : FIRST_CLASS_ITEM_SIZE;
+    for (PropertyDefinitionBase property : propertySet) {
+      if (property == ItemSchema.MimeContent) {
+        size += MIME_CONTENT_SIZE;
+      } else if (property == ItemSchema.Body || property == ItemSchema.UniqueBody) {
+        size += BODY_SIZE;
+      } else {
+        size += PROPERTY_SIZE;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Computes the number of items in a batch.
+   *
+   * @param propertySet     the properties returned for each item
+   * @param maxItems        the maximum number of items in a batch
+   * @param maxResponseSize the maximum estimated size of a response, in bytes
+   * @return the number of items in a batch, at least one
+   */
+  static int computeBatchSize(PropertySet propertySet, int maxItems, long maxResponseSize) {
+    long bySize = maxResponseSize / estimateItemSize(propertySet);
+    return (int) Math.max(1, Math.min(maxItems, bySize));
+  }
+
+  /**
+   * Splits elements into batches.
+   *
+   * @param elements  the elements
+   * @param batchSize the number of elements in a batch
+   * @param <T>       the type of the elements
+   * @return the batches, in the order of the elements
+   */
+  static <T> List<List<T>> split(Iterable<T> elements, int batchSize) {
+    List<List<T>> batches = new ArrayList<List<T>>();
+    List<T> batch = null;
+    for (T element : elements) {
+      if (batch == null || batch.size() == batchSize) {
+        batch = new ArrayList<T>(batchSize);
+        batches.add(batch);
+      }
+      batch.add(element);
+    }
+    return batches;
+  }
+
+  /**
+   * Runs batches and merges their responses in the order of the batches.
+   * <p>
+   * The calling thread runs the first batch, and any other batch the executor has not
+   * started yet by the time it gets to it. Batches therefore complete even if all the
+   * threads of the executor are busy, including with the call waiting for them.
+   * When a batch fails, the batches not started yet are cancelled and the failure is thrown.
+   * The merged responses carry the HTTP response headers of the last batch.
+   * </p>
+   *
+   * @param batches  the batches
+   * @param executor the executor running batches in parallel, or null to run them one after
+   *                 the other on the calling thread
+   * @param <R>      the type of the responses
+   * @return the responses of all batches
+   * @throws Exception the failure of the first failing batch
+   */
+  static <R extends ServiceResponse> ServiceResponseCollection<R> execute(
+      List<Callable<ServiceResponseCollection<R>>> batches, Executor executor) throws Exception {
+    if (batches.size() == 1) {
+      return batches.get(0).call();
+    }
+
+    List<FutureTask<ServiceResponseCollection<R>>> tasks =
+        new ArrayList<FutureTask<ServiceResponseCollection<R>>>(batches.size());
+    for (Callable<ServiceResponseCollection<R>> batch : batches) {
+      tasks.add(new FutureTask<ServiceResponseCollection<R>>(batch));
+    }
+
+    if (executor != null) {
+      for (int i = 1; i < tasks.size(); i++) {
+        try {
+          executor.execute(tasks.get(i));
+        } catch (RejectedExecutionException e) {
+          // The calling thread runs the remaining batches.
+          break;
+        }
+      }
+    }
+
+    try {
+      ServiceResponseCollection<R> responses = new ServiceResponseCollection<R>();
+      for (FutureTask<ServiceResponseCollection<R>> task : tasks) {
+        // Does nothing if the executor already ran the task or is running it.
+        task.run();
+        ServiceResponseCollection<R> batchResponses = getResult(task);
+        for (R response : batchResponses) {
+          responses.add(response);
+        }
+        responses.setHttpResponseHeaders(batchResponses.getHttpResponseHeaders());
+      }
+      return responses;
+    } finally {
+      for (FutureTask<ServiceResponseCollection<R>> task : tasks) {
+        task.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * Waits for the result of a batch.
+   *
+   * @param task the batch
+   * @param <T>  the type of the result
+   * @return the result of the batch
+   * @throws Exception the failure of the batch
+   */
+  private static <T> T getResult(FutureTask<T> task) throws Exception {
+    try {
+      return task.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
+}
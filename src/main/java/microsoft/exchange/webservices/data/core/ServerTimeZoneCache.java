@@ -0,0 +1,280 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.core;
+
+import microsoft.exchange.webservices.data.core.enumeration.misc.ExchangeVersion;
+import microsoft.exchange.webservices.data.core.response.GetServerTimeZonesResponse;
+import microsoft.exchange.webservices.data.property.complex.time.TimeZoneDefinition;
+
+import javax.xml.stream.events.XMLEvent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Represents a client-side cache of the time zone definitions returned by GetServerTimeZones.
+ * <p>
+ * Definitions are kept per requested server version for a time to live, both one by one,
+ * as requested by {@link ExchangeService#getServerTimeZones(Iterable)}, and as the full
+ * list returned by {@link ExchangeService#getServerTimeZones()}. Every service uses the
+ * shared {@link #getDefault() default cache} unless given another one, so services talking
+ * to servers with different time zone data should each be given a cache of their own.
+ * </p>
+ * <p>
+ * The XML each definition was read from is kept rather than the definition itself, and
+ * every hit is parsed again into a new definition, so definitions are never shared between
+ * callers. A cache is safe for concurrent use, and lookups do not lock.
+ * </p>
+ */
+public class ServerTimeZoneCache {
+
+  /**
+   * The default time to live of the cached definitions, in milliseconds.
+   */
+  public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.HOURS.toMillis(24);
+
+  private static final ServerTimeZoneCache DEFAULT = new ServerTimeZoneCache();
+
+  private final long timeToLive;
+
+  /**
+   * Entries by requested server version.
+   */
+  private final ConcurrentMap<ExchangeVersion, VersionEntry> entries =
+      new ConcurrentHashMap<ExchangeVersion, VersionEntry>();
+
+  private final AtomicLong hitCount = new AtomicLong();
+
+  private final AtomicLong missCount = new AtomicLong();
+
+  /**
+   * Initializes a new instance with the default time to live.
+   */
+  public ServerTimeZoneCache() {
+    this(DEFAULT_TIME_TO_LIVE);
+  }
+
+  /**
+   * Initializes a new instance.
+   *
+   * @param timeToLive the time to live of the cached definitions, in milliseconds
+   */
+  public ServerTimeZoneCache(long timeToLive) {
+    if (timeToLive < 1) {
+      throw new IllegalArgumentException("Time to live must be greater than zero.");
+    }
+    this.timeToLive = timeToLive;
+  }
+
+  /**
+   * Gets the cache shared by the services that were not given one.
+   *
+   * @return the default cache
+   */
+  public static ServerTimeZoneCache getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Gets the time to live of the cached definitions.
+   *
+   * @return the time to live, in milliseconds
+   */
+  public long getTimeToLive() {
+    return timeToLive;
+  }
+
+  /**
+   * Gets a cached time zone definition.
+   *
+   * @param version    the requested server version
+   * @param timeZoneId the id of the time zone
+   * @return a new definition, or null if it is not cached or has expired
+   * @throws Exception the exception
+   */
+  public TimeZoneDefinition get(ExchangeVersion version, String timeZoneId) throws Exception {
+    VersionEntry versionEntry = entries.get(version);
+    Entry<List<XMLEvent>> entry =
+        versionEntry != null ? versionEntry.definitions.get(timeZoneId) : null;
+    if (entry == null || entry.isExpired(currentTimeMillis())) {
+      missCount.incrementAndGet();
+      return null;
+    }
+    hitCount.incrementAndGet();
+    return load(entry.value);
+  }
+
+  /**
+   * Gets the cached definitions of all the time zones of a server version.
+   *
+   * @param version the requested server version
+   * @return new definitions, or null if they are not cached or have expired
+   * @throws Exception the exception
+   */
+  public Collection<TimeZoneDefinition> getAll(ExchangeVersion version) throws Exception {
+    VersionEntry versionEntry = entries.get(version);
+    Entry<List<List<XMLEvent>>> entry =
+        versionEntry != null ? versionEntry.allDefinitions : null;
+    if (entry == null || entry.isExpired(currentTimeMillis())) {
+      missCount.incrementAndGet();
+      return null;
+    }
+    hitCount.incrementAndGet();
+    Collection<TimeZoneDefinition> timeZoneDefinitions =
+        new ArrayList<TimeZoneDefinition>(entry.value.size());
+    for (List<XMLEvent> events : entry.value) {
+      timeZoneDefinitions.add(load(events));
+    }
+    return timeZoneDefinitions;
+  }
+
+  /**
+   * Caches time zone definitions returned by the server.
+   *
+   * @param version        the requested server version
+   * @param timeZoneEvents the XML events of the definitions, by time zone id, as returned
+   *                       by {@link GetServerTimeZonesResponse#getTimeZoneEvents()}
+   */
+  public void put(ExchangeVersion version, Map<String, List<XMLEvent>> timeZoneEvents) {
+    VersionEntry versionEntry = getVersionEntry(version);
+    long expiration = currentTimeMillis() + timeToLive;
+    for (Map.Entry<String, List<XMLEvent>> timeZone : timeZoneEvents.entrySet()) {
+      versionEntry.definitions.put(timeZone.getKey(), new Entry<List<XMLEvent>>(
+          Collections.unmodifiableList(new ArrayList<XMLEvent>(timeZone.getValue())), expiration));
+    }
+  }
+
+  /**
+   * Caches the definitions of all the time zones of a server version.
+   *
+   * @param version        the requested server version
+   * @param timeZoneEvents the XML events of the definitions, by time zone id
+   */
+  public void putAll(ExchangeVersion version, Map<String, List<XMLEvent>> timeZoneEvents) {
+    put(version, timeZoneEvents);
+    VersionEntry versionEntry = getVersionEntry(version);
+    List<List<XMLEvent>> allDefinitions = new ArrayList<List<XMLEvent>>(timeZoneEvents.size());
+    for (String timeZoneId : timeZoneEvents.keySet()) {
+      allDefinitions.add(versionEntry.definitions.get(timeZoneId).value);
+    }
+    versionEntry.allDefinitions = new Entry<List<List<XMLEvent>>>(
+        allDefinitions, currentTimeMillis() + timeToLive);
+  }
+
+  /**
+   * Removes all entries.
+   */
+  public void clear() {
+    entries.clear();
+  }
+
+  /**
+   * Gets the number of lookups that found an entry.
+   *
+   * @return the number of hits
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Gets the number of lookups that found no entry.
+   *
+   * @return the number of misses
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * Gets the current time, against which entries expire.
+   *
+   * @return the current time, in milliseconds
+   */
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  /**
+   * Parses a definition from its XML events.
+   */
+  private static TimeZoneDefinition load(List<XMLEvent> events) throws Exception {
+    EwsServiceXmlReader reader = new EwsServiceXmlReader(new EventListReader(events), null);
+    reader.read();
+    TimeZoneDefinition timeZoneDefinition = new TimeZoneDefinition();
+    timeZoneDefinition.loadFromXml(reader);
+    return timeZoneDefinition;
+  }
+
+  private VersionEntry getVersionEntry(ExchangeVersion version) {
+    VersionEntry versionEntry = entries.get(version);
+    if (versionEntry == null) {
+      VersionEntry newEntry = new VersionEntry();
+      versionEntry = entries.putIfAbsent(version, newEntry);
+      if (versionEntry == null) {
+        versionEntry = newEntry;
+      }
+    }
+    return versionEntry;
+  }
+
+  /**
+   * The cached definitions of a server version.
+   */
+  private static final class VersionEntry {
+
+    private final ConcurrentMap<String, Entry<List<XMLEvent>>> definitions =
+        new ConcurrentHashMap<String, Entry<List<XMLEvent>>>();
+
+    private volatile Entry<List<List<XMLEvent>>> allDefinitions;
+  }
+
+  /**
+   * A cached value and its expiration time.
+   */
+  private static final class Entry<T> {
+
+    private final T value;
+
+    private final long expiration;
+
+    Entry(T value, long expiration) {
+      this.value = value;
+      this.expiration = expiration;
+    }
+
+    boolean isExpired(long now) {
+      return now >= expiration;
+    }
+  }
+
+}
@@ -0,0 +1,471 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.core;
+
+import microsoft.exchange.webservices.data.core.enumeration.property.BasePropertySet;
+import microsoft.exchange.webservices.data.core.enumeration.property.BodyType;
+import microsoft.exchange.webservices.data.core.response.ServiceResponse;
+import microsoft.exchange.webservices.data.notification.FolderEvent;
+import microsoft.exchange.webservices.data.notification.ItemEvent;
+import microsoft.exchange.webservices.data.notification.NotificationEvent;
+import microsoft.exchange.webservices.data.property.complex.ServiceId;
+import microsoft.exchange.webservices.data.property.definition.PropertyDefinitionBase;
+
+import javax.xml.stream.events.XMLEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents a client-side cache of the items and folders loaded by an {@link ExchangeService}.
+ * <p>
+ * When a cache is assigned with {@link ExchangeService#setServiceObjectCache(ServiceObjectCache)},
+ * the responses to GetItem and GetFolder calls are kept, per object and requested property
+ * set, and replayed instead of calling EWS again. Every hit is parsed again into a new
+ * object, or into the object being loaded, so objects are never shared between callers.
+ * </p>
+ * <p>
+ * An id carrying a change key only hits an entry of the same change key. An id without a
+ * change key hits any entry of the object, so such lookups rely on invalidation: entries are
+ * dropped when the service updates, moves or deletes the object, when a synchronization or
+ * a pull or streaming notification reports a change, and when {@link #invalidate} is called,
+ * for example with the events of push notifications. A response requested before the
+ * object was invalidated is not added, since it may hold the object as it was before the
+ * change. Least recently used objects are evicted when the cache holds too many entries or
+ * too much content.
+ * </p>
+ * <p>
+ * A cache is safe for concurrent use. It should only be shared by services acting on behalf
+ * of the same user.
+ * </p>
+ */
+public class ServiceObjectCache {
+
+  /**
+   * The default maximum number of entries.
+   */
+  public static final int DEFAULT_MAXIMUM_ENTRIES = 1000;
+
+  /**
+   * The default maximum size of the cached content, in characters.
+   */
+  public static final long DEFAULT_MAXIMUM_SIZE = 16L * 1024 * 1024;
+
+  /**
+   * The number of invalidated objects whose invalidation generation is kept.
+   */
+  private static final int MAXIMUM_INVALIDATIONS = 1024;
+
+  private final int maximumEntries;
+
+  private final long maximumSize;
+
+  /**
+   * Entries by unique id of the object, then by requested property set, least recently
+   * used object first.
+   */
+  private final LinkedHashMap<String, Map<PropertySetKey, Entry>> entries =
+      new LinkedHashMap<String, Map<PropertySetKey, Entry>>(16, 0.75f, true);
+
+  /**
+   * The generations at which the most recently invalidated objects were invalidated, by
+   * unique id, oldest first.
+   */
+  private final LinkedHashMap<String, Long> invalidations = new LinkedHashMap<String, Long>();
+
+  /**
+   * The number of invalidations so far.
+   */
+  private long generation;
+
+  /**
+   * The latest generation at which an object was invalidated that is no longer in
+   * {@link #invalidations}.
+   */
+  private long forgottenGeneration;
+
+  private int count;
+
+  private long size;
+
+  private long hitCount;
+
+  private long missCount;
+
+  /**
+   * Initializes a new instance with the default limits.
+   */
+  public ServiceObjectCache() {
+    this(DEFAULT_MAXIMUM_ENTRIES, DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * Initializes a new instance.
+   *
+   * @param maximumEntries the maximum number of entries
+   * @param maximumSize    the maximum size of the cached content, in characters
+   */
+  public ServiceObjectCache(int maximumEntries, long maximumSize) {
+    if (maximumEntries < 1) {
+      throw new IllegalArgumentException("Maximum entries must be greater than zero.");
+    }
+    if (maximumSize < 1) {
+      throw new IllegalArgumentException("Maximum size must be greater than zero.");
+    }
+    this.maximumEntries = maximumEntries;
+    this.maximumSize = maximumSize;
+  }
+
+  /**
+   * Loads a response from the cache.
+   *
+   * @param service        the service loading the response
+   * @param id             the id of the requested object
+   * @param propertySet    the requested property set
+   * @param response       the response to load
+   * @param xmlElementName the name of the response message element
+   * @return true if the response was loaded from the cache; false if it must be requested
+   * @throws Exception the exception
+   */
+  public boolean load(ExchangeService service, ServiceId id, PropertySet propertySet,
+      ServiceResponse response, String xmlElementName) throws Exception {
+    List<XMLEvent> events = get(id, propertySet);
+    if (events == null) {
+      return false;
+    }
+
+    EwsServiceXmlReader reader = new EwsServiceXmlReader(new EventListReader(events), service);
+    reader.read();
+    response.loadFromXml(reader, xmlElementName);
+    return true;
+  }
+
+  /**
+   * Gets the current generation of the cache, which a request takes before it is sent and
+   * passes to {@link #put(ServiceId, PropertySet, List, long)}.
+   *
+   * @return the generation
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Adds a response to the cache.
+   *
+   * @param id          the id of the object in the response, with its change key
+   * @param propertySet the requested property set
+   * @param events      the XML events of the response message
+   */
+  public void put(ServiceId id, PropertySet propertySet, List<XMLEvent> events) {
+    put(id, propertySet, events, getGeneration());
+  }
+
+  /**
+   * Adds a response to the cache, unless the object was invalidated after the response was
+   * requested.
+   *
+   * @param id          the id of the object in the response, with its change key
+   * @param propertySet the requested property set
+   * @param events      the XML events of the response message
+   * @param generation  the generation of the cache when the response was requested
+   */
+  public void put(ServiceId id, PropertySet propertySet, List<XMLEvent> events,
+      long generation) {
+    if (id == null || id.getUniqueId() == null) {
+      return;
+    }
+
+    Entry entry = new Entry(id.getChangeKey(), events);
+    if (entry.size > maximumSize) {
+      return;
+    }
+
+    PropertySetKey key = new PropertySetKey(propertySet);
+    synchronized (this) {
+      Long invalidated = invalidations.get(id.getUniqueId());
+      if (generation < forgottenGeneration || (invalidated != null && generation < invalidated)) {
+        // The response may hold the object as it was before it was invalidated.
+        return;
+      }
+
+      Map<PropertySetKey, Entry> objectEntries = entries.get(id.getUniqueId());
+      if (objectEntries == null) {
+        objectEntries = new HashMap<PropertySetKey, Entry>(2);
+        entries.put(id.getUniqueId(), objectEntries);
+      } else {
+        // Entries of an older version of the object are stale.
+        for (Iterator<Entry> it = objectEntries.values().iterator(); it.hasNext(); ) {
+          Entry existing = it.next();
+          if (!equal(existing.changeKey, entry.changeKey)) {
+            it.remove();
+            removed(existing);
+          }
+        }
+      }
+
+      Entry previous = objectEntries.put(key, entry);
+      if (previous != null) {
+        removed(previous);
+      }
+      count++;
+      size += entry.size;
+      evict();
+    }
+  }
+
+  /**
+   * Removes the entries of an object.
+   *
+   * @param id the id of the object; the change key is ignored
+   */
+  public void invalidate(ServiceId id) {
+    if (id != null && id.getUniqueId() != null) {
+      invalidate(id.getUniqueId());
+    }
+  }
+
+  /**
+   * Removes the entries of the objects a notification event applies to.
+   *
+   * @param event the notification event
+   */
+  public void invalidate(NotificationEvent event) {
+    if (event instanceof ItemEvent) {
+      invalidate(((ItemEvent) event).getItemId());
+      invalidate(((ItemEvent) event).getOldItemId());
+    } else if (event instanceof FolderEvent) {
+      invalidate(((FolderEvent) event).getFolderId());
+      invalidate(((FolderEvent) event).getOldFolderId());
+    }
+    // The counts of the parent folders change as well.
+    invalidate(event.getParentFolderId());
+    invalidate(event.getOldParentFolderId());
+  }
+
+  /**
+   * Removes the entries of the objects notification events apply to.
+   *
+   * @param events the notification events
+   */
+  public void invalidate(Iterable<? extends NotificationEvent> events) {
+    for (NotificationEvent event : events) {
+      invalidate(event);
+    }
+  }
+
+  /**
+   * Removes all entries.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    count = 0;
+    size = 0;
+    invalidations.clear();
+    forgottenGeneration = ++generation;
+  }
+
+  /**
+   * Gets the number of entries.
+   *
+   * @return the number of entries
+   */
+  public synchronized int getCount() {
+    return count;
+  }
+
+  /**
+   * Gets the size of the cached content, in characters.
+   *
+   * @return the size of the cached content
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /**
+   * Gets the number of lookups that found an entry.
+   *
+   * @return the number of hits
+   */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Gets the number of lookups that found no entry.
+   *
+   * @return the number of misses
+   */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Gets the XML events of a cached response.
+   *
+   * @param id          the id of the requested object
+   * @param propertySet the requested property set
+   * @return the XML events, or null if there is no matching entry
+   */
+  List<XMLEvent> get(ServiceId id, PropertySet propertySet) {
+    if (id == null || id.getUniqueId() == null) {
+      return null;
+    }
+
+    PropertySetKey key = new PropertySetKey(propertySet);
+    synchronized (this) {
+      Map<PropertySetKey, Entry> objectEntries = entries.get(id.getUniqueId());
+      Entry entry = objectEntries != null ? objectEntries.get(key) : null;
+      if (entry == null || (id.getChangeKey() != null && !id.getChangeKey().equals(entry.changeKey))) {
+        missCount++;
+        return null;
+      }
+      hitCount++;
+      return entry.events;
+    }
+  }
+
+  /**
+   * Removes the entries of an object.
+   *
+   * @param uniqueId the unique id of the object
+   */
+  private synchronized void invalidate(String uniqueId) {
+    invalidations.remove(uniqueId);
+    invalidations.put(uniqueId, ++generation);
+    if (invalidations.size() > MAXIMUM_INVALIDATIONS) {
+      Iterator<Long> oldest = invalidations.values().iterator();
+      forgottenGeneration = oldest.next();
+      oldest.remove();
+    }
+
+    Map<PropertySetKey, Entry> objectEntries = entries.remove(uniqueId);
+    if (objectEntries != null) {
+      for (Entry entry : objectEntries.values()) {
+        removed(entry);
+      }
+    }
+  }
+
+  /**
+   * Evicts the least recently used objects while the cache is over its limits.
+   */
+  private void evict() {
+    Iterator<Map<PropertySetKey, Entry>> it = entries.values().iterator();
+    while ((count > maximumEntries || size > maximumSize) && it.hasNext()) {
+      for (Entry entry : it.next().values()) {
+        removed(entry);
+      }
+      it.remove();
+    }
+  }
+
+  private void removed(Entry entry) {
+    count--;
+    size -= entry.size;
+  }
+
+  private static boolean equal(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  /**
+   * A cached response.
+   */
+  private static final class Entry {
+
+    private final String changeKey;
+
+    private final List<XMLEvent> events;
+
+    private final long size;
+
+    Entry(String changeKey, List<XMLEvent> events) {
+      this.changeKey = changeKey;
+      this.events = Collections.unmodifiableList(new ArrayList<XMLEvent>(events));
+
+      long size = 0;
+      for (XMLEvent event : events) {
+        size += event.isCharacters() ? event.asCharacters().getData().length() : 1;
+      }
+      this.size = size;
+    }
+  }
+
+  /**
+   * The value of a property set, as it affects the content of a response.
+   */
+  private static final class PropertySetKey {
+
+    private final BasePropertySet basePropertySet;
+
+    private final BodyType requestedBodyType;
+
+    private final Boolean filterHtmlContent;
+
+    private final Boolean convertHtmlCodePageToUTF8;
+
+    private final List<PropertyDefinitionBase> additionalProperties;
+
+    PropertySetKey(PropertySet propertySet) {
+      basePropertySet = propertySet.getBasePropertySet();
+      requestedBodyType = propertySet.getRequestedBodyType();
+      filterHtmlContent = propertySet.getFilterHtmlContent();
+      convertHtmlCodePageToUTF8 = propertySet.getConvertHtmlCodePageToUTF8();
+      additionalProperties = new ArrayList<PropertyDefinitionBase>(propertySet.getCount());
+      for (PropertyDefinitionBase property : propertySet) {
+        additionalProperties.add(property);
+      }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof PropertySetKey)) {
+        return false;
+      }
+      PropertySetKey other = (PropertySetKey) obj;
+      return basePropertySet == other.basePropertySet
+          && requestedBodyType == other.requestedBodyType
+          && equal(filterHtmlContent, other.filterHtmlContent)
+          && equal(convertHtmlCodePageToUTF8, other.convertHtmlCodePageToUTF8)
+          && additionalProperties.equals(other.additionalProperties);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * basePropertySet.hashCode() + additionalProperties.hashCode();
+    }
+
+    private static boolean equal(Boolean a, Boolean b) {
+      return a == null ? b == null : a.equals(b);
+    }
+  }
+}
@@ -4313,6 +4313,28 @@ public class XmlElementNames {
   public static final String GetEventsResponseMessage =
       "GetEventsResponseMessage";
 
+  // SendNotification
+  /**
+   * The Constant SendNotification.
+   */
+  public static final String SendNotification = "SendNotification";
+
+  /**
+   * The Constant SendNotificationResponseMessage.
+   */
+  public static final String SendNotificationResponseMessage =
+      "SendNotificationResponseMessage";
+
+  /**
+   * The Constant SendNotificationResult.
+   */
+  public static final String SendNotificationResult = "SendNotificationResult";
+
+  /**
+   * The Constant SubscriptionStatus.
+   */
+  public static final String SubscriptionStatus = "SubscriptionStatus";
+
   // GetStreamingEvents
   /**
    * The Constant GetStreamingEvents.
@@ -28,6 +28,7 @@ import microsoft.exchange.webservices.data.core.EwsUtilities;
 import microsoft.exchange.webservices.data.core.ExchangeService;
 import microsoft.exchange.webservices.data.core.XmlElementNames;
 import microsoft.exchange.webservices.data.core.enumeration.service.error.ServiceErrorHandling;
+import microsoft.exchange.webservices.data.core.response.GetFolderResponse;
 import microsoft.exchange.webservices.data.core.response.ServiceResponse;
 import microsoft.exchange.webservices.data.core.service.folder.Folder;
 import microsoft.exchange.webservices.data.core.enumeration.misc.ExchangeVersion;
@@ -90,6 +91,17 @@ abstract class GetFolderRequestBase<TResponse extends ServiceResponse> extends G
     return ServiceObjectType.Folder;
   }
 
+  /**
+   * Gets the folder loaded by a response.
+   *
+   * @param response the response
+   * @return the folder
+   */
+  @Override
+  protected Folder getServiceObject(TResponse response) {
+    return ((GetFolderResponse) response).getFolder();
+  }
+
   /**
    * Writes XML elements.
    *
@@ -28,6 +28,7 @@ import microsoft.exchange.webservices.data.core.EwsUtilities;
 import microsoft.exchange.webservices.data.core.ExchangeService;
 import microsoft.exchange.webservices.data.core.XmlElementNames;
 import microsoft.exchange.webservices.data.core.enumeration.service.error.ServiceErrorHandling;
+import microsoft.exchange.webservices.data.core.response.GetItemResponse;
 import microsoft.exchange.webservices.data.core.response.ServiceResponse;
 import microsoft.exchange.webservices.data.core.service.item.Item;
 import microsoft.exchange.webservices.data.core.enumeration.misc.ExchangeVersion;
@@ -90,6 +91,17 @@ abstract class GetItemRequestBase<TResponse extends ServiceResponse> extends Get
     return ServiceObjectType.Item;
   }
 
+  /**
+   * Gets the item loaded by a response.
+   *
+   * @param response the response
+   * @return the item
+   */
+  @Override
+  protected Item getServiceObject(TResponse response) {
+    return ((GetItemResponse) response).getItem();
+  }
+
   /**
    * Writes XML elements.
    *
@@ -23,16 +23,23 @@
 
 package microsoft.exchange.webservices.data.core.request;
 
+import microsoft.exchange.webservices.data.core.EwsServiceXmlReader;
 import microsoft.exchange.webservices.data.core.EwsServiceXmlWriter;
 import microsoft.exchange.webservices.data.core.EwsUtilities;
 import microsoft.exchange.webservices.data.core.ExchangeService;
 import microsoft.exchange.webservices.data.core.PropertySet;
+import microsoft.exchange.webservices.data.core.ServiceObjectCache;
+import microsoft.exchange.webservices.data.core.enumeration.service.ServiceResult;
 import microsoft.exchange.webservices.data.core.enumeration.service.error.ServiceErrorHandling;
 import microsoft.exchange.webservices.data.core.response.ServiceResponse;
 import microsoft.exchange.webservices.data.core.service.ServiceObject;
 import microsoft.exchange.webservices.data.core.enumeration.service.ServiceObjectType;
 import microsoft.exchange.webservices.data.core.exception.service.local.ServiceLocalException;
 
+import javax.xml.stream.events.XMLEvent;
+
+import java.util.List;
+
 /**
  * Represents an abstract Get request.
  *
@@ -48,6 +55,11 @@ abstract class GetRequest<TServiceObject extends ServiceObject,
    */
   private PropertySet propertySet;
 
+  /**
+   * The generation of the cache of the service when this request was sent.
+   */
+  private long cacheGeneration;
+
   /**
    * Initializes a new instance of the class.
    *
@@ -72,6 +84,12 @@ abstract class GetRequest<TServiceObject extends ServiceObject,
     EwsUtilities.validateParam(this.propertySet, "PropertySet");
     this.propertySet
         .validateForRequest(this, false /* summaryPropertiesOnly */);
+
+    // The request is sent right after it is validated.
+    ServiceObjectCache cache = this.getService().getServiceObjectCache();
+    if (cache != null) {
+      this.cacheGeneration = cache.getGeneration();
+    }
   }
 
   /**
@@ -81,6 +99,48 @@ abstract class GetRequest<TServiceObject extends ServiceObject,
    */
   protected abstract ServiceObjectType getServiceObjectType();
 
+  /**
+   * Gets the service object loaded by a response.
+   *
+   * @param response the response
+   * @return the service object, or null if there is none
+   */
+  protected abstract TServiceObject getServiceObject(TResponse response);
+
+  /**
+   * Loads a response message from XML, and adds successful responses to the cache of
+   * the service, if any.
+   *
+   * @param reader        The reader.
+   * @param response      The response.
+   * @param responseIndex Index of the response.
+   * @throws Exception the exception
+   */
+  @Override
+  protected void loadResponseFromXml(EwsServiceXmlReader reader, TResponse response,
+      int responseIndex) throws Exception {
+    ServiceObjectCache cache = this.getService().getServiceObjectCache();
+    if (cache == null) {
+      super.loadResponseFromXml(reader, response, responseIndex);
+      return;
+    }
+
+    reader.startRecording();
+    List<XMLEvent> events;
+    try {
+      super.loadResponseFromXml(reader, response, responseIndex);
+    } finally {
+      events = reader.stopRecording();
+    }
+
+    if (response.getResult() == ServiceResult.Success) {
+      TServiceObject serviceObject = this.getServiceObject(response);
+      if (serviceObject != null) {
+        cache.put(serviceObject.getId(), this.propertySet, events, this.cacheGeneration);
+      }
+    }
+  }
+
   /**
    * Gets the type of the service object this request applies to.
    *
@@ -30,11 +30,13 @@ import microsoft.exchange.webservices.data.core.enumeration.misc.HangingRequestD
 import microsoft.exchange.webservices.data.core.enumeration.misc.TraceFlags;
 import microsoft.exchange.webservices.data.core.exception.http.EWSHttpException;
 import microsoft.exchange.webservices.data.core.exception.misc.ArgumentException;
+import microsoft.exchange.webservices.data.core.exception.service.local.ServiceLocalException;
 import microsoft.exchange.webservices.data.core.exception.service.local.ServiceVersionException;
 import microsoft.exchange.webservices.data.core.exception.service.local.ServiceXmlDeserializationException;
 import microsoft.exchange.webservices.data.core.exception.service.remote.ServiceRequestException;
 import microsoft.exchange.webservices.data.core.exception.xml.XmlException;
 import microsoft.exchange.webservices.data.misc.HangingTraceStream;
+import microsoft.exchange.webservices.data.misc.ResponseReaderPool;
 import microsoft.exchange.webservices.data.security.XmlNodeType;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -49,9 +51,8 @@ import java.net.SocketTimeoutException;
 import java.net.UnknownServiceException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 
 /**
@@ -82,6 +83,11 @@ public abstract class HangingServiceRequestBase<T> extends ServiceRequestBase<T>
    */
   private static volatile boolean logAllWireBytes = false;
 
+  /**
+   * Executor running the response readers of all hanging requests.
+   */
+  private static Executor responseReaderExecutor;
+
   /**
    * Callback delegate to handle response objects
    */
@@ -120,6 +126,32 @@ public abstract class HangingServiceRequestBase<T> extends ServiceRequestBase<T>
     HangingServiceRequestBase.logAllWireBytes = logAllWireBytes;
   }
 
+  /**
+   * Gets the executor running the response readers of all hanging requests. Unless one
+   * has been set, a shared {@link ResponseReaderPool} is created on first use.
+   *
+   * @return the response reader executor
+   */
+  public static synchronized Executor getResponseReaderExecutor() {
+    if (responseReaderExecutor == null) {
+      responseReaderExecutor = new ResponseReaderPool();
+    }
+    return responseReaderExecutor;
+  }
+
+  /**
+   * Sets the executor running the response readers of hanging requests opened from now on.
+   * Each reader blocks for as long as its connection is open, so the executor must run
+   * every task it accepts right away, and reject the ones it cannot run. Connections
+   * already open keep their readers. The previous executor is not shut down.
+   *
+   * @param executor the response reader executor, or null to use a shared
+   *                 {@link ResponseReaderPool}
+   */
+  public static synchronized void setResponseReaderExecutor(Executor executor) {
+    responseReaderExecutor = executor;
+  }
+
   /**
    * Disconnect events Occur when the hanging request is disconnected.
    */
@@ -252,7 +284,12 @@ public abstract class HangingServiceRequestBase<T> extends ServiceRequestBase<T>
     }
   }
 
-  private boolean isConnected;
+  private volatile boolean isConnected;
+
+  /**
+   * Guards the disconnection, which both the response reader and the user may start.
+   */
+  private final Object disconnectLock = new Object();
 
   /**
    * Gets a value indicating whether this instance is connected.
@@ -267,17 +304,30 @@ public abstract class HangingServiceRequestBase<T> extends ServiceRequestBase<T>
     this.isConnected = value;
   }
 
+  /**
+   * Marks this request as disconnected.
+   *
+   * @return true if this request was connected, false if it was already disconnected
+   */
+  private boolean setDisconnected() {
+    synchronized (this.disconnectLock) {
+      boolean wasConnected = this.isConnected;
+      this.isConnected = false;
+      return wasConnected;
+    }
+  }
+
   /**
    * Disconnects the request.
    */
   public void disconnect() {
     synchronized (this) {
-      try {
-        this.response.close();
-      } catch (IOException e) {
-        // Ignore exception on disconnection
+      if (this.setDisconnected()) {
+        // The server only ends the response when the connection times out, so it is not
+        // read; the response reader then fails, but the request is already disconnected.
+        this.response.abort();
+        this.internalOnDisconnect(HangingRequestDisconnectReason.UserInitiated, null);
       }
-      this.disconnect(HangingRequestDisconnectReason.UserInitiated, null);
     }
   }
 
@@ -288,7 +338,7 @@ public abstract class HangingServiceRequestBase<T> extends ServiceRequestBase<T>
    * @param exception The exception.
    */
   public void disconnect(HangingRequestDisconnectReason reason, Exception exception) {
-    if (this.isConnected()) {
+    if (this.setDisconnected()) {
       try {
         this.response.close();
       } catch (IOException e) {
@@ -303,7 +353,7 @@ public abstract class HangingServiceRequestBase<T> extends ServiceRequestBase<T>
    * @throws XMLStreamException the XML stream exception
    */
   private void internalOnConnect() throws XMLStreamException,
-      IOException, EWSHttpException {
+      IOException, EWSHttpException, ServiceLocalException {
     if (!this.isConnected()) {
       this.isConnected = true;
 
@@ -313,24 +363,19 @@ public abstract class HangingServiceRequestBase<T> extends ServiceRequestBase<T>
             TraceFlags.EwsResponseHttpHeaders,
             this.response);
       }
-      int poolSize = 1;
-
-      int maxPoolSize = 1;
-
-      long keepAliveTime = 10;
 
-      final ArrayBlockingQueue<Runnable> queue =
-          new ArrayBlockingQueue<Runnable>(
-              1);
-      ThreadPoolExecutor threadPool = new ThreadPoolExecutor(poolSize,
-          maxPoolSize,
-          keepAliveTime, TimeUnit.SECONDS, queue);
-      threadPool.execute(new Runnable() {
-        public void run() {
-          parseResponses();
-        }
-      });
-      threadPool.shutdown();
+      try {
+        getResponseReaderExecutor().execute(new Runnable() {
+          public void run() {
+            parseResponses();
+          }
+        });
+      } catch (RejectedExecutionException ex) {
+        this.isConnected = false;
+        this.response.close();
+        throw new ServiceLocalException(
+            "The maximum number of open hanging requests has been reached.", ex);
+      }
     }
   }
 
@@ -342,12 +387,9 @@ public abstract class HangingServiceRequestBase<T> extends ServiceRequestBase<T>
    */
   private void internalOnDisconnect(HangingRequestDisconnectReason reason,
       Exception exception) {
-    if (this.isConnected()) {
-      this.isConnected = false;
-      for (IHangingRequestDisconnectHandler disconnect : onDisconnectList) {
-        disconnect.hangingRequestDisconnectHandler(this,
-            new HangingRequestDisconnectEventArgs(reason, exception));
-      }
+    for (IHangingRequestDisconnectHandler disconnect : onDisconnectList) {
+      disconnect.hangingRequestDisconnectHandler(this,
+          new HangingRequestDisconnectEventArgs(reason, exception));
     }
   }
 
@@ -29,14 +29,18 @@ import org.apache.http.Header;
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.NTCredentials;
+import org.apache.http.client.CookieStore;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.config.AuthSchemes;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.entity.ContentProducer;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.cookie.BasicClientCookie;
 import org.apache.http.util.EntityUtils;
 
 import java.io.BufferedInputStream;
@@ -44,8 +48,12 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 
@@ -94,6 +102,18 @@ public class HttpClientWebRequest extends HttpWebRequest {
     httpPost = null;
   }
 
+  /**
+   * Aborts the request. The connection is closed rather than released, so a response the
+   * server is still sending, such as the events of a hanging request, is not read to its end.
+   */
+  @Override
+  public void abort() {
+    if (httpPost != null) {
+      httpPost.abort();
+    }
+    httpPost = null;
+  }
+
   /**
    * Prepares the request by setting appropriate headers, authentication, timeouts, etc.
    */
@@ -209,6 +229,62 @@ public class HttpClientWebRequest extends HttpWebRequest {
     return os;
   }
 
+  /**
+   * Sets the producer that writes the request body directly to the connection.
+   * The body is sent with chunked transfer encoding, after the server has accepted
+   * the request headers (Expect: 100-continue), so that an authentication challenge
+   * does not consume the body.
+   *
+   * @param producer the request body producer
+   * @throws EWSHttpException the EWS http exception
+   */
+  @Override
+  public void setRequestBodyProducer(ContentProducer producer) throws EWSHttpException {
+    throwIfRequestIsNull();
+    httpPost.setEntity(new StreamingRequestEntity(producer));
+    httpPost.setConfig(RequestConfig.copy(httpPost.getConfig()).setExpectContinueEnabled(true).build());
+  }
+
+  /**
+   * Sets a header of the prepared request, replacing the header of the same name.
+   *
+   * @param name  the name of the header
+   * @param value the value of the header
+   * @throws EWSHttpException the EWS http exception
+   */
+  @Override
+  public void setRequestHeader(String name, String value) throws EWSHttpException {
+    throwIfRequestIsNull();
+    httpPost.setHeader(name, value);
+  }
+
+  /**
+   * Adds a cookie sent with the prepared request only. The cookie is added to a cookie
+   * store of this request, which reads and stores the other cookies in the cookie store
+   * of the service, so the cookies are sent in one Cookie header.
+   *
+   * @param name  the name of the cookie
+   * @param value the value of the cookie
+   * @throws EWSHttpException the EWS http exception
+   */
+  @Override
+  public void addRequestCookie(String name, String value) throws EWSHttpException {
+    throwIfRequestIsNull();
+    CookieStore cookieStore = httpContext.getCookieStore();
+    RequestCookieStore requestCookieStore;
+    if (cookieStore instanceof RequestCookieStore) {
+      requestCookieStore = (RequestCookieStore) cookieStore;
+    } else {
+      requestCookieStore = new RequestCookieStore(cookieStore);
+      httpContext.setCookieStore(requestCookieStore);
+    }
+
+    BasicClientCookie cookie = new BasicClientCookie(name, value);
+    cookie.setDomain(getUrl().getHost());
+    cookie.setPath("/");
+    requestCookieStore.requestCookies.put(name, cookie);
+  }
+
   /**
    * Gets the response headers.
    *
@@ -289,7 +365,18 @@ public class HttpClientWebRequest extends HttpWebRequest {
   @Override
   public int executeRequest() throws EWSHttpException, IOException {
     throwIfRequestIsNull();
-    response = httpClient.execute(httpPost, httpContext);
+    try {
+      response = httpClient.execute(httpPost, httpContext);
+    } catch (IOException e) {
+      // The retry of a request whose streamed body failed to serialize fails on the
+      // non-repeatable body, and wraps the serialization failure.
+      for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+        if (cause instanceof RequestSerializationException) {
+          throw (RequestSerializationException) cause;
+        }
+      }
+      throw e;
+    }
     return response.getStatusLine().getStatusCode(); // ?? don't know what is wanted in return
   }
 
@@ -349,4 +436,58 @@ public class HttpClientWebRequest extends HttpWebRequest {
     }
     return map;
   }
+
+
+  /**
+   * The cookies of a request, in addition to the cookies of the service.
+   */
+  private static final class RequestCookieStore implements CookieStore {
+
+    /**
+     * The cookie store of the service.
+     */
+    final CookieStore serviceCookieStore;
+
+    /**
+     * The cookies of the request, by name.
+     */
+    final Map<String, Cookie> requestCookies = new LinkedHashMap<String, Cookie>();
+
+    RequestCookieStore(CookieStore serviceCookieStore) {
+      this.serviceCookieStore = serviceCookieStore;
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+      if (serviceCookieStore != null) {
+        serviceCookieStore.addCookie(cookie);
+      }
+    }
+
+    @Override
+    public List<Cookie> getCookies() {
+      List<Cookie> cookies = new ArrayList<Cookie>();
+      if (serviceCookieStore != null) {
+        for (Cookie cookie : serviceCookieStore.getCookies()) {
+          if (!requestCookies.containsKey(cookie.getName())) {
+            cookies.add(cookie);
+          }
+        }
+      }
+      cookies.addAll(requestCookies.values());
+      return cookies;
+    }
+
+    @Override
+    public boolean clearExpired(Date date) {
+      return serviceCookieStore != null && serviceCookieStore.clearExpired(date);
+    }
+
+    @Override
+    public void clear() {
+      if (serviceCookieStore != null) {
+        serviceCookieStore.clear();
+      }
+    }
+  }
 }
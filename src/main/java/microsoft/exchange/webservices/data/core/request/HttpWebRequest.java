@@ -26,6 +26,7 @@ package microsoft.exchange.webservices.data.core.request;
 import microsoft.exchange.webservices.data.EWSConstants;
 import microsoft.exchange.webservices.data.core.WebProxy;
 import microsoft.exchange.webservices.data.core.exception.http.EWSHttpException;
+import org.apache.http.entity.ContentProducer;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -489,11 +490,44 @@ public abstract class HttpWebRequest {
    */
   public abstract OutputStream getOutputStream() throws EWSHttpException;
 
+  /**
+   * Sets the producer that writes the request body directly to the connection
+   * when the request is executed. Use instead of {@link #getOutputStream()}.
+   *
+   * @param producer the request body producer
+   * @throws EWSHttpException the eWS http exception
+   */
+  public abstract void setRequestBodyProducer(ContentProducer producer) throws EWSHttpException;
+
+  /**
+   * Sets a header of the prepared request, replacing the header of the same name.
+   *
+   * @param name  the name of the header
+   * @param value the value of the header
+   * @throws EWSHttpException the eWS http exception
+   */
+  public abstract void setRequestHeader(String name, String value) throws EWSHttpException;
+
+  /**
+   * Adds a cookie sent with the prepared request only, in the same Cookie header as the
+   * cookies of the service, replacing the cookie of the service of the same name.
+   *
+   * @param name  the name of the cookie
+   * @param value the value of the cookie
+   * @throws EWSHttpException the eWS http exception
+   */
+  public abstract void addRequestCookie(String name, String value) throws EWSHttpException;
+
   /**
    * Close.
    */
   public abstract void close() throws IOException;
 
+  /**
+   * Aborts the request, closing its connection without reading the rest of the response.
+   */
+  public abstract void abort();
+
   /**
    * Prepare connection.
    */
@@ -73,8 +73,7 @@ public abstract class MultiResponseServiceRequest<TResponse extends ServiceRespo
       TResponse response = this.createServiceResponse(
           reader.getService(), i);
 
-      response.loadFromXml(reader, this
-          .getResponseMessageXmlElementName());
+      this.loadResponseFromXml(reader, response, i);
 
       // Add the response to the list after it has been deserialized
       // because the response list updates an overall result as individual
@@ -109,6 +108,20 @@ public abstract class MultiResponseServiceRequest<TResponse extends ServiceRespo
     return serviceResponses;
   }
 
+  /**
+   * Loads a response message from XML. The reader is positioned on the start
+   * element of the response message.
+   *
+   * @param reader        The reader.
+   * @param response      The response.
+   * @param responseIndex Index of the response.
+   * @throws Exception the exception
+   */
+  protected void loadResponseFromXml(EwsServiceXmlReader reader, TResponse response,
+      int responseIndex) throws Exception {
+    response.loadFromXml(reader, this.getResponseMessageXmlElementName());
+  }
+
   /**
    * Creates the service response.
    *
@@ -156,6 +169,7 @@ public abstract class MultiResponseServiceRequest<TResponse extends ServiceRespo
    */
   public ServiceResponseCollection<TResponse> execute() throws Exception {
     ServiceResponseCollection<TResponse> serviceResponses = internalExecute();
+    serviceResponses.setHttpResponseHeaders(this.getHttpResponseHeaders());
 
     if (this.errorHandlingMode == ServiceErrorHandling.ThrowOnError) {
       EwsUtilities.ewsAssert(serviceResponses.getCount() == 1, "MultiResponseServiceRequest.Execute",
@@ -177,6 +191,7 @@ public abstract class MultiResponseServiceRequest<TResponse extends ServiceRespo
    */
   public ServiceResponseCollection<TResponse> endExecute(IAsyncResult asyncResult) throws Exception {
     ServiceResponseCollection<TResponse> serviceResponses = endInternalExecute(asyncResult);
+    serviceResponses.setHttpResponseHeaders(this.getHttpResponseHeaders());
 
     if (this.errorHandlingMode == ServiceErrorHandling.ThrowOnError) {
       EwsUtilities.ewsAssert(serviceResponses.getCount() == 1, "MultiResponseServiceRequest.Execute",
@@ -44,18 +44,23 @@ import microsoft.exchange.webservices.data.core.exception.service.local.ServiceV
 import microsoft.exchange.webservices.data.core.exception.service.local.ServiceXmlDeserializationException;
 import microsoft.exchange.webservices.data.core.exception.service.local.ServiceXmlSerializationException;
 import microsoft.exchange.webservices.data.core.exception.xml.XmlException;
+import microsoft.exchange.webservices.data.misc.ResponseTraceStream;
 import microsoft.exchange.webservices.data.misc.SoapFaultDetails;
 import microsoft.exchange.webservices.data.security.XmlNodeType;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.http.entity.ContentProducer;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.ws.http.HTTPException;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.InflaterInputStream;
 
@@ -71,6 +76,21 @@ public abstract class ServiceRequestBase<T> {
    */
   private ExchangeService service;
 
+  /**
+   * The HTTP headers sent with this request in addition to the headers of the service.
+   */
+  private final Map<String, String> httpHeaders = new HashMap<String, String>();
+
+  /**
+   * The HTTP cookies sent with this request in addition to the cookies of the service.
+   */
+  private final Map<String, String> httpCookies = new HashMap<String, String>();
+
+  /**
+   * The HTTP headers of the last response received by this request.
+   */
+  private volatile Map<String, String> httpResponseHeaders = Collections.emptyMap();
+
   // Methods for subclasses to override
 
   /**
@@ -165,6 +185,51 @@ public abstract class ServiceRequestBase<T> {
     return service;
   }
 
+  /**
+   * Gets the HTTP headers of the last response received by this request. Unlike
+   * {@link ExchangeService#getHttpResponseHeaders()}, they belong to this call even when
+   * other calls run at the same time.
+   *
+   * @return the response headers, which cannot be modified
+   */
+  public Map<String, String> getHttpResponseHeaders() {
+    return this.httpResponseHeaders;
+  }
+
+  /**
+   * Traces the HTTP response headers and keeps them with this request.
+   *
+   * @param response the response
+   * @throws XMLStreamException the XML stream exception
+   * @throws IOException        signals that an I/O exception has occurred
+   * @throws EWSHttpException   the EWS http exception
+   */
+  protected void processHttpResponseHeaders(HttpWebRequest response)
+      throws XMLStreamException, IOException, EWSHttpException {
+    this.httpResponseHeaders = this.service.processHttpResponseHeaders(
+        TraceFlags.EwsResponseHttpHeaders, response);
+  }
+
+  /**
+   * Gets the HTTP headers sent with this request in addition to, or instead of, the
+   * headers of the service, for example to route the request to a specific mailbox.
+   *
+   * @return the HTTP headers
+   */
+  public Map<String, String> getHttpHeaders() {
+    return httpHeaders;
+  }
+
+  /**
+   * Gets the HTTP cookies sent with this request in addition to, or instead of, the
+   * cookies of the service, for example to route the request to a specific server.
+   *
+   * @return the HTTP cookies, by name
+   */
+  public Map<String, String> getHttpCookies() {
+    return httpCookies;
+  }
+
   /**
    * Throw exception if request is not supported in requested server version.
    *
@@ -316,7 +381,7 @@ public abstract class ServiceRequestBase<T> {
   protected void traceResponse(HttpWebRequest request, ByteArrayOutputStream memoryStream)
       throws XMLStreamException, IOException, EWSHttpException {
 
-    this.service.processHttpResponseHeaders(TraceFlags.EwsResponseHttpHeaders, request);
+    this.processHttpResponseHeaders(request);
     String contentType = request.getResponseContentType();
 
     if (!isNullOrEmpty(contentType) && (contentType.startsWith("text/") || contentType
@@ -328,6 +393,26 @@ public abstract class ServiceRequestBase<T> {
 
   }
 
+  /**
+   * Traces the part of the response that was read through a trace stream.
+   *
+   * @param request     the response
+   * @param traceStream the stream the response was parsed from
+   * @throws XMLStreamException the XML stream exception
+   * @throws IOException        signals that an I/O exception has occurred
+   * @throws EWSHttpException   the EWS http exception
+   */
+  protected void traceResponse(HttpWebRequest request, ResponseTraceStream traceStream)
+      throws XMLStreamException, IOException, EWSHttpException {
+    this.traceResponse(request, traceStream.getResponseCopy());
+
+    if (traceStream.getTruncatedByteCount() > 0) {
+      this.service.traceMessage(TraceFlags.EwsResponse, String.format(
+          "Response trace truncated after %d bytes, %d bytes were not traced.",
+          traceStream.getResponseCopy().size(), traceStream.getTruncatedByteCount()));
+    }
+  }
+
   /**
    * Gets the response error stream.
    *
@@ -371,30 +456,25 @@ public abstract class ServiceRequestBase<T> {
     }
 
     /**
-     * If tracing is enabled, we read the entire response into a
-     * MemoryStream so that we can pass it along to the ITraceListener. Then
-     * we parse the response from the MemoryStream.
+     * If tracing is enabled, we parse the response straight from the
+     * network stream through a ResponseTraceStream, which keeps a bounded
+     * copy of what was read so that we can pass it along to the
+     * ITraceListener once parsing is done.
      */
 
     try {
-      this.getService().processHttpResponseHeaders(TraceFlags.EwsResponseHttpHeaders, response);
+      this.processHttpResponseHeaders(response);
 
       if (this.getService().isTraceEnabledFor(TraceFlags.EwsResponse)) {
-        ByteArrayOutputStream memoryStream = new ByteArrayOutputStream();
-        InputStream serviceResponseStream = ServiceRequestBase.getResponseStream(response);
-
-        int data = serviceResponseStream.read();
-        while (data != -1) {
-          memoryStream.write(data);
-          data = serviceResponseStream.read();
+        ResponseTraceStream traceStream = new ResponseTraceStream(
+            ServiceRequestBase.getResponseStream(response), this.getService().getMaximumResponseTraceSize());
+        try {
+          EwsServiceXmlReader ewsXmlReader = new EwsServiceXmlReader(traceStream, this.getService());
+          serviceResponse = this.readResponse(ewsXmlReader);
+        } finally {
+          this.traceResponse(response, traceStream);
+          traceStream.close();
         }
-
-        this.traceResponse(response, memoryStream);
-        ByteArrayInputStream memoryStreamIn = new ByteArrayInputStream(memoryStream.toByteArray());
-        EwsServiceXmlReader ewsXmlReader = new EwsServiceXmlReader(memoryStreamIn, this.getService());
-        serviceResponse = this.readResponse(ewsXmlReader);
-        serviceResponseStream.close();
-        memoryStream.flush();
       } else {
         InputStream responseStream = ServiceRequestBase.getResponseStream(response);
         EwsServiceXmlReader ewsXmlReader = new EwsServiceXmlReader(responseStream, this.getService());
@@ -404,7 +484,7 @@ public abstract class ServiceRequestBase<T> {
       return serviceResponse;
     } catch (HTTPException e) {
       if (e.getMessage() != null) {
-        this.getService().processHttpResponseHeaders(TraceFlags.EwsResponseHttpHeaders, response);
+        this.processHttpResponseHeaders(response);
       }
       throw new ServiceRequestException(String.format("The request failed. %s", e.getMessage()), e);
     } catch (IOException e) {
@@ -479,26 +559,18 @@ public abstract class ServiceRequestBase<T> {
   protected void processWebException(Exception webException, HttpWebRequest req) throws Exception {
     SoapFaultDetails soapFaultDetails;
     if (null != req) {
-      this.getService().processHttpResponseHeaders(TraceFlags.EwsResponseHttpHeaders, req);
+      this.processHttpResponseHeaders(req);
       if (500 == req.getResponseCode()) {
         if (this.service.isTraceEnabledFor(TraceFlags.EwsResponse)) {
-          ByteArrayOutputStream memoryStream = new ByteArrayOutputStream();
-          InputStream serviceResponseStream = ServiceRequestBase.getResponseErrorStream(req);
-          while (true) {
-            int data = serviceResponseStream.read();
-            if (-1 == data) {
-              break;
-            } else {
-              memoryStream.write(data);
-            }
+          ResponseTraceStream traceStream = new ResponseTraceStream(
+              ServiceRequestBase.getResponseErrorStream(req), this.service.getMaximumResponseTraceSize());
+          try {
+            EwsServiceXmlReader reader = new EwsServiceXmlReader(traceStream, this.service);
+            soapFaultDetails = this.readSoapFault(reader);
+          } finally {
+            this.traceResponse(req, traceStream);
+            traceStream.close();
           }
-          memoryStream.flush();
-          serviceResponseStream.close();
-          this.traceResponse(req, memoryStream);
-          ByteArrayInputStream memoryStreamIn = new ByteArrayInputStream(memoryStream.toByteArray());
-          EwsServiceXmlReader reader = new EwsServiceXmlReader(memoryStreamIn, this.service);
-          soapFaultDetails = this.readSoapFault(reader);
-          memoryStream.close();
         } else {
           InputStream serviceResponseStream = ServiceRequestBase.getResponseStream(req);
           EwsServiceXmlReader reader = new EwsServiceXmlReader(serviceResponseStream, this.service);
@@ -663,14 +735,42 @@ public abstract class ServiceRequestBase<T> {
   protected HttpWebRequest buildEwsHttpWebRequest() throws Exception {
     try {
       HttpWebRequest request = service.prepareHttpWebRequest();
+      for (Map.Entry<String, String> header : httpHeaders.entrySet()) {
+        request.setRequestHeader(header.getKey(), header.getValue());
+      }
+      for (Map.Entry<String, String> cookie : httpCookies.entrySet()) {
+        request.addRequestCookie(cookie.getKey(), cookie.getValue());
+      }
 
       service.traceHttpRequestHeaders(TraceFlags.EwsRequestHttpHeaders, request);
 
+      final boolean needSignature =
+          service.getCredentials() != null && service.getCredentials().isNeedSignature();
+
+      // Signing and tracing need the whole request, otherwise it can be
+      // written straight to the connection when the request is sent.
+      if (service.isRequestStreamingEnabled() && !needSignature
+          && !service.isTraceEnabledFor(TraceFlags.EwsRequest)) {
+        request.setRequestBodyProducer(new ContentProducer() {
+          @Override
+          public void writeTo(OutputStream outputStream) throws IOException {
+            try {
+              EwsServiceXmlWriter writer = new EwsServiceXmlWriter(service, outputStream);
+              writeToXml(writer);
+            } catch (IOException e) {
+              throw e;
+            } catch (Exception e) {
+              throw new RequestSerializationException(e);
+            }
+          }
+        });
+        return request;
+      }
+
       ByteArrayOutputStream requestStream = (ByteArrayOutputStream) request.getOutputStream();
 
       EwsServiceXmlWriter writer = new EwsServiceXmlWriter(service, requestStream);
 
-      boolean needSignature = service.getCredentials() != null && service.getCredentials().isNeedSignature();
       writer.setRequireWSSecurityUtilityNamespace(needSignature);
 
       writeToXml(writer);
@@ -704,6 +804,9 @@ public abstract class ServiceRequestBase<T> {
             "The remote server returned an error: (" + request.getResponseCode() + ")" +
             request.getResponseText(), request.getResponseCode());
       }
+    } catch (RequestSerializationException e) {
+      // The request body was streamed and failed to serialize.
+      throw (Exception) e.getCause();
     } catch (IOException e) {
       // Wrap exception.
       throw new ServiceRequestException(String.format("The request failed. %s", e.getMessage()), e);
@@ -738,5 +841,4 @@ public abstract class ServiceRequestBase<T> {
                                         ex);
     }
   }
-
 }
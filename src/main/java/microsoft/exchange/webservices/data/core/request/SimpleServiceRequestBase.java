@@ -24,7 +24,6 @@
 package microsoft.exchange.webservices.data.core.request;
 
 import microsoft.exchange.webservices.data.core.ExchangeService;
-import microsoft.exchange.webservices.data.core.enumeration.misc.TraceFlags;
 import microsoft.exchange.webservices.data.core.exception.service.remote.ServiceRequestException;
 import microsoft.exchange.webservices.data.misc.AsyncCallback;
 import microsoft.exchange.webservices.data.misc.AsyncExecutor;
@@ -67,8 +66,7 @@ public abstract class SimpleServiceRequestBase<T> extends ServiceRequestBase<T>
           format("The request failed. %s", ex.getMessage()), ex);
     } catch (Exception e) {
       if (response != null) {
-        this.getService().processHttpResponseHeaders(TraceFlags.
-            EwsResponseHttpHeaders, response);
+        this.processHttpResponseHeaders(response);
       }
 
       throw new ServiceRequestException(String.format("The request failed. %s", e.getMessage()), e);
@@ -98,10 +96,8 @@ public abstract class SimpleServiceRequestBase<T> extends ServiceRequestBase<T>
     this.validate();
 
     HttpWebRequest request = this.buildEwsHttpWebRequest();
-    AsyncExecutor es = new AsyncExecutor();
     Callable<?> cl = new CallableMethod(request);
-    Future<?> task = es.submit(cl, callback);
-    es.shutdown();
+    Future<?> task = AsyncExecutor.submit(this.getService().getAsyncExecutor(), cl, callback);
 
     return new AsyncRequestResult(this, request, task, null);
   }
@@ -0,0 +1,89 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.core.request;
+
+import org.apache.http.Header;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentProducer;
+import org.apache.http.message.BasicHeader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A request entity that writes its content directly to the connection while the
+ * request is being sent, instead of buffering it first.
+ * <p>
+ * The content length is not known up front, so the entity is sent with chunked
+ * transfer encoding. The entity can only be written once.
+ * </p>
+ */
+public class StreamingRequestEntity extends AbstractHttpEntity {
+
+  private final ContentProducer producer;
+
+  /**
+   * Constructor for StreamingRequestEntity.
+   *
+   * @param producer writes the request content
+   */
+  public StreamingRequestEntity(ContentProducer producer) {
+    super();
+    this.producer = producer;
+    setChunked(true);
+  }
+
+  @Override
+  public long getContentLength() {
+    return -1;
+  }
+
+  @Override
+  public Header getContentType() {
+    return new BasicHeader("Content-Type", "text/xml; charset=utf-8");
+  }
+
+  @Override
+  public boolean isRepeatable() {
+    return false;
+  }
+
+  @Override
+  public InputStream getContent() throws IOException {
+    throw new UnsupportedOperationException("Streaming request entity has no content stream.");
+  }
+
+  @Override
+  public void writeTo(OutputStream out) throws IOException {
+    producer.writeTo(out);
+    out.flush();
+  }
+
+  @Override
+  public boolean isStreaming() {
+    return false;
+  }
+}
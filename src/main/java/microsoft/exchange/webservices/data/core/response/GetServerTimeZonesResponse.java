@@ -28,8 +28,13 @@ import microsoft.exchange.webservices.data.core.XmlElementNames;
 import microsoft.exchange.webservices.data.core.enumeration.misc.XmlNamespace;
 import microsoft.exchange.webservices.data.property.complex.time.TimeZoneDefinition;
 
+import javax.xml.stream.events.XMLEvent;
+
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Represents the response to a GetServerTimeZones request.
@@ -42,6 +47,12 @@ public class GetServerTimeZonesResponse extends ServiceResponse {
   private Collection<TimeZoneDefinition> timeZones =
       new ArrayList<TimeZoneDefinition>();
 
+  /**
+   * The XML events of the time zones, by id.
+   */
+  private Map<String, List<XMLEvent>> timeZoneEvents =
+      new LinkedHashMap<String, List<XMLEvent>>();
+
   /**
    * Initializes a new instance of the class.
    */
@@ -70,7 +81,15 @@ public class GetServerTimeZonesResponse extends ServiceResponse {
             XmlElementNames.TimeZoneDefinition)) {
           TimeZoneDefinition timeZoneDefinition =
               new TimeZoneDefinition();
-          timeZoneDefinition.loadFromXml(reader);
+          reader.startRecording();
+          try {
+            timeZoneDefinition.loadFromXml(reader);
+          } finally {
+            List<XMLEvent> events = reader.stopRecording();
+            if (timeZoneDefinition.getId() != null) {
+              this.timeZoneEvents.put(timeZoneDefinition.getId(), events);
+            }
+          }
 
           this.timeZones.add(timeZoneDefinition);
         }
@@ -90,4 +109,14 @@ public class GetServerTimeZonesResponse extends ServiceResponse {
     return this.timeZones;
   }
 
+  /**
+   * Gets the XML events each time zone was read from, by id, so that the definitions
+   * can be cached and parsed again.
+   *
+   * @return the XML events of the time zones
+   */
+  public Map<String, List<XMLEvent>> getTimeZoneEvents() {
+    return this.timeZoneEvents;
+  }
+
 }
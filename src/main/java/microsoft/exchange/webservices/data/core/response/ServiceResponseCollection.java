@@ -26,8 +26,10 @@ package microsoft.exchange.webservices.data.core.response;
 import microsoft.exchange.webservices.data.core.EwsUtilities;
 import microsoft.exchange.webservices.data.core.enumeration.service.ServiceResult;
 
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Vector;
 
 /**
@@ -48,6 +50,11 @@ public final class ServiceResponseCollection<TResponse extends ServiceResponse>
    */
   private ServiceResult overallResult = ServiceResult.Success;
 
+  /**
+   * The HTTP response headers.
+   */
+  private Map<String, String> httpResponseHeaders = Collections.emptyMap();
+
   /**
    * Initializes a new instance.
    */
@@ -92,6 +99,24 @@ public final class ServiceResponseCollection<TResponse extends ServiceResponse>
     return this.responses.get(index);
   }
 
+  /**
+   * Gets the HTTP headers of the response these responses were read from.
+   *
+   * @return the response headers
+   */
+  public Map<String, String> getHttpResponseHeaders() {
+    return this.httpResponseHeaders;
+  }
+
+  /**
+   * Sets the HTTP headers of the response these responses were read from.
+   *
+   * @param httpResponseHeaders the response headers
+   */
+  public void setHttpResponseHeaders(Map<String, String> httpResponseHeaders) {
+    this.httpResponseHeaders = httpResponseHeaders;
+  }
+
   /**
    * Gets a value indicating the overall result of the request that
    * generated this response collection. If all of the response have their
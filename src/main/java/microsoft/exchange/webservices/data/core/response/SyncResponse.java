@@ -26,6 +26,7 @@ package microsoft.exchange.webservices.data.core.response;
 import microsoft.exchange.webservices.data.attribute.EditorBrowsable;
 import microsoft.exchange.webservices.data.core.EwsServiceXmlReader;
 import microsoft.exchange.webservices.data.core.EwsUtilities;
+import microsoft.exchange.webservices.data.core.ServiceObjectCache;
 import microsoft.exchange.webservices.data.core.PropertySet;
 import microsoft.exchange.webservices.data.core.XmlElementNames;
 import microsoft.exchange.webservices.data.core.service.ServiceObject;
@@ -164,6 +165,12 @@ public abstract class SyncResponse<TServiceObject extends ServiceObject,
                 change.getChangeType().toString());
 
             this.changes.add(change);
+
+            // Cached copies of the changed object are out of date.
+            ServiceObjectCache cache = reader.getService().getServiceObjectCache();
+            if (cache != null) {
+              cache.invalidate(change.getId());
+            }
           }
         }
       } while (!reader.isEndElement(XmlNamespace.Messages,
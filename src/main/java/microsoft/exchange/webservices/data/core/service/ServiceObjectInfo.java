@@ -73,12 +73,20 @@ public class ServiceObjectInfo {
    */
   private Map<String, Class<?>> xmlElementNameToServiceObjectClassMap;
 
+  /**
+   * The service object constructors with service param, by xml element name.
+   */
+  private Map<String, ICreateServiceObjectWithServiceParam>
+      serviceObjectConstructorsByXmlElementName;
+
   /**
    * Default constructor.
    */
   public ServiceObjectInfo() {
     this.xmlElementNameToServiceObjectClassMap =
         new HashMap<String, Class<?>>();
+    this.serviceObjectConstructorsByXmlElementName =
+        new HashMap<String, ICreateServiceObjectWithServiceParam>();
     this.serviceObjectConstructorsWithServiceParam =
         new HashMap<Class<?>, ICreateServiceObjectWithServiceParam>();
     this.serviceObjectConstructorsWithAttachmentParam =
@@ -334,6 +342,8 @@ public class ServiceObjectInfo {
       ICreateServiceObjectWithServiceParam createServiceObjectWithServiceParam,
       ICreateServiceObjectWithAttachmentParam createServiceObjectWithAttachmentParam) {
     this.xmlElementNameToServiceObjectClassMap.put(xmlElementName, cls);
+    this.serviceObjectConstructorsByXmlElementName.put(xmlElementName,
+        createServiceObjectWithServiceParam);
     this.serviceObjectConstructorsWithServiceParam.put(cls,
         createServiceObjectWithServiceParam);
     if (createServiceObjectWithAttachmentParam != null) {
@@ -351,6 +361,18 @@ public class ServiceObjectInfo {
     return this.xmlElementNameToServiceObjectClassMap;
   }
 
+  /**
+   * Return Dictionary that maps from element name to
+   * CreateServiceObjectWithServiceParam delegate with ExchangeService
+   * parameter, so that an element is instantiated with a single lookup.
+   *
+   * @return the service object constructors by xml element name
+   */
+  public Map<String, ICreateServiceObjectWithServiceParam>
+  getServiceObjectConstructorsByXmlElementName() {
+    return this.serviceObjectConstructorsByXmlElementName;
+  }
+
   /**
    * Return Dictionary that maps from ServiceObject Type to
    * CreateServiceObjectWithServiceParam delegate with ExchangeService
@@ -38,14 +38,11 @@ import microsoft.exchange.webservices.data.property.definition.ComplexPropertyDe
 import microsoft.exchange.webservices.data.property.definition.IndexedPropertyDefinition;
 import microsoft.exchange.webservices.data.property.definition.PropertyDefinition;
 import microsoft.exchange.webservices.data.property.definition.PropertyDefinitionBase;
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -57,58 +54,42 @@ import java.util.Map;
 public abstract class ServiceObjectSchema implements
     Iterable<PropertyDefinition> {
 
-  private static final Log LOG = LogFactory.getLog(ServiceObjectSchema.class);
-
   /**
    * The lock object.
    */
   private static final Object lockObject = new Object();
 
   /**
-   * List of all schema types. If you add a new ServiceObject subclass that
-   * has an associated schema, add the schema type to the list below.
+   * List of all schema. If you add a new ServiceObject subclass that has an
+   * associated schema, add the schema instance to the list below. The
+   * property definitions are collected from what each schema registers, so
+   * building the registry involves no reflection.
    */
-  private static LazyMember<List<Class<?>>> allSchemaTypes = new
-      LazyMember<List<Class<?>>>(new
-                                     ILazyMember<List<Class<?>>>() {
-                                       public List<Class<?>> createInstance() {
-                                         List<Class<?>> typeList = new ArrayList<Class<?>>();
-                                         // typeList.add()
-                                        /*
-					 * typeList.add(AppointmentSchema.class);
-					 * typeList.add(CalendarResponseObjectSchema.class);
-					 * typeList.add(CancelMeetingMessageSchema.class);
-					 * typeList.add(ContactGroupSchema.class);
-					 * typeList.add(ContactSchema.class);
-					 * typeList.add(EmailMessageSchema.class);
-					 * typeList.add(FolderSchema.class);
-					 * typeList.add(ItemSchema.class);
-					 * typeList.add(MeetingMessageSchema.class);
-					 * typeList.add(MeetingRequestSchema.class);
-					 * typeList.add(PostItemSchema.class);
-					 * typeList.add(PostReplySchema.class);
-					 * typeList.add(ResponseMessageSchema.class);
-					 * typeList.add(ResponseObjectSchema.class);
-					 * typeList.add(ServiceObjectSchema.class);
-					 * typeList.add(SearchFolderSchema.class);
-					 * typeList.add(TaskSchema.class);
-					 */
-                                         // Verify that all Schema types in the Managed API assembly
-                                         // have been included.
-					/*
-					 * var missingTypes = from type in
-					 * Assembly.GetExecutingAssembly().GetTypes() where
-					 * type.IsSubclassOf(typeof(ServiceObjectSchema)) &&
-					 * !typeList.Contains(type) select type; if
-					 * (missingTypes.Count() > 0) { throw new
-					 * ServiceLocalException
-					 * ("SchemaTypeList does not include all 
-					 * defined schema types."
-					 * ); }
-					 */
-                                         return typeList;
-                                       }
-                                     });
+  private static LazyMember<List<ServiceObjectSchema>> allSchemas = new
+      LazyMember<List<ServiceObjectSchema>>(
+      new ILazyMember<List<ServiceObjectSchema>>() {
+        public List<ServiceObjectSchema> createInstance() {
+          List<ServiceObjectSchema> schemaList = new ArrayList<ServiceObjectSchema>();
+          schemaList.add(AppointmentSchema.Instance);
+          schemaList.add(CalendarResponseObjectSchema.Instance);
+          schemaList.add(CancelMeetingMessageSchema.Instance);
+          schemaList.add(ContactGroupSchema.Instance);
+          schemaList.add(ContactSchema.Instance);
+          schemaList.add(ConversationSchema.Instance);
+          schemaList.add(EmailMessageSchema.Instance);
+          schemaList.add(FolderSchema.Instance);
+          schemaList.add(ItemSchema.Instance);
+          schemaList.add(MeetingMessageSchema.Instance);
+          schemaList.add(MeetingRequestSchema.Instance);
+          schemaList.add(PostItemSchema.Instance);
+          schemaList.add(PostReplySchema.Instance);
+          schemaList.add(ResponseMessageSchema.Instance);
+          schemaList.add(ResponseObjectSchema.Instance);
+          schemaList.add(SearchFolderSchema.Instance);
+          schemaList.add(TaskSchema.Instance);
+          return schemaList;
+        }
+      });
 
   /**
    * Dictionary of all property definitions.
@@ -120,9 +101,9 @@ public abstract class ServiceObjectSchema implements
         public Map<String, PropertyDefinitionBase> createInstance() {
           Map<String, PropertyDefinitionBase> propDefDictionary =
               new HashMap<String, PropertyDefinitionBase>();
-          for (Class<?> c : ServiceObjectSchema.allSchemaTypes
+          for (ServiceObjectSchema schema : ServiceObjectSchema.allSchemas
               .getMember()) {
-            ServiceObjectSchema.addSchemaPropertiesToDictionary(c,
+            ServiceObjectSchema.addSchemaPropertiesToDictionary(schema,
                 propDefDictionary);
           }
           return propDefDictionary;
@@ -132,103 +113,65 @@ public abstract class ServiceObjectSchema implements
   /**
    * Adds schema property to dictionary.
    *
-   * @param type              Schema type.
+   * @param schema            Schema.
    * @param propDefDictionary The property definition dictionary.
    */
-  protected static void addSchemaPropertiesToDictionary(Class<?> type,
+  protected static void addSchemaPropertiesToDictionary(ServiceObjectSchema schema,
       Map<String, PropertyDefinitionBase> propDefDictionary) {
-    Field[] fields = type.getDeclaredFields();
-    for (Field field : fields) {
-      int modifier = field.getModifiers();
-      if (Modifier.isPublic(modifier) && Modifier.isStatic(modifier)) {
-        Object o;
-        try {
-          o = field.get(null);
-          if (o instanceof PropertyDefinition) {
-            PropertyDefinition propertyDefinition =
-                (PropertyDefinition) o;
-            // Some property definitions descend from
-            // ServiceObjectPropertyDefinition but don't have
-            // a Uri, like ExtendedProperties. Ignore them.
-            if (null != propertyDefinition.getUri() &&
-                !propertyDefinition.getUri().isEmpty()) {
-              PropertyDefinitionBase existingPropertyDefinition;
-              if (propDefDictionary
-                  .containsKey(propertyDefinition.getUri())) {
-                existingPropertyDefinition = propDefDictionary
-                    .get(propertyDefinition.getUri());
-                EwsUtilities
-                    .ewsAssert(existingPropertyDefinition == propertyDefinition,
-                               "Schema.allSchemaProperties." + "delegate",
-                               String.format("There are at least " +
-                                             "two distinct property " +
-                                             "definitions with the" +
-                                             " following URI: %s", propertyDefinition.getUri()));
-              } else {
-                propDefDictionary.put(propertyDefinition
-                    .getUri(), propertyDefinition);
-                // The following is a "generic hack" to register
-                // property that are not public and
-                // thus not returned by the above GetFields
-                // call. It is currently solely used to register
-                // the MeetingTimeZone property.
-                List<PropertyDefinition> associatedInternalProperties =
-                    propertyDefinition.getAssociatedInternalProperties();
-                for (PropertyDefinition associatedInternalProperty : associatedInternalProperties) {
-                  propDefDictionary
-                      .put(associatedInternalProperty
-                              .getUri(),
-                          associatedInternalProperty);
-                }
-
-              }
-            }
+    for (PropertyDefinition propertyDefinition : schema.properties.values()) {
+      // Some property definitions descend from
+      // ServiceObjectPropertyDefinition but don't have
+      // a Uri, like ExtendedProperties. Ignore them.
+      if (null != propertyDefinition.getUri() &&
+          !propertyDefinition.getUri().isEmpty()) {
+        PropertyDefinitionBase existingPropertyDefinition;
+        if (propDefDictionary
+            .containsKey(propertyDefinition.getUri())) {
+          existingPropertyDefinition = propDefDictionary
+              .get(propertyDefinition.getUri());
+          EwsUtilities
+              .ewsAssert(existingPropertyDefinition == propertyDefinition,
+                         "Schema.allSchemaProperties." + "delegate",
+                         String.format("There are at least " +
+                                       "two distinct property " +
+                                       "definitions with the" +
+                                       " following URI: %s", propertyDefinition.getUri()));
+        } else {
+          propDefDictionary.put(propertyDefinition
+              .getUri(), propertyDefinition);
+          // Register the property that are not registered by
+          // any schema. It is currently solely used to register
+          // the MeetingTimeZone property.
+          List<PropertyDefinition> associatedInternalProperties =
+              propertyDefinition.getAssociatedInternalProperties();
+          for (PropertyDefinition associatedInternalProperty : associatedInternalProperties) {
+            propDefDictionary
+                .put(associatedInternalProperty
+                        .getUri(),
+                    associatedInternalProperty);
           }
-        } catch (IllegalArgumentException e) {
-          LOG.error(e);
-
-          // Skip the field
-        } catch (IllegalAccessException e) {
-          LOG.error(e);
 
-          // Skip the field
         }
-
       }
     }
   }
 
   /**
-   * Adds the schema property names to dictionary.
+   * Adds the schema property names to dictionary. A property is named after
+   * its XML element.
    *
-   * @param type                   The type.
+   * @param schema                 The schema.
    * @param propertyNameDictionary The property name dictionary.
    */
-  protected static void addSchemaPropertyNamesToDictionary(Class<?> type,
+  protected static void addSchemaPropertyNamesToDictionary(ServiceObjectSchema schema,
       Map<PropertyDefinition, String> propertyNameDictionary) {
-
-    Field[] fields = type.getDeclaredFields();
-    for (Field field : fields) {
-      int modifier = field.getModifiers();
-      if (Modifier.isPublic(modifier) && Modifier.isStatic(modifier)) {
-        Object o;
-        try {
-          o = field.get(null);
-          if (o instanceof PropertyDefinition) {
-            PropertyDefinition propertyDefinition =
-                (PropertyDefinition) o;
-            propertyNameDictionary.put(propertyDefinition, field
-                .getName());
-          }
-        } catch (IllegalArgumentException e) {
-          LOG.error(e);
-
-          // Skip the field
-        } catch (IllegalAccessException e) {
-          LOG.error(e);
-
-          // Skip the field
-        }
+    for (PropertyDefinition propertyDefinition : schema.properties.values()) {
+      propertyNameDictionary.put(propertyDefinition,
+          propertyDefinition.getXmlElement());
+      for (PropertyDefinition associatedInternalProperty
+          : propertyDefinition.getAssociatedInternalProperties()) {
+        propertyNameDictionary.put(associatedInternalProperty,
+            associatedInternalProperty.getXmlElement());
       }
     }
   }
@@ -255,30 +198,12 @@ public abstract class ServiceObjectSchema implements
    */
   public static void initializeSchemaPropertyNames() {
     synchronized (lockObject) {
-      for (Class<?> type : ServiceObjectSchema.allSchemaTypes.getMember()) {
-        Field[] fields = type.getDeclaredFields();
-        for (Field field : fields) {
-          int modifier = field.getModifiers();
-          if (Modifier.isPublic(modifier) &&
-              Modifier.isStatic(modifier)) {
-            Object o;
-            try {
-              o = field.get(null);
-              if (o instanceof PropertyDefinition) {
-                PropertyDefinition propertyDefinition =
-                    (PropertyDefinition) o;
-                propertyDefinition.setName(field.getName());
-              }
-            } catch (IllegalArgumentException e) {
-              LOG.error(e);
-
-              // Skip the field
-            } catch (IllegalAccessException e) {
-              LOG.error(e);
-
-              // Skip the field
-            }
-          }
+      for (ServiceObjectSchema schema : ServiceObjectSchema.allSchemas.getMember()) {
+        Map<PropertyDefinition, String> propertyNames =
+            new HashMap<PropertyDefinition, String>();
+        ServiceObjectSchema.addSchemaPropertyNamesToDictionary(schema, propertyNames);
+        for (Map.Entry<PropertyDefinition, String> entry : propertyNames.entrySet()) {
+          entry.getKey().setName(entry.getValue());
         }
       }
     }
@@ -329,6 +254,18 @@ public abstract class ServiceObjectSchema implements
   private List<IndexedPropertyDefinition> indexedProperties =
       new ArrayList<IndexedPropertyDefinition>();
 
+  /**
+   * The ordinal of each registered property, by property.
+   */
+  private Map<PropertyDefinition, Integer> propertyOrdinals =
+      new IdentityHashMap<PropertyDefinition, Integer>();
+
+  /**
+   * The registered property, by ordinal.
+   */
+  private List<PropertyDefinition> propertiesByOrdinal =
+      new ArrayList<PropertyDefinition>();
+
   /**
    * Registers a schema property.
    *
@@ -340,6 +277,11 @@ public abstract class ServiceObjectSchema implements
       boolean isInternal) {
     this.properties.put(property.getXmlElement(), property);
 
+    if (!this.propertyOrdinals.containsKey(property)) {
+      this.propertyOrdinals.put(property, this.propertiesByOrdinal.size());
+      this.propertiesByOrdinal.add(property);
+    }
+
     if (!isInternal) {
       this.visibleProperties.add(property);
     }
@@ -411,6 +353,38 @@ public abstract class ServiceObjectSchema implements
     return this.firstClassSummaryProperties;
   }
 
+  /**
+   * Gets the number of property registered in this schema. Property ordinals
+   * range from 0 to this number, exclusive.
+   *
+   * @return the property count
+   */
+  public int getPropertyCount() {
+    return this.propertiesByOrdinal.size();
+  }
+
+  /**
+   * Gets the dense ordinal of a property registered in this schema, in
+   * registration order.
+   *
+   * @param propertyDefinition The property definition.
+   * @return the ordinal, or -1 if the property is not registered in this schema
+   */
+  public int getPropertyOrdinal(PropertyDefinition propertyDefinition) {
+    Integer ordinal = this.propertyOrdinals.get(propertyDefinition);
+    return ordinal != null ? ordinal : -1;
+  }
+
+  /**
+   * Gets the property registered in this schema with the specified ordinal.
+   *
+   * @param ordinal The ordinal.
+   * @return the property definition
+   */
+  public PropertyDefinition getPropertyDefinition(int ordinal) {
+    return this.propertiesByOrdinal.get(ordinal);
+  }
+
   /**
    * Tries to get property definition.
    *
@@ -26,14 +26,17 @@ package microsoft.exchange.webservices.data.misc;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public abstract class AbstractAsyncCallback implements Runnable, Callback<Object> {
 
   private static final Log LOG = LogFactory.getLog(AbstractAsyncCallback.class);
 
   Future<?> task;
-  static boolean callbackProcessed = false;
+  private final AtomicBoolean callbackProcessed = new AtomicBoolean();
 
   AbstractAsyncCallback() {
   }
@@ -42,21 +45,30 @@ public abstract class AbstractAsyncCallback implements Runnable, Callback<Object
     this.task = t;
   }
 
+  /**
+   * Waits for the task to be done, then processes it.
+   */
   public void run() {
-    while (!callbackProcessed) {
-
-      if (task.isDone()) {
-        processMe(task);
-        callbackProcessed = true;
-        try {
-          Thread.sleep(1000);
-        } catch (InterruptedException e) {
-          // TODO Auto-generated catch block
-          LOG.error(e);
-        }
-        break;
-      }
+    try {
+      task.get();
+    } catch (InterruptedException e) {
+      LOG.error(e);
+      Thread.currentThread().interrupt();
+      return;
+    } catch (ExecutionException e) {
+      // The task is done; the callback gets the failure from the task.
+    } catch (CancellationException e) {
+      // The task is done; the callback sees that it was cancelled.
+    }
+    onTaskDone();
+  }
 
+  /**
+   * Processes the task, once, after it is done.
+   */
+  void onTaskDone() {
+    if (callbackProcessed.compareAndSet(false, true)) {
+      processMe(task);
     }
   }
 }
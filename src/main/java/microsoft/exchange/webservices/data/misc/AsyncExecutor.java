@@ -23,31 +23,135 @@
 
 package microsoft.exchange.webservices.data.misc;
 
-import java.util.concurrent.ArrayBlockingQueue;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Runs asynchronous requests on a bounded number of daemon threads.
+ * <p>
+ * Tasks beyond the number of threads wait in an unbounded queue of their own, and idle
+ * threads end after a while, so an executor that is no longer used holds no threads.
+ * </p>
+ */
 public class AsyncExecutor extends ThreadPoolExecutor implements ExecutorService {
-  final static ArrayBlockingQueue<Runnable> queue = new ArrayBlockingQueue<Runnable>(1);
 
+  private static final Log LOG = LogFactory.getLog(AsyncExecutor.class);
+
+  /**
+   * The default maximum number of threads.
+   */
+  public static final int DEFAULT_MAXIMUM_THREADS = 5;
+
+  /**
+   * The time, in seconds, after which an idle thread ends.
+   */
+  private static final long KEEP_ALIVE_SECONDS = 10;
+
+  /**
+   * Initializes a new instance with the default maximum number of threads.
+   */
   public AsyncExecutor() {
-    super(1, 5, 10, TimeUnit.SECONDS, queue);
+    this(DEFAULT_MAXIMUM_THREADS);
+  }
+
+  /**
+   * Initializes a new instance running its tasks on daemon threads.
+   *
+   * @param maximumThreads the maximum number of tasks running at the same time
+   */
+  public AsyncExecutor(int maximumThreads) {
+    this(maximumThreads, new ThreadFactory() {
+      private final AtomicInteger threadNumber = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "ews-async-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Initializes a new instance.
+   *
+   * @param maximumThreads the maximum number of tasks running at the same time
+   * @param threadFactory  the factory creating the threads
+   */
+  public AsyncExecutor(int maximumThreads, ThreadFactory threadFactory) {
+    super(maximumThreads, maximumThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), threadFactory);
+    allowCoreThreadTimeOut(true);
   }
 
+  /**
+   * Submits a task whose completion is reported to a callback.
+   *
+   * @param task     the task
+   * @param callback the callback, or null
+   * @param <T>      the type of the result of the task
+   * @return the future result of the task
+   */
   public <T> Future<T> submit(Callable<T> task, AsyncCallback callback) {
+    return submit(this, task, callback);
+  }
+
+  /**
+   * Submits a task to an executor. The callback, if any, is invoked once by the thread
+   * that ran the task, after the task completed, failed or was cancelled.
+   *
+   * @param executor the executor
+   * @param task     the task
+   * @param callback the callback, or null
+   * @param <T>      the type of the result of the task
+   * @return the future result of the task
+   */
+  public static <T> Future<T> submit(Executor executor, Callable<T> task, AsyncCallback callback) {
     if (task == null) {
       throw new NullPointerException();
     }
-    RunnableFuture<T> ftask = newTaskFor(task);
-    execute(ftask);
+    CallbackTask<T> ftask = new CallbackTask<T>(task, callback);
     if (callback != null) {
       callback.setTask(ftask);
     }
-    new Thread(callback).start();
+    executor.execute(ftask);
     return ftask;
   }
+
+  /**
+   * A task that reports its completion to a callback.
+   *
+   * @param <T> the type of the result of the task
+   */
+  private static final class CallbackTask<T> extends FutureTask<T> {
+
+    private final AsyncCallback callback;
+
+    CallbackTask(Callable<T> task, AsyncCallback callback) {
+      super(task);
+      this.callback = callback;
+    }
+
+    @Override
+    protected void done() {
+      if (callback != null) {
+        try {
+          callback.onTaskDone();
+        } catch (RuntimeException e) {
+          LOG.error("Async callback failed", e);
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.misc;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in buckets of increasing width, from 10 milliseconds to 5 minutes.
+ * Recording is lock-free and safe for use by several threads at a time.
+ */
+public final class LatencyHistogram {
+
+  /**
+   * The upper bounds of the buckets, in milliseconds. The last bucket counts the longer
+   * durations.
+   */
+  private static final long[] BUCKET_BOUNDS = {
+      10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 300000
+  };
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+
+  private final AtomicLong count = new AtomicLong();
+
+  private final AtomicLong total = new AtomicLong();
+
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a duration.
+   *
+   * @param millis the duration, in milliseconds
+   */
+  public void record(long millis) {
+    if (millis < 0) {
+      millis = 0;
+    }
+    counts.incrementAndGet(getBucket(millis));
+    count.incrementAndGet();
+    total.addAndGet(millis);
+
+    long currentMax = max.get();
+    while (millis > currentMax && !max.compareAndSet(currentMax, millis)) {
+      currentMax = max.get();
+    }
+  }
+
+  /**
+   * Gets the number of durations recorded.
+   *
+   * @return the count
+   */
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * Gets the longest duration recorded.
+   *
+   * @return the duration, in milliseconds
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Gets the mean of the durations recorded.
+   *
+   * @return the mean, in milliseconds, or 0 if none was recorded
+   */
+  public double getMean() {
+    long n = count.get();
+    return n == 0 ? 0 : (double) total.get() / n;
+  }
+
+  /**
+   * Gets an upper bound of a percentile of the durations recorded: the upper bound of the
+   * bucket containing it, or the longest duration for the last bucket.
+   *
+   * @param percentile the percentile, between 0 and 100
+   * @return the duration, in milliseconds, or 0 if none was recorded
+   */
+  public long getPercentile(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("percentile must be between 0 and 100");
+    }
+    long n = count.get();
+    if (n == 0) {
+      return 0;
+    }
+
+    long rank = (long) Math.ceil(percentile / 100 * n);
+    long seen = 0;
+    for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(BUCKET_BOUNDS[i], max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * Gets the upper bounds of the buckets, in milliseconds.
+   *
+   * @return a copy of the bounds; the last bucket, counting the longer durations, has none
+   */
+  public long[] getBucketBounds() {
+    return BUCKET_BOUNDS.clone();
+  }
+
+  /**
+   * Gets the number of durations recorded in each bucket.
+   *
+   * @return the counts, one more than the bounds
+   */
+  public long[] getBucketCounts() {
+    long[] result = new long[counts.length()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = counts.get(i);
+    }
+    return result;
+  }
+
+  private static int getBucket(long millis) {
+    for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+      if (millis <= BUCKET_BOUNDS[i]) {
+        return i;
+      }
+    }
+    return BUCKET_BOUNDS.length;
+  }
+
+}
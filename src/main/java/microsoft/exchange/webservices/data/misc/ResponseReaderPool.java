@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.misc;
+
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the readers of hanging requests, such as streaming subscription connections, on a
+ * bounded set of reusable daemon threads.
+ * <p>
+ * A reader blocks on its connection for as long as the connection is open, so readers never
+ * queue: each one gets a thread of its own, and a reader submitted while all threads are
+ * busy is rejected instead of waiting for a connection to close. Threads of closed
+ * connections are reused by the next ones and end after a minute without work.
+ * </p>
+ */
+public class ResponseReaderPool extends ThreadPoolExecutor {
+
+  /**
+   * The default maximum number of readers running at the same time.
+   */
+  public static final int DEFAULT_MAXIMUM_READERS = 512;
+
+  /**
+   * The time, in seconds, after which an idle thread ends.
+   */
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  /**
+   * Initializes a new instance with the default maximum number of readers.
+   */
+  public ResponseReaderPool() {
+    this(DEFAULT_MAXIMUM_READERS);
+  }
+
+  /**
+   * Initializes a new instance running its readers on daemon threads.
+   *
+   * @param maximumReaders the maximum number of readers running at the same time
+   */
+  public ResponseReaderPool(int maximumReaders) {
+    this(maximumReaders, new ThreadFactory() {
+      private final AtomicInteger threadNumber = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "ews-response-reader-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Initializes a new instance.
+   *
+   * @param maximumReaders the maximum number of readers running at the same time
+   * @param threadFactory  the factory creating the threads
+   */
+  public ResponseReaderPool(int maximumReaders, ThreadFactory threadFactory) {
+    super(0, maximumReaders, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+        new SynchronousQueue<Runnable>(), threadFactory);
+  }
+
+  /**
+   * Gets the number of readers currently running.
+   *
+   * @return the number of running readers
+   */
+  public int getActiveReaders() {
+    return getActiveCount();
+  }
+}
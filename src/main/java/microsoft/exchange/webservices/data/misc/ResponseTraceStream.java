@@ -0,0 +1,137 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.misc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A stream that copies the bytes it returns into a bounded trace buffer while the
+ * response is parsed straight from the underlying stream.
+ * Bytes beyond the limit are passed through but not copied; only their count is kept.
+ */
+public class ResponseTraceStream extends FilterInputStream {
+
+  private final ByteArrayOutputStream responseCopy;
+  private final int maxTraceSize;
+  private long truncatedByteCount;
+
+  /**
+   * Initializes a new instance of the ResponseTraceStream class.
+   *
+   * @param stream       the stream to read from
+   * @param maxTraceSize the maximum number of bytes to copy into the trace buffer
+   */
+  public ResponseTraceStream(final InputStream stream, final int maxTraceSize) {
+    super(stream);
+    this.maxTraceSize = Math.max(0, maxTraceSize);
+    this.responseCopy = new ByteArrayOutputStream(Math.min(this.maxTraceSize, 8192));
+  }
+
+  @Override
+  public int read() throws IOException {
+    final int data = super.read();
+    if (data != -1) {
+      if (responseCopy.size() < maxTraceSize) {
+        responseCopy.write(data);
+      } else {
+        truncatedByteCount++;
+      }
+    }
+    return data;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int count) throws IOException {
+    final int retVal = super.read(buffer, offset, count);
+    if (retVal > 0) {
+      final int copied = Math.min(retVal, maxTraceSize - responseCopy.size());
+      if (copied > 0) {
+        responseCopy.write(buffer, offset, copied);
+      }
+      truncatedByteCount += retVal - Math.max(copied, 0);
+    }
+    return retVal;
+  }
+
+  /**
+   * Skips by reading, so that skipped bytes are traced as well.
+   *
+   * @param n the number of bytes to skip
+   * @return the number of bytes skipped
+   * @throws IOException on error
+   */
+  @Override
+  public long skip(long n) throws IOException {
+    if (n <= 0) {
+      return 0;
+    }
+    final byte[] buffer = new byte[(int) Math.min(n, 4096)];
+    long skipped = 0;
+    while (skipped < n) {
+      final int retVal = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+      if (retVal < 0) {
+        break;
+      }
+      skipped += retVal;
+    }
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  @Override
+  public synchronized void mark(int readlimit) {
+  }
+
+  @Override
+  public synchronized void reset() throws IOException {
+    throw new IOException("mark/reset not supported");
+  }
+
+  /**
+   * Gets the bytes read so far, up to the trace limit.
+   *
+   * @return the response copy
+   */
+  public ByteArrayOutputStream getResponseCopy() {
+    return responseCopy;
+  }
+
+  /**
+   * Gets the number of bytes that were read but not copied because the trace limit
+   * was reached.
+   *
+   * @return the number of bytes left out of the trace
+   */
+  public long getTruncatedByteCount() {
+    return truncatedByteCount;
+  }
+}
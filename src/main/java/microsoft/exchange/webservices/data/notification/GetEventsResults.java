@@ -24,6 +24,7 @@
 package microsoft.exchange.webservices.data.notification;
 
 import microsoft.exchange.webservices.data.core.EwsServiceXmlReader;
+import microsoft.exchange.webservices.data.core.ServiceObjectCache;
 import microsoft.exchange.webservices.data.core.ILazyMember;
 import microsoft.exchange.webservices.data.core.LazyMember;
 import microsoft.exchange.webservices.data.core.XmlElementNames;
@@ -180,6 +181,12 @@ public final class GetEventsResults {
 
     notificationEvent.loadFromXml(reader, eventElementName);
     this.events.add(notificationEvent);
+
+    // Cached copies of the objects the event applies to are out of date.
+    ServiceObjectCache cache = reader.getService().getServiceObjectCache();
+    if (cache != null) {
+      cache.invalidate(notificationEvent);
+    }
   }
 
   /**
@@ -24,6 +24,7 @@
 package microsoft.exchange.webservices.data.notification;
 
 import microsoft.exchange.webservices.data.core.EwsServiceXmlReader;
+import microsoft.exchange.webservices.data.core.ServiceObjectCache;
 import microsoft.exchange.webservices.data.core.XmlElementNames;
 import microsoft.exchange.webservices.data.core.enumeration.notification.EventType;
 import microsoft.exchange.webservices.data.core.enumeration.misc.XmlNamespace;
@@ -150,6 +151,12 @@ public final class GetStreamingEventsResults {
 
     notificationEvent.loadFromXml(reader, eventElementName);
     notifications.events.add(notificationEvent);
+
+    // Cached copies of the objects the event applies to are out of date.
+    ServiceObjectCache cache = reader.getService().getServiceObjectCache();
+    if (cache != null) {
+      cache.invalidate(notificationEvent);
+    }
   }
 
   /**
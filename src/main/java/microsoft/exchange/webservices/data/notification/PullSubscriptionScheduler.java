@@ -0,0 +1,458 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.notification;
+
+import microsoft.exchange.webservices.data.core.enumeration.misc.error.ServiceError;
+import microsoft.exchange.webservices.data.core.exception.service.remote.ServiceResponseException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Polls many pull subscriptions on a bounded number of threads.
+ * <p>
+ * Each subscription is polled again right away while the server has more events
+ * available, after the minimum interval when events were received, and otherwise after an
+ * interval doubling with each empty poll, up to the maximum interval. The results holding
+ * events are published to a bounded queue per subscription; the events of a subscription
+ * whose queue is full are left on the server until the queue has room, so none are dropped.
+ * Such a subscription is still polled once per maximum interval to keep it alive on the
+ * server: the events received are discarded and the watermark is set back, so that they are
+ * received again later.
+ * </p>
+ * <p>
+ * A poll that fails is retried with the same backoff as an empty poll. Polling stops when
+ * the server reports that the subscription expired or was not found; see
+ * {@link #getLastError(PullSubscription)}.
+ * </p>
+ */
+public final class PullSubscriptionScheduler implements Closeable {
+
+  private static final Log LOG = LogFactory.getLog(PullSubscriptionScheduler.class);
+
+  /**
+   * The default number of threads polling subscriptions.
+   */
+  public static final int DEFAULT_THREADS = 8;
+
+  /**
+   * The default interval, in milliseconds, after a poll that received events.
+   */
+  public static final long DEFAULT_MIN_INTERVAL = 1000;
+
+  /**
+   * The default maximum interval, in milliseconds, between two polls.
+   */
+  public static final long DEFAULT_MAX_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+  /**
+   * The default capacity of the queue of each subscription.
+   */
+  public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+  private static final Random RANDOM = new Random();
+
+  private final ScheduledExecutorService executor;
+
+  private final boolean ownsExecutor;
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+  private volatile long minInterval = DEFAULT_MIN_INTERVAL;
+
+  private volatile long maxInterval = DEFAULT_MAX_INTERVAL;
+
+  private volatile int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+  private volatile boolean closed;
+
+  /**
+   * Initializes a new instance polling on the default number of daemon threads.
+   */
+  public PullSubscriptionScheduler() {
+    this(DEFAULT_THREADS);
+  }
+
+  /**
+   * Initializes a new instance polling on daemon threads, shut down when this scheduler is
+   * closed.
+   *
+   * @param threads the number of threads
+   */
+  public PullSubscriptionScheduler(int threads) {
+    this(new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+      private final AtomicInteger threadNumber = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "ews-pull-poller-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    }), true);
+  }
+
+  /**
+   * Initializes a new instance polling on an executor, which is not shut down when this
+   * scheduler is closed.
+   *
+   * @param executor the executor
+   */
+  public PullSubscriptionScheduler(ScheduledExecutorService executor) {
+    this(executor, false);
+  }
+
+  private PullSubscriptionScheduler(ScheduledExecutorService executor, boolean ownsExecutor) {
+    if (executor == null) {
+      throw new IllegalArgumentException("executor must not be null");
+    }
+    this.executor = executor;
+    this.ownsExecutor = ownsExecutor;
+  }
+
+  /**
+   * Gets the interval after a poll that received events.
+   *
+   * @return the interval, in milliseconds
+   */
+  public long getMinInterval() {
+    return minInterval;
+  }
+
+  /**
+   * Sets the interval after a poll that received events.
+   *
+   * @param minInterval the interval, in milliseconds
+   */
+  public void setMinInterval(long minInterval) {
+    if (minInterval < 1) {
+      throw new IllegalArgumentException("minInterval must be positive");
+    }
+    this.minInterval = minInterval;
+  }
+
+  /**
+   * Gets the maximum interval between two polls.
+   *
+   * @return the interval, in milliseconds
+   */
+  public long getMaxInterval() {
+    return maxInterval;
+  }
+
+  /**
+   * Sets the maximum interval between two polls, also when the queue of a subscription is
+   * full. It should be shorter than the timeout of the subscriptions, after which the server
+   * ends a subscription that was not polled.
+   *
+   * @param maxInterval the interval, in milliseconds
+   */
+  public void setMaxInterval(long maxInterval) {
+    if (maxInterval < 1) {
+      throw new IllegalArgumentException("maxInterval must be positive");
+    }
+    this.maxInterval = maxInterval;
+  }
+
+  /**
+   * Gets the capacity of the queues of the subscriptions added afterwards.
+   *
+   * @return the capacity
+   */
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  /**
+   * Sets the capacity of the queues of the subscriptions added afterwards.
+   *
+   * @param queueCapacity the capacity
+   */
+  public void setQueueCapacity(int queueCapacity) {
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("queueCapacity must be positive");
+    }
+    this.queueCapacity = queueCapacity;
+  }
+
+  /**
+   * Starts polling a subscription. The first poll is delayed by a random part of the
+   * minimum interval, so that subscriptions added together are not polled together.
+   *
+   * @param subscription the subscription
+   * @return the queue receiving the results of the subscription that hold events
+   */
+  public BlockingQueue<GetEventsResults> add(PullSubscription subscription) {
+    if (subscription == null || subscription.getId() == null) {
+      throw new IllegalArgumentException("subscription must not be null and must have an id");
+    }
+    if (closed) {
+      throw new IllegalStateException("The scheduler was closed.");
+    }
+
+    Entry entry = new Entry(subscription, new ArrayBlockingQueue<GetEventsResults>(queueCapacity));
+    Entry previous = entries.put(subscription.getId(), entry);
+    if (previous != null) {
+      previous.cancel();
+    }
+    entry.schedule((long) (RANDOM.nextDouble() * minInterval));
+    return entry.queue;
+  }
+
+  /**
+   * Stops polling a subscription. A poll in progress completes.
+   *
+   * @param subscription the subscription
+   */
+  public void remove(PullSubscription subscription) {
+    Entry entry = entries.remove(subscription.getId());
+    if (entry != null) {
+      entry.cancel();
+    }
+  }
+
+  /**
+   * Gets the queue receiving the results of a subscription.
+   *
+   * @param subscription the subscription
+   * @return the queue, or null if the subscription is not polled
+   */
+  public BlockingQueue<GetEventsResults> getQueue(PullSubscription subscription) {
+    Entry entry = entries.get(subscription.getId());
+    return entry != null ? entry.queue : null;
+  }
+
+  /**
+   * Gets whether a subscription is polled.
+   *
+   * @param subscription the subscription
+   * @return false if the subscription was removed, or polling stopped because the server
+   * ended it
+   */
+  public boolean isPolling(PullSubscription subscription) {
+    Entry entry = entries.get(subscription.getId());
+    return entry != null && !entry.stopped;
+  }
+
+  /**
+   * Gets the exception of the last poll of a subscription.
+   *
+   * @param subscription the subscription
+   * @return the exception, or null if the last poll succeeded
+   */
+  public Exception getLastError(PullSubscription subscription) {
+    Entry entry = entries.get(subscription.getId());
+    return entry != null ? entry.lastError : null;
+  }
+
+  /**
+   * Gets the number of subscriptions added.
+   *
+   * @return the number of subscriptions
+   */
+  public int getSubscriptionCount() {
+    return entries.size();
+  }
+
+  /**
+   * Stops polling all subscriptions.
+   */
+  public void close() {
+    closed = true;
+    for (Entry entry : entries.values()) {
+      entry.cancel();
+    }
+    entries.clear();
+    if (ownsExecutor) {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Gets whether an exception means the server no longer knows the subscription.
+   *
+   * @param exception the exception
+   * @return true if polling is pointless
+   */
+  private static boolean isSubscriptionEnded(Exception exception) {
+    if (!(exception instanceof ServiceResponseException)) {
+      return false;
+    }
+    ServiceError error = ((ServiceResponseException) exception).getErrorCode();
+    return error == ServiceError.ErrorSubscriptionNotFound
+        || error == ServiceError.ErrorExpiredSubscription
+        || error == ServiceError.ErrorInvalidSubscription;
+  }
+
+
+  /**
+   * A polled subscription.
+   */
+  private final class Entry implements Runnable {
+
+    final PullSubscription subscription;
+
+    final BlockingQueue<GetEventsResults> queue;
+
+    /**
+     * The interval after the last empty or failed poll.
+     */
+    long idleInterval;
+
+    /**
+     * The time of the last poll, from System.nanoTime().
+     */
+    long lastPollTime = System.nanoTime();
+
+    volatile Exception lastError;
+
+    volatile boolean stopped;
+
+    private ScheduledFuture<?> future;
+
+    Entry(PullSubscription subscription, BlockingQueue<GetEventsResults> queue) {
+      this.subscription = subscription;
+      this.queue = queue;
+    }
+
+    synchronized void schedule(long delay) {
+      if (stopped || closed) {
+        return;
+      }
+      try {
+        future = executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        stopped = true;
+      }
+    }
+
+    synchronized void cancel() {
+      stopped = true;
+      if (future != null) {
+        future.cancel(false);
+      }
+    }
+
+    @Override
+    public void run() {
+      if (stopped) {
+        return;
+      }
+      if (queue.remainingCapacity() == 0) {
+        // Wait for the consumer; the watermark keeps the events on the server.
+        if (System.nanoTime() - lastPollTime >= TimeUnit.MILLISECONDS.toNanos(maxInterval)
+            && !this.keepAlive()) {
+          return;
+        }
+        this.schedule(minInterval);
+        return;
+      }
+
+      long delay;
+      try {
+        GetEventsResults results = subscription.getEvents();
+        lastPollTime = System.nanoTime();
+        lastError = null;
+        boolean hasEvents = !results.getAllEvents().isEmpty();
+        if (hasEvents) {
+          queue.add(results);
+        }
+
+        if (subscription.isMoreEventsAvailable()) {
+          delay = 0;
+          idleInterval = 0;
+        } else if (hasEvents) {
+          delay = minInterval;
+          idleInterval = 0;
+        } else {
+          delay = this.nextIdleInterval();
+        }
+      } catch (Exception e) {
+        if (!this.failed(e)) {
+          return;
+        }
+        delay = this.nextIdleInterval();
+      }
+      this.schedule(delay);
+    }
+
+    /**
+     * Polls the subscription so that the server does not end it, and sets the watermark
+     * back so that the events received are received again.
+     *
+     * @return false if polling stopped
+     */
+    private boolean keepAlive() {
+      String watermark = subscription.getWaterMark();
+      try {
+        subscription.getEvents();
+        lastPollTime = System.nanoTime();
+        lastError = null;
+        return true;
+      } catch (Exception e) {
+        return this.failed(e);
+      } finally {
+        subscription.setWaterMark(watermark);
+      }
+    }
+
+    /**
+     * Records a failed poll, and stops polling if the server ended the subscription.
+     *
+     * @param e the exception
+     * @return false if polling stopped
+     */
+    private boolean failed(Exception e) {
+      lastError = e;
+      if (isSubscriptionEnded(e)) {
+        LOG.warn("Stopped polling pull subscription " + subscription.getId(), e);
+        stopped = true;
+        return false;
+      }
+      LOG.warn("Polling pull subscription " + subscription.getId() + " failed", e);
+      return true;
+    }
+
+    private long nextIdleInterval() {
+      long max = maxInterval;
+      idleInterval = idleInterval == 0 ? minInterval : Math.min(max, idleInterval * 2);
+      return Math.min(idleInterval, max);
+    }
+  }
+
+}
@@ -0,0 +1,408 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.notification;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import microsoft.exchange.webservices.data.core.EwsServiceXmlReader;
+import microsoft.exchange.webservices.data.core.EwsUtilities;
+import microsoft.exchange.webservices.data.core.ExchangeService;
+import microsoft.exchange.webservices.data.core.XmlElementNames;
+import microsoft.exchange.webservices.data.core.enumeration.misc.XmlNamespace;
+import microsoft.exchange.webservices.data.core.enumeration.service.ServiceResult;
+import microsoft.exchange.webservices.data.core.response.GetEventsResponse;
+import microsoft.exchange.webservices.data.security.XmlNodeType;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Receives the notifications Exchange sends to the URL of push subscriptions.
+ * <p>
+ * The receiver is an embedded HTTP server. Each SendNotification request is parsed with the
+ * same readers as the results of GetEvents, and its events are dispatched to the registered
+ * delegates on a worker thread. Exchange is then answered with the status of the
+ * subscription: OK, or Unsubscribe if {@link #unsubscribe(String)} was called for it.
+ * A subscription Exchange does not notify within the unsubscribe expiry is assumed to be
+ * gone, and the unsubscribe request is dropped.
+ * </p>
+ * <p>
+ * Exchange does not send the next notification of a subscription before it is answered, so
+ * the delegates see the events of a subscription in order; they should not block, since a
+ * notification that is not answered in time is sent again.
+ * </p>
+ */
+public final class PushNotificationReceiver implements Closeable {
+
+  private static final Log LOG = LogFactory.getLog(PushNotificationReceiver.class);
+
+  /**
+   * The default number of worker threads.
+   */
+  public static final int DEFAULT_THREADS = 4;
+
+  /**
+   * The default time, in milliseconds, an unsubscribe request is kept. Exchange sends a
+   * status notification at least once per status frequency, which is at most 1440 minutes.
+   */
+  public static final long DEFAULT_UNSUBSCRIBE_EXPIRY = TimeUnit.DAYS.toMillis(1);
+
+  /**
+   * The status asking Exchange to keep sending notifications.
+   */
+  private static final String STATUS_OK = "OK";
+
+  /**
+   * The status asking Exchange to end the subscription.
+   */
+  private static final String STATUS_UNSUBSCRIBE = "Unsubscribe";
+
+  private final ExchangeService service;
+
+  private final HttpServer server;
+
+  private final ExecutorService executor;
+
+  private final List<IPushNotificationDelegate> onNotificationEvent =
+      new CopyOnWriteArrayList<IPushNotificationDelegate>();
+
+  /**
+   * The times of the unsubscribe requests, by subscription id.
+   */
+  private final ConcurrentMap<String, Long> unsubscribed = new ConcurrentHashMap<String, Long>();
+
+  private volatile long unsubscribeExpiry = DEFAULT_UNSUBSCRIBE_EXPIRY;
+
+  private boolean started;
+
+
+  /**
+   * Represents a delegate that is invoked when a push notification is received.
+   */
+  public interface IPushNotificationDelegate {
+
+    /**
+     * Handles the events of a notification.
+     *
+     * @param sender         the receiver that received the notification
+     * @param subscriptionId the id of the subscription the events belong to
+     * @param events         the events, not including the status events
+     * @throws Exception the exception, which is logged
+     */
+    void notificationReceived(PushNotificationReceiver sender, String subscriptionId,
+        Iterable<NotificationEvent> events) throws Exception;
+  }
+
+
+  /**
+   * Initializes a new instance listening on an address.
+   *
+   * @param service the service the subscriptions were made with
+   * @param address the address, the port of which is in the callback URL of the subscriptions
+   * @param path    the path of the callback URL
+   * @throws IOException if the address cannot be bound
+   */
+  public PushNotificationReceiver(ExchangeService service, InetSocketAddress address,
+      String path) throws IOException {
+    this(service, HttpServer.create(address, 0), path, DEFAULT_THREADS);
+  }
+
+  /**
+   * Initializes a new instance on a server, which may be an HTTPS server configured by the
+   * caller. The server is stopped when the receiver is closed.
+   *
+   * @param service the service the subscriptions were made with
+   * @param server  the server, not started
+   * @param path    the path of the callback URL
+   * @param threads the number of worker threads
+   */
+  public PushNotificationReceiver(ExchangeService service, HttpServer server, String path,
+      int threads) {
+    if (service == null || server == null || path == null) {
+      throw new IllegalArgumentException("service, server and path must not be null");
+    }
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be positive");
+    }
+    this.service = service;
+    this.server = server;
+    this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      private final AtomicInteger threadNumber = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "ews-push-receiver-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    this.server.setExecutor(this.executor);
+    this.server.createContext(path, new NotificationHandler());
+  }
+
+  /**
+   * Adds a delegate invoked when a notification is received.
+   *
+   * @param delegate the delegate
+   */
+  public void addOnNotificationEvent(IPushNotificationDelegate delegate) {
+    this.onNotificationEvent.add(delegate);
+  }
+
+  /**
+   * Removes a delegate invoked when a notification is received.
+   *
+   * @param delegate the delegate
+   */
+  public void removeNotificationEvent(IPushNotificationDelegate delegate) {
+    this.onNotificationEvent.remove(delegate);
+  }
+
+  /**
+   * Gets how long an unsubscribe request is kept for a subscription Exchange does not notify.
+   *
+   * @return the time, in milliseconds
+   */
+  public long getUnsubscribeExpiry() {
+    return this.unsubscribeExpiry;
+  }
+
+  /**
+   * Sets how long an unsubscribe request is kept for a subscription Exchange does not notify.
+   * It should be longer than the status frequency of the subscriptions.
+   *
+   * @param unsubscribeExpiry the time, in milliseconds
+   */
+  public void setUnsubscribeExpiry(long unsubscribeExpiry) {
+    if (unsubscribeExpiry < 1) {
+      throw new IllegalArgumentException("unsubscribeExpiry must be positive");
+    }
+    this.unsubscribeExpiry = unsubscribeExpiry;
+  }
+
+  /**
+   * Asks Exchange to end a subscription when it next sends a notification for it. Called
+   * from a delegate, it applies to the notification being handled. The request is kept until
+   * Exchange is answered, or until the unsubscribe expiry passed.
+   *
+   * @param subscriptionId the id of the subscription
+   */
+  public void unsubscribe(String subscriptionId) {
+    long now = System.currentTimeMillis();
+    Iterator<Long> times = this.unsubscribed.values().iterator();
+    while (times.hasNext()) {
+      if (now - times.next() >= this.unsubscribeExpiry) {
+        times.remove();
+      }
+    }
+    this.unsubscribed.put(subscriptionId, now);
+  }
+
+  /**
+   * Gets the number of unsubscribe requests not sent to Exchange yet.
+   *
+   * @return the number of requests
+   */
+  int getPendingUnsubscribeCount() {
+    return this.unsubscribed.size();
+  }
+
+  /**
+   * Gets the address the receiver listens on.
+   *
+   * @return the address
+   */
+  public InetSocketAddress getAddress() {
+    return this.server.getAddress();
+  }
+
+  /**
+   * Starts receiving notifications.
+   */
+  public synchronized void start() {
+    if (this.started) {
+      throw new IllegalStateException("The receiver was already started.");
+    }
+    this.started = true;
+    this.server.start();
+  }
+
+  /**
+   * Stops receiving notifications. Notifications being handled are dropped, and Exchange
+   * sends them again.
+   */
+  public void close() {
+    this.server.stop(0);
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * Reads the notifications of a SendNotification request.
+   *
+   * @param stream the body of the request
+   * @return the responses holding the notifications
+   * @throws Exception if the body is not a valid request
+   */
+  List<GetEventsResponse> readNotifications(InputStream stream) throws Exception {
+    List<GetEventsResponse> responses = new ArrayList<GetEventsResponse>();
+    EwsServiceXmlReader reader = new EwsServiceXmlReader(stream, this.service);
+    reader.read(new XmlNodeType(XmlNodeType.START_DOCUMENT));
+    reader.readStartElement(XmlNamespace.Soap, XmlElementNames.SOAPEnvelopeElementName);
+    do {
+      reader.read();
+      if (reader.isStartElement(XmlNamespace.Messages,
+          XmlElementNames.SendNotificationResponseMessage)) {
+        GetEventsResponse response = new GetEventsResponse();
+        response.loadFromXml(reader, XmlElementNames.SendNotificationResponseMessage);
+        responses.add(response);
+      }
+    } while (!reader.isEndElement(XmlNamespace.Soap, XmlElementNames.SOAPEnvelopeElementName));
+    return responses;
+  }
+
+  /**
+   * Dispatches a notification to the delegates.
+   *
+   * @param response the response holding the notification
+   * @return the status of the subscription
+   */
+  String dispatch(GetEventsResponse response) {
+    if (response.getResult() == ServiceResult.Error) {
+      LOG.warn("Received a failed push notification: " + response.getErrorCode() + " "
+          + response.getErrorMessage());
+      return STATUS_OK;
+    }
+
+    GetEventsResults results = response.getResults();
+    String subscriptionId = results.getSubscriptionId();
+    if (!results.getAllEvents().isEmpty()) {
+      for (IPushNotificationDelegate delegate : this.onNotificationEvent) {
+        try {
+          delegate.notificationReceived(this, subscriptionId, results.getAllEvents());
+        } catch (Exception e) {
+          LOG.error("A push notification delegate failed for subscription " + subscriptionId, e);
+        }
+      }
+    }
+
+    return this.unsubscribed.containsKey(subscriptionId) ? STATUS_UNSUBSCRIBE : STATUS_OK;
+  }
+
+  /**
+   * Writes the answer to a SendNotification request.
+   *
+   * @param status the status of the subscription
+   * @return the SOAP envelope
+   */
+  static String buildResult(String status) {
+    return "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+        + "<" + EwsUtilities.EwsSoapNamespacePrefix + ":" + XmlElementNames.SOAPEnvelopeElementName
+        + " xmlns:" + EwsUtilities.EwsSoapNamespacePrefix + "=\"" + EwsUtilities.EwsSoapNamespace
+        + "\"><" + EwsUtilities.EwsSoapNamespacePrefix + ":" + XmlElementNames.SOAPBodyElementName
+        + "><" + XmlElementNames.SendNotificationResult + " xmlns=\""
+        + EwsUtilities.EwsMessagesNamespace + "\"><" + XmlElementNames.SubscriptionStatus + ">"
+        + status + "</" + XmlElementNames.SubscriptionStatus + "></"
+        + XmlElementNames.SendNotificationResult + "></" + EwsUtilities.EwsSoapNamespacePrefix
+        + ":" + XmlElementNames.SOAPBodyElementName + "></" + EwsUtilities.EwsSoapNamespacePrefix
+        + ":" + XmlElementNames.SOAPEnvelopeElementName + ">";
+  }
+
+
+  /**
+   * Handles the SendNotification requests.
+   */
+  private final class NotificationHandler implements HttpHandler {
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      try {
+        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+          exchange.sendResponseHeaders(405, -1);
+          return;
+        }
+
+        List<GetEventsResponse> responses;
+        try {
+          responses = readNotifications(exchange.getRequestBody());
+        } catch (Exception e) {
+          LOG.warn("Received an invalid push notification", e);
+          exchange.sendResponseHeaders(400, -1);
+          return;
+        }
+
+        // A request holds the notifications of one subscription.
+        String status = STATUS_OK;
+        Map<String, Long> answered = new HashMap<String, Long>();
+        for (GetEventsResponse response : responses) {
+          if (STATUS_UNSUBSCRIBE.equals(dispatch(response))) {
+            status = STATUS_UNSUBSCRIBE;
+            String subscriptionId = response.getResults().getSubscriptionId();
+            Long time = unsubscribed.remove(subscriptionId);
+            if (time != null) {
+              answered.put(subscriptionId, time);
+            }
+          }
+        }
+
+        byte[] body = buildResult(status).getBytes("UTF-8");
+        try {
+          exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=utf-8");
+          exchange.sendResponseHeaders(200, body.length);
+          OutputStream output = exchange.getResponseBody();
+          output.write(body);
+          output.close();
+        } catch (IOException e) {
+          // Exchange sends the notification again, and is answered Unsubscribe again.
+          for (Map.Entry<String, Long> entry : answered.entrySet()) {
+            unsubscribed.putIfAbsent(entry.getKey(), entry.getValue());
+          }
+          throw e;
+        }
+      } finally {
+        exchange.close();
+      }
+    }
+  }
+
+}
@@ -45,6 +45,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a connection to an ongoing stream of events.
@@ -55,10 +56,25 @@ public final class StreamingSubscriptionConnection implements Closeable,
 
   private static final Log LOG = LogFactory.getLog(StreamingSubscriptionConnection.class);
 
+  /**
+   * Activity of all connections.
+   */
+  private static final StreamingSubscriptionMetrics METRICS = new StreamingSubscriptionMetrics();
+
   /**
    * Mapping of streaming id to subscriptions currently on the connection.
    */
-  private Map<String, StreamingSubscription> subscriptions;
+  private volatile Map<String, StreamingSubscription> subscriptions;
+
+  /**
+   * HTTP headers sent with the requests of this connection.
+   */
+  private final Map<String, String> httpHeaders = new HashMap<String, String>();
+
+  /**
+   * HTTP cookies sent with the requests of this connection.
+   */
+  private final Map<String, String> httpCookies = new HashMap<String, String>();
 
   /**
    * connection lifetime, in minutes
@@ -80,6 +96,11 @@ public final class StreamingSubscriptionConnection implements Closeable,
    */
   private GetStreamingEventsRequest currentHangingRequest;
 
+  /**
+   * Value indicating whether this connection has been opened before.
+   */
+  private boolean hasBeenOpened;
+
 
   public interface INotificationEventDelegate {
     /**
@@ -205,6 +226,15 @@ public final class StreamingSubscriptionConnection implements Closeable,
     onDisconnect.clear();
   }
 
+  /**
+   * Gets the activity counters shared by all streaming subscription connections.
+   *
+   * @return the connection metrics
+   */
+  public static StreamingSubscriptionMetrics getMetrics() {
+    return METRICS;
+  }
+
   /**
    * Initializes a new instance of the StreamingSubscriptionConnection class.
    *
@@ -226,7 +256,7 @@ public final class StreamingSubscriptionConnection implements Closeable,
     }
 
     this.session = service;
-    this.subscriptions = new HashMap<String, StreamingSubscription>();
+    this.subscriptions = new ConcurrentHashMap<String, StreamingSubscription>();
     this.connectionTimeout = lifetime;
   }
 
@@ -250,6 +280,40 @@ public final class StreamingSubscriptionConnection implements Closeable,
     }
   }
 
+  /**
+   * Gets the subscriptions on this connection. Subscriptions are removed from the
+   * connection when the server reports an error for them.
+   *
+   * @return a copy of the subscriptions
+   * @throws Exception
+   */
+  public List<StreamingSubscription> getCurrentSubscriptions() throws Exception {
+    this.throwIfDisposed();
+    return new ArrayList<StreamingSubscription>(this.subscriptions.values());
+  }
+
+  /**
+   * Gets the HTTP headers sent with the requests of this connection in addition to the
+   * headers of the service, such as the X-AnchorMailbox header routing the connection to
+   * the server of its subscriptions. Changes apply when the connection is next opened.
+   *
+   * @return the HTTP headers
+   */
+  public Map<String, String> getHttpHeaders() {
+    return this.httpHeaders;
+  }
+
+  /**
+   * Gets the HTTP cookies sent with the requests of this connection in addition to the
+   * cookies of the service, such as the X-BackEndOverrideCookie routing the connection to
+   * the server of its subscriptions. Changes apply when the connection is next opened.
+   *
+   * @return the HTTP cookies, by name
+   */
+  public Map<String, String> getHttpCookies() {
+    return this.httpCookies;
+  }
+
   /**
    * Adds a subscription to this connection.
    *
@@ -311,9 +375,19 @@ public final class StreamingSubscriptionConnection implements Closeable,
           this.session, this, this.subscriptions.keySet(),
           this.connectionTimeout);
 
+      this.currentHangingRequest.getHttpHeaders().putAll(this.httpHeaders);
+      this.currentHangingRequest.getHttpCookies().putAll(this.httpCookies);
       this.currentHangingRequest.addOnDisconnectEvent(this);
 
-      this.currentHangingRequest.internalExecute();
+      METRICS.connectionOpened(this.hasBeenOpened);
+      this.hasBeenOpened = true;
+      try {
+        this.currentHangingRequest.internalExecute();
+      } catch (Exception e) {
+        METRICS.connectionClosed();
+        this.currentHangingRequest = null;
+        throw e;
+      }
     }
   }
 
@@ -357,13 +431,16 @@ public final class StreamingSubscriptionConnection implements Closeable,
    * @param ex The exception that caused the disconnection. May be null.
    */
   private void internalOnDisconnect(Exception ex) {
+    METRICS.connectionClosed();
+
+    // Cleared first, so that the handlers can open the connection again.
+    this.currentHangingRequest = null;
     if (!onDisconnect.isEmpty()) {
       for (ISubscriptionErrorDelegate disconnect : onDisconnect) {
         disconnect.subscriptionErrorDelegate(this,
             new SubscriptionErrorEventArgs(null, ex));
       }
     }
-    this.currentHangingRequest = null;
   }
 
   /**
@@ -443,17 +520,8 @@ public final class StreamingSubscriptionConnection implements Closeable,
         gseResponse);
 
     for (String id : gseResponse.getErrorSubscriptionIds()) {
-      StreamingSubscription subscription = null;
-
-      synchronized (this) {
-        // Client can do any good or bad things in the below event
-        // handler
-        if (this.subscriptions != null
-            && this.subscriptions.containsKey(id)) {
-          subscription = this.subscriptions.get(id);
-        }
-
-      }
+      Map<String, StreamingSubscription> subscriptions = this.subscriptions;
+      StreamingSubscription subscription = subscriptions != null ? subscriptions.get(id) : null;
       if (subscription != null) {
         SubscriptionErrorEventArgs eventArgs = new SubscriptionErrorEventArgs(
             subscription, exception);
@@ -465,14 +533,9 @@ public final class StreamingSubscriptionConnection implements Closeable,
         }
       }
       if (gseResponse.getErrorCode() != ServiceError.ErrorMissedNotificationEvents) {
-        // Client can do any good or bad things in the above event
-        // handler
-        synchronized (this) {
-          if (this.subscriptions != null
-              && this.subscriptions.containsKey(id)) {
-            // We are no longer servicing the subscription.
-            this.subscriptions.remove(id);
-          }
+        // We are no longer servicing the subscription.
+        if (subscriptions != null) {
+          subscriptions.remove(id);
         }
       }
     }
@@ -503,19 +566,11 @@ public final class StreamingSubscriptionConnection implements Closeable,
 
     for (GetStreamingEventsResults.NotificationGroup events : gseResponse
         .getResults().getNotifications()) {
-      StreamingSubscription subscription = null;
-
-      synchronized (this) {
-        // Client can do any good or bad things in the below event
-        // handler
-        if (this.subscriptions != null
-            && this.subscriptions
-            .containsKey(events.subscriptionId)) {
-          subscription = this.subscriptions
-              .get(events.subscriptionId);
-        }
-      }
+      Map<String, StreamingSubscription> subscriptions = this.subscriptions;
+      StreamingSubscription subscription =
+          subscriptions != null ? subscriptions.get(events.subscriptionId) : null;
       if (subscription != null) {
+        METRICS.eventsReceived(events.events.size());
         NotificationEventArgs eventArgs = new NotificationEventArgs(
             subscription, events.events);
 
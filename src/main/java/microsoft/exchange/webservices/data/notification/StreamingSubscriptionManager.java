@@ -0,0 +1,618 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.notification;
+
+import microsoft.exchange.webservices.data.core.EwsUtilities;
+import microsoft.exchange.webservices.data.core.ExchangeService;
+import microsoft.exchange.webservices.data.core.enumeration.notification.EventType;
+import microsoft.exchange.webservices.data.core.request.SubscribeToStreamingNotificationsRequest;
+import microsoft.exchange.webservices.data.core.response.ServiceResponseCollection;
+import microsoft.exchange.webservices.data.core.response.SubscribeResponse;
+import microsoft.exchange.webservices.data.property.complex.FolderId;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Maintains the streaming connections of many subscriptions, which may belong to different
+ * mailboxes and services.
+ * <p>
+ * Subscriptions are grouped by the mailbox server they were created on, as identified by
+ * the X-BackEndOverrideCookie returned when they are created with server affinity; see
+ * {@link #subscribe(ExchangeService, String, Iterable, EventType...)}. Each group is packed
+ * onto as few connections as {@link #getMaxSubscriptionsPerConnection()} allows. A connection
+ * uses the service of its first subscription and is routed to the server of its group with
+ * the X-AnchorMailbox header of that subscription and the X-BackEndOverrideCookie cookie,
+ * so the services of a group must use the same credentials, for example one service account
+ * impersonating each mailbox. Subscriptions without a cookie are grouped by service.
+ * </p>
+ * <p>
+ * When a connection disconnects, its remaining subscriptions and the subscriptions added
+ * to its group since are packed again onto new connections, which are opened right away.
+ * Subscriptions whose connection could not be opened are reported as subscription errors
+ * with no subscription and are packed again on the next call to {@link #open()}.
+ * </p>
+ */
+public final class StreamingSubscriptionManager implements Closeable {
+
+  private static final Log LOG = LogFactory.getLog(StreamingSubscriptionManager.class);
+
+  /**
+   * The default maximum number of subscriptions per connection.
+   */
+  public static final int DEFAULT_MAX_SUBSCRIPTIONS_PER_CONNECTION = 200;
+
+  static final String ANCHOR_MAILBOX_HEADER = "X-AnchorMailbox";
+
+  static final String PREFER_SERVER_AFFINITY_HEADER = "X-PreferServerAffinity";
+
+  static final String BACK_END_OVERRIDE_COOKIE = "X-BackEndOverrideCookie";
+
+  private final int lifetime;
+
+  private volatile int maxSubscriptionsPerConnection = DEFAULT_MAX_SUBSCRIPTIONS_PER_CONNECTION;
+
+  /**
+   * The groups, by back end override cookie or, for subscriptions without one, by service.
+   */
+  private final Map<Object, Group> groups = new LinkedHashMap<Object, Group>();
+
+  /**
+   * The managed subscriptions, by subscription id.
+   */
+  private final Map<String, Member> members = new ConcurrentHashMap<String, Member>();
+
+  /**
+   * The group of each connection.
+   */
+  private final Map<StreamingSubscriptionConnection, Group> connectionGroups =
+      new IdentityHashMap<StreamingSubscriptionConnection, Group>();
+
+  private final List<StreamingSubscriptionConnection.INotificationEventDelegate> onNotificationEvent =
+      new CopyOnWriteArrayList<StreamingSubscriptionConnection.INotificationEventDelegate>();
+
+  private final List<StreamingSubscriptionConnection.ISubscriptionErrorDelegate> onSubscriptionError =
+      new CopyOnWriteArrayList<StreamingSubscriptionConnection.ISubscriptionErrorDelegate>();
+
+  private final List<StreamingSubscriptionConnection.ISubscriptionErrorDelegate> onDisconnect =
+      new CopyOnWriteArrayList<StreamingSubscriptionConnection.ISubscriptionErrorDelegate>();
+
+  private final Handler handler = new Handler();
+
+  private final DisconnectHandler disconnectHandler = new DisconnectHandler();
+
+  private boolean isOpen;
+
+  /**
+   * Initializes a new instance of the StreamingSubscriptionManager class.
+   *
+   * @param lifetime The maximum time, in minutes, each connection remains open.
+   *                 Lifetime must be between 1 and 30.
+   */
+  public StreamingSubscriptionManager(int lifetime) {
+    if (lifetime < 1 || lifetime > 30) {
+      throw new IllegalArgumentException("lifetime must be between 1 and 30");
+    }
+    this.lifetime = lifetime;
+  }
+
+  /**
+   * Gets the maximum number of subscriptions per connection.
+   *
+   * @return the maximum number of subscriptions
+   */
+  public int getMaxSubscriptionsPerConnection() {
+    return maxSubscriptionsPerConnection;
+  }
+
+  /**
+   * Sets the maximum number of subscriptions per connection. Applies to connections
+   * opened afterwards.
+   *
+   * @param maxSubscriptionsPerConnection the maximum number of subscriptions
+   */
+  public void setMaxSubscriptionsPerConnection(int maxSubscriptionsPerConnection) {
+    if (maxSubscriptionsPerConnection < 1) {
+      throw new IllegalArgumentException("maxSubscriptionsPerConnection must be positive");
+    }
+    this.maxSubscriptionsPerConnection = maxSubscriptionsPerConnection;
+  }
+
+  /**
+   * Adds a delegate invoked when notifications are received on any connection.
+   *
+   * @param notificationEvent notification event
+   */
+  public void addOnNotificationEvent(
+      StreamingSubscriptionConnection.INotificationEventDelegate notificationEvent) {
+    onNotificationEvent.add(notificationEvent);
+  }
+
+  /**
+   * Removes a delegate invoked when notifications are received.
+   *
+   * @param notificationEvent notification event
+   */
+  public void removeNotificationEvent(
+      StreamingSubscriptionConnection.INotificationEventDelegate notificationEvent) {
+    onNotificationEvent.remove(notificationEvent);
+  }
+
+  /**
+   * Adds a delegate invoked when a subscription encounters an error, or a connection
+   * could not be opened.
+   *
+   * @param subscriptionError subscription event
+   */
+  public void addOnSubscriptionError(
+      StreamingSubscriptionConnection.ISubscriptionErrorDelegate subscriptionError) {
+    onSubscriptionError.add(subscriptionError);
+  }
+
+  /**
+   * Removes a delegate invoked when a subscription encounters an error.
+   *
+   * @param subscriptionError subscription event
+   */
+  public void removeSubscriptionError(
+      StreamingSubscriptionConnection.ISubscriptionErrorDelegate subscriptionError) {
+    onSubscriptionError.remove(subscriptionError);
+  }
+
+  /**
+   * Adds a delegate invoked when a connection is disconnected, before its subscriptions
+   * are packed again.
+   *
+   * @param disconnect disconnect event
+   */
+  public void addOnDisconnect(StreamingSubscriptionConnection.ISubscriptionErrorDelegate disconnect) {
+    onDisconnect.add(disconnect);
+  }
+
+  /**
+   * Removes a delegate invoked when a connection is disconnected.
+   *
+   * @param disconnect disconnect event
+   */
+  public void removeDisconnect(StreamingSubscriptionConnection.ISubscriptionErrorDelegate disconnect) {
+    onDisconnect.remove(disconnect);
+  }
+
+  /**
+   * Subscribes to streaming notifications in a mailbox with server affinity, and adds the
+   * subscription to this manager. Calling this method results in a call to EWS.
+   *
+   * @param service       the service, for example impersonating the mailbox
+   * @param anchorMailbox the SMTP address of the mailbox
+   * @param folderIds     the ids of the folders to subscribe to, or null for all folders
+   * @param eventTypes    the event types to subscribe to
+   * @return the subscription
+   * @throws Exception the exception
+   */
+  public StreamingSubscription subscribe(ExchangeService service, String anchorMailbox,
+      Iterable<FolderId> folderIds, EventType... eventTypes) throws Exception {
+    EwsUtilities.validateParam(service, "service");
+    EwsUtilities.validateParam(anchorMailbox, "anchorMailbox");
+    EwsUtilities.validateParamCollection(eventTypes, "eventTypes");
+
+    SubscribeToStreamingNotificationsRequest request =
+        new SubscribeToStreamingNotificationsRequest(service);
+    if (folderIds != null) {
+      request.getFolderIds().addRangeFolderId(folderIds);
+    }
+    for (EventType event : eventTypes) {
+      request.getEventTypes().add(event);
+    }
+    request.getHttpHeaders().put(ANCHOR_MAILBOX_HEADER, anchorMailbox);
+    request.getHttpHeaders().put(PREFER_SERVER_AFFINITY_HEADER, "true");
+
+    ServiceResponseCollection<SubscribeResponse<StreamingSubscription>> responses =
+        request.execute();
+    StreamingSubscription subscription = responses.getResponseAtIndex(0).getSubscription();
+    this.addSubscription(subscription, anchorMailbox,
+        getBackEndOverrideCookie(responses.getHttpResponseHeaders()));
+    return subscription;
+  }
+
+  /**
+   * Adds a subscription created without server affinity. It is grouped with the other
+   * subscriptions of its service.
+   *
+   * @param subscription the subscription
+   */
+  public void addSubscription(StreamingSubscription subscription) {
+    this.addSubscription(subscription, null, null);
+  }
+
+  /**
+   * Adds a subscription. While this manager is open, the subscription is connected when
+   * a connection of its group disconnects or when {@link #open()} is called.
+   *
+   * @param subscription          the subscription
+   * @param anchorMailbox         the SMTP address of the mailbox of the subscription, or null
+   * @param backEndOverrideCookie the X-BackEndOverrideCookie returned when the subscription
+   *                              was created, or null
+   */
+  public synchronized void addSubscription(StreamingSubscription subscription,
+      String anchorMailbox, String backEndOverrideCookie) {
+    if (subscription == null || subscription.getId() == null) {
+      throw new IllegalArgumentException("subscription must not be null and must have an id");
+    }
+    if (members.containsKey(subscription.getId())) {
+      return;
+    }
+
+    Object key = backEndOverrideCookie != null ? backEndOverrideCookie : subscription.getService();
+    Group group = groups.get(key);
+    if (group == null) {
+      group = new Group(backEndOverrideCookie);
+      groups.put(key, group);
+    }
+    Member member = new Member(subscription, anchorMailbox, group);
+    members.put(subscription.getId(), member);
+    group.pending.add(member);
+  }
+
+  /**
+   * Removes a subscription. Notifications of the subscription are no longer delivered;
+   * it leaves its connection when the connection disconnects.
+   *
+   * @param subscription the subscription
+   */
+  public synchronized void removeSubscription(StreamingSubscription subscription) {
+    Member member = members.remove(subscription.getId());
+    if (member != null) {
+      member.group.pending.remove(member);
+    }
+  }
+
+  /**
+   * Gets the number of subscriptions of this manager.
+   *
+   * @return the number of subscriptions
+   */
+  public int getSubscriptionCount() {
+    return members.size();
+  }
+
+  /**
+   * Gets the number of connections of this manager.
+   *
+   * @return the number of connections
+   */
+  public synchronized int getConnectionCount() {
+    return connectionGroups.size();
+  }
+
+  /**
+   * Opens connections for the subscriptions not yet connected. This results in
+   * long-standing calls to EWS.
+   *
+   * @throws Exception the first exception of the connections that could not be opened
+   */
+  public void open() throws Exception {
+    List<StreamingSubscriptionConnection> connections;
+    synchronized (this) {
+      isOpen = true;
+      connections = new ArrayList<StreamingSubscriptionConnection>();
+      for (Group group : groups.values()) {
+        connections.addAll(this.pack(group));
+      }
+    }
+
+    Exception failure = this.openConnections(connections);
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Closes all connections. Subscriptions stay managed and are connected again by the
+   * next call to {@link #open()}.
+   */
+  public void close() {
+    List<StreamingSubscriptionConnection> connections;
+    synchronized (this) {
+      isOpen = false;
+      connections = new ArrayList<StreamingSubscriptionConnection>(connectionGroups.keySet());
+    }
+
+    for (StreamingSubscriptionConnection connection : connections) {
+      try {
+        if (connection.getIsOpen()) {
+          connection.close();
+        }
+      } catch (Exception e) {
+        LOG.error(e);
+      }
+    }
+  }
+
+  /**
+   * Gets the X-BackEndOverrideCookie set by a response.
+   *
+   * @param responseHeaders the HTTP headers of the response
+   * @return the value of the cookie, or null if the response did not set it
+   */
+  static String getBackEndOverrideCookie(Map<String, String> responseHeaders) {
+    String cookies = responseHeaders != null ? responseHeaders.get("Set-Cookie") : null;
+    if (cookies == null) {
+      return null;
+    }
+
+    int start = cookies.indexOf(BACK_END_OVERRIDE_COOKIE + "=");
+    if (start < 0) {
+      return null;
+    }
+    start += BACK_END_OVERRIDE_COOKIE.length() + 1;
+    int end = start;
+    while (end < cookies.length() && cookies.charAt(end) != ';' && cookies.charAt(end) != ',') {
+      end++;
+    }
+    return end > start ? cookies.substring(start, end) : null;
+  }
+
+  /**
+   * Packs the pending subscriptions of a group onto new connections.
+   *
+   * @param group the group
+   * @return the new connections
+   */
+  private List<StreamingSubscriptionConnection> pack(Group group) {
+    List<StreamingSubscriptionConnection> connections =
+        new ArrayList<StreamingSubscriptionConnection>();
+    int maxSubscriptions = this.maxSubscriptionsPerConnection;
+    Iterator<Member> pending = group.pending.iterator();
+    while (pending.hasNext()) {
+      List<Member> connectionMembers = new ArrayList<Member>();
+      while (pending.hasNext() && connectionMembers.size() < maxSubscriptions) {
+        connectionMembers.add(pending.next());
+        pending.remove();
+      }
+
+      try {
+        StreamingSubscriptionConnection connection = this.createConnection(group, connectionMembers);
+        group.connections.put(connection, connectionMembers);
+        connectionGroups.put(connection, group);
+        connections.add(connection);
+      } catch (Exception e) {
+        // The subscriptions are packed again on the next attempt.
+        LOG.error(e);
+        group.pending.addAll(connectionMembers);
+        break;
+      }
+    }
+    return connections;
+  }
+
+  /**
+   * Creates a connection routed to the server of a group.
+   *
+   * @param group   the group
+   * @param members the subscriptions of the connection
+   * @return the connection
+   * @throws Exception the exception
+   */
+  private StreamingSubscriptionConnection createConnection(Group group, List<Member> members)
+      throws Exception {
+    Member anchor = members.get(0);
+    StreamingSubscriptionConnection connection =
+        new StreamingSubscriptionConnection(anchor.subscription.getService(), lifetime);
+    for (Member member : members) {
+      connection.addSubscription(member.subscription);
+    }
+
+    if (anchor.anchorMailbox != null) {
+      connection.getHttpHeaders().put(ANCHOR_MAILBOX_HEADER, anchor.anchorMailbox);
+    }
+    if (group.backEndOverrideCookie != null) {
+      connection.getHttpCookies().put(BACK_END_OVERRIDE_COOKIE, group.backEndOverrideCookie);
+    }
+
+    connection.addOnNotificationEvent(handler);
+    connection.addOnSubscriptionError(handler);
+    connection.addOnDisconnect(disconnectHandler);
+    return connection;
+  }
+
+  /**
+   * Opens connections. Connections that cannot be opened are forgotten, and their
+   * subscriptions are packed again on the next attempt.
+   *
+   * @param connections the connections
+   * @return the first exception, or null if all connections were opened
+   */
+  private Exception openConnections(List<StreamingSubscriptionConnection> connections) {
+    Exception failure = null;
+    for (StreamingSubscriptionConnection connection : connections) {
+      try {
+        connection.open();
+      } catch (Exception e) {
+        LOG.error(e);
+        if (failure == null) {
+          failure = e;
+        }
+        synchronized (this) {
+          Group group = connectionGroups.remove(connection);
+          List<Member> connectionMembers = group.connections.remove(connection);
+          for (Member member : connectionMembers) {
+            if (members.get(member.subscription.getId()) == member) {
+              group.pending.add(member);
+            }
+          }
+        }
+      }
+    }
+    return failure;
+  }
+
+  /**
+   * Packs the subscriptions of a disconnected connection again, with the pending
+   * subscriptions of its group, and opens the new connections.
+   *
+   * @param connection the disconnected connection
+   */
+  private void onConnectionDisconnected(StreamingSubscriptionConnection connection) {
+    List<StreamingSubscriptionConnection> connections;
+    synchronized (this) {
+      Group group = connectionGroups.remove(connection);
+      if (group == null) {
+        return;
+      }
+
+      Set<String> remaining = new HashSet<String>();
+      try {
+        for (StreamingSubscription subscription : connection.getCurrentSubscriptions()) {
+          remaining.add(subscription.getId());
+        }
+      } catch (Exception e) {
+        LOG.error(e);
+      }
+
+      for (Member member : group.connections.remove(connection)) {
+        String id = member.subscription.getId();
+        if (members.get(id) != member) {
+          continue;
+        }
+        if (remaining.contains(id)) {
+          group.pending.add(member);
+        } else {
+          // The server reported an error for the subscription, which ended it.
+          members.remove(id);
+        }
+      }
+
+      if (!isOpen) {
+        return;
+      }
+      connections = this.pack(group);
+    }
+
+    Exception failure = this.openConnections(connections);
+    if (failure != null) {
+      SubscriptionErrorEventArgs args = new SubscriptionErrorEventArgs(null, failure);
+      for (StreamingSubscriptionConnection.ISubscriptionErrorDelegate subscriptionError
+          : onSubscriptionError) {
+        subscriptionError.subscriptionErrorDelegate(this, args);
+      }
+    }
+  }
+
+
+  /**
+   * The subscriptions on the same mailbox server.
+   */
+  private static final class Group {
+
+    final String backEndOverrideCookie;
+
+    final Set<Member> pending = new LinkedHashSet<Member>();
+
+    final Map<StreamingSubscriptionConnection, List<Member>> connections =
+        new IdentityHashMap<StreamingSubscriptionConnection, List<Member>>();
+
+    Group(String backEndOverrideCookie) {
+      this.backEndOverrideCookie = backEndOverrideCookie;
+    }
+  }
+
+
+  /**
+   * A managed subscription.
+   */
+  private static final class Member {
+
+    final StreamingSubscription subscription;
+
+    final String anchorMailbox;
+
+    final Group group;
+
+    Member(StreamingSubscription subscription, String anchorMailbox, Group group) {
+      this.subscription = subscription;
+      this.anchorMailbox = anchorMailbox;
+      this.group = group;
+    }
+  }
+
+
+  /**
+   * Forwards the events of the connections.
+   */
+  private final class Handler implements StreamingSubscriptionConnection.INotificationEventDelegate,
+      StreamingSubscriptionConnection.ISubscriptionErrorDelegate {
+
+    @Override
+    public void notificationEventDelegate(Object sender, NotificationEventArgs args) {
+      if (!members.containsKey(args.getSubscription().getId())) {
+        return;
+      }
+      for (StreamingSubscriptionConnection.INotificationEventDelegate notificationEvent
+          : onNotificationEvent) {
+        notificationEvent.notificationEventDelegate(sender, args);
+      }
+    }
+
+    @Override
+    public void subscriptionErrorDelegate(Object sender, SubscriptionErrorEventArgs args) {
+      if (args.getSubscription() != null && !members.containsKey(args.getSubscription().getId())) {
+        return;
+      }
+      for (StreamingSubscriptionConnection.ISubscriptionErrorDelegate subscriptionError
+          : onSubscriptionError) {
+        subscriptionError.subscriptionErrorDelegate(sender, args);
+      }
+    }
+  }
+
+
+  /**
+   * Packs the subscriptions of the connections again when they disconnect.
+   */
+  private final class DisconnectHandler
+      implements StreamingSubscriptionConnection.ISubscriptionErrorDelegate {
+
+    @Override
+    public void subscriptionErrorDelegate(Object sender, SubscriptionErrorEventArgs args) {
+      for (StreamingSubscriptionConnection.ISubscriptionErrorDelegate disconnect : onDisconnect) {
+        disconnect.subscriptionErrorDelegate(sender, args);
+      }
+      onConnectionDisconnected((StreamingSubscriptionConnection) sender);
+    }
+  }
+
+}
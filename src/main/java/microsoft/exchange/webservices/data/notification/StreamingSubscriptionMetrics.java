@@ -0,0 +1,164 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.notification;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the activity of all {@link StreamingSubscriptionConnection} instances.
+ * <p>
+ * The rate of events is measured over one-second windows: it is the number of events
+ * received during the last complete window.
+ * </p>
+ */
+public final class StreamingSubscriptionMetrics {
+
+  /**
+   * The length of a rate window, in nanoseconds.
+   */
+  private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final AtomicInteger activeConnections = new AtomicInteger();
+
+  private final AtomicLong openedConnections = new AtomicLong();
+
+  private final AtomicLong reconnects = new AtomicLong();
+
+  private final AtomicLong events = new AtomicLong();
+
+  /**
+   * Start of the current rate window, in nanoseconds.
+   */
+  private long windowStart = System.nanoTime();
+
+  /**
+   * Number of events received since the start of the current rate window.
+   */
+  private long windowEvents;
+
+  /**
+   * Number of events per second measured in the last complete window.
+   */
+  private long eventsPerSecond;
+
+  StreamingSubscriptionMetrics() {
+  }
+
+  /**
+   * Gets the number of connections currently open.
+   *
+   * @return the number of open connections
+   */
+  public int getActiveConnections() {
+    return activeConnections.get();
+  }
+
+  /**
+   * Gets the number of times a connection has been opened, including reconnects.
+   *
+   * @return the number of opened connections
+   */
+  public long getOpenedConnections() {
+    return openedConnections.get();
+  }
+
+  /**
+   * Gets the number of times a connection has been opened again after it was closed.
+   *
+   * @return the number of reconnects
+   */
+  public long getReconnects() {
+    return reconnects.get();
+  }
+
+  /**
+   * Gets the number of notification events received.
+   *
+   * @return the number of events
+   */
+  public long getEvents() {
+    return events.get();
+  }
+
+  /**
+   * Gets the number of notification events received during the last second.
+   *
+   * @return the number of events per second
+   */
+  public synchronized long getEventsPerSecond() {
+    roll(System.nanoTime());
+    return eventsPerSecond;
+  }
+
+  /**
+   * Records that a connection has been opened.
+   *
+   * @param reconnect true if the connection had been opened before
+   */
+  void connectionOpened(boolean reconnect) {
+    activeConnections.incrementAndGet();
+    openedConnections.incrementAndGet();
+    if (reconnect) {
+      reconnects.incrementAndGet();
+    }
+  }
+
+  /**
+   * Records that an open connection has been closed.
+   */
+  void connectionClosed() {
+    activeConnections.decrementAndGet();
+  }
+
+  /**
+   * Records notification events received by a connection.
+   *
+   * @param count the number of events
+   */
+  void eventsReceived(int count) {
+    events.addAndGet(count);
+    synchronized (this) {
+      roll(System.nanoTime());
+      windowEvents += count;
+    }
+  }
+
+  /**
+   * Closes the current rate window if it has ended.
+   *
+   * @param now the current time, in nanoseconds
+   */
+  private void roll(long now) {
+    long elapsed = now - windowStart;
+    if (elapsed >= WINDOW_NANOS) {
+      // A window with no event at all in between means the rate dropped to zero.
+      eventsPerSecond = elapsed < 2 * WINDOW_NANOS ? windowEvents : 0;
+      windowEvents = 0;
+      windowStart = now - elapsed % WINDOW_NANOS;
+    }
+  }
+}
@@ -0,0 +1,529 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.notification;
+
+import microsoft.exchange.webservices.data.core.enumeration.misc.error.ServiceError;
+import microsoft.exchange.webservices.data.core.exception.service.remote.ServiceResponseException;
+import microsoft.exchange.webservices.data.misc.LatencyHistogram;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps a streaming subscription connection open.
+ * <p>
+ * When the connection disconnects, it is opened again: right away if it reached the end of
+ * its lifetime, otherwise after a delay growing exponentially with each failed attempt, up
+ * to a maximum. Delays are randomized between half and all of their value, so connections
+ * dropped together, for example by a server restart, do not reconnect together.
+ * </p>
+ * <p>
+ * Subscriptions the server ends with an error are removed from the connection. Given an
+ * {@link IResubscriber}, the connection is closed so they can be replaced by new
+ * subscriptions, then opened again; streaming subscriptions have no watermark, so events
+ * between the error and the new subscription are not delivered.
+ * </p>
+ */
+public final class StreamingSubscriptionSupervisor implements Closeable {
+
+  private static final Log LOG = LogFactory.getLog(StreamingSubscriptionSupervisor.class);
+
+  /**
+   * The default delay, in milliseconds, before the first attempt to reconnect after an error.
+   */
+  public static final long DEFAULT_INITIAL_DELAY = 1000;
+
+  /**
+   * The default maximum delay, in milliseconds, between two attempts to reconnect.
+   */
+  public static final long DEFAULT_MAX_DELAY = TimeUnit.MINUTES.toMillis(5);
+
+  private static final int SCHEDULER_THREADS = 4;
+
+  private static ScheduledExecutorService defaultScheduler;
+
+  private static final Random RANDOM = new Random();
+
+  /**
+   * Creates the subscriptions replacing the subscriptions ended by the server.
+   */
+  public interface IResubscriber {
+
+    /**
+     * Creates a subscription replacing a subscription ended by the server, for example
+     * for the same folders and event types.
+     *
+     * @param subscription the subscription ended by the server
+     * @return the new subscription, or null to drop the subscription
+     * @throws Exception the subscription could not be created; it is attempted again on
+     *                   the next reconnection
+     */
+    StreamingSubscription resubscribe(StreamingSubscription subscription) throws Exception;
+  }
+
+  private final StreamingSubscriptionConnection connection;
+
+  private final ScheduledExecutorService scheduler;
+
+  private final LatencyHistogram reconnectLatencies = new LatencyHistogram();
+
+  private final DisconnectHandler disconnectHandler = new DisconnectHandler();
+
+  private final SubscriptionErrorHandler subscriptionErrorHandler = new SubscriptionErrorHandler();
+
+  private volatile long initialDelay = DEFAULT_INITIAL_DELAY;
+
+  private volatile long maxDelay = DEFAULT_MAX_DELAY;
+
+  private volatile IResubscriber resubscriber;
+
+  /**
+   * The subscriptions ended by the server and not yet replaced.
+   */
+  private final Set<StreamingSubscription> failedSubscriptions =
+      new LinkedHashSet<StreamingSubscription>();
+
+  private boolean started;
+
+  private boolean stopped;
+
+  private boolean closeScheduled;
+
+  private int failedAttempts;
+
+  private long reconnects;
+
+  private long disconnectedAt;
+
+  private ScheduledFuture<?> pendingReconnect;
+
+  /**
+   * Initializes a new instance reconnecting on a scheduler shared by all supervisors.
+   *
+   * @param connection the connection to keep open
+   */
+  public StreamingSubscriptionSupervisor(StreamingSubscriptionConnection connection) {
+    this(connection, getDefaultScheduler());
+  }
+
+  /**
+   * Initializes a new instance.
+   *
+   * @param connection the connection to keep open
+   * @param scheduler  the scheduler reconnecting the connection
+   */
+  public StreamingSubscriptionSupervisor(StreamingSubscriptionConnection connection,
+      ScheduledExecutorService scheduler) {
+    if (connection == null) {
+      throw new IllegalArgumentException("connection must not be null");
+    }
+    if (scheduler == null) {
+      throw new IllegalArgumentException("scheduler must not be null");
+    }
+    this.connection = connection;
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Gets the supervised connection.
+   *
+   * @return the connection
+   */
+  public StreamingSubscriptionConnection getConnection() {
+    return connection;
+  }
+
+  /**
+   * Gets the delay before the first attempt to reconnect after an error.
+   *
+   * @return the delay, in milliseconds
+   */
+  public long getInitialDelay() {
+    return initialDelay;
+  }
+
+  /**
+   * Sets the delay before the first attempt to reconnect after an error. The delay
+   * doubles with each failed attempt.
+   *
+   * @param initialDelay the delay, in milliseconds
+   */
+  public void setInitialDelay(long initialDelay) {
+    if (initialDelay < 1) {
+      throw new IllegalArgumentException("initialDelay must be positive");
+    }
+    this.initialDelay = initialDelay;
+  }
+
+  /**
+   * Gets the maximum delay between two attempts to reconnect.
+   *
+   * @return the delay, in milliseconds
+   */
+  public long getMaxDelay() {
+    return maxDelay;
+  }
+
+  /**
+   * Sets the maximum delay between two attempts to reconnect.
+   *
+   * @param maxDelay the delay, in milliseconds
+   */
+  public void setMaxDelay(long maxDelay) {
+    if (maxDelay < 1) {
+      throw new IllegalArgumentException("maxDelay must be positive");
+    }
+    this.maxDelay = maxDelay;
+  }
+
+  /**
+   * Gets the resubscriber replacing the subscriptions ended by the server.
+   *
+   * @return the resubscriber, or null if these subscriptions are dropped
+   */
+  public IResubscriber getResubscriber() {
+    return resubscriber;
+  }
+
+  /**
+   * Sets the resubscriber replacing the subscriptions ended by the server.
+   *
+   * @param resubscriber the resubscriber, or null to drop these subscriptions
+   */
+  public void setResubscriber(IResubscriber resubscriber) {
+    this.resubscriber = resubscriber;
+  }
+
+  /**
+   * Gets the time taken by the reconnections, from the disconnection until the connection
+   * was open again.
+   *
+   * @return the histogram of the reconnection latencies
+   */
+  public LatencyHistogram getReconnectLatencies() {
+    return reconnectLatencies;
+  }
+
+  /**
+   * Gets the number of successful reconnections.
+   *
+   * @return the number of reconnections
+   */
+  public synchronized long getReconnects() {
+    return reconnects;
+  }
+
+  /**
+   * Gets the number of failed attempts to reconnect since the connection was last open.
+   *
+   * @return the number of failed attempts
+   */
+  public synchronized int getFailedAttempts() {
+    return failedAttempts;
+  }
+
+  /**
+   * Opens the connection, unless it is already open, and starts keeping it open.
+   *
+   * @throws Exception the connection could not be opened; it is not supervised
+   */
+  public void start() throws Exception {
+    synchronized (this) {
+      if (stopped) {
+        throw new IllegalStateException("The supervisor was closed.");
+      }
+      if (started) {
+        return;
+      }
+      started = true;
+    }
+
+    connection.addOnDisconnect(disconnectHandler);
+    connection.addOnSubscriptionError(subscriptionErrorHandler);
+    try {
+      if (!connection.getIsOpen()) {
+        connection.open();
+      }
+    } catch (Exception e) {
+      connection.removeDisconnect(disconnectHandler);
+      connection.removeSubscriptionError(subscriptionErrorHandler);
+      synchronized (this) {
+        started = false;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Stops keeping the connection open, and closes it.
+   */
+  public void close() {
+    synchronized (this) {
+      if (stopped) {
+        return;
+      }
+      stopped = true;
+      if (pendingReconnect != null) {
+        pendingReconnect.cancel(false);
+        pendingReconnect = null;
+      }
+    }
+
+    connection.removeDisconnect(disconnectHandler);
+    connection.removeSubscriptionError(subscriptionErrorHandler);
+    try {
+      if (connection.getIsOpen()) {
+        connection.close();
+      }
+    } catch (Exception e) {
+      LOG.error(e);
+    }
+  }
+
+  /**
+   * Gets the delay before the next attempt to reconnect.
+   *
+   * @return the delay, in milliseconds
+   */
+  private long nextDelay() {
+    return backoffDelay(initialDelay, maxDelay, failedAttempts);
+  }
+
+  /**
+   * Gets the delay before an attempt to reconnect: the initial delay, doubled for each
+   * failed attempt up to the maximum delay, then randomized between half and all of it.
+   *
+   * @param initialDelay   the initial delay, in milliseconds
+   * @param maxDelay       the maximum delay, in milliseconds
+   * @param failedAttempts the number of failed attempts
+   * @return the delay, in milliseconds
+   */
+  static long backoffDelay(long initialDelay, long maxDelay, int failedAttempts) {
+    long delay = maxDelay;
+    if (failedAttempts < 31 && initialDelay <= (maxDelay >> failedAttempts)) {
+      delay = initialDelay << failedAttempts;
+    }
+    long half = delay / 2;
+    return half + (long) (RANDOM.nextDouble() * (delay - half + 1));
+  }
+
+  /**
+   * Schedules an attempt to reconnect.
+   *
+   * @param delay the delay, in milliseconds
+   */
+  private synchronized void scheduleReconnect(long delay) {
+    if (stopped || pendingReconnect != null) {
+      return;
+    }
+    pendingReconnect = scheduler.schedule(new Runnable() {
+      @Override
+      public void run() {
+        reconnect();
+      }
+    }, delay, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Replaces the failed subscriptions and opens the connection.
+   */
+  private void reconnect() {
+    synchronized (this) {
+      pendingReconnect = null;
+      if (stopped) {
+        return;
+      }
+    }
+
+    try {
+      this.resubscribe();
+      if (connection.getCurrentSubscriptions().isEmpty()) {
+        LOG.warn("The streaming subscription connection has no subscriptions left to reconnect.");
+        synchronized (this) {
+          if (failedSubscriptions.isEmpty()) {
+            return;
+          }
+        }
+        throw new IllegalStateException("No subscription could be replaced.");
+      }
+      connection.open();
+    } catch (Exception e) {
+      LOG.warn("Reconnecting the streaming subscription connection failed", e);
+      long delay;
+      synchronized (this) {
+        failedAttempts++;
+        delay = this.nextDelay();
+      }
+      this.scheduleReconnect(delay);
+      return;
+    }
+
+    long latency;
+    boolean closeNow;
+    synchronized (this) {
+      latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - disconnectedAt);
+      failedAttempts = 0;
+      reconnects++;
+      closeNow = stopped;
+    }
+    reconnectLatencies.record(latency);
+    if (closeNow) {
+      connection.close();
+    }
+  }
+
+  /**
+   * Replaces the subscriptions ended by the server, while the connection is closed.
+   *
+   * @throws Exception a subscription could not be replaced
+   */
+  private void resubscribe() throws Exception {
+    List<StreamingSubscription> failed;
+    synchronized (this) {
+      failed = new ArrayList<StreamingSubscription>(failedSubscriptions);
+    }
+
+    IResubscriber currentResubscriber = this.resubscriber;
+    for (StreamingSubscription subscription : failed) {
+      if (currentResubscriber != null) {
+        StreamingSubscription replacement = currentResubscriber.resubscribe(subscription);
+        if (replacement != null) {
+          connection.addSubscription(replacement);
+        }
+      }
+      synchronized (this) {
+        failedSubscriptions.remove(subscription);
+      }
+    }
+  }
+
+  /**
+   * Gets the scheduler shared by the supervisors created without one.
+   *
+   * @return the scheduler
+   */
+  private static synchronized ScheduledExecutorService getDefaultScheduler() {
+    if (defaultScheduler == null) {
+      defaultScheduler = new ScheduledThreadPoolExecutor(SCHEDULER_THREADS, new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "ews-reconnect-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return defaultScheduler;
+  }
+
+
+  /**
+   * Schedules a reconnection when the connection disconnects.
+   */
+  private final class DisconnectHandler
+      implements StreamingSubscriptionConnection.ISubscriptionErrorDelegate {
+
+    @Override
+    public void subscriptionErrorDelegate(Object sender, SubscriptionErrorEventArgs args) {
+      long delay;
+      synchronized (StreamingSubscriptionSupervisor.this) {
+        if (stopped) {
+          return;
+        }
+        disconnectedAt = System.nanoTime();
+        closeScheduled = false;
+
+        // A connection reaching the end of its lifetime disconnects without an error.
+        delay = args.getException() == null ? 0 : nextDelay();
+      }
+      scheduleReconnect(delay);
+    }
+  }
+
+
+  /**
+   * Records the subscriptions ended by the server.
+   */
+  private final class SubscriptionErrorHandler
+      implements StreamingSubscriptionConnection.ISubscriptionErrorDelegate {
+
+    @Override
+    public void subscriptionErrorDelegate(Object sender, SubscriptionErrorEventArgs args) {
+      if (args.getSubscription() == null) {
+        // A general failure; the connection disconnects if it cannot go on.
+        return;
+      }
+
+      Exception exception = args.getException();
+      if (exception instanceof ServiceResponseException
+          && ((ServiceResponseException) exception).getErrorCode()
+          == ServiceError.ErrorMissedNotificationEvents) {
+        // The subscription stays on the connection.
+        return;
+      }
+
+      synchronized (StreamingSubscriptionSupervisor.this) {
+        if (stopped) {
+          return;
+        }
+        failedSubscriptions.add(args.getSubscription());
+        if (resubscriber == null || closeScheduled) {
+          return;
+        }
+        closeScheduled = true;
+      }
+
+      // Close from another thread than the one reading the connection; the disconnection
+      // then reconnects with the replaced subscriptions.
+      scheduler.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            if (connection.getIsOpen()) {
+              connection.close();
+            }
+          } catch (Exception e) {
+            LOG.error(e);
+          }
+        }
+      });
+    }
+  }
+
+}
@@ -317,8 +317,9 @@ public abstract class ComplexPropertyCollection
     EwsUtilities.ewsAssert(complexProperty != null, "ComplexPropertyCollection.InternalAdd",
                            "complexProperty is null");
 
-    if (!this.items.contains(complexProperty)) {
+    if (!this.contains(complexProperty)) {
       this.items.add(complexProperty);
+      this.itemAdded(complexProperty);
       if (!loading) {
         this.removedItems.remove(complexProperty);
         this.addedItems.add(complexProperty);
@@ -328,6 +329,22 @@ public abstract class ComplexPropertyCollection
     }
   }
 
+  /**
+   * Called after a complex property was added to the collection.
+   *
+   * @param complexProperty The complex property.
+   */
+  protected void itemAdded(TComplexProperty complexProperty) {
+  }
+
+  /**
+   * Called after a complex property was removed from the collection.
+   *
+   * @param complexProperty The complex property.
+   */
+  protected void itemRemoved(TComplexProperty complexProperty) {
+  }
+
   /**
    * Complex property changed.
    *
@@ -371,6 +388,7 @@ public abstract class ComplexPropertyCollection
                            "complexProperty is null");
 
     if (this.items.remove(complexProperty)) {
+      this.itemRemoved(complexProperty);
       complexProperty.removeChangeEvent(this);
       if (!this.addedItems.contains(complexProperty)) {
         this.removedItems.add(complexProperty);
@@ -235,9 +235,8 @@ public final class ExtendedProperty extends ComplexProperty {
    */
   @Override
   public int hashCode() {
-    String printableName = this.getPropertyDefinition() != null ? this
-        .getPropertyDefinition().getPrintableName() : "";
-    String stringVal = this.getStringValue();
-    return (printableName + stringVal).hashCode();
+    // Equal properties have equal definitions, whose hash code is cached.
+    return this.getPropertyDefinition() != null
+        ? this.getPropertyDefinition().hashCode() : 0;
   }
 }
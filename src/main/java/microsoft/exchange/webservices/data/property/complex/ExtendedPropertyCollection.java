@@ -41,7 +41,9 @@ import microsoft.exchange.webservices.data.property.definition.PropertyDefinitio
 import javax.xml.stream.XMLStreamException;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a collection of extended property.
@@ -50,6 +52,12 @@ import java.util.List;
 public final class ExtendedPropertyCollection extends ComplexPropertyCollection<ExtendedProperty> implements
                                                                                                   ICustomXmlUpdateSerializer {
 
+  /**
+   * The property in the collection, by definition.
+   */
+  private final Map<ExtendedPropertyDefinition, ExtendedProperty> propertiesByDefinition =
+      new HashMap<ExtendedPropertyDefinition, ExtendedProperty>();
+
   /**
    * Creates the complex property.
    *
@@ -103,6 +111,52 @@ public final class ExtendedPropertyCollection extends ComplexPropertyCollection<
     }
   }
 
+  /**
+   * Determines whether a specific property is in the collection.
+   *
+   * @param complexProperty The property to locate in the collection.
+   * @return True if the property was found in the collection, false
+   * otherwise.
+   */
+  @Override
+  public boolean contains(ExtendedProperty complexProperty) {
+    ExtendedProperty extendedProperty =
+        this.propertiesByDefinition.get(complexProperty.getPropertyDefinition());
+    return extendedProperty != null && extendedProperty.equals(complexProperty);
+  }
+
+  /**
+   * Indexes a property added to the collection by its definition.
+   *
+   * @param complexProperty The property.
+   */
+  @Override
+  protected void itemAdded(ExtendedProperty complexProperty) {
+    ExtendedPropertyDefinition propertyDefinition = complexProperty.getPropertyDefinition();
+    if (!this.propertiesByDefinition.containsKey(propertyDefinition)) {
+      this.propertiesByDefinition.put(propertyDefinition, complexProperty);
+    }
+  }
+
+  /**
+   * Removes a property removed from the collection from the index.
+   *
+   * @param complexProperty The property.
+   */
+  @Override
+  protected void itemRemoved(ExtendedProperty complexProperty) {
+    ExtendedPropertyDefinition propertyDefinition = complexProperty.getPropertyDefinition();
+    this.propertiesByDefinition.remove(propertyDefinition);
+
+    // Another property with the same definition may still be in the collection.
+    for (ExtendedProperty extendedProperty : this.getItems()) {
+      if (extendedProperty.getPropertyDefinition().equals(propertyDefinition)) {
+        this.propertiesByDefinition.put(propertyDefinition, extendedProperty);
+        break;
+      }
+    }
+  }
+
   /**
    * Gets existing or adds new extended property.
    *
@@ -170,16 +224,9 @@ public final class ExtendedPropertyCollection extends ComplexPropertyCollection<
   private boolean tryGetProperty(
       ExtendedPropertyDefinition propertyDefinition,
       OutParam<ExtendedProperty> extendedPropertyOut) {
-    boolean found = false;
-    extendedPropertyOut.setParam(null);
-    for (ExtendedProperty prop : this.getItems()) {
-      if (prop.getPropertyDefinition().equals(propertyDefinition)) {
-        found = true;
-        extendedPropertyOut.setParam(prop);
-        break;
-      }
-    }
-    return found;
+    ExtendedProperty extendedProperty = this.propertiesByDefinition.get(propertyDefinition);
+    extendedPropertyOut.setParam(extendedProperty);
+    return extendedProperty != null;
   }
 
   /**
@@ -0,0 +1,734 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.property.complex.recurrence;
+
+import microsoft.exchange.webservices.data.core.PropertyBag;
+import microsoft.exchange.webservices.data.core.enumeration.property.time.DayOfTheWeek;
+import microsoft.exchange.webservices.data.core.enumeration.property.time.DayOfTheWeekIndex;
+import microsoft.exchange.webservices.data.core.exception.service.local.ServiceLocalException;
+import microsoft.exchange.webservices.data.core.exception.service.local.ServiceValidationException;
+import microsoft.exchange.webservices.data.core.service.item.Appointment;
+import microsoft.exchange.webservices.data.core.service.schema.AppointmentSchema;
+import microsoft.exchange.webservices.data.property.complex.DeletedOccurrenceInfo;
+import microsoft.exchange.webservices.data.property.complex.DeletedOccurrenceInfoCollection;
+import microsoft.exchange.webservices.data.property.complex.ItemId;
+import microsoft.exchange.webservices.data.property.complex.OccurrenceInfo;
+import microsoft.exchange.webservices.data.property.complex.OccurrenceInfoCollection;
+import microsoft.exchange.webservices.data.property.complex.recurrence.pattern.Recurrence;
+import microsoft.exchange.webservices.data.property.complex.time.TimeZoneDefinition;
+import microsoft.exchange.webservices.data.util.TimeZoneUtils;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Expands a recurrence pattern into the start and end times of its occurrences, without
+ * calling the server. Occurrences are generated lazily and in order of their start for a
+ * window, skipping deleted occurrences and moving modified ones to their new times.
+ * <p>
+ * Occurrences are computed in the time zone of the recurring master, so they keep their
+ * wall clock time across daylight saving transitions. Regeneration patterns, which depend
+ * on when a task is completed, cannot be expanded.
+ * </p>
+ * <p>
+ * Instances are not thread safe while deleted or modified occurrences are being added.
+ * </p>
+ */
+public final class RecurrenceExpander {
+
+  /**
+   * The number of milliseconds in a day.
+   */
+  private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+  /**
+   * The days of the week, indexed by the day of the week of the first day since the epoch.
+   */
+  private static final int[] DAYS_OF_WEEK = {
+      Calendar.THURSDAY, Calendar.FRIDAY, Calendar.SATURDAY, Calendar.SUNDAY,
+      Calendar.MONDAY, Calendar.TUESDAY, Calendar.WEDNESDAY
+  };
+
+  /**
+   * Orders occurrences by their start.
+   */
+  private static final Comparator<Occurrence> START_ORDER = new Comparator<Occurrence>() {
+    @Override
+    public int compare(Occurrence x, Occurrence y) {
+      return x.getStart().compareTo(y.getStart());
+    }
+  };
+
+  /**
+   * The recurrence pattern.
+   */
+  private final Recurrence recurrence;
+
+  /**
+   * The time zone occurrences are computed in.
+   */
+  private final TimeZone timeZone;
+
+  /**
+   * The duration of an occurrence, in milliseconds.
+   */
+  private final long duration;
+
+  /**
+   * The hour, minute, second and millisecond an occurrence starts at.
+   */
+  private final int[] startTime;
+
+  /**
+   * The epoch day of the first day of the recurrence.
+   */
+  private final long firstDay;
+
+  /**
+   * The epoch day of the last day of the recurrence, or Long.MAX_VALUE if it has none.
+   */
+  private final long lastDay;
+
+  /**
+   * The number of occurrences, or 0 if the recurrence is not numbered.
+   */
+  private final int numberOfOccurrences;
+
+  /**
+   * The interval of the pattern, in days, weeks, months or years.
+   */
+  private int interval = 1;
+
+  /**
+   * The days of the week of a weekly pattern, indexed by Calendar day of the week.
+   */
+  private final boolean[] daysOfWeek = new boolean[Calendar.SATURDAY + 1];
+
+  /**
+   * The zero-based month of a yearly pattern.
+   */
+  private int month;
+
+  /**
+   * The day of the month of an absolute pattern.
+   */
+  private int dayOfMonth;
+
+  /**
+   * The day of the week and its index in the month of a relative pattern.
+   */
+  private DayOfTheWeek dayOfTheWeek;
+  private DayOfTheWeekIndex dayOfTheWeekIndex;
+
+  /**
+   * The original starts of the deleted occurrences.
+   */
+  private final Set<Long> deletedOccurrences = new HashSet<Long>();
+
+  /**
+   * The modified occurrences, by their original start.
+   */
+  private final Map<Long, OccurrenceInfo> modifiedOccurrences = new HashMap<Long, OccurrenceInfo>();
+
+  /**
+   * Initializes a new instance of the RecurrenceExpander class.
+   *
+   * @param recurrence the recurrence pattern
+   * @param start      the start of the first occurrence
+   * @param end        the end of the first occurrence
+   * @param timeZone   the time zone the recurrence is defined in
+   * @throws ServiceValidationException if a required property of the pattern is not set
+   */
+  public RecurrenceExpander(Recurrence recurrence, Date start, Date end, TimeZone timeZone)
+      throws ServiceValidationException {
+    if (recurrence == null || start == null || end == null || timeZone == null) {
+      throw new IllegalArgumentException("The recurrence, start, end and time zone are required.");
+    }
+    if (recurrence.isRegenerationPattern()) {
+      throw new IllegalArgumentException("Regeneration patterns cannot be expanded.");
+    }
+    if (end.before(start)) {
+      throw new IllegalArgumentException("The end of the first occurrence is before its start.");
+    }
+    this.recurrence = recurrence;
+    this.timeZone = timeZone;
+    this.duration = end.getTime() - start.getTime();
+
+    Calendar calendar = new GregorianCalendar(timeZone);
+    calendar.setTime(start);
+    this.startTime = new int[] {
+        calendar.get(Calendar.HOUR_OF_DAY),
+        calendar.get(Calendar.MINUTE),
+        calendar.get(Calendar.SECOND),
+        calendar.get(Calendar.MILLISECOND)
+    };
+
+    this.firstDay = toEpochDay(recurrence.getStartDate(), timeZone);
+    this.lastDay = recurrence.getEndDate() != null
+        ? toEpochDay(recurrence.getEndDate(), timeZone) : Long.MAX_VALUE;
+    this.numberOfOccurrences = recurrence.getNumberOfOccurrences() != null
+        ? recurrence.getNumberOfOccurrences() : 0;
+
+    if (recurrence instanceof Recurrence.IntervalPattern) {
+      this.interval = ((Recurrence.IntervalPattern) recurrence).getInterval();
+    }
+    if (recurrence instanceof Recurrence.WeeklyPattern) {
+      Recurrence.WeeklyPattern pattern = (Recurrence.WeeklyPattern) recurrence;
+      if (pattern.getDaysOfTheWeek().getCount() == 0) {
+        throw new ServiceValidationException(
+            "The recurrence pattern's property DaysOfTheWeek must contain at least one day of the week.");
+      }
+      for (int day = Calendar.SUNDAY; day <= Calendar.SATURDAY; day++) {
+        for (DayOfTheWeek dayOfTheWeek : pattern.getDaysOfTheWeek()) {
+          this.daysOfWeek[day] |= matches(dayOfTheWeek, day);
+        }
+      }
+    } else if (recurrence instanceof Recurrence.MonthlyPattern) {
+      this.dayOfMonth = ((Recurrence.MonthlyPattern) recurrence).getDayOfMonth();
+    } else if (recurrence instanceof Recurrence.RelativeMonthlyPattern) {
+      Recurrence.RelativeMonthlyPattern pattern = (Recurrence.RelativeMonthlyPattern) recurrence;
+      this.dayOfTheWeek = pattern.getDayOfTheWeek();
+      this.dayOfTheWeekIndex = pattern.getDayOfTheWeekIndex();
+    } else if (recurrence instanceof Recurrence.YearlyPattern) {
+      Recurrence.YearlyPattern pattern = (Recurrence.YearlyPattern) recurrence;
+      this.month = pattern.getMonth().ordinal();
+      this.dayOfMonth = pattern.getDayOfMonth();
+    } else if (recurrence instanceof Recurrence.RelativeYearlyPattern) {
+      Recurrence.RelativeYearlyPattern pattern = (Recurrence.RelativeYearlyPattern) recurrence;
+      this.month = pattern.getMonth().ordinal();
+      this.dayOfTheWeek = pattern.getDayOfTheWeek();
+      this.dayOfTheWeekIndex = pattern.getDayOfTheWeekIndex();
+    } else if (!(recurrence instanceof Recurrence.DailyPattern)) {
+      throw new IllegalArgumentException(String.format(
+          "Recurrence pattern %s cannot be expanded.", recurrence.getClass().getSimpleName()));
+    }
+  }
+
+  /**
+   * Creates an expander for a recurring master, including its deleted and modified
+   * occurrences when they were loaded. The start time zone of the appointment is used when
+   * it was loaded and is known, and the default time zone otherwise.
+   *
+   * @param appointment the recurring master, loaded with its recurrence, start and end
+   * @return the expander
+   * @throws ServiceLocalException if a required property was not loaded
+   */
+  public static RecurrenceExpander fromAppointment(Appointment appointment)
+      throws ServiceLocalException {
+    Recurrence recurrence = appointment.getRecurrence();
+    if (recurrence == null) {
+      throw new IllegalArgumentException("The appointment is not a recurring master.");
+    }
+
+    PropertyBag propertyBag = appointment.getPropertyBag();
+    TimeZone timeZone = null;
+    if (propertyBag.contains(AppointmentSchema.StartTimeZone)) {
+      TimeZoneDefinition startTimeZone = appointment.getStartTimeZone();
+      timeZone = TimeZoneUtils.getTimeZone(startTimeZone.getId());
+    }
+    if (timeZone == null) {
+      timeZone = TimeZone.getDefault();
+    }
+
+    RecurrenceExpander expander = new RecurrenceExpander(recurrence,
+        appointment.getStart(), appointment.getEnd(), timeZone);
+    if (propertyBag.contains(AppointmentSchema.DeletedOccurrences)) {
+      expander.addDeletedOccurrences(appointment.getDeletedOccurrences());
+    }
+    if (propertyBag.contains(AppointmentSchema.ModifiedOccurrences)) {
+      expander.addModifiedOccurrences(appointment.getModifiedOccurrences());
+    }
+    return expander;
+  }
+
+  /**
+   * Gets the time zone occurrences are computed in.
+   *
+   * @return the time zone
+   */
+  public TimeZone getTimeZone() {
+    return this.timeZone;
+  }
+
+  /**
+   * Adds occurrences that are skipped.
+   *
+   * @param deletedOccurrences the deleted occurrences
+   */
+  public void addDeletedOccurrences(DeletedOccurrenceInfoCollection deletedOccurrences) {
+    for (DeletedOccurrenceInfo deletedOccurrence : deletedOccurrences) {
+      if (deletedOccurrence.getOriginalStart() != null) {
+        this.deletedOccurrences.add(deletedOccurrence.getOriginalStart().getTime());
+      }
+    }
+  }
+
+  /**
+   * Adds occurrences that are returned at their new start and end.
+   *
+   * @param modifiedOccurrences the modified occurrences
+   */
+  public void addModifiedOccurrences(OccurrenceInfoCollection modifiedOccurrences) {
+    for (OccurrenceInfo modifiedOccurrence : modifiedOccurrences) {
+      if (modifiedOccurrence.getOriginalStart() != null
+          && modifiedOccurrence.getStart() != null && modifiedOccurrence.getEnd() != null) {
+        this.modifiedOccurrences.put(modifiedOccurrence.getOriginalStart().getTime(),
+            modifiedOccurrence);
+      }
+    }
+  }
+
+  /**
+   * Gets the occurrences that overlap a window, in order of their start. An occurrence
+   * overlaps the window when it starts before the window ends and ends after the window
+   * starts; an occurrence without duration overlaps it when it starts within it. The
+   * occurrences are computed as they are iterated.
+   *
+   * @param windowStart the start of the window
+   * @param windowEnd   the end of the window, exclusive
+   * @return the occurrences
+   */
+  public Iterable<Occurrence> getOccurrences(final Date windowStart, final Date windowEnd) {
+    if (windowStart == null || windowEnd == null) {
+      throw new IllegalArgumentException("The window start and end are required.");
+    }
+    if (windowEnd.before(windowStart)) {
+      throw new IllegalArgumentException("The window end is before its start.");
+    }
+
+    return new Iterable<Occurrence>() {
+      @Override
+      public Iterator<Occurrence> iterator() {
+        return new OccurrenceIterator(windowStart.getTime(), windowEnd.getTime());
+      }
+    };
+  }
+
+  /**
+   * Determines whether an occurrence overlaps a window.
+   */
+  private static boolean overlaps(long start, long end, long windowStart, long windowEnd) {
+    return start < windowEnd && (end > windowStart || (start == end && start >= windowStart));
+  }
+
+  /**
+   * Gets the calendar day of a recurrence date. Dates read from XML without an offset are at
+   * midnight UTC and are taken as UTC days; other dates, read with the offset of the
+   * recurrence or built by callers, are taken as days of the recurrence time zone.
+   */
+  private static long toEpochDay(Date date, TimeZone timeZone) {
+    long millis = date.getTime();
+    if (millis % MILLIS_PER_DAY == 0) {
+      return millis / MILLIS_PER_DAY;
+    }
+    return floorDiv(millis + timeZone.getOffset(millis), MILLIS_PER_DAY);
+  }
+
+  /**
+   * Divides, rounding towards negative infinity.
+   */
+  private static long floorDiv(long x, long y) {
+    long quotient = x / y;
+    return (x % y != 0 && (x ^ y) < 0) ? quotient - 1 : quotient;
+  }
+
+  /**
+   * Gets the Calendar day of the week of an epoch day.
+   */
+  private static int dayOfWeek(long epochDay) {
+    return DAYS_OF_WEEK[(int) (epochDay - floorDiv(epochDay, 7) * 7)];
+  }
+
+  /**
+   * Determines whether a Calendar day of the week matches a DayOfTheWeek, including the
+   * special days used by relative patterns.
+   */
+  private static boolean matches(DayOfTheWeek dayOfTheWeek, int dayOfWeek) {
+    switch (dayOfTheWeek) {
+      case Day:
+        return true;
+      case Weekday:
+        return dayOfWeek != Calendar.SATURDAY && dayOfWeek != Calendar.SUNDAY;
+      case WeekendDay:
+        return dayOfWeek == Calendar.SATURDAY || dayOfWeek == Calendar.SUNDAY;
+      case Sunday:
+        return dayOfWeek == Calendar.SUNDAY;
+      case Monday:
+        return dayOfWeek == Calendar.MONDAY;
+      case Tuesday:
+        return dayOfWeek == Calendar.TUESDAY;
+      case Wednesday:
+        return dayOfWeek == Calendar.WEDNESDAY;
+      case Thursday:
+        return dayOfWeek == Calendar.THURSDAY;
+      case Friday:
+        return dayOfWeek == Calendar.FRIDAY;
+      default:
+        return dayOfWeek == Calendar.SATURDAY;
+    }
+  }
+
+
+  /**
+   * Generates the days of the pattern period by period, where a period is the span the
+   * interval of the pattern steps over, and merges them with the modified occurrences.
+   */
+  private final class OccurrenceIterator implements Iterator<Occurrence> {
+
+    /**
+     * The window.
+     */
+    private final long windowStart;
+    private final long windowEnd;
+
+    /**
+     * Computes calendar days, in the proleptic Gregorian calendar.
+     */
+    private final GregorianCalendar days = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+
+    /**
+     * Computes the start of occurrences in the time zone of the recurrence.
+     */
+    private final GregorianCalendar times = new GregorianCalendar(timeZone);
+
+    /**
+     * The modified occurrences in the window, in order of their start.
+     */
+    private final List<Occurrence> modified = new ArrayList<Occurrence>();
+    private int modifiedIndex;
+
+    /**
+     * The days of the current period, and the position in them.
+     */
+    private final long[] periodDays = new long[7];
+    private int periodDayCount;
+    private int periodDayIndex;
+    private long period;
+
+    /**
+     * The number of days of the pattern generated so far.
+     */
+    private int generated;
+
+    /**
+     * Whether the pattern has no more occurrences in the window.
+     */
+    private boolean exhausted;
+
+    /**
+     * The next occurrence of the pattern, or null if not computed yet.
+     */
+    private Occurrence next;
+
+    OccurrenceIterator(long windowStart, long windowEnd) {
+      this.windowStart = windowStart;
+      this.windowEnd = windowEnd;
+      this.days.setGregorianChange(new Date(Long.MIN_VALUE));
+
+      for (OccurrenceInfo info : modifiedOccurrences.values()) {
+        if (overlaps(info.getStart().getTime(), info.getEnd().getTime(), windowStart, windowEnd)) {
+          this.modified.add(new Occurrence(info.getStart(), info.getEnd(),
+              info.getOriginalStart(), info.getItemId(), true));
+        }
+      }
+      Collections.sort(this.modified, START_ORDER);
+
+      // A numbered recurrence is counted from its first occurrence; otherwise
+      // the periods ending before the window are skipped.
+      if (numberOfOccurrences == 0) {
+        long day = floorDiv(windowStart - duration, MILLIS_PER_DAY) - 1;
+        this.period = Math.max(0, this.periodOf(day) - 1);
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (this.next == null && !this.exhausted) {
+        this.next = this.computeNext();
+        this.exhausted = this.next == null;
+      }
+      return this.next != null || this.modifiedIndex < this.modified.size();
+    }
+
+    @Override
+    public Occurrence next() {
+      if (!this.hasNext()) {
+        throw new NoSuchElementException();
+      }
+      if (this.modifiedIndex < this.modified.size()
+          && (this.next == null
+              || !this.next.getStart().before(this.modified.get(this.modifiedIndex).getStart()))) {
+        return this.modified.get(this.modifiedIndex++);
+      }
+      Occurrence occurrence = this.next;
+      this.next = null;
+      return occurrence;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Computes the next occurrence of the pattern in the window that was neither deleted
+     * nor modified.
+     */
+    private Occurrence computeNext() {
+      while (true) {
+        if (this.periodDayIndex == this.periodDayCount) {
+          this.periodDayCount = this.computePeriodDays(this.period++);
+          this.periodDayIndex = 0;
+          continue;
+        }
+
+        long day = this.periodDays[this.periodDayIndex++];
+        if (day < firstDay) {
+          continue;
+        }
+        if (day > lastDay || (numberOfOccurrences != 0 && this.generated == numberOfOccurrences)) {
+          return null;
+        }
+        this.generated++;
+
+        long start = this.startOf(day);
+        if (start >= this.windowEnd) {
+          return null;
+        }
+        long end = start + duration;
+        if (!overlaps(start, end, this.windowStart, this.windowEnd)
+            || deletedOccurrences.contains(start) || modifiedOccurrences.containsKey(start)) {
+          continue;
+        }
+        Date startDate = new Date(start);
+        return new Occurrence(startDate, new Date(end), startDate, null, false);
+      }
+    }
+
+    /**
+     * Gets the start of the occurrence on a day, in the time zone of the recurrence.
+     */
+    private long startOf(long epochDay) {
+      this.days.setTimeInMillis(epochDay * MILLIS_PER_DAY);
+      this.times.clear();
+      this.times.set(this.days.get(Calendar.YEAR), this.days.get(Calendar.MONTH),
+          this.days.get(Calendar.DAY_OF_MONTH), startTime[0], startTime[1], startTime[2]);
+      this.times.set(Calendar.MILLISECOND, startTime[3]);
+      return this.times.getTimeInMillis();
+    }
+
+    /**
+     * Gets the epoch day of a calendar day, with the day clamped to the end of the month.
+     */
+    private long epochDay(long monthIndex, int dayOfMonth) {
+      this.days.clear();
+      this.days.set((int) floorDiv(monthIndex, 12), (int) (monthIndex - floorDiv(monthIndex, 12) * 12), 1);
+      int lastDayOfMonth = this.days.getActualMaximum(Calendar.DAY_OF_MONTH);
+      return floorDiv(this.days.getTimeInMillis(), MILLIS_PER_DAY)
+          + Math.min(dayOfMonth, lastDayOfMonth) - 1;
+    }
+
+    /**
+     * Gets the month index, years times twelve plus the zero-based month, of an epoch day.
+     */
+    private long monthIndex(long epochDay) {
+      this.days.setTimeInMillis(epochDay * MILLIS_PER_DAY);
+      return this.days.get(Calendar.YEAR) * 12L + this.days.get(Calendar.MONTH);
+    }
+
+    /**
+     * Gets the epoch day of the nth day of a month matching the day of the week of a
+     * relative pattern.
+     */
+    private long relativeDay(long monthIndex) {
+      long first = this.epochDay(monthIndex, 1);
+      long last = this.epochDay(monthIndex, 31);
+      if (dayOfTheWeekIndex == DayOfTheWeekIndex.Last) {
+        long day = last;
+        while (!matches(dayOfTheWeek, dayOfWeek(day))) {
+          day--;
+        }
+        return day;
+      }
+
+      int remaining = dayOfTheWeekIndex.ordinal();
+      long day = first;
+      while (true) {
+        if (matches(dayOfTheWeek, dayOfWeek(day)) && remaining-- == 0) {
+          return day;
+        }
+        day++;
+      }
+    }
+
+    /**
+     * Gets the first day of the week the recurrence starts in. EWS weeks start on Sunday
+     * unless the pattern sets FirstDayOfWeek, which is not read as a day of the week here.
+     */
+    private long firstWeekStart() {
+      return firstDay - (dayOfWeek(firstDay) - Calendar.SUNDAY + 7) % 7;
+    }
+
+    /**
+     * Gets the period a day falls in, which may be negative.
+     */
+    private long periodOf(long epochDay) {
+      if (recurrence instanceof Recurrence.DailyPattern) {
+        return floorDiv(epochDay - firstDay, interval);
+      } else if (recurrence instanceof Recurrence.WeeklyPattern) {
+        return floorDiv(epochDay - this.firstWeekStart(), 7L * interval);
+      } else if (recurrence instanceof Recurrence.IntervalPattern) {
+        return floorDiv(this.monthIndex(epochDay) - this.monthIndex(firstDay), interval);
+      } else {
+        return floorDiv(this.monthIndex(epochDay), 12) - floorDiv(this.monthIndex(firstDay), 12);
+      }
+    }
+
+    /**
+     * Computes the days of a period in order, and returns their number.
+     */
+    private int computePeriodDays(long period) {
+      if (recurrence instanceof Recurrence.DailyPattern) {
+        this.periodDays[0] = firstDay + period * interval;
+        return 1;
+      } else if (recurrence instanceof Recurrence.WeeklyPattern) {
+        long weekStart = this.firstWeekStart() + period * 7 * interval;
+        int count = 0;
+        for (long day = weekStart; day < weekStart + 7; day++) {
+          if (daysOfWeek[dayOfWeek(day)]) {
+            this.periodDays[count++] = day;
+          }
+        }
+        return count;
+      }
+
+      long monthIndex;
+      if (recurrence instanceof Recurrence.IntervalPattern) {
+        monthIndex = this.monthIndex(firstDay) + period * interval;
+      } else {
+        monthIndex = (floorDiv(this.monthIndex(firstDay), 12) + period) * 12 + month;
+      }
+      this.periodDays[0] = dayOfTheWeek != null
+          ? this.relativeDay(monthIndex)
+          : this.epochDay(monthIndex, dayOfMonth);
+      return 1;
+    }
+  }
+
+
+  /**
+   * Represents an occurrence computed by a RecurrenceExpander.
+   */
+  public static final class Occurrence {
+
+    /**
+     * The start, end and original start.
+     */
+    private final Date start;
+    private final Date end;
+    private final Date originalStart;
+
+    /**
+     * The id of a modified occurrence.
+     */
+    private final ItemId itemId;
+
+    /**
+     * Whether the occurrence was modified.
+     */
+    private final boolean modified;
+
+    Occurrence(Date start, Date end, Date originalStart, ItemId itemId, boolean modified) {
+      this.start = start;
+      this.end = end;
+      this.originalStart = originalStart;
+      this.itemId = itemId;
+      this.modified = modified;
+    }
+
+    /**
+     * Gets the start date and time of the occurrence.
+     *
+     * @return the start
+     */
+    public Date getStart() {
+      return this.start;
+    }
+
+    /**
+     * Gets the end date and time of the occurrence.
+     *
+     * @return the end
+     */
+    public Date getEnd() {
+      return this.end;
+    }
+
+    /**
+     * Gets the date and time the occurrence was originally scheduled to start.
+     *
+     * @return the original start
+     */
+    public Date getOriginalStart() {
+      return this.originalStart;
+    }
+
+    /**
+     * Gets the id of the occurrence if it was modified, or null otherwise.
+     *
+     * @return the item id
+     */
+    public ItemId getItemId() {
+      return this.itemId;
+    }
+
+    /**
+     * Gets whether the occurrence was modified.
+     *
+     * @return true if the occurrence was modified
+     */
+    public boolean isModified() {
+      return this.modified;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s - %s", this.start, this.end);
+    }
+  }
+
+}
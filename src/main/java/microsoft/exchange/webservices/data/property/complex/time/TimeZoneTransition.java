@@ -120,17 +120,16 @@ public class TimeZoneTransition extends ComplexProperty {
           .readAttributeValue(XmlAttributeNames.Kind);
       String targetId = reader.readElementValue();
       if (targetKind.equals(PeriodTarget)) {
-        if (!this.timeZoneDefinition.getPeriods().containsKey(targetId)) {
-          this.targetPeriod = this.timeZoneDefinition.getPeriods()
-              .get(targetId);
+        this.targetPeriod = this.timeZoneDefinition.getPeriods()
+            .get(targetId);
+        if (this.targetPeriod == null) {
           throw new ServiceLocalException(String.format(
               "Invalid transition. A period with the specified Id couldn't be found: %s", targetId));
         }
       } else if (targetKind.equals(GroupTarget)) {
-        if (!this.timeZoneDefinition.getTransitionGroups().containsKey(
-            targetId)) {
-          this.targetGroup = this.timeZoneDefinition
-              .getTransitionGroups().get(targetId);
+        this.targetGroup = this.timeZoneDefinition
+            .getTransitionGroups().get(targetId);
+        if (this.targetGroup == null) {
           throw new ServiceLocalException(String.format(
               "Invalid transition. A transition group with the specified ID couldn't be found: %s", targetId));
         }
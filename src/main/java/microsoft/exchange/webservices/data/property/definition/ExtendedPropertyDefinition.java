@@ -71,6 +71,11 @@ public final class ExtendedPropertyDefinition extends PropertyDefinitionBase {
    */
   private MapiPropertyType mapiType;
 
+  /**
+   * The hash code, computed on first use; 0 if not computed yet.
+   */
+  private int hashCode;
+
   /**
    * The Constant FieldFormat.
    */
@@ -217,6 +222,10 @@ public final class ExtendedPropertyDefinition extends PropertyDefinitionBase {
       return false;
     }
 
+    if (extPropDef1.hashCode() != extPropDef2.hashCode()) {
+      return false;
+    }
+
     if (extPropDef1.getId() != null) {
       if (!extPropDef1.getId().equals(extPropDef2.getId())) {
         return false;
@@ -351,6 +360,7 @@ public final class ExtendedPropertyDefinition extends PropertyDefinitionBase {
 
     this.mapiType = reader.readAttributeValue(MapiPropertyType.class,
         XmlAttributeNames.PropertyType);
+    this.hashCode = 0;
   }
 
 
@@ -381,7 +391,17 @@ public final class ExtendedPropertyDefinition extends PropertyDefinitionBase {
    */
   @Override
   public int hashCode() {
-    return this.getPrintableName().hashCode();
+    int result = this.hashCode;
+    if (result == 0) {
+      result = this.mapiType != null ? this.mapiType.ordinal() + 1 : 0;
+      result = 31 * result + (this.propertySet != null ? this.propertySet.ordinal() + 1 : 0);
+      result = 31 * result + (this.propertySetId != null ? this.propertySetId.hashCode() : 0);
+      result = 31 * result + (this.tag != null ? this.tag : 0);
+      result = 31 * result + (this.name != null ? this.name.hashCode() : 0);
+      result = 31 * result + (this.id != null ? this.id : 0);
+      this.hashCode = result;
+    }
+    return result;
   }
 
   /**
@@ -0,0 +1,357 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.search;
+
+import microsoft.exchange.webservices.data.core.ExchangeService;
+import microsoft.exchange.webservices.data.core.exception.misc.UncheckedServiceException;
+import microsoft.exchange.webservices.data.core.service.item.Item;
+import microsoft.exchange.webservices.data.property.complex.FolderId;
+import microsoft.exchange.webservices.data.search.filter.SearchFilter;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Iterates over all items found in a folder, one page at a time.
+ * <p>
+ * Pages are requested on demand, starting at the offset of the view and continuing at the
+ * next page offset returned with each page. Given an executor, the next pages are requested
+ * in the background while the items of the current page are processed, up to a number of
+ * pages ahead.
+ * </p>
+ * <p>
+ * The iterator can be obtained once. Its methods throw an {@link UncheckedServiceException}
+ * wrapping the exception of a failed request. Closing the stream stops the iteration and
+ * discards the pages requested ahead; the view must not be used while the stream is open.
+ * </p>
+ *
+ * @see ExchangeService#findItemsStream(FolderId, SearchFilter, ItemView)
+ */
+public final class FindItemsStream implements Iterable<Item>, Closeable {
+
+  /**
+   * The default number of pages requested ahead.
+   */
+  public static final int DEFAULT_LOOK_AHEAD = 1;
+
+  private final ExchangeService service;
+
+  private final FolderId parentFolderId;
+
+  private final SearchFilter searchFilter;
+
+  private final ItemView view;
+
+  private final int lookAhead;
+
+  private final Executor executor;
+
+  /**
+   * The pages received and not yet iterated.
+   */
+  private final LinkedList<FindItemsResults<Item>> pages =
+      new LinkedList<FindItemsResults<Item>>();
+
+  private int nextOffset;
+
+  private boolean moreAvailable = true;
+
+  private boolean fetching;
+
+  private boolean closed;
+
+  private boolean iterated;
+
+  private Exception failure;
+
+  private int totalCount = -1;
+
+  /**
+   * The request of the next page submitted to the executor, until it completes. The
+   * iterating thread runs it itself if the executor has not started it, so the stream
+   * can be iterated from a task of that executor.
+   */
+  private FutureTask<Void> prefetchTask;
+
+  private final Runnable prefetch = new Runnable() {
+    @Override
+    public void run() {
+      fetchPage();
+    }
+  };
+
+  /**
+   * Initializes a new instance of the class.
+   *
+   * @param service        the service
+   * @param parentFolderId the id of the folder to search
+   * @param searchFilter   the search filter, or null
+   * @param view           the view; its page size and offset give the first page
+   * @param lookAhead      the maximum number of pages requested ahead
+   * @param executor       the executor requesting pages ahead, or null to request each page
+   *                       when it is needed
+   */
+  public FindItemsStream(ExchangeService service, FolderId parentFolderId,
+      SearchFilter searchFilter, ItemView view, int lookAhead, Executor executor) {
+    if (service == null) {
+      throw new IllegalArgumentException("service must not be null");
+    }
+    if (parentFolderId == null) {
+      throw new IllegalArgumentException("parentFolderId must not be null");
+    }
+    if (view == null) {
+      throw new IllegalArgumentException("view must not be null");
+    }
+    if (lookAhead < 0) {
+      throw new IllegalArgumentException("lookAhead must not be negative");
+    }
+    this.service = service;
+    this.parentFolderId = parentFolderId;
+    this.searchFilter = searchFilter;
+    this.view = view;
+    this.lookAhead = lookAhead;
+    this.executor = lookAhead > 0 ? executor : null;
+    this.nextOffset = view.getOffset();
+  }
+
+  /**
+   * Gets the iterator over the items found.
+   *
+   * @return the iterator
+   * @throws IllegalStateException the iterator was already obtained
+   */
+  @Override
+  public synchronized Iterator<Item> iterator() {
+    if (iterated) {
+      throw new IllegalStateException("The iterator of a FindItemsStream can only be obtained once.");
+    }
+    iterated = true;
+    return new ItemIterator();
+  }
+
+  /**
+   * Gets the total number of items matching the search, as returned with the last page.
+   *
+   * @return the total count, or -1 if no page was received yet
+   */
+  public synchronized int getTotalCount() {
+    return totalCount;
+  }
+
+  /**
+   * Gets the number of pages received and not yet iterated.
+   *
+   * @return the number of pages
+   */
+  public synchronized int getPendingPageCount() {
+    return pages.size();
+  }
+
+  /**
+   * Stops the iteration after the items of the current page. A page being requested is
+   * discarded when it arrives.
+   */
+  @Override
+  public synchronized void close() {
+    closed = true;
+    pages.clear();
+    if (prefetchTask != null) {
+      prefetchTask.cancel(false);
+      prefetchTask = null;
+      fetching = false;
+    }
+    notifyAll();
+  }
+
+  /**
+   * Requests the page at the next offset and adds it to the pages.
+   */
+  private void fetchPage() {
+    FindItemsResults<Item> results = null;
+    Exception error = null;
+    try {
+      synchronized (this) {
+        view.setOffset(nextOffset);
+      }
+      results = service.findItems(parentFolderId, searchFilter, view);
+    } catch (Exception e) {
+      error = e;
+    }
+
+    FutureTask<Void> nextPrefetchTask;
+    synchronized (this) {
+      fetching = false;
+      prefetchTask = null;
+      if (error != null) {
+        failure = error;
+      } else if (!closed) {
+        pages.add(results);
+        totalCount = results.getTotalCount();
+        Integer nextPageOffset = results.getNextPageOffset();
+        moreAvailable = results.isMoreAvailable() && nextPageOffset != null;
+        if (moreAvailable) {
+          nextOffset = nextPageOffset;
+        }
+      }
+      notifyAll();
+      nextPrefetchTask = startPrefetch();
+    }
+    if (nextPrefetchTask != null) {
+      submitPrefetch(nextPrefetchTask);
+    }
+  }
+
+  /**
+   * Checks whether the next page should be requested ahead, and marks it as being requested.
+   *
+   * @return the task to submit to the executor, or null if no page is requested ahead
+   */
+  private FutureTask<Void> startPrefetch() {
+    if (executor == null || fetching || closed || failure != null || !moreAvailable
+        || pages.size() >= lookAhead) {
+      return null;
+    }
+    fetching = true;
+    prefetchTask = new FutureTask<Void>(prefetch, null);
+    return prefetchTask;
+  }
+
+  /**
+   * Submits the request of the next page to the executor. If the executor rejects it, the
+   * page is requested when it is needed.
+   *
+   * @param task the task returned by {@link #startPrefetch()}
+   */
+  private void submitPrefetch(FutureTask<Void> task) {
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      synchronized (this) {
+        if (prefetchTask == task) {
+          prefetchTask = null;
+          fetching = false;
+        }
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Takes the next page, waiting for it or requesting it if needed.
+   *
+   * @return the page, or null if there are no more pages
+   */
+  private FindItemsResults<Item> takePage() {
+    while (true) {
+      FindItemsResults<Item> page = null;
+      FutureTask<Void> nextPrefetchTask = null;
+      FutureTask<Void> pendingPrefetchTask = null;
+      synchronized (this) {
+        while (pages.isEmpty() && fetching && !closed) {
+          if (prefetchTask != null) {
+            // The executor may not get to it, for instance when this thread is one of its own.
+            pendingPrefetchTask = prefetchTask;
+            prefetchTask = null;
+            break;
+          }
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedServiceException(e);
+          }
+        }
+
+        if (pendingPrefetchTask != null) {
+          // Run below, outside the lock.
+        } else if (closed) {
+          return null;
+        } else if (!pages.isEmpty()) {
+          page = pages.removeFirst();
+          nextPrefetchTask = startPrefetch();
+        } else if (failure != null) {
+          throw new UncheckedServiceException(failure);
+        } else if (!moreAvailable) {
+          return null;
+        } else {
+          fetching = true;
+        }
+      }
+
+      if (pendingPrefetchTask != null) {
+        // Does nothing if the executor already started the task; its page is then awaited.
+        pendingPrefetchTask.run();
+      } else if (page != null) {
+        if (nextPrefetchTask != null) {
+          submitPrefetch(nextPrefetchTask);
+        }
+        return page;
+      } else {
+        fetchPage();
+      }
+    }
+  }
+
+
+  /**
+   * Iterates over the items of the pages.
+   */
+  private final class ItemIterator implements Iterator<Item> {
+
+    private Iterator<Item> page = Collections.<Item>emptyList().iterator();
+
+    @Override
+    public boolean hasNext() {
+      while (!page.hasNext()) {
+        FindItemsResults<Item> next = takePage();
+        if (next == null) {
+          return false;
+        }
+        page = next.iterator();
+      }
+      return true;
+    }
+
+    @Override
+    public Item next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return page.next();
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+}
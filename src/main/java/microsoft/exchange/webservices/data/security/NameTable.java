@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.security;
+
+import microsoft.exchange.webservices.data.core.exception.misc.ArgumentNullException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread-safe table of atomized String objects.
+ * <p>
+ * Names looked up in the table are returned as the one instance stored in it, so two
+ * atomized names are equal exactly when they are the same reference.
+ * </p>
+ */
+public class NameTable extends XmlNameTable {
+
+  private final ConcurrentMap<String, String> names = new ConcurrentHashMap<String, String>();
+
+  /**
+   * Initializes a new instance of the NameTable class.
+   */
+  public NameTable() {
+    super();
+  }
+
+  /**
+   * Atomizes the specified String and adds it to the table.
+   *
+   * @param array The name to add.
+   * @return The new atomized String or the existing one if it already exists.
+   * @throws ArgumentNullException array is null.
+   */
+  @Override
+  public String Add(String array) {
+    if (array == null) {
+      throw new ArgumentNullException("array");
+    }
+    final String existing = names.putIfAbsent(array, array);
+    return existing != null ? existing : array;
+  }
+
+  /**
+   * Atomizes the specified range of characters and adds it to the table.
+   *
+   * @param array  The character array containing the name to add.
+   * @param offset Zero-based index into the array of the first character of the name.
+   * @param length The number of characters in the name.
+   * @return The new atomized String or the existing one if it already exists.
+   * @throws IndexOutOfBoundsException the range is outside the array.
+   */
+  @Override
+  public String Add(char[] array, int offset, int length) {
+    return Add(toString(array, offset, length));
+  }
+
+  /**
+   * Gets the atomized String containing the same value as the specified String.
+   *
+   * @param array The name to look up.
+   * @return The atomized String or null if the String has not already been atomized.
+   * @throws ArgumentNullException array is null.
+   */
+  @Override
+  public String Get(String array) {
+    if (array == null) {
+      throw new ArgumentNullException("array");
+    }
+    return names.get(array);
+  }
+
+  /**
+   * Gets the atomized String containing the same characters as the specified range.
+   *
+   * @param array  The character array containing the name to look up.
+   * @param offset Zero-based index into the array of the first character of the name.
+   * @param length The number of characters in the name.
+   * @return The atomized String or null if the String has not already been atomized.
+   * @throws IndexOutOfBoundsException the range is outside the array.
+   */
+  @Override
+  public String Get(char[] array, int offset, int length) {
+    return Get(toString(array, offset, length));
+  }
+
+  private static String toString(char[] array, int offset, int length) {
+    if (array == null) {
+      throw new ArgumentNullException("array");
+    }
+    return new String(array, offset, length);
+  }
+}
@@ -60,7 +60,7 @@ public class SafeXmlDocument extends DocumentBuilder {
 
   public SafeXmlDocument() {
     super();
-    inputFactory = XMLInputFactory.newInstance();
+    inputFactory = SafeXmlFactory.getInputFactory();
   }
 
   /**
@@ -84,7 +84,7 @@ public class SafeXmlDocument extends DocumentBuilder {
   public SafeXmlDocument(XmlNameTable nt) {
     super();
     if (inputFactory == null) {
-      inputFactory = XMLInputFactory.newInstance();
+      inputFactory = SafeXmlFactory.getInputFactory();
     }
   }
 
@@ -24,18 +24,69 @@
 package microsoft.exchange.webservices.data.security;
 
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamReader;
 
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.Reader;
 
+/**
+ * Holds the XML factories shared by all readers and writers.
+ * <p>
+ * Looking a factory up through XMLInputFactory.newInstance() goes through the
+ * service loader on every call, so the factories are created and configured once.
+ * DTD processing and external entity resolution are disabled on the input factory,
+ * since EWS never uses them. The factories must not be reconfigured after class
+ * initialization; creating readers and writers from them is safe from any thread.
+ * </p>
+ */
 public class SafeXmlFactory {
-  public static XMLInputFactory factory = XMLInputFactory.newInstance();
+  private static final XMLInputFactory inputFactory = createInputFactory();
+
+  /**
+   * The shared, hardened input factory. Assigning it does not change the factory used by
+   * the readers.
+   *
+   * @deprecated use {@link #getInputFactory()} instead
+   */
+  @Deprecated
+  public static XMLInputFactory factory = inputFactory;
+
+  private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+  /**
+   * Gets the shared, hardened input factory.
+   *
+   * @return the input factory
+   */
+  public static XMLInputFactory getInputFactory() {
+    return inputFactory;
+  }
 
+  /**
+   * Gets the shared output factory.
+   *
+   * @return the output factory
+   */
+  public static XMLOutputFactory getOutputFactory() {
+    return outputFactory;
+  }
+
+  /**
+   * Creates an input factory that does not process DTDs or resolve external entities.
+   *
+   * @return the input factory
+   */
+  private static XMLInputFactory createInputFactory() {
+    XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+    inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    return inputFactory;
+  }
 
   public static XMLStreamReader createSafeXmlTextReader(InputStream stream) throws Exception {
-    XMLStreamReader xsr = factory.createXMLStreamReader(stream);
+    XMLStreamReader xsr = inputFactory.createXMLStreamReader(stream);
     return xsr;
 
   }
@@ -43,14 +94,14 @@ public class SafeXmlFactory {
 
   public static XMLStreamReader createSafeXmlTextReader(String url) throws Exception {
     FileInputStream fis = new FileInputStream(url);
-    XMLStreamReader xtr = factory.createXMLStreamReader(url, fis);
+    XMLStreamReader xtr = inputFactory.createXMLStreamReader(url, fis);
     return xtr;
   }
 
   public static XMLStreamReader createSafeXmlTextReader(XMLStreamReader reader) throws Exception {
 
     XMLStreamReader xmlr =
-        factory.createXMLStreamReader((Reader) reader);
+        inputFactory.createXMLStreamReader((Reader) reader);
     return xmlr;
 
 
@@ -57,7 +57,7 @@ public class SafeXmlSchema extends Schema {
    * @throws javax.xml.stream.XMLStreamException
    */
   public static Schema read(final InputStream stream) throws XMLStreamException {
-    final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+    final XMLInputFactory inputFactory = SafeXmlFactory.getInputFactory();
     return (Schema) inputFactory.createXMLEventReader(stream);
   }
 
@@ -70,7 +70,7 @@ public class SafeXmlSchema extends Schema {
    */
 
   public static Schema read(XMLStreamReader reader) throws XMLStreamException {
-    final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+    final XMLInputFactory inputFactory = SafeXmlFactory.getInputFactory();
     return (Schema) inputFactory.createXMLEventReader(reader);
   }
 
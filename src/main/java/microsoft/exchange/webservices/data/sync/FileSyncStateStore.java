@@ -0,0 +1,159 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.sync;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Stores sync states in a directory, one file per folder.
+ * <p>
+ * A sync state is written to a temporary file which then replaces the previous one, so an
+ * interrupted write leaves the previous sync state in place.
+ * </p>
+ */
+public class FileSyncStateStore implements SyncStateStore {
+
+  private static final String CHARSET = "UTF-8";
+
+  private static final String EXTENSION = ".syncstate";
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final File directory;
+
+  /**
+   * Initializes a new instance of the class.
+   *
+   * @param directory the directory containing the sync states; created if it does not exist
+   * @throws IOException the directory could not be created
+   */
+  public FileSyncStateStore(File directory) throws IOException {
+    if (directory == null) {
+      throw new IllegalArgumentException("directory must not be null");
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Could not create directory " + directory);
+    }
+    this.directory = directory;
+  }
+
+  /**
+   * Gets the directory containing the sync states.
+   *
+   * @return the directory
+   */
+  public File getDirectory() {
+    return directory;
+  }
+
+  @Override
+  public String load(String key) throws IOException {
+    InputStream in;
+    try {
+      in = new FileInputStream(getFile(key));
+    } catch (FileNotFoundException e) {
+      return null;
+    }
+
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int count;
+      while ((count = in.read(buffer)) != -1) {
+        bytes.write(buffer, 0, count);
+      }
+      return bytes.toString(CHARSET);
+    } finally {
+      in.close();
+    }
+  }
+
+  @Override
+  public void save(String key, String syncState) throws IOException {
+    File file = getFile(key);
+    if (syncState == null) {
+      if (file.exists() && !file.delete()) {
+        throw new IOException("Could not delete " + file);
+      }
+      return;
+    }
+
+    File temp = File.createTempFile(file.getName(), ".tmp", directory);
+    try {
+      FileOutputStream out = new FileOutputStream(temp);
+      try {
+        out.write(syncState.getBytes(CHARSET));
+        out.getFD().sync();
+      } finally {
+        out.close();
+      }
+
+      // Renaming over an existing file fails on some platforms.
+      if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+        throw new IOException("Could not replace " + file);
+      }
+    } finally {
+      if (temp.exists() && !temp.delete()) {
+        temp.deleteOnExit();
+      }
+    }
+  }
+
+  /**
+   * Gets the file of a sync state. Keys are hashed, since folder ids may be longer than a
+   * file name or contain characters not allowed in one.
+   *
+   * @param key the key of the folder
+   * @return the file
+   */
+  private File getFile(String key) throws IOException {
+    if (key == null) {
+      throw new IllegalArgumentException("key must not be null");
+    }
+
+    byte[] digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(CHARSET));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+
+    char[] name = new char[digest.length * 2];
+    for (int i = 0; i < digest.length; i++) {
+      name[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+      name[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xf];
+    }
+    return new File(directory, new String(name) + EXTENSION);
+  }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.sync;
+
+import microsoft.exchange.webservices.data.property.complex.FolderId;
+
+/**
+ * Receives the item changes of folders synchronized by a {@link SyncFolderItemsEngine}.
+ * <p>
+ * Folders are synchronized on several threads at a time, so this listener is called
+ * concurrently; the changes of a single folder are delivered in order, on one thread at a time.
+ * </p>
+ */
+public interface IItemChangeListener {
+
+  /**
+   * Handles an item change.
+   * <p>
+   * The sync state of the folder is saved once all changes of a response have been handled.
+   * If this method throws, the synchronization of the folder stops and the changes of the
+   * response are delivered again by the next synchronization.
+   * </p>
+   *
+   * @param folderId the folder containing the item
+   * @param change   the change
+   * @throws Exception the change could not be handled
+   */
+  void itemChanged(FolderId folderId, ItemChange change) throws Exception;
+
+}
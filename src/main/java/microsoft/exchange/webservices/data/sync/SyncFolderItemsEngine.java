@@ -0,0 +1,510 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.sync;
+
+import microsoft.exchange.webservices.data.core.ExchangeService;
+import microsoft.exchange.webservices.data.core.PropertySet;
+import microsoft.exchange.webservices.data.core.enumeration.service.SyncFolderItemsScope;
+import microsoft.exchange.webservices.data.credential.ExchangeCredentials;
+import microsoft.exchange.webservices.data.credential.WebCredentials;
+import microsoft.exchange.webservices.data.misc.ImpersonatedUserId;
+import microsoft.exchange.webservices.data.property.complex.FolderId;
+import microsoft.exchange.webservices.data.property.complex.Mailbox;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Synchronizes the items of many folders, several folders at a time.
+ * <p>
+ * Each folder is synchronized with SyncFolderItems calls until no more changes are available.
+ * The changes are passed to an {@link IItemChangeListener} and the sync state of the folder is
+ * saved to a {@link SyncStateStore} after each call, so the next synchronization, possibly by
+ * another process, only gets the changes made since.
+ * </p>
+ * <p>
+ * At most {@link #getMaxConcurrentFoldersPerMailbox()} folders of a mailbox are synchronized
+ * at a time. The calls run on the executor of this engine, or, if none was set, on the async
+ * executor of the service of each folder, which limits the calls to the connections of the
+ * service.
+ * </p>
+ */
+public class SyncFolderItemsEngine {
+
+  private static final Log LOG = LogFactory.getLog(SyncFolderItemsEngine.class);
+
+  /**
+   * The default maximum number of folders of a mailbox synchronized at a time.
+   */
+  public static final int DEFAULT_MAX_CONCURRENT_FOLDERS_PER_MAILBOX = 4;
+
+  /**
+   * The maximum number of changes EWS returns per SyncFolderItems call.
+   */
+  public static final int MAX_CHANGES_RETURNED = 512;
+
+  private final SyncStateStore syncStateStore;
+
+  private final IItemChangeListener listener;
+
+  private final List<Folder> folders = new ArrayList<Folder>();
+
+  private volatile PropertySet propertySet = PropertySet.FirstClassProperties;
+
+  private volatile SyncFolderItemsScope syncScope = SyncFolderItemsScope.NormalItems;
+
+  private volatile int maxChangesReturned = MAX_CHANGES_RETURNED;
+
+  private volatile int maxConcurrentFoldersPerMailbox = DEFAULT_MAX_CONCURRENT_FOLDERS_PER_MAILBOX;
+
+  private volatile Executor executor;
+
+  /**
+   * Initializes a new instance of the class.
+   *
+   * @param syncStateStore the store of the sync states
+   * @param listener       the listener receiving the item changes
+   */
+  public SyncFolderItemsEngine(SyncStateStore syncStateStore, IItemChangeListener listener) {
+    if (syncStateStore == null) {
+      throw new IllegalArgumentException("syncStateStore must not be null");
+    }
+    if (listener == null) {
+      throw new IllegalArgumentException("listener must not be null");
+    }
+    this.syncStateStore = syncStateStore;
+    this.listener = listener;
+  }
+
+  /**
+   * Gets the store of the sync states.
+   *
+   * @return the store
+   */
+  public SyncStateStore getSyncStateStore() {
+    return syncStateStore;
+  }
+
+  /**
+   * Gets the set of properties retrieved for changed items.
+   *
+   * @return the property set
+   */
+  public PropertySet getPropertySet() {
+    return propertySet;
+  }
+
+  /**
+   * Sets the set of properties retrieved for changed items.
+   *
+   * @param propertySet the property set
+   */
+  public void setPropertySet(PropertySet propertySet) {
+    if (propertySet == null) {
+      throw new IllegalArgumentException("propertySet must not be null");
+    }
+    this.propertySet = propertySet;
+  }
+
+  /**
+   * Gets the scope of the synchronized items.
+   *
+   * @return the sync scope
+   */
+  public SyncFolderItemsScope getSyncScope() {
+    return syncScope;
+  }
+
+  /**
+   * Sets the scope of the synchronized items.
+   *
+   * @param syncScope the sync scope
+   */
+  public void setSyncScope(SyncFolderItemsScope syncScope) {
+    if (syncScope == null) {
+      throw new IllegalArgumentException("syncScope must not be null");
+    }
+    this.syncScope = syncScope;
+  }
+
+  /**
+   * Gets the maximum number of changes requested per SyncFolderItems call.
+   *
+   * @return the maximum number of changes
+   */
+  public int getMaxChangesReturned() {
+    return maxChangesReturned;
+  }
+
+  /**
+   * Sets the maximum number of changes requested per SyncFolderItems call.
+   *
+   * @param maxChangesReturned the maximum number of changes, between 1 and 512
+   */
+  public void setMaxChangesReturned(int maxChangesReturned) {
+    if (maxChangesReturned < 1 || maxChangesReturned > MAX_CHANGES_RETURNED) {
+      throw new IllegalArgumentException(
+          "maxChangesReturned must be between 1 and " + MAX_CHANGES_RETURNED);
+    }
+    this.maxChangesReturned = maxChangesReturned;
+  }
+
+  /**
+   * Gets the maximum number of folders of a mailbox synchronized at a time.
+   *
+   * @return the maximum number of folders
+   */
+  public int getMaxConcurrentFoldersPerMailbox() {
+    return maxConcurrentFoldersPerMailbox;
+  }
+
+  /**
+   * Sets the maximum number of folders of a mailbox synchronized at a time.
+   *
+   * @param maxConcurrentFoldersPerMailbox the maximum number of folders
+   */
+  public void setMaxConcurrentFoldersPerMailbox(int maxConcurrentFoldersPerMailbox) {
+    if (maxConcurrentFoldersPerMailbox < 1) {
+      throw new IllegalArgumentException("maxConcurrentFoldersPerMailbox must be positive");
+    }
+    this.maxConcurrentFoldersPerMailbox = maxConcurrentFoldersPerMailbox;
+  }
+
+  /**
+   * Gets the executor synchronizing the folders.
+   *
+   * @return the executor, or null if the folders are synchronized on the async executor of
+   * their service
+   */
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Sets the executor synchronizing the folders. The folders synchronized at a time need as
+   * many connections; see {@link ExchangeService#setConnectionPool}.
+   *
+   * @param executor the executor, or null to synchronize the folders on the async executor
+   *                 of their service
+   */
+  public void setExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Adds a folder to synchronize. A well-known folder must be in a known mailbox, see
+   * {@link #getMailbox(ExchangeService, FolderId)}, so that the sync states of the same
+   * folder of different mailboxes are kept apart.
+   *
+   * @param service  the service used to synchronize the folder
+   * @param folderId the id of the folder
+   */
+  public synchronized void addFolder(ExchangeService service, FolderId folderId) {
+    if (service == null) {
+      throw new IllegalArgumentException("service must not be null");
+    }
+    if (folderId == null) {
+      throw new IllegalArgumentException("folderId must not be null");
+    }
+    String mailbox = getMailbox(service, folderId);
+    if (mailbox == null && folderId.getUniqueId() == null) {
+      throw new IllegalArgumentException("The mailbox of folder " + folderId.getFolderName()
+          + " cannot be determined; set the mailbox of the folder id.");
+    }
+    folders.add(new Folder(service, folderId, mailbox != null ? mailbox : service,
+        getSyncStateKey(mailbox, folderId)));
+  }
+
+  /**
+   * Gets the number of folders to synchronize.
+   *
+   * @return the number of folders
+   */
+  public synchronized int getFolderCount() {
+    return folders.size();
+  }
+
+  /**
+   * Synchronizes all folders and waits until they are done. A folder whose synchronization
+   * fails does not stop the synchronization of the others.
+   *
+   * @return the exceptions of the folders whose synchronization failed, by folder id
+   * @throws InterruptedException the calling thread was interrupted; no more folders are
+   *                              started, and the folders being synchronized stop after
+   *                              their current call
+   */
+  public synchronized Map<FolderId, Exception> synchronize() throws InterruptedException {
+    Run run = new Run(folders.size());
+    Map<Object, MailboxQueue> queues = new LinkedHashMap<Object, MailboxQueue>();
+    for (Folder folder : folders) {
+      MailboxQueue queue = queues.get(folder.mailbox);
+      if (queue == null) {
+        queue = new MailboxQueue();
+        queues.put(folder.mailbox, queue);
+      }
+      queue.pending.add(folder);
+    }
+
+    List<Folder> started = new ArrayList<Folder>();
+    int maxConcurrentFolders = this.maxConcurrentFoldersPerMailbox;
+    synchronized (run) {
+      for (MailboxQueue queue : queues.values()) {
+        while (queue.running < maxConcurrentFolders && !queue.pending.isEmpty()) {
+          Folder folder = queue.pending.removeFirst();
+          run.queues.put(folder, queue);
+          queue.running++;
+          started.add(folder);
+        }
+        for (Folder folder : queue.pending) {
+          run.queues.put(folder, queue);
+        }
+      }
+    }
+
+    for (Folder folder : started) {
+      start(run, folder);
+    }
+
+    synchronized (run) {
+      try {
+        while (run.remaining > 0) {
+          run.wait();
+        }
+      } catch (InterruptedException e) {
+        run.cancelled = true;
+        throw e;
+      }
+      return Collections.unmodifiableMap(new LinkedHashMap<FolderId, Exception>(run.failures));
+    }
+  }
+
+  /**
+   * Gets the mailbox of a folder, used to limit the folders synchronized at a time per
+   * mailbox and to tell apart well-known folders of different mailboxes.
+   *
+   * @param service  the service used to synchronize the folder
+   * @param folderId the id of the folder
+   * @return the SMTP address of the mailbox, the impersonated user id, the user name of the
+   * web credentials of the service, or null if the mailbox cannot be determined
+   */
+  protected String getMailbox(ExchangeService service, FolderId folderId) {
+    Mailbox mailbox = folderId.getMailbox();
+    if (mailbox != null && mailbox.getAddress() != null) {
+      return mailbox.getAddress().toLowerCase(Locale.ENGLISH);
+    }
+    ImpersonatedUserId impersonatedUserId = service.getImpersonatedUserId();
+    if (impersonatedUserId != null && impersonatedUserId.getId() != null) {
+      return impersonatedUserId.getId().toLowerCase(Locale.ENGLISH);
+    }
+    ExchangeCredentials credentials = service.getCredentials();
+    if (credentials instanceof WebCredentials && ((WebCredentials) credentials).getUser() != null) {
+      WebCredentials webCredentials = (WebCredentials) credentials;
+      String domain = webCredentials.getDomain();
+      String user = domain != null && !domain.isEmpty()
+          ? domain + "\\" + webCredentials.getUser() : webCredentials.getUser();
+      return user.toLowerCase(Locale.ENGLISH);
+    }
+    return null;
+  }
+
+  /**
+   * Gets the key of the sync state of a folder in the sync state store.
+   *
+   * @param mailbox  the mailbox of the folder, or null
+   * @param folderId the id of the folder
+   * @return the key
+   */
+  protected String getSyncStateKey(String mailbox, FolderId folderId) {
+    String folder = folderId.getUniqueId() != null
+        ? folderId.getUniqueId() : folderId.getFolderName().name();
+    return mailbox != null ? mailbox + "/" + folder : folder;
+  }
+
+  /**
+   * Submits the synchronization of a folder.
+   *
+   * @param run    the run
+   * @param folder the folder
+   */
+  private void start(Run run, Folder folder) {
+    while (folder != null) {
+      Executor folderExecutor = this.executor;
+      if (folderExecutor == null) {
+        folderExecutor = folder.service.getAsyncExecutor();
+      }
+      try {
+        folderExecutor.execute(new FolderTask(run, folder));
+        return;
+      } catch (RejectedExecutionException e) {
+        folder = run.completed(folder, e);
+      }
+    }
+  }
+
+  /**
+   * Synchronizes a folder until no more changes are available.
+   *
+   * @param run    the run
+   * @param folder the folder
+   * @throws Exception the exception
+   */
+  private void synchronizeFolder(Run run, Folder folder) throws Exception {
+    String syncState = syncStateStore.load(folder.syncStateKey);
+    ChangeCollection<ItemChange> changes;
+    do {
+      changes = folder.service.syncFolderItems(folder.folderId, propertySet, null,
+          maxChangesReturned, syncScope, syncState);
+      for (ItemChange change : changes) {
+        listener.itemChanged(folder.folderId, change);
+      }
+      syncState = changes.getSyncState();
+      syncStateStore.save(folder.syncStateKey, syncState);
+    } while (changes.getMoreChangesAvailable() && !run.cancelled);
+  }
+
+
+  /**
+   * A folder to synchronize.
+   */
+  private static final class Folder {
+
+    final ExchangeService service;
+
+    final FolderId folderId;
+
+    /**
+     * The mailbox address, or the service if the mailbox is not known.
+     */
+    final Object mailbox;
+
+    final String syncStateKey;
+
+    Folder(ExchangeService service, FolderId folderId, Object mailbox, String syncStateKey) {
+      this.service = service;
+      this.folderId = folderId;
+      this.mailbox = mailbox;
+      this.syncStateKey = syncStateKey;
+    }
+  }
+
+
+  /**
+   * The folders of a mailbox waiting to be synchronized.
+   */
+  private static final class MailboxQueue {
+
+    final LinkedList<Folder> pending = new LinkedList<Folder>();
+
+    int running;
+  }
+
+
+  /**
+   * The state of a call to {@link #synchronize()}.
+   */
+  private static final class Run {
+
+    final Map<Folder, MailboxQueue> queues = new IdentityHashMap<Folder, MailboxQueue>();
+
+    final Map<FolderId, Exception> failures = new LinkedHashMap<FolderId, Exception>();
+
+    int remaining;
+
+    volatile boolean cancelled;
+
+    Run(int remaining) {
+      this.remaining = remaining;
+    }
+
+    /**
+     * Records the end of the synchronization of a folder.
+     *
+     * @param folder  the folder
+     * @param failure the exception, or null if the synchronization succeeded
+     * @return the next folder of the mailbox to synchronize, or null
+     */
+    synchronized Folder completed(Folder folder, Exception failure) {
+      if (failure != null) {
+        LOG.warn("Synchronization of folder " + folder.folderId + " failed", failure);
+        failures.put(folder.folderId, failure);
+      }
+      remaining--;
+      notifyAll();
+
+      MailboxQueue queue = queues.get(folder);
+      Folder next = cancelled ? null : queue.pending.poll();
+      if (next == null) {
+        queue.running--;
+      }
+      return next;
+    }
+  }
+
+
+  /**
+   * Synchronizes a folder, then the next folders of its mailbox, one after the other.
+   */
+  private final class FolderTask implements Runnable {
+
+    private final Run run;
+
+    private final Folder folder;
+
+    FolderTask(Run run, Folder folder) {
+      this.run = run;
+      this.folder = folder;
+    }
+
+    @Override
+    public void run() {
+      Folder current = folder;
+      while (current != null) {
+        Exception failure = null;
+        try {
+          if (!run.cancelled) {
+            synchronizeFolder(run, current);
+          }
+        } catch (Exception e) {
+          failure = e;
+        } catch (Error e) {
+          start(run, run.completed(current, null));
+          throw e;
+        }
+        current = run.completed(current, failure);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.sync;
+
+import java.io.IOException;
+
+/**
+ * Stores the sync states of synchronized folders, so that a later synchronization resumes
+ * where the previous one stopped.
+ * <p>
+ * Implementations must be safe for use by several threads at a time.
+ * </p>
+ */
+public interface SyncStateStore {
+
+  /**
+   * Gets the sync state stored for a folder.
+   *
+   * @param key the key of the folder
+   * @return the sync state, or null if none is stored
+   * @throws IOException the sync state could not be read
+   */
+  String load(String key) throws IOException;
+
+  /**
+   * Stores the sync state of a folder, replacing the previous one.
+   *
+   * @param key       the key of the folder
+   * @param syncState the sync state, or null to remove it
+   * @throws IOException the sync state could not be written
+   */
+  void save(String key, String syncState) throws IOException;
+
+}
@@ -23,15 +23,42 @@
 
 package microsoft.exchange.webservices.data.util;
 
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
-
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.TimeZone;
 
+/**
+ * Parses and formats the ISO-8601 date times of EWS in a single pass, without intermediate
+ * objects. The variants accepted are a date, optionally followed by a time with any number
+ * of fractional second digits, optionally followed by Z or an offset of the form +hh:mm or
+ * +hhmm. Dates are in the proleptic Gregorian calendar, and UTC is assumed without a zone.
+ */
 public final class DateTimeUtils {
 
-  private static final DateTimeFormatter[] DATE_TIME_FORMATS = createDateTimeFormats();
-  private static final DateTimeFormatter[] DATE_FORMATS = createDateFormats();
+  private static final long MILLIS_PER_SECOND = 1000L;
+  private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+  private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+  private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+  /**
+   * The first instant of the Gregorian calendar of java.util, 1582-10-15T00:00:00Z. Earlier
+   * dates are formatted in the Julian calendar, as SimpleDateFormat does.
+   */
+  private static final long GREGORIAN_CUTOVER = -12219292800000L;
+
+  /**
+   * The first instant of the year 10000, from which years have more than four digits.
+   */
+  private static final long YEAR_10000 = 253402300800000L;
+
+  private static final String UNIVERSAL_DATE_TIME_PATTERN = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+  private static final String UNIVERSAL_DATE_PATTERN = "yyyy-MM-dd'Z'";
+
+  /**
+   * The value returned by the parser for an invalid string.
+   */
+  private static final long INVALID = Long.MIN_VALUE;
 
 
   private DateTimeUtils() {
@@ -51,7 +78,7 @@ public final class DateTimeUtils {
    * @throws java.lang.IllegalArgumentException If string can not be parsed.
    */
   public static Date convertDateTimeStringToDate(String value) {
-    return parseInternal(value, false);
+    return parseInternal(value, false, false);
   }
 
   /**
@@ -65,53 +92,252 @@ public final class DateTimeUtils {
    * @throws java.lang.IllegalArgumentException If string can not be parsed.
    */
   public static Date convertDateStringToDate(String value) {
-    return parseInternal(value, true);
+    return parseInternal(value, true, false);
+  }
+
+  /**
+   * Converts an unbiased date time string, such as the start of an appointment scoped to
+   * the time zone of the service, to a date holding its fields in UTC. A time zone in the
+   * string is ignored.
+   *
+   * @param value The string value to parse.
+   * @return The parsed {@link Date}.
+   *
+   * @throws java.lang.IllegalArgumentException If string can not be parsed.
+   */
+  public static Date convertUnbiasedDateTimeStringToDate(String value) {
+    return parseInternal(value, false, true);
+  }
+
+  /**
+   * Formats a date as a UTC date time, such as 2015-06-01T10:30:45Z.
+   *
+   * @param date The date.
+   * @return The formatted date time.
+   */
+  public static String formatUniversalDateTime(Date date) {
+    long millis = date.getTime();
+    if (millis < GREGORIAN_CUTOVER || millis >= YEAR_10000) {
+      return formatLegacy(date, UNIVERSAL_DATE_TIME_PATTERN);
+    }
+
+    char[] chars = new char[20];
+    long days = floorDiv(millis, MILLIS_PER_DAY);
+    int timeOfDay = (int) (millis - days * MILLIS_PER_DAY);
+    writeDate(chars, days);
+    chars[10] = 'T';
+    writeTwoDigits(chars, 11, timeOfDay / (int) MILLIS_PER_HOUR);
+    chars[13] = ':';
+    writeTwoDigits(chars, 14, timeOfDay / (int) MILLIS_PER_MINUTE % 60);
+    chars[16] = ':';
+    writeTwoDigits(chars, 17, timeOfDay / (int) MILLIS_PER_SECOND % 60);
+    chars[19] = 'Z';
+    return new String(chars);
   }
 
+  /**
+   * Formats a date as a UTC date, such as 2015-06-01Z.
+   *
+   * @param date The date.
+   * @return The formatted date.
+   */
+  public static String formatUniversalDate(Date date) {
+    long millis = date.getTime();
+    if (millis < GREGORIAN_CUTOVER || millis >= YEAR_10000) {
+      return formatLegacy(date, UNIVERSAL_DATE_PATTERN);
+    }
+
+    char[] chars = new char[11];
+    writeDate(chars, floorDiv(millis, MILLIS_PER_DAY));
+    chars[10] = 'Z';
+    return new String(chars);
+  }
 
-  private static Date parseInternal(String value, boolean dateOnly) {
-    String originalValue = value;
 
+  private static Date parseInternal(String value, boolean dateOnly, boolean ignoreZone) {
     if (value == null || value.isEmpty()) {
       return null;
-    } else {
-      if (value.endsWith("z")) {
-        // This seems to be an edge case. Let's uppercase the Z to be sure.
-        value = value.substring(0, value.length() - 1) + "Z";
+    }
+
+    long millis = parseMillis(value, dateOnly, ignoreZone);
+    if (millis == INVALID) {
+      throw new IllegalArgumentException(
+          String.format("Date String %s not in valid UTC/local format", value));
+    }
+    return new Date(millis);
+  }
+
+  /**
+   * Parses a date time to milliseconds since the epoch.
+   *
+   * @param value      the string
+   * @param dateOnly   whether a time is rejected
+   * @param ignoreZone whether the fields are taken as UTC whatever the zone
+   * @return the milliseconds, or {@link #INVALID}
+   */
+  private static long parseMillis(String value, boolean dateOnly, boolean ignoreZone) {
+    int length = value.length();
+    if (length < 10 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+      return INVALID;
+    }
+    int year = parseDigits(value, 0, 4);
+    int month = parseDigits(value, 5, 2);
+    int day = parseDigits(value, 8, 2);
+    if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+      return INVALID;
+    }
+    long millis = daysFromCivil(year, month, day) * MILLIS_PER_DAY;
+
+    int position = 10;
+    if (!dateOnly && position < length && value.charAt(position) == 'T') {
+      if (length < 19 || value.charAt(13) != ':' || value.charAt(16) != ':') {
+        return INVALID;
       }
+      int hour = parseDigits(value, 11, 2);
+      int minute = parseDigits(value, 14, 2);
+      int second = parseDigits(value, 17, 2);
+      if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+        return INVALID;
+      }
+      millis += hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE + second * MILLIS_PER_SECOND;
+      position = 19;
 
-      DateTimeFormatter[] formats = dateOnly ? DATE_FORMATS : DATE_TIME_FORMATS;
-      for (DateTimeFormatter format : formats) {
-        try {
-          return format.parseDateTime(value).toDate();
-        } catch (IllegalArgumentException e) {
-          // Ignore and try the next pattern.
+      if (position < length && value.charAt(position) == '.') {
+        // Digits beyond the milliseconds are truncated.
+        int fraction = 0;
+        int digits = 0;
+        position++;
+        while (position < length && isDigit(value.charAt(position))) {
+          if (digits < 3) {
+            fraction = fraction * 10 + (value.charAt(position) - '0');
+          }
+          digits++;
+          position++;
+        }
+        if (digits == 0) {
+          return INVALID;
+        }
+        for (int i = digits; i < 3; i++) {
+          fraction *= 10;
         }
+        millis += fraction;
       }
     }
 
-    throw new IllegalArgumentException(
-        String.format("Date String %s not in valid UTC/local format", originalValue));
+    if (position == length) {
+      return millis;
+    }
+
+    char designator = value.charAt(position);
+    if ((designator == 'Z' || designator == 'z') && position + 1 == length) {
+      return millis;
+    }
+    if (designator != '+' && designator != '-') {
+      return INVALID;
+    }
+    int offsetHours = parseDigits(value, position + 1, 2);
+    int minutesAt = position + 3;
+    if (minutesAt < length && value.charAt(minutesAt) == ':') {
+      minutesAt++;
+    }
+    int offsetMinutes = minutesAt + 2 == length ? parseDigits(value, minutesAt, 2) : -1;
+    if (offsetHours < 0 || offsetHours > 23 || offsetMinutes < 0 || offsetMinutes > 59) {
+      return INVALID;
+    }
+    if (ignoreZone) {
+      return millis;
+    }
+    long offset = offsetHours * MILLIS_PER_HOUR + offsetMinutes * MILLIS_PER_MINUTE;
+    return designator == '+' ? millis - offset : millis + offset;
+  }
+
+  /**
+   * Parses a fixed number of decimal digits.
+   *
+   * @return the number, or -1 if a character is not a digit
+   */
+  private static int parseDigits(String value, int start, int count) {
+    if (start + count > value.length()) {
+      return -1;
+    }
+    int result = 0;
+    for (int i = start; i < start + count; i++) {
+      char c = value.charAt(i);
+      if (!isDigit(c)) {
+        return -1;
+      }
+      result = result * 10 + (c - '0');
+    }
+    return result;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static int daysInMonth(int year, int month) {
+    switch (month) {
+      case 2:
+        boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+        return leap ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  /**
+   * Gets the number of days from 1970-01-01 to a date of the proleptic Gregorian calendar.
+   */
+  private static long daysFromCivil(int year, int month, int day) {
+    int y = month <= 2 ? year - 1 : year;
+    int era = (y >= 0 ? y : y - 399) / 400;
+    int yearOfEra = y - era * 400;
+    int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+    int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097L + dayOfEra - 719468;
+  }
+
+  /**
+   * Writes the date of a number of days from 1970-01-01 as yyyy-MM-dd.
+   */
+  private static void writeDate(char[] chars, long days) {
+    long z = days + 719468;
+    long era = (z >= 0 ? z : z - 146096) / 146097;
+    int dayOfEra = (int) (z - era * 146097);
+    int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    int mp = (5 * dayOfYear + 2) / 153;
+    int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+    int month = mp < 10 ? mp + 3 : mp - 9;
+    int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+
+    writeTwoDigits(chars, 0, year / 100);
+    writeTwoDigits(chars, 2, year % 100);
+    chars[4] = '-';
+    writeTwoDigits(chars, 5, month);
+    chars[7] = '-';
+    writeTwoDigits(chars, 8, day);
+  }
+
+  private static void writeTwoDigits(char[] chars, int position, int value) {
+    chars[position] = (char) ('0' + value / 10);
+    chars[position + 1] = (char) ('0' + value % 10);
   }
 
-  private static DateTimeFormatter[] createDateTimeFormats() {
-    return new DateTimeFormatter[] {
-        DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ssZ").withZoneUTC(),
-        DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ").withZoneUTC(),
-        DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSSSZ").withZoneUTC(),
-        DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss").withZoneUTC(),
-        DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss.SSS").withZoneUTC(),
-        DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSSS").withZoneUTC(),
-        DateTimeFormat.forPattern("yyyy-MM-ddZ").withZoneUTC(),
-        DateTimeFormat.forPattern("yyyy-MM-dd").withZoneUTC()
-    };
+  private static long floorDiv(long x, long y) {
+    long quotient = x / y;
+    return (x % y != 0 && (x < 0) != (y < 0)) ? quotient - 1 : quotient;
   }
 
-  private static DateTimeFormatter[] createDateFormats() {
-    return new DateTimeFormatter[] {
-        DateTimeFormat.forPattern("yyyy-MM-ddZ").withZoneUTC(),
-        DateTimeFormat.forPattern("yyyy-MM-dd").withZoneUTC()
-    };
+  private static String formatLegacy(Date date, String pattern) {
+    DateFormat format = new SimpleDateFormat(pattern);
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    return format.format(date);
   }
 
 }
@@ -26,6 +26,7 @@ package microsoft.exchange.webservices.data.util;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.TreeMap;
 
 /**
  * Miscellany timezone functions
@@ -34,6 +35,9 @@ public class TimeZoneUtils {
   //a map of olson name > Microsoft Name
   final static private Map<String, String> olsonTimeZoneToMs = new HashMap<String, String>();
 
+  //a map of Microsoft Name > olson name
+  final static private Map<String, String> msToOlsonTimeZone = new HashMap<String, String>();
+
   static {
     olsonTimeZoneToMs.put("Africa/Abidjan", "Greenwich Standard Time");
     olsonTimeZoneToMs.put("Africa/Accra", "Greenwich Standard Time");
@@ -598,6 +602,125 @@ public class TimeZoneUtils {
     olsonTimeZoneToMs.put("America/Metlakatla", "Pacific Standard Time");
     olsonTimeZoneToMs.put("America/Miquelon", "South America Standard Time");
     olsonTimeZoneToMs.put("Asia/Gaza", "Middle East Standard Time");
+
+    //the preferred olson zone of each Microsoft zone, from the Unicode CLDR project
+    msToOlsonTimeZone.put("Dateline Standard Time", "Etc/GMT+12");
+    msToOlsonTimeZone.put("UTC-11", "Etc/GMT+11");
+    msToOlsonTimeZone.put("Hawaiian Standard Time", "Pacific/Honolulu");
+    msToOlsonTimeZone.put("Alaskan Standard Time", "America/Anchorage");
+    msToOlsonTimeZone.put("Pacific Standard Time (Mexico)", "America/Santa_Isabel");
+    msToOlsonTimeZone.put("Pacific Standard Time", "America/Los_Angeles");
+    msToOlsonTimeZone.put("US Mountain Standard Time", "America/Phoenix");
+    msToOlsonTimeZone.put("Mountain Standard Time (Mexico)", "America/Chihuahua");
+    msToOlsonTimeZone.put("Mountain Standard Time", "America/Denver");
+    msToOlsonTimeZone.put("Central America Standard Time", "America/Guatemala");
+    msToOlsonTimeZone.put("Central Standard Time", "America/Chicago");
+    msToOlsonTimeZone.put("Central Standard Time (Mexico)", "America/Mexico_City");
+    msToOlsonTimeZone.put("Canada Central Standard Time", "America/Regina");
+    msToOlsonTimeZone.put("SA Pacific Standard Time", "America/Bogota");
+    msToOlsonTimeZone.put("Eastern Standard Time (Mexico)", "America/Cancun");
+    msToOlsonTimeZone.put("Eastern Standard Time", "America/New_York");
+    msToOlsonTimeZone.put("US Eastern Standard Time", "America/Indianapolis");
+    msToOlsonTimeZone.put("Venezuela Standard Time", "America/Caracas");
+    msToOlsonTimeZone.put("Paraguay Standard Time", "America/Asuncion");
+    msToOlsonTimeZone.put("Atlantic Standard Time", "America/Halifax");
+    msToOlsonTimeZone.put("Central Brazilian Standard Time", "America/Cuiaba");
+    msToOlsonTimeZone.put("SA Western Standard Time", "America/La_Paz");
+    msToOlsonTimeZone.put("Pacific SA Standard Time", "America/Santiago");
+    msToOlsonTimeZone.put("Newfoundland Standard Time", "America/St_Johns");
+    msToOlsonTimeZone.put("E. South America Standard Time", "America/Sao_Paulo");
+    msToOlsonTimeZone.put("Argentina Standard Time", "America/Buenos_Aires");
+    msToOlsonTimeZone.put("SA Eastern Standard Time", "America/Cayenne");
+    msToOlsonTimeZone.put("Greenland Standard Time", "America/Godthab");
+    msToOlsonTimeZone.put("Montevideo Standard Time", "America/Montevideo");
+    msToOlsonTimeZone.put("Bahia Standard Time", "America/Bahia");
+    msToOlsonTimeZone.put("UTC-02", "Etc/GMT+2");
+    msToOlsonTimeZone.put("Azores Standard Time", "Atlantic/Azores");
+    msToOlsonTimeZone.put("Cape Verde Standard Time", "Atlantic/Cape_Verde");
+    msToOlsonTimeZone.put("Morocco Standard Time", "Africa/Casablanca");
+    msToOlsonTimeZone.put("UTC", "Etc/GMT");
+    msToOlsonTimeZone.put("GMT Standard Time", "Europe/London");
+    msToOlsonTimeZone.put("Greenwich Standard Time", "Atlantic/Reykjavik");
+    msToOlsonTimeZone.put("W. Europe Standard Time", "Europe/Berlin");
+    msToOlsonTimeZone.put("Central Europe Standard Time", "Europe/Budapest");
+    msToOlsonTimeZone.put("Romance Standard Time", "Europe/Paris");
+    msToOlsonTimeZone.put("Central European Standard Time", "Europe/Warsaw");
+    msToOlsonTimeZone.put("W. Central Africa Standard Time", "Africa/Lagos");
+    msToOlsonTimeZone.put("Namibia Standard Time", "Africa/Windhoek");
+    msToOlsonTimeZone.put("Jordan Standard Time", "Asia/Amman");
+    msToOlsonTimeZone.put("GTB Standard Time", "Europe/Bucharest");
+    msToOlsonTimeZone.put("Middle East Standard Time", "Asia/Beirut");
+    msToOlsonTimeZone.put("Egypt Standard Time", "Africa/Cairo");
+    msToOlsonTimeZone.put("Syria Standard Time", "Asia/Damascus");
+    msToOlsonTimeZone.put("South Africa Standard Time", "Africa/Johannesburg");
+    msToOlsonTimeZone.put("FLE Standard Time", "Europe/Kiev");
+    msToOlsonTimeZone.put("Turkey Standard Time", "Europe/Istanbul");
+    msToOlsonTimeZone.put("Israel Standard Time", "Asia/Jerusalem");
+    msToOlsonTimeZone.put("Kaliningrad Standard Time", "Europe/Kaliningrad");
+    msToOlsonTimeZone.put("Libya Standard Time", "Africa/Tripoli");
+    msToOlsonTimeZone.put("Arabic Standard Time", "Asia/Baghdad");
+    msToOlsonTimeZone.put("Arab Standard Time", "Asia/Riyadh");
+    msToOlsonTimeZone.put("Belarus Standard Time", "Europe/Minsk");
+    msToOlsonTimeZone.put("Russian Standard Time", "Europe/Moscow");
+    msToOlsonTimeZone.put("E. Africa Standard Time", "Africa/Nairobi");
+    msToOlsonTimeZone.put("Iran Standard Time", "Asia/Tehran");
+    msToOlsonTimeZone.put("Arabian Standard Time", "Asia/Dubai");
+    msToOlsonTimeZone.put("Azerbaijan Standard Time", "Asia/Baku");
+    msToOlsonTimeZone.put("Russia Time Zone 3", "Europe/Samara");
+    msToOlsonTimeZone.put("Mauritius Standard Time", "Indian/Mauritius");
+    msToOlsonTimeZone.put("Georgian Standard Time", "Asia/Tbilisi");
+    msToOlsonTimeZone.put("Caucasus Standard Time", "Asia/Yerevan");
+    msToOlsonTimeZone.put("Afghanistan Standard Time", "Asia/Kabul");
+    msToOlsonTimeZone.put("West Asia Standard Time", "Asia/Tashkent");
+    msToOlsonTimeZone.put("Ekaterinburg Standard Time", "Asia/Yekaterinburg");
+    msToOlsonTimeZone.put("Pakistan Standard Time", "Asia/Karachi");
+    msToOlsonTimeZone.put("India Standard Time", "Asia/Calcutta");
+    msToOlsonTimeZone.put("Sri Lanka Standard Time", "Asia/Colombo");
+    msToOlsonTimeZone.put("Nepal Standard Time", "Asia/Katmandu");
+    msToOlsonTimeZone.put("Central Asia Standard Time", "Asia/Almaty");
+    msToOlsonTimeZone.put("Bangladesh Standard Time", "Asia/Dhaka");
+    msToOlsonTimeZone.put("N. Central Asia Standard Time", "Asia/Novosibirsk");
+    msToOlsonTimeZone.put("Myanmar Standard Time", "Asia/Rangoon");
+    msToOlsonTimeZone.put("SE Asia Standard Time", "Asia/Bangkok");
+    msToOlsonTimeZone.put("North Asia Standard Time", "Asia/Krasnoyarsk");
+    msToOlsonTimeZone.put("China Standard Time", "Asia/Shanghai");
+    msToOlsonTimeZone.put("North Asia East Standard Time", "Asia/Irkutsk");
+    msToOlsonTimeZone.put("Singapore Standard Time", "Asia/Singapore");
+    msToOlsonTimeZone.put("W. Australia Standard Time", "Australia/Perth");
+    msToOlsonTimeZone.put("Taipei Standard Time", "Asia/Taipei");
+    msToOlsonTimeZone.put("Ulaanbaatar Standard Time", "Asia/Ulaanbaatar");
+    msToOlsonTimeZone.put("Tokyo Standard Time", "Asia/Tokyo");
+    msToOlsonTimeZone.put("Korea Standard Time", "Asia/Seoul");
+    msToOlsonTimeZone.put("Yakutsk Standard Time", "Asia/Yakutsk");
+    msToOlsonTimeZone.put("Cen. Australia Standard Time", "Australia/Adelaide");
+    msToOlsonTimeZone.put("AUS Central Standard Time", "Australia/Darwin");
+    msToOlsonTimeZone.put("E. Australia Standard Time", "Australia/Brisbane");
+    msToOlsonTimeZone.put("AUS Eastern Standard Time", "Australia/Sydney");
+    msToOlsonTimeZone.put("West Pacific Standard Time", "Pacific/Port_Moresby");
+    msToOlsonTimeZone.put("Tasmania Standard Time", "Australia/Hobart");
+    msToOlsonTimeZone.put("Magadan Standard Time", "Asia/Magadan");
+    msToOlsonTimeZone.put("Vladivostok Standard Time", "Asia/Vladivostok");
+    msToOlsonTimeZone.put("Russia Time Zone 10", "Asia/Srednekolymsk");
+    msToOlsonTimeZone.put("Central Pacific Standard Time", "Pacific/Guadalcanal");
+    msToOlsonTimeZone.put("Russia Time Zone 11", "Asia/Kamchatka");
+    msToOlsonTimeZone.put("New Zealand Standard Time", "Pacific/Auckland");
+    msToOlsonTimeZone.put("UTC+12", "Etc/GMT-12");
+    msToOlsonTimeZone.put("Fiji Standard Time", "Pacific/Fiji");
+    msToOlsonTimeZone.put("Tonga Standard Time", "Pacific/Tongatapu");
+    msToOlsonTimeZone.put("Samoa Standard Time", "Pacific/Apia");
+    msToOlsonTimeZone.put("Line Islands Standard Time", "Pacific/Kiritimati");
+
+    //any other Microsoft zone maps to the first of its olson zones, by name
+    for (Map.Entry<String, String> entry : new TreeMap<String, String>(olsonTimeZoneToMs).entrySet()) {
+      String microsoftTimeZoneName = entry.getValue();
+      int comma = microsoftTimeZoneName.indexOf(',');
+      if (comma >= 0) {
+        microsoftTimeZoneName = microsoftTimeZoneName.substring(0, comma);
+      }
+      if (!msToOlsonTimeZone.containsKey(microsoftTimeZoneName)) {
+        msToOlsonTimeZone.put(microsoftTimeZoneName, entry.getKey());
+      }
+    }
   }
 
   /**
@@ -611,4 +734,25 @@ public class TimeZoneUtils {
     return olsonTimeZoneToMs.get(timeZone.getID());
   }
 
+  /**
+   * Convert a Microsoft TimeZone identifier to the id of the preferred Olson TimeZone for it.
+   *
+   * @param microsoftTimeZoneName a microsoft timezone identifier (ala Eastern Standard Time)
+   * @return the olson timezone id (ala America/New_York), or null if the identifier is unknown
+   */
+  public static String getOlsonTimeZoneId(String microsoftTimeZoneName) {
+    return msToOlsonTimeZone.get(microsoftTimeZoneName);
+  }
+
+  /**
+   * Convert a Microsoft TimeZone identifier to a java TimeZone.
+   *
+   * @param microsoftTimeZoneName a microsoft timezone identifier (ala Eastern Standard Time)
+   * @return the java timezone (Olson), or null if the identifier is unknown
+   */
+  public static TimeZone getTimeZone(String microsoftTimeZoneName) {
+    String olsonTimeZoneId = getOlsonTimeZoneId(microsoftTimeZoneName);
+    return olsonTimeZoneId != null ? TimeZone.getTimeZone(olsonTimeZoneId) : null;
+  }
+
 }
@@ -24,7 +24,11 @@
 package microsoft.exchange.webservices.data.core;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
+import microsoft.exchange.webservices.data.core.enumeration.notification.EventType;
+import microsoft.exchange.webservices.data.core.enumeration.property.Importance;
+import microsoft.exchange.webservices.data.core.enumeration.property.time.DayOfTheWeek;
 import microsoft.exchange.webservices.data.core.service.folder.CalendarFolder;
 import microsoft.exchange.webservices.data.core.service.folder.ContactsFolder;
 import microsoft.exchange.webservices.data.core.service.folder.Folder;
@@ -50,7 +54,10 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 @RunWith(JUnit4.class)
 public class EwsUtilitiesTest {
@@ -81,6 +88,17 @@ public class EwsUtilitiesTest {
     assertEquals(ContactGroup.class, EwsUtilities.getItemTypeFromXmlElementName("DistributionList"));
   }
 
+  @Test
+  public void testCreateEwsObjectFromXmlElementName() throws Exception {
+    ExchangeService service = new ExchangeService();
+    assertEquals(EmailMessage.class,
+        EwsUtilities.createEwsObjectFromXmlElementName(Item.class, service, "Message").getClass());
+    assertEquals(CalendarFolder.class,
+        EwsUtilities.createEwsObjectFromXmlElementName(Folder.class, service, "CalendarFolder")
+            .getClass());
+    assertNull(EwsUtilities.createEwsObjectFromXmlElementName(Item.class, service, "UnknownItem"));
+  }
+
   @Test
   public void testEwsAssert() {
     EwsUtilities.ewsAssert(true, null, null);
@@ -196,10 +214,48 @@ public class EwsUtilitiesTest {
     assertEquals(input, EwsUtilities.parse(input.getClass(), input));
   }
 
+  @Test
+  public void testParseEnum() throws ParseException {
+    assertEquals(EventType.NewMail, EwsUtilities.parse(EventType.class, "NewMailEvent"));
+    assertEquals(EventType.NewMail, EwsUtilities.parse(EventType.class, "NewMail"));
+    assertEquals(Importance.High, EwsUtilities.parse(Importance.class, "High"));
+    assertNull(EwsUtilities.parse(Importance.class, "Urgent"));
+    assertNull(EwsUtilities.parse(Importance.class, null));
+  }
+
+  @Test
+  public void testSerializeEnum() {
+    assertEquals("NewMailEvent", EwsUtilities.serializeEnum(EventType.NewMail));
+    assertEquals("High", EwsUtilities.serializeEnum(Importance.High));
+  }
+
+  @Test
+  public void testParseEnumValueList() {
+    List<DayOfTheWeek> days = new ArrayList<DayOfTheWeek>();
+    EwsUtilities.parseEnumValueList(DayOfTheWeek.class, days, "Monday Friday,Unknown", ' ', ',');
+    assertEquals(Arrays.asList(DayOfTheWeek.Monday, DayOfTheWeek.Friday), days);
+  }
+
   @Test
   public void testParseNullValue() throws ParseException {
     final String input = null;
     assertEquals(input, EwsUtilities.parse(String.class, input));
   }
 
+  @Test
+  public void testGetXSDurationToTimeSpan() {
+    assertEquals(5L * 60 * 60 * 1000, EwsUtilities.getXSDurationToTimeSpan("PT5H").getTotalMilliseconds());
+    assertEquals(-8L * 60 * 60 * 1000, EwsUtilities.getXSDurationToTimeSpan("-PT8H").getTotalMilliseconds());
+    assertEquals(0L, EwsUtilities.getXSDurationToTimeSpan("PT0S").getTotalMilliseconds());
+    assertEquals(((26L * 60 + 30) * 60 + 15) * 1000 + 500,
+        EwsUtilities.getXSDurationToTimeSpan("P1DT2H30M15.5S").getTotalMilliseconds());
+    assertEquals(30L * 24 * 60 * 60 * 1000 + 60 * 1000,
+        EwsUtilities.getXSDurationToTimeSpan("P1MT1M").getTotalMilliseconds());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGetXSDurationToTimeSpanInvalid() {
+    EwsUtilities.getXSDurationToTimeSpan("5H");
+  }
+
 }
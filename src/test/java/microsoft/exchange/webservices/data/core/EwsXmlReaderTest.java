@@ -25,6 +25,7 @@ package microsoft.exchange.webservices.data.core;
 
 import static org.mockito.Mockito.doReturn;
 
+import microsoft.exchange.webservices.data.core.enumeration.misc.XmlNamespace;
 import microsoft.exchange.webservices.data.security.XmlNodeType;
 import org.junit.Assert;
 import org.junit.Before;
@@ -39,6 +40,8 @@ import javax.xml.stream.events.Characters;
 import javax.xml.stream.events.XMLEvent;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
 
 public class EwsXmlReaderTest {
 
@@ -99,4 +102,59 @@ public class EwsXmlReaderTest {
     Assert.assertNull(character.getData());
   }
 
+  @Test
+  public void testReadBase64ElementValueInBlocks() throws Exception {
+    // Larger than several encode/decode blocks, and not a multiple of three.
+    byte[] content = new byte[50001];
+    new Random(42).nextBytes(content);
+
+    ByteArrayOutputStream xml = new ByteArrayOutputStream();
+    EwsServiceXmlWriter writer = new EwsServiceXmlWriter(new ExchangeService(), xml);
+    writer.getInternalWriter().writeStartElement("Content");
+    writer.writeBase64ElementValue(new ByteArrayInputStream(content));
+    writer.getInternalWriter().writeEndElement();
+    writer.flush();
+
+    EwsXmlReader reader = new EwsXmlReader(new ByteArrayInputStream(xml.toByteArray()));
+    do {
+      reader.read();
+    } while (!reader.isStartElement());
+
+    ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+    reader.readBase64ElementValue(decoded);
+
+    Assert.assertArrayEquals(content, decoded.toByteArray());
+    Assert.assertTrue(reader.isEndElement("", "Content"));
+  }
+
+  @Test
+  public void testElementNameMatching() throws Exception {
+    String xml = "<m:Items xmlns:m=\"" + XmlNamespace.Messages.getNameSpaceUri() + "\">"
+        + "<x:Items xmlns:x=\"" + XmlNamespace.Types.getNameSpaceUri() + "\"/>"
+        + "<t:Items xmlns:t=\"urn:other\"/>"
+        + "</m:Items>";
+    EwsXmlReader reader = new EwsXmlReader(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+
+    reader.read(new XmlNodeType(XmlNodeType.START_DOCUMENT));
+    reader.readStartElement(XmlNamespace.Messages, XmlElementNames.Items);
+    Assert.assertSame(XmlElementNames.Items, reader.getLocalName());
+    Assert.assertFalse(reader.isStartElement(XmlNamespace.Types, XmlElementNames.Items));
+
+    // Matches by namespace URI, whatever the prefix.
+    reader.read();
+    Assert.assertTrue(reader.isStartElement(XmlNamespace.Types, XmlElementNames.Items));
+    Assert.assertTrue(reader.isStartElement("x", XmlElementNames.Items));
+    Assert.assertFalse(reader.isStartElement(XmlNamespace.Types, XmlElementNames.Item));
+    reader.readEndElement(XmlNamespace.Types, XmlElementNames.Items);
+
+    // Matches by prefix when the namespace URI is unknown.
+    reader.readStartElement("t", XmlElementNames.Items);
+    Assert.assertTrue(reader.isStartElement(XmlNamespace.Types, XmlElementNames.Items));
+    Assert.assertEquals("urn:other", reader.getNamespaceUri());
+    reader.read();
+    Assert.assertTrue(reader.isEndElement(XmlNamespace.Types, XmlElementNames.Items));
+
+    reader.readEndElement(XmlNamespace.Messages, XmlElementNames.Items);
+  }
+
 }
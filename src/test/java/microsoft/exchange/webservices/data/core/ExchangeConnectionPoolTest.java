@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package microsoft.exchange.webservices.data.core;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.PoolStats;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(JUnit4.class)
+public class ExchangeConnectionPoolTest {
+
+  private ExchangeConnectionPool pool;
+
+  @Before
+  public void setUp() {
+    pool = new ExchangeConnectionPool();
+  }
+
+  @After
+  public void tearDown() {
+    pool.close();
+  }
+
+  @Test
+  public void testDefaults() {
+    Assert.assertEquals(ExchangeConnectionPool.DEFAULT_MAX_TOTAL, pool.getMaxTotal());
+    Assert.assertEquals(ExchangeConnectionPool.DEFAULT_MAX_PER_ROUTE, pool.getDefaultMaxPerRoute());
+    Assert.assertEquals(-1, pool.getIdleConnectionTimeout());
+
+    PoolStats stats = pool.getTotalStats();
+    Assert.assertEquals(0, stats.getLeased());
+    Assert.assertEquals(0, stats.getPending());
+    Assert.assertEquals(0, stats.getAvailable());
+    Assert.assertEquals(ExchangeConnectionPool.DEFAULT_MAX_TOTAL, stats.getMax());
+  }
+
+  @Test
+  public void testMaxPerRoute() throws Exception {
+    URI ews = new URI("https://mail.example.com/EWS/Exchange.asmx");
+    URI sameHost = new URI("https://mail.example.com:443/EWS/Other.asmx");
+    URI otherHost = new URI("https://other.example.com/EWS/Exchange.asmx");
+
+    pool.setMaxPerRoute(ews, 50);
+
+    Assert.assertEquals(50, pool.getMaxPerRoute(sameHost));
+    Assert.assertEquals(50, pool.getStats(ews).getMax());
+    Assert.assertEquals(ExchangeConnectionPool.DEFAULT_MAX_PER_ROUTE, pool.getMaxPerRoute(otherHost));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidMaxTotal() {
+    pool.setMaxTotal(0);
+  }
+
+  @Test
+  public void testIdleConnectionTimeout() {
+    pool.setIdleConnectionTimeout(30, TimeUnit.SECONDS);
+    Assert.assertEquals(30000, pool.getIdleConnectionTimeout());
+
+    pool.setIdleConnectionTimeout(0, TimeUnit.SECONDS);
+    Assert.assertEquals(-1, pool.getIdleConnectionTimeout());
+  }
+
+  @Test
+  public void testSharedBetweenServices() throws Exception {
+    ExchangeService first = new ExchangeService();
+    ExchangeService second = new ExchangeService();
+    first.setConnectionPool(pool);
+    second.setConnectionPool(pool);
+
+    Assert.assertSame(pool, first.getConnectionPool());
+    Assert.assertSame(pool, second.getConnectionPool());
+
+    // Closing a service must leave the shared pool usable for the others.
+    first.close();
+
+    HttpRoute route = new HttpRoute(new HttpHost("mail.example.com", 443, "https"), null, true);
+    HttpClientConnection connection =
+        pool.getConnectionManager().requestConnection(route, null).get(1, TimeUnit.SECONDS);
+    Assert.assertEquals(1, pool.getTotalStats().getLeased());
+    pool.getConnectionManager().releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+    Assert.assertEquals(0, pool.getTotalStats().getLeased());
+
+    second.close();
+  }
+}
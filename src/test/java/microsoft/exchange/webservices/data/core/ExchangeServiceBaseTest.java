@@ -0,0 +1,169 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.core;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import microsoft.exchange.webservices.data.core.enumeration.misc.TraceFlags;
+import microsoft.exchange.webservices.data.core.request.GetServerTimeZonesRequest;
+import microsoft.exchange.webservices.data.core.request.HttpWebRequest;
+import microsoft.exchange.webservices.data.core.response.GetServerTimeZonesResponse;
+import microsoft.exchange.webservices.data.core.response.ServiceResponseCollection;
+import microsoft.exchange.webservices.data.credential.WebCredentials;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class ExchangeServiceBaseTest {
+
+  private ExchangeService service;
+
+  @Before
+  public void setUp() {
+    service = new ExchangeService();
+  }
+
+  @After
+  public void tearDown() {
+    service.close();
+  }
+
+  @Test
+  public void testServiceKeepsHeadersOfLastResponse() throws Exception {
+    Map<String, String> first =
+        service.processHttpResponseHeaders(TraceFlags.EwsResponseHttpHeaders, createResponse("first"));
+    service.processHttpResponseHeaders(TraceFlags.EwsResponseHttpHeaders, createResponse("second"));
+
+    Assert.assertEquals("first", first.get("X-Call"));
+    Assert.assertEquals("second", service.getHttpResponseHeaders().get("X-Call"));
+  }
+
+  @Test
+  public void testCallsReturnTheirResponseHeadersAndAuthenticatePreemptively() throws Exception {
+    final AtomicInteger requests = new AtomicInteger();
+    final AtomicInteger challenges = new AtomicInteger();
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/EWS/Exchange.asmx", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        int call = requests.incrementAndGet();
+        InputStream in = exchange.getRequestBody();
+        while (in.read() != -1) {
+          // Drain the request.
+        }
+        if (exchange.getRequestHeaders().getFirst("Authorization") == null) {
+          challenges.incrementAndGet();
+          exchange.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"ews\"");
+          exchange.sendResponseHeaders(401, -1);
+          exchange.close();
+          return;
+        }
+        byte[] response = RESPONSE.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=utf-8");
+        exchange.getResponseHeaders().set("Call", String.valueOf(call));
+        exchange.sendResponseHeaders(200, response.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(response);
+        out.close();
+      }
+    });
+    server.start();
+    try {
+      service.setUrl(new URI("http://127.0.0.1:" + server.getAddress().getPort() + "/EWS/Exchange.asmx"));
+      service.setCredentials(new WebCredentials("user", "password"));
+
+      for (int i = 0; i < 5; i++) {
+        ServiceResponseCollection<GetServerTimeZonesResponse> responses =
+            new GetServerTimeZonesRequest(service).execute();
+        Assert.assertEquals(String.valueOf(requests.get()),
+            responses.getHttpResponseHeaders().get("Call"));
+      }
+
+      // Only the first call is challenged; the others reuse the cached scheme.
+      Assert.assertEquals(6, requests.get());
+      Assert.assertEquals(1, challenges.get());
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void testCallContextsShareCookiesAuthCacheAndUserTokenOnly() {
+    HttpClientContext first = service.createHttpContext();
+    HttpClientContext second = service.createHttpContext();
+
+    Assert.assertTrue(first.getCookieStore() instanceof BasicCookieStore);
+    Assert.assertSame(first.getCookieStore(), second.getCookieStore());
+
+    first.setAttribute(HttpClientContext.HTTP_REQUEST, "request");
+    Assert.assertNull(second.getAttribute(HttpClientContext.HTTP_REQUEST));
+
+    Assert.assertNotNull(first.getAuthCache());
+    Assert.assertSame(first.getAuthCache(), second.getAuthCache());
+
+    first.setUserToken("user");
+    Assert.assertEquals("user", second.getUserToken());
+    Assert.assertEquals("user", service.createHttpContext().getUserToken());
+  }
+
+  private static final String RESPONSE = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+      + "<s:Envelope xmlns:s=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+      + "<s:Header><h:ServerVersionInfo MajorVersion=\"14\" MinorVersion=\"2\""
+      + " MajorBuildNumber=\"247\" MinorBuildNumber=\"5\" Version=\"Exchange2010_SP2\""
+      + " xmlns:h=\"http://schemas.microsoft.com/exchange/services/2006/types\"/></s:Header>"
+      + "<s:Body><m:GetServerTimeZonesResponse"
+      + " xmlns:m=\"http://schemas.microsoft.com/exchange/services/2006/messages\""
+      + " xmlns:t=\"http://schemas.microsoft.com/exchange/services/2006/types\">"
+      + "<m:ResponseMessages><m:GetServerTimeZonesResponseMessage ResponseClass=\"Success\">"
+      + "<m:ResponseCode>NoError</m:ResponseCode><m:TimeZoneDefinitions/>"
+      + "</m:GetServerTimeZonesResponseMessage></m:ResponseMessages>"
+      + "</m:GetServerTimeZonesResponse></s:Body></s:Envelope>";
+
+  private static HttpWebRequest createResponse(String call) throws Exception {
+    HttpWebRequest response = mock(HttpWebRequest.class);
+    when(response.getResponseHeaders()).thenReturn(Collections.singletonMap("X-Call", call));
+    return response;
+  }
+
+}
@@ -25,12 +25,16 @@ package microsoft.exchange.webservices.data.core;
 
 import microsoft.exchange.webservices.data.core.service.ServiceObject;
 import microsoft.exchange.webservices.data.core.service.item.Item;
+import microsoft.exchange.webservices.data.core.service.schema.FolderSchema;
+import microsoft.exchange.webservices.data.core.service.schema.ItemSchema;
 import microsoft.exchange.webservices.data.core.enumeration.misc.ExchangeVersion;
 import microsoft.exchange.webservices.data.core.exception.misc.ArgumentException;
 import microsoft.exchange.webservices.data.core.exception.service.local.ServiceObjectPropertyException;
 import microsoft.exchange.webservices.data.misc.OutParam;
+import microsoft.exchange.webservices.data.property.complex.StringList;
 import microsoft.exchange.webservices.data.property.definition.IntPropertyDefinition;
 import microsoft.exchange.webservices.data.property.definition.RecurrencePropertyDefinition;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -56,6 +60,74 @@ public class PropertyBagTest {
     pb.getObjectFromPropertyDefinition(new IntPropertyDefinition("", "none", ExchangeVersion.Exchange2007_SP1));
   }
 
+  @Test
+  public void testSetAndDeleteProperty() throws Exception {
+    PropertyBag pb = createPropertyBag();
+    Assert.assertFalse(pb.contains(ItemSchema.Subject));
+    Assert.assertFalse(pb.getIsDirty());
+
+    pb.setObjectFromPropertyDefinition(ItemSchema.Subject, "subject");
+    Assert.assertTrue(pb.contains(ItemSchema.Subject));
+    Assert.assertTrue(pb.isPropertyUpdated(ItemSchema.Subject));
+    Assert.assertEquals("subject", pb.getObjectFromPropertyDefinition(ItemSchema.Subject));
+    Assert.assertTrue(pb.getIsDirty());
+
+    pb.clearChangeLog();
+    Assert.assertFalse(pb.getIsDirty());
+    Assert.assertFalse(pb.isPropertyUpdated(ItemSchema.Subject));
+    Assert.assertEquals("subject", pb.getObjectFromPropertyDefinition(ItemSchema.Subject));
+
+    pb.setObjectFromPropertyDefinition(ItemSchema.Subject, null);
+    Assert.assertFalse(pb.contains(ItemSchema.Subject));
+    Assert.assertFalse(pb.isPropertyUpdated(ItemSchema.Subject));
+    Assert.assertTrue(pb.getIsDirty());
+
+    // Setting a deleted property again turns the deletion into an update.
+    pb.setObjectFromPropertyDefinition(ItemSchema.Subject, "again");
+    Assert.assertTrue(pb.isPropertyUpdated(ItemSchema.Subject));
+    OutParam<String> value = new OutParam<String>();
+    Assert.assertTrue(pb.tryGetValue(ItemSchema.Subject, value));
+    Assert.assertEquals("again", value.getParam());
+  }
+
+  @Test
+  public void testComplexPropertyChange() throws Exception {
+    PropertyBag pb = createPropertyBag();
+    StringList categories = new StringList();
+    pb.setObjectFromPropertyDefinition(ItemSchema.Categories, categories);
+    pb.clearChangeLog();
+    Assert.assertFalse(pb.isPropertyUpdated(ItemSchema.Categories));
+
+    categories.add("red");
+    Assert.assertTrue(pb.isPropertyUpdated(ItemSchema.Categories));
+    Assert.assertTrue(pb.getIsDirty());
+  }
+
+  @Test
+  public void testPropertyOutsideOwnerSchema() throws Exception {
+    PropertyBag pb = createPropertyBag();
+    pb.setObjectFromPropertyDefinition(ItemSchema.Subject, "subject");
+    pb.setObjectFromPropertyDefinition(FolderSchema.DisplayName, "name");
+
+    Assert.assertTrue(pb.contains(FolderSchema.DisplayName));
+    Assert.assertTrue(pb.isPropertyUpdated(FolderSchema.DisplayName));
+    Assert.assertEquals("name", pb.getObjectFromPropertyDefinition(FolderSchema.DisplayName));
+    Assert.assertFalse(pb.contains(FolderSchema.UnreadCount));
+  }
+
+  @Test
+  public void testGetProperties() throws Exception {
+    PropertyBag pb = createPropertyBag();
+    Assert.assertTrue(pb.getProperties().isEmpty());
+
+    pb.setObjectFromPropertyDefinition(ItemSchema.Subject, "subject");
+    pb.setObjectFromPropertyDefinition(FolderSchema.DisplayName, "name");
+    Assert.assertEquals(2, pb.getProperties().size());
+    Assert.assertEquals("subject", pb.getProperties().get(ItemSchema.Subject));
+    Assert.assertTrue(pb.getProperties().containsKey(FolderSchema.DisplayName));
+    Assert.assertTrue(pb.getProperties().keySet().contains(ItemSchema.Subject));
+    Assert.assertFalse(pb.getProperties().containsKey(ItemSchema.Body));
+  }
 
   private PropertyBag createPropertyBag() throws Exception {
     ExchangeService es = new ExchangeService();
@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.core;
+
+import microsoft.exchange.webservices.data.core.enumeration.service.ServiceResult;
+import microsoft.exchange.webservices.data.core.response.ServiceResponse;
+import microsoft.exchange.webservices.data.core.response.ServiceResponseCollection;
+import microsoft.exchange.webservices.data.core.service.schema.ItemSchema;
+import microsoft.exchange.webservices.data.misc.AsyncExecutor;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(JUnit4.class)
+public class RequestBatcherTest {
+
+  @Test
+  public void testBatchSizeShrinksWithRequestedProperties() throws Exception {
+    Assert.assertEquals(500, RequestBatcher.computeBatchSize(PropertySet.IdOnly, 500, 4L * 1024 * 1024));
+    Assert.assertEquals(512, RequestBatcher.computeBatchSize(PropertySet.FirstClassProperties, 1000,
+        4L * 1024 * 1024));
+
+    PropertySet withMime = new PropertySet(PropertySet.IdOnly.getBasePropertySet(), ItemSchema.MimeContent);
+    Assert.assertEquals(63, RequestBatcher.computeBatchSize(withMime, 500, 4L * 1024 * 1024));
+    Assert.assertEquals(1, RequestBatcher.computeBatchSize(withMime, 500, 1024));
+  }
+
+  @Test
+  public void testSplitKeepsOrder() {
+    List<List<Integer>> batches = RequestBatcher.split(Arrays.asList(1, 2, 3, 4, 5), 2);
+    Assert.assertEquals(3, batches.size());
+    Assert.assertEquals(Arrays.asList(1, 2), batches.get(0));
+    Assert.assertEquals(Arrays.asList(3, 4), batches.get(1));
+    Assert.assertEquals(Arrays.asList(5), batches.get(2));
+  }
+
+  @Test
+  public void testExecuteMergesResponsesInBatchOrder() throws Exception {
+    AsyncExecutor executor = new AsyncExecutor(3);
+    try {
+      ServiceResponseCollection<ServiceResponse> responses =
+          RequestBatcher.execute(createBatches(10, 4), executor);
+      assertResponses(responses, 40);
+      Assert.assertEquals(Collections.singletonMap("X-Batch", "9"), responses.getHttpResponseHeaders());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testExecuteFromBusyExecutorThread() throws Exception {
+    final AsyncExecutor executor = new AsyncExecutor(1);
+    try {
+      // The only thread of the executor waits for the batches it submitted to itself.
+      Future<ServiceResponseCollection<ServiceResponse>> result = executor.submit(
+          new Callable<ServiceResponseCollection<ServiceResponse>>() {
+            @Override
+            public ServiceResponseCollection<ServiceResponse> call() throws Exception {
+              return RequestBatcher.execute(createBatches(5, 3), executor);
+            }
+          }, null);
+      assertResponses(result.get(5, TimeUnit.SECONDS), 15);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testExecuteThrowsFailureOfBatch() throws Exception {
+    List<Callable<ServiceResponseCollection<ServiceResponse>>> batches = createBatches(3, 1);
+    final IllegalStateException failure = new IllegalStateException("batch failed");
+    batches.set(1, new Callable<ServiceResponseCollection<ServiceResponse>>() {
+      @Override
+      public ServiceResponseCollection<ServiceResponse> call() {
+        throw failure;
+      }
+    });
+
+    try {
+      RequestBatcher.execute(batches, null);
+      Assert.fail("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      Assert.assertSame(failure, e);
+    }
+  }
+
+  private static List<Callable<ServiceResponseCollection<ServiceResponse>>> createBatches(
+      final int batchCount, final int batchSize) {
+    List<Callable<ServiceResponseCollection<ServiceResponse>>> batches =
+        new ArrayList<Callable<ServiceResponseCollection<ServiceResponse>>>();
+    for (int i = 0; i < batchCount; i++) {
+      final int batch = i;
+      final int first = i * batchSize;
+      final long delay = (batchCount - i) * 2L;
+      batches.add(new Callable<ServiceResponseCollection<ServiceResponse>>() {
+        @Override
+        public ServiceResponseCollection<ServiceResponse> call() throws Exception {
+          // Later batches complete first.
+          Thread.sleep(delay);
+          ServiceResponseCollection<ServiceResponse> responses =
+              new ServiceResponseCollection<ServiceResponse>();
+          for (int j = 0; j < batchSize; j++) {
+            responses.add(new NumberedResponse(first + j));
+          }
+          responses.setHttpResponseHeaders(Collections.singletonMap("X-Batch", String.valueOf(batch)));
+          return responses;
+        }
+      });
+    }
+    return batches;
+  }
+
+  private static void assertResponses(ServiceResponseCollection<ServiceResponse> responses, int count) {
+    Assert.assertEquals(count, responses.getCount());
+    for (int i = 0; i < count; i++) {
+      Assert.assertEquals(i, ((NumberedResponse) responses.getResponseAtIndex(i)).number);
+    }
+  }
+
+  private static final class NumberedResponse extends ServiceResponse {
+
+    private final int number;
+
+    NumberedResponse(int number) {
+      this.number = number;
+    }
+
+    @Override
+    public ServiceResult getResult() {
+      return ServiceResult.Success;
+    }
+  }
+
+}
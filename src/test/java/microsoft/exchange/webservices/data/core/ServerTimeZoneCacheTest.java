@@ -0,0 +1,273 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.core;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import microsoft.exchange.webservices.data.core.enumeration.misc.ExchangeVersion;
+import microsoft.exchange.webservices.data.property.complex.time.TimeZoneDefinition;
+import microsoft.exchange.webservices.data.security.SafeXmlFactory;
+import microsoft.exchange.webservices.data.util.TimeZoneUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.events.XMLEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(JUnit4.class)
+public class ServerTimeZoneCacheTest {
+
+  private static final String RESPONSE = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+      + "<s:Envelope xmlns:s=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+      + "<s:Header><h:ServerVersionInfo MajorVersion=\"14\" MinorVersion=\"2\""
+      + " MajorBuildNumber=\"247\" MinorBuildNumber=\"5\" Version=\"Exchange2010_SP2\""
+      + " xmlns:h=\"http://schemas.microsoft.com/exchange/services/2006/types\"/></s:Header>"
+      + "<s:Body><m:GetServerTimeZonesResponse"
+      + " xmlns:m=\"http://schemas.microsoft.com/exchange/services/2006/messages\""
+      + " xmlns:t=\"http://schemas.microsoft.com/exchange/services/2006/types\">"
+      + "<m:ResponseMessages><m:GetServerTimeZonesResponseMessage ResponseClass=\"Success\">"
+      + "<m:ResponseCode>NoError</m:ResponseCode><m:TimeZoneDefinitions>%s</m:TimeZoneDefinitions>"
+      + "</m:GetServerTimeZonesResponseMessage></m:ResponseMessages>"
+      + "</m:GetServerTimeZonesResponse></s:Body></s:Envelope>";
+
+  private static final String EASTERN = "<t:TimeZoneDefinition Id=\"Eastern Standard Time\""
+      + " Name=\"(UTC-05:00) Eastern Time (US &amp; Canada)\">"
+      + "<t:Periods><t:Period Bias=\"PT5H\" Name=\"Standard\" Id=\"Std\"/>"
+      + "<t:Period Bias=\"PT4H\" Name=\"Daylight\" Id=\"Dlt/2007\"/></t:Periods>"
+      + "<t:TransitionsGroups><t:TransitionsGroup Id=\"0\">"
+      + "<t:RecurringDayTransition><t:To Kind=\"Period\">Dlt/2007</t:To>"
+      + "<t:TimeOffset>PT2H</t:TimeOffset><t:Month>3</t:Month>"
+      + "<t:DayOfWeek>Sunday</t:DayOfWeek><t:Occurrence>2</t:Occurrence></t:RecurringDayTransition>"
+      + "<t:RecurringDayTransition><t:To Kind=\"Period\">Std</t:To>"
+      + "<t:TimeOffset>PT2H</t:TimeOffset><t:Month>11</t:Month>"
+      + "<t:DayOfWeek>Sunday</t:DayOfWeek><t:Occurrence>1</t:Occurrence></t:RecurringDayTransition>"
+      + "</t:TransitionsGroup></t:TransitionsGroups>"
+      + "<t:Transitions><t:Transition><t:To Kind=\"Group\">0</t:To></t:Transition></t:Transitions>"
+      + "</t:TimeZoneDefinition>";
+
+  private static final String UTC = "<t:TimeZoneDefinition Id=\"UTC\""
+      + " Name=\"(UTC) Coordinated Universal Time\">"
+      + "<t:Periods><t:Period Bias=\"PT0H\" Name=\"Standard\" Id=\"Std\"/></t:Periods>"
+      + "<t:TransitionsGroups><t:TransitionsGroup Id=\"0\">"
+      + "<t:Transition><t:To Kind=\"Period\">Std</t:To></t:Transition>"
+      + "</t:TransitionsGroup></t:TransitionsGroups>"
+      + "<t:Transitions><t:Transition><t:To Kind=\"Group\">0</t:To></t:Transition></t:Transitions>"
+      + "</t:TimeZoneDefinition>";
+
+  private HttpServer server;
+
+  private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+  private ExchangeService service;
+
+  @Before
+  public void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/EWS/Exchange.asmx", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        String request = read(exchange.getRequestBody());
+        requests.add(request);
+        String definitions;
+        if (!request.contains("Ids>")) {
+          definitions = EASTERN + UTC;
+        } else {
+          definitions = (request.contains(">Eastern Standard Time<") ? EASTERN : "")
+              + (request.contains(">UTC<") ? UTC : "");
+        }
+        byte[] response = String.format(RESPONSE, definitions).getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=utf-8");
+        exchange.sendResponseHeaders(200, response.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(response);
+        out.close();
+      }
+    });
+    server.start();
+
+    service = new ExchangeService(ExchangeVersion.Exchange2010_SP2);
+    service.setUrl(new URI("http://127.0.0.1:" + server.getAddress().getPort() + "/EWS/Exchange.asmx"));
+    service.setServerTimeZoneCache(new ServerTimeZoneCache());
+  }
+
+  @After
+  public void tearDown() {
+    service.close();
+    server.stop(0);
+  }
+
+  @Test
+  public void testParsesFullDefinitions() throws Exception {
+    Collection<TimeZoneDefinition> timeZones = service.getServerTimeZones();
+    Assert.assertEquals(2, timeZones.size());
+    Assert.assertEquals(1, requests.size());
+    Assert.assertFalse(requests.get(0).contains("Ids>"));
+
+    TimeZoneDefinition eastern = timeZones.iterator().next();
+    Assert.assertEquals("Eastern Standard Time", eastern.getId());
+    Assert.assertEquals("(UTC-05:00) Eastern Time (US & Canada)", eastern.getName());
+    Assert.assertEquals(2, eastern.getPeriods().size());
+    Assert.assertEquals("Dlt/2007", eastern.getPeriods().get("Dlt/2007").getId());
+    Assert.assertEquals(1, eastern.getTransitionGroups().size());
+    Assert.assertEquals(2, eastern.getTransitionGroups().get("0").getTransitions().size());
+  }
+
+  @Test
+  public void testCachesAllTimeZones() throws Exception {
+    Collection<TimeZoneDefinition> first = service.getServerTimeZones();
+    Collection<TimeZoneDefinition> second = service.getServerTimeZones();
+    Assert.assertEquals(2, second.size());
+    Assert.assertEquals(1, requests.size());
+
+    // Every call gets definitions of its own, which it may modify or hand to items.
+    TimeZoneDefinition eastern = second.iterator().next();
+    Assert.assertNotSame(first.iterator().next(), eastern);
+    Assert.assertEquals("Eastern Standard Time", eastern.getId());
+    Assert.assertEquals(2, eastern.getPeriods().size());
+    Assert.assertEquals(2, eastern.getTransitionGroups().get("0").getTransitions().size());
+    Assert.assertNotSame(eastern, service.getServerTimeZones().iterator().next());
+
+    // All the time zones also answer requests by id.
+    Collection<TimeZoneDefinition> utc = service.getServerTimeZones(Arrays.asList("UTC"));
+    Assert.assertEquals(1, utc.size());
+    Assert.assertEquals("UTC", utc.iterator().next().getId());
+    Assert.assertNotSame(utc.iterator().next(),
+        service.getServerTimeZones(Arrays.asList("UTC")).iterator().next());
+    Assert.assertEquals(1, requests.size());
+  }
+
+  @Test
+  public void testRequestsOnlyMissingTimeZones() throws Exception {
+    service.getServerTimeZones(Arrays.asList("UTC"));
+    Assert.assertEquals(1, requests.size());
+
+    Collection<TimeZoneDefinition> timeZones =
+        service.getServerTimeZones(Arrays.asList("Eastern Standard Time", "UTC"));
+    Assert.assertEquals(2, requests.size());
+    Assert.assertTrue(requests.get(1).contains(">Eastern Standard Time<"));
+    Assert.assertFalse(requests.get(1).contains(">UTC<"));
+
+    // Definitions come back in the requested order.
+    Iterator<TimeZoneDefinition> it = timeZones.iterator();
+    Assert.assertEquals("Eastern Standard Time", it.next().getId());
+    Assert.assertEquals("UTC", it.next().getId());
+
+    service.getServerTimeZones(Arrays.asList("UTC", "Eastern Standard Time"));
+    Assert.assertEquals(2, requests.size());
+  }
+
+  @Test
+  public void testWithoutCache() throws Exception {
+    service.setServerTimeZoneCache(null);
+    service.getServerTimeZones();
+    service.getServerTimeZones();
+    Assert.assertEquals(2, requests.size());
+  }
+
+  @Test
+  public void testEntriesExpire() throws Exception {
+    final long[] now = {1000};
+    ServerTimeZoneCache cache = new ServerTimeZoneCache(100) {
+      @Override
+      protected long currentTimeMillis() {
+        return now[0];
+      }
+    };
+    Map<String, List<XMLEvent>> definitions = Collections.singletonMap("UTC", events(UTC));
+    cache.put(ExchangeVersion.Exchange2010, definitions);
+    cache.putAll(ExchangeVersion.Exchange2010_SP1, definitions);
+
+    Assert.assertEquals("UTC", cache.get(ExchangeVersion.Exchange2010, "UTC").getId());
+    Assert.assertNull(cache.get(ExchangeVersion.Exchange2010_SP2, "UTC"));
+    Assert.assertNull(cache.getAll(ExchangeVersion.Exchange2010));
+    Assert.assertEquals(1, cache.getAll(ExchangeVersion.Exchange2010_SP1).size());
+    Assert.assertEquals(1, cache.get(ExchangeVersion.Exchange2010_SP1, "UTC").getPeriods().size());
+
+    now[0] = 1100;
+    Assert.assertNull(cache.get(ExchangeVersion.Exchange2010, "UTC"));
+    Assert.assertNull(cache.getAll(ExchangeVersion.Exchange2010_SP1));
+    Assert.assertEquals(3, cache.getHitCount());
+    Assert.assertEquals(4, cache.getMissCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsInvalidTimeToLive() {
+    new ServerTimeZoneCache(0);
+  }
+
+  @Test
+  public void testMapsTimeZoneIds() {
+    Assert.assertEquals("America/New_York", TimeZoneUtils.getOlsonTimeZoneId("Eastern Standard Time"));
+    Assert.assertEquals("Europe/London", TimeZoneUtils.getOlsonTimeZoneId("GMT Standard Time"));
+    Assert.assertEquals("Africa/Windhoek", TimeZoneUtils.getOlsonTimeZoneId("Namibia Standard Time"));
+    Assert.assertEquals("America/Los_Angeles", TimeZoneUtils.getTimeZone("Pacific Standard Time").getID());
+    Assert.assertNull(TimeZoneUtils.getOlsonTimeZoneId("Unknown Standard Time"));
+  }
+
+  private static List<XMLEvent> events(String timeZoneDefinition) throws Exception {
+    String xml = timeZoneDefinition.replaceFirst("<t:TimeZoneDefinition",
+        "<t:TimeZoneDefinition xmlns:t=\"http://schemas.microsoft.com/exchange/services/2006/types\"");
+    XMLEventReader reader = SafeXmlFactory.getInputFactory().createXMLEventReader(
+        new ByteArrayInputStream(xml.getBytes("UTF-8")));
+    List<XMLEvent> events = new ArrayList<XMLEvent>();
+    while (reader.hasNext()) {
+      XMLEvent event = reader.nextEvent();
+      if (!event.isStartDocument() && !event.isEndDocument()) {
+        events.add(event);
+      }
+    }
+    return events;
+  }
+
+  private static String read(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    for (int n; (n = in.read(buffer)) > 0; ) {
+      out.write(buffer, 0, n);
+    }
+    return out.toString("UTF-8");
+  }
+
+}
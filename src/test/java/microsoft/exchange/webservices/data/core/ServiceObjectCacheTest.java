@@ -0,0 +1,158 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.core;
+
+import microsoft.exchange.webservices.data.core.enumeration.misc.XmlNamespace;
+import microsoft.exchange.webservices.data.core.enumeration.property.BasePropertySet;
+import microsoft.exchange.webservices.data.core.response.GetItemResponse;
+import microsoft.exchange.webservices.data.property.complex.ItemId;
+import microsoft.exchange.webservices.data.security.XmlNodeType;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.xml.stream.events.XMLEvent;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class ServiceObjectCacheTest {
+
+  private static final String RESPONSE_MESSAGE =
+      "<m:ResponseMessages"
+      + " xmlns:m=\"" + XmlNamespace.Messages.getNameSpaceUri() + "\""
+      + " xmlns:t=\"" + XmlNamespace.Types.getNameSpaceUri() + "\">"
+      + "<m:GetItemResponseMessage ResponseClass=\"Success\">"
+      + "<m:ResponseCode>NoError</m:ResponseCode>"
+      + "<m:Items><t:Message>"
+      + "<t:ItemId Id=\"%1$s\" ChangeKey=\"%2$s\"/>"
+      + "<t:Subject>%3$s</t:Subject>"
+      + "</t:Message></m:Items>"
+      + "</m:GetItemResponseMessage>"
+      + "</m:ResponseMessages>";
+
+  @Test
+  public void testLoadReplaysCachedResponse() throws Exception {
+    ExchangeService service = new ExchangeService();
+    ServiceObjectCache cache = new ServiceObjectCache();
+    cache.put(itemId("AAA", "CK1"), PropertySet.FirstClassProperties, record(service, "AAA", "CK1", "Report"));
+
+    for (int i = 0; i < 2; i++) {
+      GetItemResponse response = new GetItemResponse(null, PropertySet.FirstClassProperties);
+      Assert.assertTrue(cache.load(service, new ItemId("AAA"), PropertySet.FirstClassProperties,
+          response, XmlElementNames.GetItemResponseMessage));
+      Assert.assertEquals("Report", response.getItem().getSubject());
+      Assert.assertEquals("CK1", response.getItem().getId().getChangeKey());
+    }
+    Assert.assertEquals(2, cache.getHitCount());
+  }
+
+  @Test
+  public void testLookupMatchesChangeKeyAndPropertySet() throws Exception {
+    ExchangeService service = new ExchangeService();
+    ServiceObjectCache cache = new ServiceObjectCache();
+    cache.put(itemId("AAA", "CK1"), PropertySet.FirstClassProperties, record(service, "AAA", "CK1", "Report"));
+
+    Assert.assertNotNull(cache.get(new ItemId("AAA"), PropertySet.FirstClassProperties));
+    Assert.assertNotNull(cache.get(itemId("AAA", "CK1"), new PropertySet(BasePropertySet.FirstClassProperties)));
+    Assert.assertNull(cache.get(itemId("AAA", "CK2"), PropertySet.FirstClassProperties));
+    Assert.assertNull(cache.get(new ItemId("AAA"), PropertySet.IdOnly));
+    Assert.assertNull(cache.get(new ItemId("BBB"), PropertySet.FirstClassProperties));
+
+    // A newer version replaces the stale one.
+    cache.put(itemId("AAA", "CK2"), PropertySet.IdOnly, record(service, "AAA", "CK2", "Report"));
+    Assert.assertNull(cache.get(new ItemId("AAA"), PropertySet.FirstClassProperties));
+    Assert.assertEquals(1, cache.getCount());
+
+    cache.invalidate(new ItemId("AAA"));
+    Assert.assertNull(cache.get(new ItemId("AAA"), PropertySet.IdOnly));
+    Assert.assertEquals(0, cache.getCount());
+    Assert.assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() throws Exception {
+    ExchangeService service = new ExchangeService();
+    ServiceObjectCache cache = new ServiceObjectCache(2, ServiceObjectCache.DEFAULT_MAXIMUM_SIZE);
+    cache.put(new ItemId("AAA"), PropertySet.IdOnly, record(service, "AAA", "CK1", "One"));
+    cache.put(new ItemId("BBB"), PropertySet.IdOnly, record(service, "BBB", "CK1", "Two"));
+    Assert.assertNotNull(cache.get(new ItemId("AAA"), PropertySet.IdOnly));
+    cache.put(new ItemId("CCC"), PropertySet.IdOnly, record(service, "CCC", "CK1", "Three"));
+
+    Assert.assertEquals(2, cache.getCount());
+    Assert.assertNotNull(cache.get(new ItemId("AAA"), PropertySet.IdOnly));
+    Assert.assertNull(cache.get(new ItemId("BBB"), PropertySet.IdOnly));
+    Assert.assertNotNull(cache.get(new ItemId("CCC"), PropertySet.IdOnly));
+  }
+
+  @Test
+  public void testDropsResponseRequestedBeforeInvalidation() throws Exception {
+    ExchangeService service = new ExchangeService();
+    ServiceObjectCache cache = new ServiceObjectCache();
+    long requested = cache.getGeneration();
+    cache.invalidate(new ItemId("AAA"));
+
+    // The update was made while the response was on its way.
+    cache.put(new ItemId("AAA"), PropertySet.IdOnly, record(service, "AAA", "CK1", "Old"), requested);
+    Assert.assertNull(cache.get(new ItemId("AAA"), PropertySet.IdOnly));
+    // Other objects are not affected.
+    cache.put(new ItemId("BBB"), PropertySet.IdOnly, record(service, "BBB", "CK1", "Two"), requested);
+    Assert.assertNotNull(cache.get(new ItemId("BBB"), PropertySet.IdOnly));
+
+    cache.put(new ItemId("AAA"), PropertySet.IdOnly, record(service, "AAA", "CK2", "New"),
+        cache.getGeneration());
+    Assert.assertNotNull(cache.get(new ItemId("AAA"), PropertySet.IdOnly));
+
+    // Once too many objects were invalidated to tell, older responses are dropped.
+    requested = cache.getGeneration();
+    for (int i = 0; i < 2000; i++) {
+      cache.invalidate(new ItemId("ID" + i));
+    }
+    cache.put(new ItemId("CCC"), PropertySet.IdOnly, record(service, "CCC", "CK1", "Three"), requested);
+    Assert.assertNull(cache.get(new ItemId("CCC"), PropertySet.IdOnly));
+  }
+
+  private static ItemId itemId(String uniqueId, String changeKey) throws Exception {
+    ItemId id = new ItemId(uniqueId);
+    id.setChangeKey(changeKey);
+    return id;
+  }
+
+  private static List<XMLEvent> record(ExchangeService service, String id, String changeKey,
+      String subject) throws Exception {
+    String xml = String.format(RESPONSE_MESSAGE, id, changeKey, subject);
+    EwsServiceXmlReader reader =
+        new EwsServiceXmlReader(new ByteArrayInputStream(xml.getBytes("UTF-8")), service);
+    reader.read(new XmlNodeType(XmlNodeType.START_DOCUMENT));
+    reader.readStartElement(XmlNamespace.Messages, XmlElementNames.ResponseMessages);
+    reader.startRecording();
+    new GetItemResponse(null, PropertySet.FirstClassProperties)
+        .loadFromXml(reader, XmlElementNames.GetItemResponseMessage);
+    return reader.stopRecording();
+  }
+
+}
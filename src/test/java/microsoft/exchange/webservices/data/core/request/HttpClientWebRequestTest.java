@@ -0,0 +1,169 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package microsoft.exchange.webservices.data.core.request;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import microsoft.exchange.webservices.data.core.exception.service.local.ServiceValidationException;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.ContentProducer;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(JUnit4.class)
+public class HttpClientWebRequestTest {
+
+  private static final int BODY_LENGTH = 1 << 20;
+
+  @Test
+  public void testStreamsRequestBodyToServer() throws Exception {
+    final byte[] body = new byte[BODY_LENGTH];
+    for (int i = 0; i < body.length; i++) {
+      body[i] = (byte) (i * 31 + (i >> 8));
+    }
+    final CountDownLatch firstHalfReceived = new CountDownLatch(1);
+    final AtomicReference<byte[]> received = new AtomicReference<byte[]>();
+    final AtomicReference<String> transferEncoding = new AtomicReference<String>();
+
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/EWS/Exchange.asmx", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        transferEncoding.set(exchange.getRequestHeaders().getFirst("Transfer-Encoding"));
+        InputStream in = exchange.getRequestBody();
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+          content.write(buffer, 0, read);
+          if (content.size() >= BODY_LENGTH / 2) {
+            firstHalfReceived.countDown();
+          }
+        }
+        received.set(content.toByteArray());
+        exchange.sendResponseHeaders(200, -1);
+        exchange.close();
+      }
+    });
+    server.start();
+
+    CloseableHttpClient httpClient = HttpClients.createDefault();
+    HttpClientWebRequest request = new HttpClientWebRequest(httpClient, HttpClientContext.create());
+    try {
+      request.setUrl(new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/EWS/Exchange.asmx"));
+      request.setContentType("text/xml; charset=utf-8");
+      request.setAccept("text/xml");
+      request.setUserAgent("ExchangeServicesClient");
+      request.prepareConnection();
+
+      final AtomicReference<Boolean> streamed = new AtomicReference<Boolean>();
+      request.setRequestBodyProducer(new ContentProducer() {
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+          outputStream.write(body, 0, BODY_LENGTH / 2);
+          outputStream.flush();
+          // The server only gets the first half before the rest is written if it is not buffered.
+          try {
+            streamed.set(firstHalfReceived.await(10, TimeUnit.SECONDS));
+          } catch (InterruptedException e) {
+            throw new IOException(e);
+          }
+          outputStream.write(body, BODY_LENGTH / 2, BODY_LENGTH - BODY_LENGTH / 2);
+        }
+      });
+
+      Assert.assertEquals(200, request.executeRequest());
+      Assert.assertEquals(Boolean.TRUE, streamed.get());
+      Assert.assertEquals("chunked", transferEncoding.get());
+      Assert.assertTrue(Arrays.equals(body, received.get()));
+    } finally {
+      request.close();
+      httpClient.close();
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void testThrowsSerializationFailureOfStreamedBody() throws Exception {
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/EWS/Exchange.asmx", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer) != -1) {
+          // Drain the body.
+        }
+        exchange.sendResponseHeaders(200, -1);
+        exchange.close();
+      }
+    });
+    server.start();
+
+    final ServiceValidationException failure = new ServiceValidationException("invalid request");
+    CloseableHttpClient httpClient = HttpClients.createDefault();
+    HttpClientWebRequest request = new HttpClientWebRequest(httpClient, HttpClientContext.create());
+    try {
+      request.setUrl(new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/EWS/Exchange.asmx"));
+      request.setContentType("text/xml; charset=utf-8");
+      request.prepareConnection();
+      request.setRequestBodyProducer(new ContentProducer() {
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+          outputStream.write(new byte[] {'<', 's'});
+          throw new RequestSerializationException(failure);
+        }
+      });
+
+      try {
+        request.executeRequest();
+        Assert.fail("The request was sent.");
+      } catch (RequestSerializationException e) {
+        Assert.assertSame(failure, e.getCause());
+      }
+    } finally {
+      request.close();
+      httpClient.close();
+      server.stop(0);
+    }
+  }
+
+}
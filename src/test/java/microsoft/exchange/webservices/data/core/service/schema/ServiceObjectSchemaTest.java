@@ -0,0 +1,56 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.core.service.schema;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ServiceObjectSchemaTest {
+
+  @Test
+  public void testFindPropertyDefinition() {
+    Assert.assertSame(ItemSchema.Subject, ServiceObjectSchema.findPropertyDefinition("item:Subject"));
+    Assert.assertSame(AppointmentSchema.Start,
+        ServiceObjectSchema.findPropertyDefinition("calendar:Start"));
+    Assert.assertSame(FolderSchema.DisplayName,
+        ServiceObjectSchema.findPropertyDefinition("folder:DisplayName"));
+    Assert.assertNull(ServiceObjectSchema.findPropertyDefinition("item:Unknown"));
+  }
+
+  @Test
+  public void testFindAssociatedInternalProperty() {
+    Assert.assertNotNull(ServiceObjectSchema.findPropertyDefinition("calendar:MeetingTimeZone"));
+  }
+
+  @Test
+  public void testPropertyNames() {
+    Assert.assertEquals("Subject", ItemSchema.Subject.getName());
+    Assert.assertEquals("DisplayName", FolderSchema.DisplayName.getName());
+  }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.misc;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(JUnit4.class)
+public class AsyncExecutorTest {
+
+  @Test
+  public void testQueuesTasksBeyondMaximumThreads() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    AsyncExecutor first = new AsyncExecutor(2);
+    AsyncExecutor second = new AsyncExecutor(2);
+    try {
+      List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+      for (int i = 0; i < 20; i++) {
+        final int value = i;
+        results.add(first.submit(new Callable<Integer>() {
+          @Override
+          public Integer call() throws Exception {
+            release.await();
+            return value;
+          }
+        }, null));
+      }
+
+      // Executors do not share their queue.
+      Assert.assertEquals(Integer.valueOf(7), second.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() {
+          return 7;
+        }
+      }, null).get(5, TimeUnit.SECONDS));
+
+      release.countDown();
+      for (int i = 0; i < results.size(); i++) {
+        Assert.assertEquals(Integer.valueOf(i), results.get(i).get(5, TimeUnit.SECONDS));
+      }
+      Assert.assertTrue(first.getLargestPoolSize() <= 2);
+    } finally {
+      first.shutdownNow();
+      second.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testCallbackInvokedOncePerTask() throws Exception {
+    AsyncExecutor executor = new AsyncExecutor(1);
+    final AtomicInteger processed = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(2);
+    try {
+      for (int i = 0; i < 2; i++) {
+        AsyncCallback callback = new AsyncCallbackImplementation() {
+          @Override
+          public Object processMe(Future<?> task) {
+            Assert.assertTrue(task.isDone());
+            processed.incrementAndGet();
+            done.countDown();
+            return null;
+          }
+        };
+        Future<String> result = executor.submit(new Callable<String>() {
+          @Override
+          public String call() {
+            return "done";
+          }
+        }, callback);
+        Assert.assertEquals("done", result.get(5, TimeUnit.SECONDS));
+
+        // Running the callback after the executor did must not process the task again.
+        callback.run();
+      }
+
+      Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+      Assert.assertEquals(2, processed.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.misc;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class LatencyHistogramTest {
+
+  @Test
+  public void testPercentilesAreBucketUpperBounds() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Assert.assertEquals(0, histogram.getPercentile(99));
+
+    for (int i = 0; i < 90; i++) {
+      histogram.record(20);
+    }
+    for (int i = 0; i < 9; i++) {
+      histogram.record(700);
+    }
+    histogram.record(400000);
+
+    Assert.assertEquals(100, histogram.getCount());
+    Assert.assertEquals(400000, histogram.getMax());
+    Assert.assertEquals(25, histogram.getPercentile(50));
+    Assert.assertEquals(25, histogram.getPercentile(90));
+    Assert.assertEquals(1000, histogram.getPercentile(99));
+    Assert.assertEquals(400000, histogram.getPercentile(100));
+    Assert.assertEquals((90 * 20 + 9 * 700 + 400000) / 100.0, histogram.getMean(), 0.001);
+
+    long[] counts = histogram.getBucketCounts();
+    Assert.assertEquals(histogram.getBucketBounds().length + 1, counts.length);
+    Assert.assertEquals(1, counts[counts.length - 1]);
+  }
+
+}
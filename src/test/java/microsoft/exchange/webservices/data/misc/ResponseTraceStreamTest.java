@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.misc;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+/**
+ * The Class ResponseTraceStreamTest.
+ */
+@RunWith(JUnit4.class)
+public class ResponseTraceStreamTest {
+
+  private static final String RESPONSE = "<s:Envelope><s:Body>response</s:Body></s:Envelope>";
+
+  /**
+   * The whole response is copied when it fits into the trace limit.
+   */
+  @Test
+  public void testCopiesWholeResponse() throws Exception {
+    ResponseTraceStream stream = new ResponseTraceStream(
+        new ByteArrayInputStream(RESPONSE.getBytes("UTF-8")), 1024);
+
+    Assert.assertEquals(RESPONSE, readFully(stream));
+    Assert.assertEquals(RESPONSE, stream.getResponseCopy().toString("UTF-8"));
+    Assert.assertEquals(0, stream.getTruncatedByteCount());
+  }
+
+  /**
+   * Bytes beyond the trace limit are passed through but only counted.
+   */
+  @Test
+  public void testTruncatesTrace() throws Exception {
+    ResponseTraceStream stream = new ResponseTraceStream(
+        new ByteArrayInputStream(RESPONSE.getBytes("UTF-8")), 10);
+
+    Assert.assertEquals('<', stream.read());
+    Assert.assertEquals(RESPONSE.substring(1), readFully(stream));
+    Assert.assertEquals(RESPONSE.substring(0, 10), stream.getResponseCopy().toString("UTF-8"));
+    Assert.assertEquals(RESPONSE.length() - 10, stream.getTruncatedByteCount());
+  }
+
+  /**
+   * Skipped bytes are traced, and a skip by a count that is not positive does nothing.
+   */
+  @Test
+  public void testSkip() throws Exception {
+    ResponseTraceStream stream = new ResponseTraceStream(
+        new ByteArrayInputStream(RESPONSE.getBytes("UTF-8")), 1024);
+
+    Assert.assertEquals(0, stream.skip(-1));
+    Assert.assertEquals(0, stream.skip(0));
+    Assert.assertEquals(5, stream.skip(5));
+    Assert.assertEquals(RESPONSE.substring(5), readFully(stream));
+    Assert.assertEquals(RESPONSE, stream.getResponseCopy().toString("UTF-8"));
+  }
+
+  private static String readFully(ResponseTraceStream stream) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[7];
+    int count;
+    while ((count = stream.read(buffer, 0, buffer.length)) != -1) {
+      out.write(buffer, 0, count);
+    }
+    return out.toString("UTF-8");
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.notification;
+
+import microsoft.exchange.webservices.data.core.ExchangeService;
+import microsoft.exchange.webservices.data.core.enumeration.misc.error.ServiceError;
+import microsoft.exchange.webservices.data.core.enumeration.notification.EventType;
+import microsoft.exchange.webservices.data.core.exception.service.remote.ServiceResponseException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(JUnit4.class)
+public class PullSubscriptionSchedulerTest {
+
+  @Test
+  public void testPublishesResultsWithEvents() throws Exception {
+    final AtomicInteger polls = new AtomicInteger();
+    ExchangeService service = Mockito.mock(ExchangeService.class);
+    Mockito.when(service.getEvents(Mockito.anyString(), Mockito.anyString()))
+        .thenAnswer(new Answer<GetEventsResults>() {
+          @Override
+          public GetEventsResults answer(InvocationOnMock invocation) {
+            GetEventsResults results = new GetEventsResults();
+            if (polls.incrementAndGet() % 2 == 0) {
+              results.getAllEvents().add(new ItemEvent(EventType.NewMail, new Date()));
+            }
+            return results;
+          }
+        });
+
+    PullSubscriptionScheduler scheduler = new PullSubscriptionScheduler(2);
+    try {
+      scheduler.setMinInterval(1);
+      scheduler.setMaxInterval(2);
+      BlockingQueue<GetEventsResults> queue = scheduler.add(newSubscription(service, "s1"));
+
+      for (int i = 0; i < 3; i++) {
+        GetEventsResults results = queue.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(results);
+        Assert.assertEquals(1, results.getAllEvents().size());
+      }
+    } finally {
+      scheduler.close();
+    }
+  }
+
+  @Test
+  public void testLeavesEventsOnServerWhenQueueIsFull() throws Exception {
+    final AtomicInteger polls = new AtomicInteger();
+    ExchangeService service = Mockito.mock(ExchangeService.class);
+    Mockito.when(service.getEvents(Mockito.anyString(), Mockito.anyString()))
+        .thenAnswer(new Answer<GetEventsResults>() {
+          @Override
+          public GetEventsResults answer(InvocationOnMock invocation) {
+            polls.incrementAndGet();
+            GetEventsResults results = new GetEventsResults();
+            results.getAllEvents().add(new ItemEvent(EventType.NewMail, new Date()));
+            return results;
+          }
+        });
+
+    PullSubscriptionScheduler scheduler = new PullSubscriptionScheduler(1);
+    try {
+      scheduler.setMinInterval(1);
+      scheduler.setQueueCapacity(2);
+      BlockingQueue<GetEventsResults> queue = scheduler.add(newSubscription(service, "s1"));
+
+      long deadline = System.currentTimeMillis() + 5000;
+      while (queue.remainingCapacity() > 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(5);
+      }
+      Thread.sleep(50);
+      Assert.assertEquals(2, queue.size());
+      Assert.assertEquals(2, polls.get());
+
+      // Draining the queue resumes polling.
+      queue.clear();
+      Assert.assertNotNull(queue.poll(5, TimeUnit.SECONDS));
+    } finally {
+      scheduler.close();
+    }
+  }
+
+  @Test
+  public void testKeepsSubscriptionAliveWhenQueueIsFull() throws Exception {
+    final List<String> watermarks = Collections.synchronizedList(new ArrayList<String>());
+    ExchangeService service = Mockito.mock(ExchangeService.class);
+    Mockito.when(service.getEvents(Mockito.anyString(), Mockito.anyString()))
+        .thenAnswer(new Answer<GetEventsResults>() {
+          @Override
+          public GetEventsResults answer(InvocationOnMock invocation) throws Exception {
+            watermarks.add((String) invocation.getArguments()[1]);
+            GetEventsResults results = new GetEventsResults();
+            results.getAllEvents().add(new ItemEvent(EventType.NewMail, new Date()));
+            setNewWatermark(results, "w" + watermarks.size());
+            return results;
+          }
+        });
+
+    PullSubscriptionScheduler scheduler = new PullSubscriptionScheduler(1);
+    try {
+      scheduler.setMinInterval(1);
+      scheduler.setMaxInterval(20);
+      scheduler.setQueueCapacity(1);
+      BlockingQueue<GetEventsResults> queue = scheduler.add(newSubscription(service, "s1"));
+
+      long deadline = System.currentTimeMillis() + 5000;
+      while (watermarks.size() < 4 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(5);
+      }
+      Assert.assertEquals(1, queue.size());
+      // The polls while the queue is full do not move the watermark.
+      Assert.assertEquals("watermark", watermarks.get(0));
+      Assert.assertEquals(Arrays.asList("w1", "w1", "w1"), watermarks.subList(1, 4));
+
+      queue.clear();
+      Assert.assertNotNull(queue.poll(5, TimeUnit.SECONDS));
+      Assert.assertFalse(watermarks.subList(1, watermarks.size()).contains("w2"));
+    } finally {
+      scheduler.close();
+    }
+  }
+
+  @Test
+  public void testStopsPollingEndedSubscription() throws Exception {
+    ServiceResponseException notFound = Mockito.mock(ServiceResponseException.class);
+    Mockito.when(notFound.getErrorCode()).thenReturn(ServiceError.ErrorSubscriptionNotFound);
+    ExchangeService service = Mockito.mock(ExchangeService.class);
+    Mockito.when(service.getEvents(Mockito.anyString(), Mockito.anyString())).thenThrow(notFound);
+
+    PullSubscriptionScheduler scheduler = new PullSubscriptionScheduler(1);
+    try {
+      scheduler.setMinInterval(1);
+      PullSubscription subscription = newSubscription(service, "s1");
+      scheduler.add(subscription);
+
+      long deadline = System.currentTimeMillis() + 5000;
+      while (scheduler.isPolling(subscription) && System.currentTimeMillis() < deadline) {
+        Thread.sleep(5);
+      }
+      Assert.assertFalse(scheduler.isPolling(subscription));
+      Assert.assertSame(notFound, scheduler.getLastError(subscription));
+      Mockito.verify(service, Mockito.times(1)).getEvents(Mockito.anyString(), Mockito.anyString());
+    } finally {
+      scheduler.close();
+    }
+  }
+
+  @Test
+  public void testIdleIntervalDoublesUpToMaximum() throws Exception {
+    ExchangeService service = Mockito.mock(ExchangeService.class);
+    Mockito.when(service.getEvents(Mockito.anyString(), Mockito.anyString()))
+        .thenReturn(new GetEventsResults());
+
+    PullSubscriptionScheduler scheduler = new PullSubscriptionScheduler(1);
+    try {
+      scheduler.setMinInterval(20);
+      scheduler.setMaxInterval(40);
+      scheduler.add(newSubscription(service, "s1"));
+
+      // Polls at about 0-20, +20, +40, +40, +40 ms: five or six polls in 200 ms.
+      Thread.sleep(200);
+      Mockito.verify(service, Mockito.atLeast(3))
+          .getEvents(Mockito.anyString(), Mockito.anyString());
+      Mockito.verify(service, Mockito.atMost(8))
+          .getEvents(Mockito.anyString(), Mockito.anyString());
+    } finally {
+      scheduler.close();
+    }
+  }
+
+  private static void setNewWatermark(GetEventsResults results, String watermark)
+      throws Exception {
+    Field field = GetEventsResults.class.getDeclaredField("newWatermark");
+    field.setAccessible(true);
+    field.set(results, watermark);
+  }
+
+  private static PullSubscription newSubscription(ExchangeService service, String id)
+      throws Exception {
+    PullSubscription subscription = new PullSubscription(service);
+    subscription.setId(id);
+    subscription.setWaterMark("watermark");
+    return subscription;
+  }
+
+}
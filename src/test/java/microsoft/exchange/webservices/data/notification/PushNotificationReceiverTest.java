@@ -0,0 +1,181 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.notification;
+
+import microsoft.exchange.webservices.data.core.ExchangeService;
+import microsoft.exchange.webservices.data.core.enumeration.notification.EventType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class PushNotificationReceiverTest {
+
+  private static final String NOTIFICATION = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+      + "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\""
+      + " xmlns:m=\"http://schemas.microsoft.com/exchange/services/2006/messages\""
+      + " xmlns:t=\"http://schemas.microsoft.com/exchange/services/2006/types\">"
+      + "<soap:Header><t:RequestServerVersion Version=\"Exchange2010_SP2\"/></soap:Header>"
+      + "<soap:Body><m:SendNotification><m:ResponseMessages>"
+      + "<m:SendNotificationResponseMessage ResponseClass=\"Success\">"
+      + "<m:ResponseCode>NoError</m:ResponseCode><m:Notification>"
+      + "<t:SubscriptionId>%s</t:SubscriptionId>"
+      + "<t:PreviousWatermark>w0</t:PreviousWatermark><t:MoreEvents>false</t:MoreEvents>"
+      + "%s"
+      + "</m:Notification></m:SendNotificationResponseMessage>"
+      + "</m:ResponseMessages></m:SendNotification></soap:Body></soap:Envelope>";
+
+  private static final String NEW_MAIL_EVENT = "<t:NewMailEvent><t:Watermark>w1</t:Watermark>"
+      + "<t:TimeStamp>2015-06-01T10:00:00Z</t:TimeStamp>"
+      + "<t:ItemId Id=\"item\" ChangeKey=\"ck\"/>"
+      + "<t:ParentFolderId Id=\"folder\" ChangeKey=\"fck\"/></t:NewMailEvent>";
+
+  private static final String STATUS_EVENT =
+      "<t:StatusEvent><t:Watermark>w1</t:Watermark></t:StatusEvent>";
+
+  private PushNotificationReceiver receiver;
+
+  private final List<String> received = new ArrayList<String>();
+
+  @Before
+  public void setUp() throws Exception {
+    receiver = new PushNotificationReceiver(new ExchangeService(),
+        new InetSocketAddress("127.0.0.1", 0), "/notify");
+    receiver.addOnNotificationEvent(new PushNotificationReceiver.IPushNotificationDelegate() {
+      @Override
+      public void notificationReceived(PushNotificationReceiver sender, String subscriptionId,
+          Iterable<NotificationEvent> events) {
+        for (NotificationEvent event : events) {
+          ItemEvent itemEvent = (ItemEvent) event;
+          Assert.assertEquals(EventType.NewMail, itemEvent.getEventType());
+          synchronized (received) {
+            received.add(subscriptionId + ":" + itemEvent.getItemId().getUniqueId());
+          }
+        }
+        if ("ending".equals(subscriptionId)) {
+          sender.unsubscribe(subscriptionId);
+        }
+      }
+    });
+    receiver.start();
+  }
+
+  @After
+  public void tearDown() {
+    receiver.close();
+  }
+
+  @Test
+  public void testDispatchesEventsAndAnswersOk() throws Exception {
+    String answer = post(String.format(NOTIFICATION, "sub", NEW_MAIL_EVENT), 200);
+
+    Assert.assertTrue(answer, answer.contains("<SubscriptionStatus>OK</SubscriptionStatus>"));
+    Assert.assertEquals(1, received.size());
+    Assert.assertEquals("sub:item", received.get(0));
+  }
+
+  @Test
+  public void testStatusEventIsNotDispatched() throws Exception {
+    String answer = post(String.format(NOTIFICATION, "sub", STATUS_EVENT), 200);
+
+    Assert.assertTrue(answer, answer.contains("<SubscriptionStatus>OK</SubscriptionStatus>"));
+    Assert.assertTrue(received.isEmpty());
+  }
+
+  @Test
+  public void testAnswersUnsubscribe() throws Exception {
+    String answer = post(String.format(NOTIFICATION, "ending", NEW_MAIL_EVENT), 200);
+    Assert.assertTrue(answer,
+        answer.contains("<SubscriptionStatus>Unsubscribe</SubscriptionStatus>"));
+
+    receiver.unsubscribe("other");
+    answer = post(String.format(NOTIFICATION, "other", STATUS_EVENT), 200);
+    Assert.assertTrue(answer,
+        answer.contains("<SubscriptionStatus>Unsubscribe</SubscriptionStatus>"));
+    answer = post(String.format(NOTIFICATION, "other", STATUS_EVENT), 200);
+    Assert.assertTrue(answer, answer.contains("<SubscriptionStatus>OK</SubscriptionStatus>"));
+    Assert.assertEquals(0, receiver.getPendingUnsubscribeCount());
+  }
+
+  @Test
+  public void testDropsExpiredUnsubscribeRequests() throws Exception {
+    receiver.setUnsubscribeExpiry(20);
+    receiver.unsubscribe("gone");
+    Thread.sleep(50);
+    receiver.unsubscribe("other");
+    Assert.assertEquals(1, receiver.getPendingUnsubscribeCount());
+
+    String answer = post(String.format(NOTIFICATION, "gone", STATUS_EVENT), 200);
+    Assert.assertTrue(answer, answer.contains("<SubscriptionStatus>OK</SubscriptionStatus>"));
+  }
+
+  @Test
+  public void testRejectsInvalidRequest() throws Exception {
+    post("<not-a-notification/>", 400);
+    Assert.assertTrue(received.isEmpty());
+  }
+
+  private String post(String body, int expectedStatus) throws Exception {
+    URL url = new URL("http://127.0.0.1:" + receiver.getAddress().getPort() + "/notify");
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    try {
+      connection.setDoOutput(true);
+      connection.setRequestMethod("POST");
+      connection.setRequestProperty("Content-Type", "text/xml; charset=utf-8");
+      OutputStream output = connection.getOutputStream();
+      output.write(body.getBytes("UTF-8"));
+      output.close();
+
+      Assert.assertEquals(expectedStatus, connection.getResponseCode());
+      if (expectedStatus != 200) {
+        return null;
+      }
+      InputStream input = connection.getInputStream();
+      ByteArrayOutputStream answer = new ByteArrayOutputStream();
+      byte[] buffer = new byte[1024];
+      int count;
+      while ((count = input.read(buffer)) != -1) {
+        answer.write(buffer, 0, count);
+      }
+      input.close();
+      return answer.toString("UTF-8");
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+}
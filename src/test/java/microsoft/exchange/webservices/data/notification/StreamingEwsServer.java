@@ -0,0 +1,256 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package microsoft.exchange.webservices.data.notification;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import microsoft.exchange.webservices.data.core.ExchangeConnectionPool;
+import microsoft.exchange.webservices.data.core.ExchangeService;
+import microsoft.exchange.webservices.data.core.enumeration.misc.ExchangeVersion;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local server answering GetStreamingEvents calls. Each call gets a heartbeat, then
+ * stays open until the test sends it more responses or drops it.
+ */
+final class StreamingEwsServer implements Closeable {
+
+  private static final String PATH = "/EWS/Exchange.asmx";
+
+  private static final Pattern SUBSCRIPTION_ID =
+      Pattern.compile("<t:SubscriptionId>([^<]*)</t:SubscriptionId>");
+
+  private static final String DROP = "";
+
+  private final HttpServer server;
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  private final BlockingQueue<Call> calls = new LinkedBlockingQueue<Call>();
+
+  private final Queue<Call> openCalls = new ConcurrentLinkedQueue<Call>();
+
+  private final AtomicInteger callsToReject = new AtomicInteger();
+
+  private final AtomicInteger rejectedCalls = new AtomicInteger();
+
+  /**
+   * The pool of the services, which hold one connection per open call.
+   */
+  private final ExchangeConnectionPool connectionPool = new ExchangeConnectionPool();
+
+  StreamingEwsServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.setExecutor(executor);
+    server.createContext(PATH, new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        if (callsToReject.getAndDecrement() > 0) {
+          readBody(exchange.getRequestBody());
+          rejectedCalls.incrementAndGet();
+          exchange.sendResponseHeaders(503, -1);
+          exchange.close();
+          return;
+        }
+        callsToReject.set(0);
+        Call call = new Call(exchange.getRequestHeaders(), readBody(exchange.getRequestBody()));
+        openCalls.add(call);
+        try {
+          exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=utf-8");
+          exchange.getResponseHeaders().set("Set-Cookie", "exchangecookie=4ba5a06d; path=/");
+          exchange.sendResponseHeaders(200, 0);
+          OutputStream out = exchange.getResponseBody();
+          write(out, message("Success", "<m:ResponseCode>NoError</m:ResponseCode>"
+              + "<m:ConnectionStatus>OK</m:ConnectionStatus>"));
+          calls.add(call);
+          for (String message = call.take(); message != DROP; message = call.take()) {
+            write(out, message);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          openCalls.remove(call);
+          exchange.close();
+        }
+      }
+    });
+    server.start();
+  }
+
+  /**
+   * Creates a service calling this server.
+   */
+  ExchangeService createService() throws Exception {
+    ExchangeService service = new ExchangeService(ExchangeVersion.Exchange2010_SP2);
+    service.setUrl(new URI("http://127.0.0.1:" + server.getAddress().getPort() + PATH));
+    service.setConnectionPool(connectionPool);
+    return service;
+  }
+
+  /**
+   * Waits for the next call that got its heartbeat.
+   */
+  Call nextCall() throws InterruptedException {
+    Call call = calls.poll(10, TimeUnit.SECONDS);
+    if (call == null) {
+      throw new AssertionError("No GetStreamingEvents call was received.");
+    }
+    return call;
+  }
+
+  /**
+   * Answers the next calls with 503 Service Unavailable, as a server restarting would.
+   */
+  void rejectNextCalls(int count) {
+    callsToReject.set(count);
+  }
+
+  /**
+   * Gets the number of calls answered with 503 Service Unavailable.
+   */
+  int getRejectedCallCount() {
+    return rejectedCalls.get();
+  }
+
+  /**
+   * Gets the calls that got their heartbeat and were not taken by {@link #nextCall()}.
+   */
+  int getPendingCallCount() {
+    return calls.size();
+  }
+
+  @Override
+  public void close() {
+    for (Call call : openCalls) {
+      call.drop();
+    }
+    server.stop(0);
+    executor.shutdownNow();
+    connectionPool.close();
+  }
+
+  /**
+   * Builds a GetStreamingEvents response with one response message.
+   */
+  static String message(String responseClass, String content) {
+    return "<soap11:Envelope xmlns:soap11=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+        + "<soap11:Header><ServerVersionInfo MajorVersion=\"14\" MinorVersion=\"2\""
+        + " MajorBuildNumber=\"247\" MinorBuildNumber=\"5\" Version=\"Exchange2010_SP2\""
+        + " xmlns=\"http://schemas.microsoft.com/exchange/services/2006/types\"/></soap11:Header>"
+        + "<soap11:Body><m:GetStreamingEventsResponse"
+        + " xmlns:m=\"http://schemas.microsoft.com/exchange/services/2006/messages\""
+        + " xmlns:t=\"http://schemas.microsoft.com/exchange/services/2006/types\">"
+        + "<m:ResponseMessages><m:GetStreamingEventsResponseMessage ResponseClass=\""
+        + responseClass + "\">" + content + "</m:GetStreamingEventsResponseMessage>"
+        + "</m:ResponseMessages></m:GetStreamingEventsResponse></soap11:Body></soap11:Envelope>";
+  }
+
+  /**
+   * Builds a GetStreamingEvents response ending a subscription.
+   */
+  static String subscriptionNotFound(String subscriptionId) {
+    return message("Error", "<m:MessageText>The specified subscription was not found.</m:MessageText>"
+        + "<m:ResponseCode>ErrorSubscriptionNotFound</m:ResponseCode>"
+        + "<m:DescriptiveLinkKey>0</m:DescriptiveLinkKey>"
+        + "<m:ErrorSubscriptionIds><m:SubscriptionId>" + subscriptionId
+        + "</m:SubscriptionId></m:ErrorSubscriptionIds>");
+  }
+
+  private static void write(OutputStream out, String message) throws IOException {
+    out.write(message.getBytes("UTF-8"));
+    out.flush();
+  }
+
+  private static String readBody(InputStream in) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+      body.write(buffer, 0, read);
+    }
+    return body.toString("UTF-8");
+  }
+
+
+  /**
+   * A GetStreamingEvents call.
+   */
+  static final class Call {
+
+    private final BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+
+    final Headers headers;
+
+    final List<String> subscriptionIds = new ArrayList<String>();
+
+    Call(Headers headers, String body) {
+      this.headers = headers;
+      Matcher matcher = SUBSCRIPTION_ID.matcher(body);
+      while (matcher.find()) {
+        subscriptionIds.add(matcher.group(1));
+      }
+    }
+
+    /**
+     * Sends a response on the call.
+     */
+    void send(String message) {
+      messages.add(message);
+    }
+
+    /**
+     * Ends the call, as a server restart would.
+     */
+    void drop() {
+      messages.add(DROP);
+    }
+
+    private String take() throws InterruptedException {
+      return messages.take();
+    }
+  }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.notification;
+
+import microsoft.exchange.webservices.data.core.ExchangeService;
+import microsoft.exchange.webservices.data.core.enumeration.misc.ExchangeVersion;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@RunWith(JUnit4.class)
+public class StreamingSubscriptionManagerTest {
+
+  @Test
+  public void testReadsBackEndOverrideCookie() {
+    Assert.assertEquals("EXCH01.contoso.com~1941996295",
+        StreamingSubscriptionManager.getBackEndOverrideCookie(Collections.singletonMap("Set-Cookie",
+            "exchangecookie=4ba5a06d; path=/,X-BackEndOverrideCookie=EXCH01.contoso.com~1941996295;"
+            + " path=/; secure; HttpOnly")));
+    Assert.assertNull(StreamingSubscriptionManager.getBackEndOverrideCookie(
+        Collections.singletonMap("Set-Cookie", "exchangecookie=4ba5a06d; path=/")));
+    Assert.assertNull(StreamingSubscriptionManager.getBackEndOverrideCookie(
+        Collections.<String, String>emptyMap()));
+  }
+
+  @Test
+  public void testKeepsSubscriptionsOfConnectionsThatFailToOpen() throws Exception {
+    // Without a URL, opening a connection fails before any call to EWS.
+    ExchangeService service = new ExchangeService(ExchangeVersion.Exchange2010_SP2);
+    StreamingSubscriptionManager manager = new StreamingSubscriptionManager(30);
+    manager.setMaxSubscriptionsPerConnection(2);
+    for (int i = 0; i < 5; i++) {
+      manager.addSubscription(createSubscription(service, "subscription" + i), "user" + i + "@contoso.com",
+          "EXCH01.contoso.com~1941996295");
+    }
+    manager.addSubscription(createSubscription(service, "subscription0"));
+
+    try {
+      manager.open();
+      Assert.fail();
+    } catch (Exception e) {
+      // Expected.
+    }
+    Assert.assertEquals(5, manager.getSubscriptionCount());
+    Assert.assertEquals(0, manager.getConnectionCount());
+
+    manager.removeSubscription(createSubscription(service, "subscription3"));
+    Assert.assertEquals(4, manager.getSubscriptionCount());
+    manager.close();
+  }
+
+  @Test
+  public void testPacksSubscriptionsByBackEndOverrideCookie() throws Exception {
+    StreamingEwsServer server = new StreamingEwsServer();
+    StreamingSubscriptionManager manager = new StreamingSubscriptionManager(30);
+    try {
+      ExchangeService service = server.createService();
+      for (int i = 0; i < 450; i++) {
+        manager.addSubscription(createSubscription(service, "a" + i), "a" + i + "@contoso.com",
+            "EXCH01.contoso.com~1941996295");
+      }
+      for (int i = 0; i < 10; i++) {
+        manager.addSubscription(createSubscription(service, "b" + i), "b" + i + "@contoso.com",
+            "EXCH02.contoso.com~1941996296");
+      }
+      manager.open();
+      Assert.assertEquals(4, manager.getConnectionCount());
+
+      Map<String, Integer> sizes = new HashMap<String, Integer>();
+      for (int i = 0; i < 4; i++) {
+        StreamingEwsServer.Call call = server.nextCall();
+        String anchor = call.headers.getFirst(StreamingSubscriptionManager.ANCHOR_MAILBOX_HEADER);
+        String group = anchor.substring(0, 1);
+        for (String id : call.subscriptionIds) {
+          Assert.assertEquals(group, id.substring(0, 1));
+        }
+        Assert.assertTrue(call.subscriptionIds.contains(anchor.substring(0, anchor.indexOf('@'))));
+        sizes.put(anchor, call.subscriptionIds.size());
+
+        // The cookie of the group is sent with the cookies of the service, in one header.
+        List<String> cookies = call.headers.get("Cookie");
+        Assert.assertEquals(1, cookies.size());
+        Assert.assertTrue(cookies.get(0), cookies.get(0).contains("X-BackEndOverrideCookie="
+            + ("a".equals(group) ? "EXCH01.contoso.com~1941996295" : "EXCH02.contoso.com~1941996296")));
+        if (i > 0) {
+          Assert.assertTrue(cookies.get(0), cookies.get(0).contains("exchangecookie=4ba5a06d"));
+        }
+      }
+      Map<String, Integer> expected = new HashMap<String, Integer>();
+      expected.put("a0@contoso.com", 200);
+      expected.put("a200@contoso.com", 200);
+      expected.put("a400@contoso.com", 50);
+      expected.put("b0@contoso.com", 10);
+      Assert.assertEquals(expected, sizes);
+    } finally {
+      manager.close();
+      server.close();
+    }
+  }
+
+  @Test
+  public void testPacksSubscriptionsAgainWhenConnectionDisconnects() throws Exception {
+    StreamingEwsServer server = new StreamingEwsServer();
+    StreamingSubscriptionManager manager = new StreamingSubscriptionManager(30);
+    try {
+      ExchangeService service = server.createService();
+      manager.setMaxSubscriptionsPerConnection(2);
+      for (int i = 0; i < 3; i++) {
+        manager.addSubscription(createSubscription(service, "s" + i));
+      }
+      final List<SubscriptionErrorEventArgs> disconnects =
+          Collections.synchronizedList(new ArrayList<SubscriptionErrorEventArgs>());
+      manager.addOnDisconnect(new StreamingSubscriptionConnection.ISubscriptionErrorDelegate() {
+        @Override
+        public void subscriptionErrorDelegate(Object sender, SubscriptionErrorEventArgs args) {
+          disconnects.add(args);
+        }
+      });
+      manager.open();
+      StreamingEwsServer.Call first = server.nextCall();
+      StreamingEwsServer.Call second = server.nextCall();
+      Assert.assertEquals(set("s0", "s1"), set(first.subscriptionIds));
+      Assert.assertEquals(set("s2"), set(second.subscriptionIds));
+
+      // The server ends s1, then the connection of s0 and s1 drops while s3 waits.
+      manager.addSubscription(createSubscription(service, "s3"));
+      first.send(StreamingEwsServer.subscriptionNotFound("s1"));
+      first.drop();
+
+      StreamingEwsServer.Call reopened = server.nextCall();
+      Assert.assertEquals(set("s0", "s3"), set(reopened.subscriptionIds));
+      Assert.assertEquals(1, disconnects.size());
+      Assert.assertEquals(3, manager.getSubscriptionCount());
+      Assert.assertEquals(2, manager.getConnectionCount());
+      Assert.assertEquals(0, server.getPendingCallCount());
+    } finally {
+      manager.close();
+      server.close();
+    }
+  }
+
+  private static Set<String> set(String... ids) {
+    return new HashSet<String>(Arrays.asList(ids));
+  }
+
+  private static Set<String> set(List<String> ids) {
+    return new HashSet<String>(ids);
+  }
+
+  private static StreamingSubscription createSubscription(ExchangeService service, String id)
+      throws Exception {
+    StreamingSubscription subscription = new StreamingSubscription(service);
+    subscription.setId(id);
+    return subscription;
+  }
+
+}
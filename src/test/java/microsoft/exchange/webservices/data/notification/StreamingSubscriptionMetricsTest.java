@@ -0,0 +1,64 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.notification;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class StreamingSubscriptionMetricsTest {
+
+  @Test
+  public void testCountsConnectionsAndEvents() {
+    StreamingSubscriptionMetrics metrics = new StreamingSubscriptionMetrics();
+    metrics.connectionOpened(false);
+    metrics.connectionOpened(false);
+    metrics.connectionClosed();
+    metrics.connectionOpened(true);
+    metrics.eventsReceived(3);
+    metrics.eventsReceived(4);
+
+    Assert.assertEquals(2, metrics.getActiveConnections());
+    Assert.assertEquals(3, metrics.getOpenedConnections());
+    Assert.assertEquals(1, metrics.getReconnects());
+    Assert.assertEquals(7, metrics.getEvents());
+  }
+
+  @Test
+  public void testEventsPerSecondReportsLastCompleteWindow() throws Exception {
+    StreamingSubscriptionMetrics metrics = new StreamingSubscriptionMetrics();
+    metrics.eventsReceived(5);
+
+    // The first window is not complete yet.
+    Assert.assertEquals(0, metrics.getEventsPerSecond());
+
+    Thread.sleep(1100);
+    long rate = metrics.getEventsPerSecond();
+    Assert.assertTrue("rate: " + rate, rate == 5 || rate == 0);
+  }
+
+}
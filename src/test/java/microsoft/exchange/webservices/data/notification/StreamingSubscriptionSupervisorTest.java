@@ -0,0 +1,154 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.notification;
+
+import microsoft.exchange.webservices.data.core.ExchangeService;
+import microsoft.exchange.webservices.data.misc.LatencyHistogram;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+@RunWith(JUnit4.class)
+public class StreamingSubscriptionSupervisorTest {
+
+  @Test
+  public void testBackoffDoublesWithJitterUpToMaximum() {
+    for (int attempt = 0; attempt < 40; attempt++) {
+      long cap = Math.min(60000, 1000L << Math.min(attempt, 20));
+      for (int i = 0; i < 50; i++) {
+        long delay = StreamingSubscriptionSupervisor.backoffDelay(1000, 60000, attempt);
+        Assert.assertTrue("attempt " + attempt + ": " + delay, delay >= cap / 2 && delay <= cap);
+      }
+    }
+  }
+
+  @Test
+  public void testReconnectsAfterDisconnectWithBackoff() throws Exception {
+    StreamingEwsServer server = new StreamingEwsServer();
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    StreamingSubscriptionSupervisor supervisor = null;
+    try {
+      ExchangeService service = server.createService();
+      StreamingSubscriptionConnection connection = new StreamingSubscriptionConnection(service, 30);
+      connection.addSubscription(createSubscription(service, "s0"));
+      supervisor = new StreamingSubscriptionSupervisor(connection, scheduler);
+      supervisor.setInitialDelay(20);
+      supervisor.setMaxDelay(1000);
+      supervisor.start();
+      StreamingEwsServer.Call first = server.nextCall();
+
+      // The call drops and the server rejects the next two attempts.
+      server.rejectNextCalls(2);
+      first.drop();
+      StreamingEwsServer.Call second = server.nextCall();
+      Assert.assertEquals(Arrays.asList("s0"), second.subscriptionIds);
+      Assert.assertEquals(2, server.getRejectedCallCount());
+
+      waitForReconnects(supervisor, 1);
+      Assert.assertEquals(0, supervisor.getFailedAttempts());
+      Assert.assertTrue(connection.getIsOpen());
+
+      // The attempts waited at least 10, 20 and 40 ms, half of the doubling delays.
+      LatencyHistogram latencies = supervisor.getReconnectLatencies();
+      Assert.assertEquals(1, latencies.getCount());
+      Assert.assertTrue(String.valueOf(latencies.getMax()), latencies.getMax() >= 70);
+    } finally {
+      close(server, supervisor, scheduler);
+    }
+  }
+
+  @Test
+  public void testResubscribesSubscriptionsEndedByServer() throws Exception {
+    StreamingEwsServer server = new StreamingEwsServer();
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    StreamingSubscriptionSupervisor supervisor = null;
+    try {
+      final ExchangeService service = server.createService();
+      StreamingSubscriptionConnection connection = new StreamingSubscriptionConnection(service, 30);
+      connection.addSubscription(createSubscription(service, "s0"));
+      connection.addSubscription(createSubscription(service, "s1"));
+      final List<String> ended = Collections.synchronizedList(new ArrayList<String>());
+      supervisor = new StreamingSubscriptionSupervisor(connection, scheduler);
+      supervisor.setResubscriber(new StreamingSubscriptionSupervisor.IResubscriber() {
+        @Override
+        public StreamingSubscription resubscribe(StreamingSubscription subscription)
+            throws Exception {
+          ended.add(subscription.getId());
+          return createSubscription(service, subscription.getId() + "b");
+        }
+      });
+      supervisor.start();
+      StreamingEwsServer.Call first = server.nextCall();
+
+      // The supervisor closes the connection to replace s1, then opens it again.
+      first.send(StreamingEwsServer.subscriptionNotFound("s1"));
+      StreamingEwsServer.Call second = server.nextCall();
+      Assert.assertEquals(new HashSet<String>(Arrays.asList("s0", "s1b")),
+          new HashSet<String>(second.subscriptionIds));
+      Assert.assertEquals(Arrays.asList("s1"), ended);
+
+      waitForReconnects(supervisor, 1);
+      Assert.assertEquals(1, supervisor.getReconnectLatencies().getCount());
+      Assert.assertEquals(0, server.getRejectedCallCount());
+    } finally {
+      close(server, supervisor, scheduler);
+    }
+  }
+
+  private static void waitForReconnects(StreamingSubscriptionSupervisor supervisor, long reconnects)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (supervisor.getReconnects() < reconnects && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(reconnects, supervisor.getReconnects());
+  }
+
+  private static void close(StreamingEwsServer server, StreamingSubscriptionSupervisor supervisor,
+      ScheduledExecutorService scheduler) {
+    if (supervisor != null) {
+      supervisor.close();
+    }
+    server.close();
+    scheduler.shutdownNow();
+  }
+
+  private static StreamingSubscription createSubscription(ExchangeService service, String id)
+      throws Exception {
+    StreamingSubscription subscription = new StreamingSubscription(service);
+    subscription.setId(id);
+    return subscription;
+  }
+
+}
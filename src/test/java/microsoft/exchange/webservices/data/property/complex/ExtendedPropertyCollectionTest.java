@@ -24,7 +24,9 @@
 package microsoft.exchange.webservices.data.property.complex;
 
 import java.util.ArrayList;
+import java.util.UUID;
 
+import microsoft.exchange.webservices.data.core.enumeration.property.DefaultExtendedPropertySet;
 import microsoft.exchange.webservices.data.core.enumeration.property.MapiPropertyType;
 import org.junit.Assert;
 import org.junit.Test;
@@ -74,4 +76,76 @@ public class ExtendedPropertyCollectionTest {
       Assert.assertTrue(epc.tryGetValue(cls, propertyDefinition, propertyValueOut));
       Assert.assertTrue(propertyValueOut.getParam().equals(testValue));
     }
+
+    /**
+     * Definitions built separately but describing the same property
+     * must find the property set through either of them.
+     */
+    @Test
+    public void findsPropertyByEqualDefinition() throws Exception {
+      ExtendedPropertyCollection epc = new ExtendedPropertyCollection();
+      UUID propertySetId = UUID.randomUUID();
+      for (int i = 0; i < 50; i++) {
+        epc.setExtendedProperty(new ExtendedPropertyDefinition(propertySetId, "name" + i,
+            MapiPropertyType.String), "value" + i);
+      }
+      epc.setExtendedProperty(new ExtendedPropertyDefinition(
+          DefaultExtendedPropertySet.PublicStrings, 7, MapiPropertyType.Integer), 7);
+
+      ExtendedPropertyDefinition lookup =
+          new ExtendedPropertyDefinition(propertySetId, "name42", MapiPropertyType.String);
+      OutParam<String> stringOut = new OutParam<String>();
+      Assert.assertTrue(epc.tryGetValue(String.class, lookup, stringOut));
+      Assert.assertEquals("value42", stringOut.getParam());
+
+      OutParam<Integer> integerOut = new OutParam<Integer>();
+      Assert.assertTrue(epc.tryGetValue(Integer.class, new ExtendedPropertyDefinition(
+          DefaultExtendedPropertySet.PublicStrings, 7, MapiPropertyType.Integer), integerOut));
+      Assert.assertEquals(Integer.valueOf(7), integerOut.getParam());
+
+      // A different MAPI type is a different property.
+      Assert.assertFalse(epc.tryGetValue(Integer.class, new ExtendedPropertyDefinition(
+          propertySetId, "name42", MapiPropertyType.Integer), integerOut));
+
+      // Updating keeps a single property per definition.
+      epc.setExtendedProperty(lookup, "updated");
+      Assert.assertEquals(51, epc.getCount());
+      Assert.assertTrue(epc.tryGetValue(String.class, lookup, stringOut));
+      Assert.assertEquals("updated", stringOut.getParam());
+    }
+
+    /**
+     * Removed properties are no longer found, and can be set again.
+     */
+    @Test
+    public void removeExtendedProperty() throws Exception {
+      ExtendedPropertyCollection epc = new ExtendedPropertyCollection();
+      ExtendedPropertyDefinition propertyDefinition = new ExtendedPropertyDefinition(0x1000, MapiPropertyType.String);
+      epc.setExtendedProperty(propertyDefinition, "body");
+
+      Assert.assertTrue(epc.removeExtendedProperty(new ExtendedPropertyDefinition(0x1000, MapiPropertyType.String)));
+      Assert.assertFalse(epc.removeExtendedProperty(propertyDefinition));
+      Assert.assertEquals(0, epc.getCount());
+
+      OutParam<String> stringOut = new OutParam<String>();
+      Assert.assertFalse(epc.tryGetValue(String.class, propertyDefinition, stringOut));
+
+      epc.setExtendedProperty(propertyDefinition, "again");
+      Assert.assertTrue(epc.tryGetValue(String.class, propertyDefinition, stringOut));
+      Assert.assertEquals("again", stringOut.getParam());
+    }
+
+    /**
+     * Equal definitions have equal hash codes, which do not change.
+     */
+    @Test
+    public void definitionHashCode() {
+      UUID propertySetId = UUID.randomUUID();
+      ExtendedPropertyDefinition first = new ExtendedPropertyDefinition(propertySetId, 5, MapiPropertyType.Binary);
+      ExtendedPropertyDefinition second = new ExtendedPropertyDefinition(propertySetId, 5, MapiPropertyType.Binary);
+      Assert.assertEquals(first, second);
+      Assert.assertEquals(first.hashCode(), second.hashCode());
+      Assert.assertEquals(first.hashCode(), first.hashCode());
+      Assert.assertFalse(first.equals(new ExtendedPropertyDefinition(propertySetId, 6, MapiPropertyType.Binary)));
+    }
 }
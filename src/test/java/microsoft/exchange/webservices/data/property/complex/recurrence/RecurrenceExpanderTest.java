@@ -0,0 +1,225 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.property.complex.recurrence;
+
+import microsoft.exchange.webservices.data.core.EwsServiceXmlReader;
+import microsoft.exchange.webservices.data.core.ExchangeService;
+import microsoft.exchange.webservices.data.core.enumeration.misc.XmlNamespace;
+import microsoft.exchange.webservices.data.core.enumeration.property.time.DayOfTheWeek;
+import microsoft.exchange.webservices.data.core.enumeration.property.time.DayOfTheWeekIndex;
+import microsoft.exchange.webservices.data.property.complex.ComplexProperty;
+import microsoft.exchange.webservices.data.property.complex.DeletedOccurrenceInfoCollection;
+import microsoft.exchange.webservices.data.property.complex.OccurrenceInfoCollection;
+import microsoft.exchange.webservices.data.property.complex.recurrence.pattern.Recurrence;
+import microsoft.exchange.webservices.data.security.XmlNodeType;
+import microsoft.exchange.webservices.data.util.DateTimeUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+
+@RunWith(JUnit4.class)
+public class RecurrenceExpanderTest {
+
+  private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+
+  private static final TimeZone AUCKLAND = TimeZone.getTimeZone("Pacific/Auckland");
+
+  private static final String TYPES_NAMESPACE =
+      "http://schemas.microsoft.com/exchange/services/2006/types";
+
+  @Test
+  public void testWeeklyKeepsWallClockTimeAcrossDaylightSaving() throws Exception {
+    Recurrence recurrence = new Recurrence.WeeklyPattern(
+        time(2015, 3, 2, 0, 0), 1, DayOfTheWeek.Monday, DayOfTheWeek.Wednesday);
+    RecurrenceExpander expander = new RecurrenceExpander(recurrence,
+        time(2015, 3, 2, 9, 0), time(2015, 3, 2, 10, 0), NEW_YORK);
+
+    List<RecurrenceExpander.Occurrence> occurrences = expand(expander,
+        time(2015, 3, 1, 0, 0), time(2015, 3, 16, 0, 0));
+    Assert.assertEquals(4, occurrences.size());
+    Assert.assertEquals(time(2015, 3, 2, 9, 0), occurrences.get(0).getStart());
+    Assert.assertEquals(time(2015, 3, 4, 9, 0), occurrences.get(1).getStart());
+    Assert.assertEquals(time(2015, 3, 9, 9, 0), occurrences.get(2).getStart());
+    Assert.assertEquals(time(2015, 3, 11, 10, 0), occurrences.get(3).getEnd());
+    Assert.assertFalse(occurrences.get(3).isModified());
+  }
+
+  @Test
+  public void testMonthlyPatternsInNumberedRange() throws Exception {
+    Recurrence lastFriday = new Recurrence.RelativeMonthlyPattern(
+        time(2015, 1, 1, 0, 0), 1, DayOfTheWeek.Friday, DayOfTheWeekIndex.Last);
+    lastFriday.setNumberOfOccurrences(3);
+    List<RecurrenceExpander.Occurrence> occurrences = expand(
+        new RecurrenceExpander(lastFriday, time(2015, 1, 30, 14, 0), time(2015, 1, 30, 15, 0), NEW_YORK),
+        time(2015, 1, 1, 0, 0), time(2016, 1, 1, 0, 0));
+    Assert.assertEquals(3, occurrences.size());
+    Assert.assertEquals(time(2015, 2, 27, 14, 0), occurrences.get(1).getStart());
+    Assert.assertEquals(time(2015, 3, 27, 14, 0), occurrences.get(2).getStart());
+
+    // The day of the month is clamped to the end of shorter months.
+    Recurrence lastDay = new Recurrence.MonthlyPattern(time(2015, 1, 1, 0, 0), 1, 31);
+    occurrences = expand(
+        new RecurrenceExpander(lastDay, time(2015, 1, 31, 8, 0), time(2015, 1, 31, 9, 0), NEW_YORK),
+        time(2015, 2, 1, 0, 0), time(2015, 5, 1, 0, 0));
+    Assert.assertEquals(3, occurrences.size());
+    Assert.assertEquals(time(2015, 2, 28, 8, 0), occurrences.get(0).getStart());
+    Assert.assertEquals(time(2015, 4, 30, 8, 0), occurrences.get(2).getStart());
+  }
+
+  @Test
+  public void testWindowFarFromStartMatchesFullExpansion() throws Exception {
+    Recurrence recurrence = new Recurrence.DailyPattern(time(2010, 6, 1, 0, 0), 3);
+    RecurrenceExpander expander = new RecurrenceExpander(recurrence,
+        time(2010, 6, 1, 23, 0), time(2010, 6, 2, 1, 0), NEW_YORK);
+
+    List<RecurrenceExpander.Occurrence> all = expand(expander,
+        time(2010, 6, 1, 0, 0), time(2016, 1, 1, 0, 0));
+    Date windowStart = time(2015, 11, 2, 0, 0);
+    Date windowEnd = time(2015, 11, 20, 0, 0);
+    List<Date> expected = new ArrayList<Date>();
+    for (RecurrenceExpander.Occurrence occurrence : all) {
+      if (occurrence.getStart().before(windowEnd) && occurrence.getEnd().after(windowStart)) {
+        expected.add(occurrence.getStart());
+      }
+    }
+
+    List<Date> actual = new ArrayList<Date>();
+    for (RecurrenceExpander.Occurrence occurrence : expander.getOccurrences(windowStart, windowEnd)) {
+      actual.add(occurrence.getStart());
+    }
+    Assert.assertEquals(6, actual.size());
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testDeletedAndModifiedOccurrences() throws Exception {
+    Recurrence recurrence = new Recurrence.DailyPattern(time(2015, 6, 1, 0, 0), 1);
+    recurrence.setNumberOfOccurrences(5);
+    RecurrenceExpander expander = new RecurrenceExpander(recurrence,
+        time(2015, 6, 1, 9, 0), time(2015, 6, 1, 10, 0), NEW_YORK);
+
+    // The second occurrence is deleted and the third one moved after the last one.
+    expander.addDeletedOccurrences(load(new DeletedOccurrenceInfoCollection(),
+        "DeletedOccurrences",
+        "<t:DeletedOccurrence><t:Start>2015-06-02T13:00:00Z</t:Start></t:DeletedOccurrence>"));
+    expander.addModifiedOccurrences(load(new OccurrenceInfoCollection(), "ModifiedOccurrences",
+        "<t:Occurrence><t:ItemId Id=\"AAMk\" ChangeKey=\"DwAA\"/>"
+            + "<t:Start>2015-06-06T15:00:00Z</t:Start><t:End>2015-06-06T16:00:00Z</t:End>"
+            + "<t:OriginalStart>2015-06-03T13:00:00Z</t:OriginalStart></t:Occurrence>"));
+
+    List<RecurrenceExpander.Occurrence> occurrences = expand(expander,
+        time(2015, 6, 1, 0, 0), time(2015, 7, 1, 0, 0));
+    Assert.assertEquals(4, occurrences.size());
+    Assert.assertEquals(time(2015, 6, 1, 9, 0), occurrences.get(0).getStart());
+    Assert.assertEquals(time(2015, 6, 4, 9, 0), occurrences.get(1).getStart());
+    Assert.assertEquals(time(2015, 6, 5, 9, 0), occurrences.get(2).getStart());
+
+    RecurrenceExpander.Occurrence modified = occurrences.get(3);
+    Assert.assertTrue(modified.isModified());
+    Assert.assertEquals(time(2015, 6, 6, 11, 0), modified.getStart());
+    Assert.assertEquals(time(2015, 6, 3, 9, 0), modified.getOriginalStart());
+    Assert.assertEquals("AAMk", modified.getItemId().getUniqueId());
+
+    // Only the moved occurrence overlaps the window of its new time.
+    occurrences = expand(expander, time(2015, 6, 6, 0, 0), time(2015, 6, 7, 0, 0));
+    Assert.assertEquals(1, occurrences.size());
+    Assert.assertTrue(occurrences.get(0).isModified());
+  }
+
+  @Test
+  public void testStartDateInZoneMoreThanTwelveHoursAhead() throws Exception {
+    // Midnight of 5 March in Auckland (+13:00) is 11:00 UTC on 4 March.
+    Recurrence recurrence = new Recurrence.DailyPattern(time(AUCKLAND, 2014, 3, 5, 0, 0), 1);
+    recurrence.setEndDate(time(AUCKLAND, 2014, 3, 7, 0, 0));
+    List<RecurrenceExpander.Occurrence> occurrences = expand(
+        new RecurrenceExpander(recurrence,
+            time(AUCKLAND, 2014, 3, 5, 9, 0), time(AUCKLAND, 2014, 3, 5, 10, 0), AUCKLAND),
+        time(AUCKLAND, 2014, 3, 1, 0, 0), time(AUCKLAND, 2014, 3, 10, 0, 0));
+    Assert.assertEquals(3, occurrences.size());
+    Assert.assertEquals(time(AUCKLAND, 2014, 3, 5, 9, 0), occurrences.get(0).getStart());
+    Assert.assertEquals(time(AUCKLAND, 2014, 3, 7, 9, 0), occurrences.get(2).getStart());
+
+    // Dates read from XML with the +13:00 offset and without an offset give the same days.
+    for (String startDate : new String[] {"2014-03-05+13:00", "2014-03-05"}) {
+      Recurrence loaded = new Recurrence.DailyPattern(
+          DateTimeUtils.convertDateStringToDate(startDate), 1);
+      loaded.setNumberOfOccurrences(1);
+      occurrences = expand(
+          new RecurrenceExpander(loaded,
+              time(AUCKLAND, 2014, 3, 5, 9, 0), time(AUCKLAND, 2014, 3, 5, 10, 0), AUCKLAND),
+          time(AUCKLAND, 2014, 3, 1, 0, 0), time(AUCKLAND, 2014, 3, 10, 0, 0));
+      Assert.assertEquals(startDate, 1, occurrences.size());
+      Assert.assertEquals(startDate, time(AUCKLAND, 2014, 3, 5, 9, 0), occurrences.get(0).getStart());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRegenerationPatternIsRejected() throws Exception {
+    new RecurrenceExpander(new Recurrence.DailyRegenerationPattern(time(2015, 6, 1, 0, 0), 2),
+        time(2015, 6, 1, 9, 0), time(2015, 6, 1, 10, 0), NEW_YORK);
+  }
+
+  private static List<RecurrenceExpander.Occurrence> expand(RecurrenceExpander expander,
+      Date windowStart, Date windowEnd) {
+    List<RecurrenceExpander.Occurrence> occurrences = new ArrayList<RecurrenceExpander.Occurrence>();
+    for (RecurrenceExpander.Occurrence occurrence : expander.getOccurrences(windowStart, windowEnd)) {
+      occurrences.add(occurrence);
+    }
+    return occurrences;
+  }
+
+  private static <T extends ComplexProperty> T load(T property, String elementName, String content)
+      throws Exception {
+    String xml = String.format("<t:%s xmlns:t=\"%s\">%s</t:%s>",
+        elementName, TYPES_NAMESPACE, content, elementName);
+    EwsServiceXmlReader reader = new EwsServiceXmlReader(
+        new ByteArrayInputStream(xml.getBytes("UTF-8")), new ExchangeService());
+    reader.read(new XmlNodeType(XmlNodeType.START_DOCUMENT));
+    reader.readStartElement(XmlNamespace.Types, elementName);
+    property.loadFromXml(reader, elementName);
+    return property;
+  }
+
+  private static Date time(int year, int month, int day, int hour, int minute) {
+    return time(NEW_YORK, year, month, day, hour, minute);
+  }
+
+  private static Date time(TimeZone timeZone, int year, int month, int day, int hour, int minute) {
+    Calendar calendar = new GregorianCalendar(timeZone);
+    calendar.clear();
+    calendar.set(year, month - 1, day, hour, minute);
+    return calendar.getTime();
+  }
+
+}
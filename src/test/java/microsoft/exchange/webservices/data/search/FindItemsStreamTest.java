@@ -0,0 +1,197 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.search;
+
+import microsoft.exchange.webservices.data.core.ExchangeService;
+import microsoft.exchange.webservices.data.core.enumeration.property.WellKnownFolderName;
+import microsoft.exchange.webservices.data.core.exception.misc.UncheckedServiceException;
+import microsoft.exchange.webservices.data.core.service.item.Item;
+import microsoft.exchange.webservices.data.property.complex.FolderId;
+import microsoft.exchange.webservices.data.search.filter.SearchFilter;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@RunWith(JUnit4.class)
+public class FindItemsStreamTest {
+
+  private static final int ITEM_COUNT = 10;
+
+  private final List<Item> items = new ArrayList<Item>();
+
+  private final List<Integer> requestedOffsets = new ArrayList<Integer>();
+
+  @Test
+  public void testIteratesAllPagesInOrder() throws Exception {
+    ExchangeService service = createService(-1);
+    FindItemsStream stream = new FindItemsStream(service, new FolderId(WellKnownFolderName.Inbox),
+        null, new ItemView(4), 1, null);
+
+    List<Item> found = new ArrayList<Item>();
+    for (Item item : stream) {
+      found.add(item);
+    }
+    Assert.assertEquals(items, found);
+    Assert.assertEquals(ITEM_COUNT, stream.getTotalCount());
+    Assert.assertEquals(3, requestedOffsets.size());
+  }
+
+  @Test
+  public void testRequestsNextPageAhead() throws Exception {
+    ExchangeService service = createService(-1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      FindItemsStream stream = new FindItemsStream(service,
+          new FolderId(WellKnownFolderName.Inbox), null, new ItemView(4), 1, executor);
+      Iterator<Item> iterator = stream.iterator();
+      Assert.assertSame(items.get(0), iterator.next());
+
+      // The second page is requested while the first one is processed.
+      long deadline = System.currentTimeMillis() + 5000;
+      while (stream.getPendingPageCount() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(5);
+      }
+      Assert.assertEquals(1, stream.getPendingPageCount());
+
+      List<Item> found = new ArrayList<Item>();
+      found.add(items.get(0));
+      while (iterator.hasNext()) {
+        found.add(iterator.next());
+      }
+      Assert.assertEquals(items, found);
+      Assert.assertEquals(3, requestedOffsets.size());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testRunsQueuedRequestWhenExecutorIsBusy() throws Exception {
+    ExchangeService service = createService(-1);
+    // An executor whose threads are all busy, for instance iterating streams themselves.
+    final List<Runnable> queued = new ArrayList<Runnable>();
+    Executor busyExecutor = new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        queued.add(command);
+      }
+    };
+    FindItemsStream stream = new FindItemsStream(service, new FolderId(WellKnownFolderName.Inbox),
+        null, new ItemView(4), 1, busyExecutor);
+
+    List<Item> found = new ArrayList<Item>();
+    for (Item item : stream) {
+      found.add(item);
+    }
+    Assert.assertEquals(items, found);
+    Assert.assertEquals(3, requestedOffsets.size());
+
+    // The queued requests were run by the iterating thread and do nothing when dequeued.
+    Assert.assertEquals(2, queued.size());
+    for (Runnable command : queued) {
+      command.run();
+    }
+    Assert.assertEquals(3, requestedOffsets.size());
+  }
+
+  @Test
+  public void testCloseStopsIteration() throws Exception {
+    ExchangeService service = createService(-1);
+    FindItemsStream stream = new FindItemsStream(service, new FolderId(WellKnownFolderName.Inbox),
+        null, new ItemView(4), 1, null);
+    Iterator<Item> iterator = stream.iterator();
+    iterator.next();
+    stream.close();
+
+    for (int i = 1; i < 4; i++) {
+      Assert.assertTrue(iterator.hasNext());
+      iterator.next();
+    }
+    Assert.assertFalse(iterator.hasNext());
+    Assert.assertEquals(1, requestedOffsets.size());
+  }
+
+  @Test
+  public void testFailedRequestIsThrownByIterator() throws Exception {
+    ExchangeService service = createService(4);
+    FindItemsStream stream = new FindItemsStream(service, new FolderId(WellKnownFolderName.Inbox),
+        null, new ItemView(4), 1, null);
+    Iterator<Item> iterator = stream.iterator();
+    for (int i = 0; i < 4; i++) {
+      iterator.next();
+    }
+    try {
+      iterator.hasNext();
+      Assert.fail();
+    } catch (UncheckedServiceException e) {
+      Assert.assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+
+  private ExchangeService createService(final int failingOffset) throws Exception {
+    for (int i = 0; i < ITEM_COUNT; i++) {
+      items.add(Mockito.mock(Item.class));
+    }
+
+    ExchangeService service = Mockito.mock(ExchangeService.class);
+    Mockito.when(service.findItems(Matchers.any(FolderId.class), Matchers.any(SearchFilter.class),
+        Matchers.any(ItemView.class))).thenAnswer(new Answer<FindItemsResults<Item>>() {
+          @Override
+          public FindItemsResults<Item> answer(InvocationOnMock invocation) throws Exception {
+            ItemView view = (ItemView) invocation.getArguments()[2];
+            int offset = view.getOffset();
+            synchronized (requestedOffsets) {
+              requestedOffsets.add(offset);
+            }
+            if (offset == failingOffset) {
+              throw new IOException("connection reset");
+            }
+
+            FindItemsResults<Item> results = new FindItemsResults<Item>();
+            int end = Math.min(offset + view.getPageSize(), ITEM_COUNT);
+            results.getItems().addAll(items.subList(offset, end));
+            results.setTotalCount(ITEM_COUNT);
+            results.setMoreAvailable(end < ITEM_COUNT);
+            results.setNextPageOffset(end < ITEM_COUNT ? end : null);
+            return results;
+          }
+        });
+    return service;
+  }
+
+}
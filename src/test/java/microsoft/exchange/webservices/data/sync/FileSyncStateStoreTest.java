@@ -0,0 +1,63 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.sync;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+
+@RunWith(JUnit4.class)
+public class FileSyncStateStoreTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testSaveReplacesAndRemovesSyncState() throws Exception {
+    File directory = new File(temporaryFolder.getRoot(), "states");
+    FileSyncStateStore store = new FileSyncStateStore(directory);
+    String key = "user@contoso.com/AAMkADk0N2E4YjU1LTI5NDctNDk0Ni1hMDNjLTJiNDUzZmQ1ZTYwNgAuAAAAAAC7+/=";
+
+    Assert.assertNull(store.load(key));
+    store.save(key, "H4sIAAAAAAAEAO29B2AcSZ");
+    store.save(key, "H4sIAAAAAAAEAO29B2AcSZYl");
+    store.save("Inbox", "state of the inbox");
+
+    FileSyncStateStore reopened = new FileSyncStateStore(directory);
+    Assert.assertEquals("H4sIAAAAAAAEAO29B2AcSZYl", reopened.load(key));
+    Assert.assertEquals("state of the inbox", reopened.load("Inbox"));
+    Assert.assertEquals(2, directory.list().length);
+
+    reopened.save(key, null);
+    Assert.assertNull(store.load(key));
+    Assert.assertEquals(1, directory.list().length);
+  }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * The MIT License
+ * Copyright (c) 2012 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package microsoft.exchange.webservices.data.sync;
+
+import microsoft.exchange.webservices.data.core.ExchangeService;
+import microsoft.exchange.webservices.data.core.PropertySet;
+import microsoft.exchange.webservices.data.core.enumeration.property.WellKnownFolderName;
+import microsoft.exchange.webservices.data.core.enumeration.service.SyncFolderItemsScope;
+import microsoft.exchange.webservices.data.credential.WebCredentials;
+import microsoft.exchange.webservices.data.property.complex.FolderId;
+import microsoft.exchange.webservices.data.property.complex.ItemId;
+import microsoft.exchange.webservices.data.property.complex.Mailbox;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(JUnit4.class)
+public class SyncFolderItemsEngineTest {
+
+  @Test
+  public void testResumesFromStoredSyncStateUntilNoMoreChanges() throws Exception {
+    ExchangeService service = Mockito.mock(ExchangeService.class);
+    FolderId inbox = new FolderId(WellKnownFolderName.Inbox, new Mailbox("User@contoso.com"));
+    Mockito.when(syncFolderItems(service, "S1")).thenReturn(changes("S2", true, "A", "B"));
+    Mockito.when(syncFolderItems(service, "S2")).thenReturn(changes("S3", false, "C"));
+
+    MemorySyncStateStore store = new MemorySyncStateStore();
+    store.save("user@contoso.com/Inbox", "S1");
+    final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+    SyncFolderItemsEngine engine = new SyncFolderItemsEngine(store, new IItemChangeListener() {
+      @Override
+      public void itemChanged(FolderId folderId, ItemChange change) throws Exception {
+        received.add(change.getItemId().getUniqueId());
+      }
+    });
+    engine.setExecutor(new DirectExecutor());
+    engine.addFolder(service, inbox);
+
+    Assert.assertTrue(engine.synchronize().isEmpty());
+    Assert.assertEquals(Arrays.asList("A", "B", "C"), received);
+    Assert.assertEquals("S3", store.load("user@contoso.com/Inbox"));
+  }
+
+  @Test
+  public void testKeysWellKnownFoldersByUserOfCredentials() throws Exception {
+    ExchangeService alice = Mockito.mock(ExchangeService.class);
+    Mockito.when(alice.getCredentials()).thenReturn(new WebCredentials("Alice", "secret"));
+    ExchangeService bob = Mockito.mock(ExchangeService.class);
+    Mockito.when(bob.getCredentials()).thenReturn(new WebCredentials("bob", "secret", "CONTOSO"));
+    Mockito.when(syncFolderItems(alice, null)).thenReturn(changes("A1", false));
+    Mockito.when(syncFolderItems(bob, null)).thenReturn(changes("B1", false));
+
+    MemorySyncStateStore store = new MemorySyncStateStore();
+    SyncFolderItemsEngine engine = new SyncFolderItemsEngine(store, new IItemChangeListener() {
+      @Override
+      public void itemChanged(FolderId folderId, ItemChange change) {
+      }
+    });
+    engine.setExecutor(new DirectExecutor());
+    engine.addFolder(alice, new FolderId(WellKnownFolderName.Inbox));
+    engine.addFolder(bob, new FolderId(WellKnownFolderName.Inbox));
+
+    Assert.assertTrue(engine.synchronize().isEmpty());
+    Assert.assertEquals("A1", store.load("alice/Inbox"));
+    Assert.assertEquals("B1", store.load("contoso\\bob/Inbox"));
+    Assert.assertNull(store.load("Inbox"));
+
+    // Without a user, the mailbox of a well-known folder is not known.
+    try {
+      engine.addFolder(Mockito.mock(ExchangeService.class), new FolderId(WellKnownFolderName.Inbox));
+      Assert.fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void testFoldersRunOnCallingThreadDoNotNest() throws Exception {
+    final List<Integer> stackDepths = new ArrayList<Integer>();
+    ExchangeService service = Mockito.mock(ExchangeService.class);
+    Mockito.when(syncFolderItems(service, null)).thenAnswer(new Answer<ChangeCollection<ItemChange>>() {
+      @Override
+      public ChangeCollection<ItemChange> answer(InvocationOnMock invocation) throws Exception {
+        stackDepths.add(Thread.currentThread().getStackTrace().length);
+        return changes("done", false);
+      }
+    });
+
+    SyncFolderItemsEngine engine = new SyncFolderItemsEngine(new MemorySyncStateStore(),
+        new IItemChangeListener() {
+          @Override
+          public void itemChanged(FolderId folderId, ItemChange change) {
+          }
+        });
+    engine.setMaxConcurrentFoldersPerMailbox(1);
+    engine.setExecutor(new DirectExecutor());
+    for (int i = 0; i < 100; i++) {
+      engine.addFolder(service, new FolderId("F" + i));
+    }
+
+    Assert.assertTrue(engine.synchronize().isEmpty());
+    Assert.assertEquals(100, stackDepths.size());
+    Assert.assertEquals(stackDepths.get(0), stackDepths.get(99));
+  }
+
+  @Test
+  public void testLimitsFoldersPerMailboxAndReportsFailures() throws Exception {
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    ExchangeService service = Mockito.mock(ExchangeService.class);
+    Mockito.when(syncFolderItems(service, null)).thenAnswer(new Answer<ChangeCollection<ItemChange>>() {
+      @Override
+      public ChangeCollection<ItemChange> answer(InvocationOnMock invocation) throws Exception {
+        int current = running.incrementAndGet();
+        synchronized (maxRunning) {
+          maxRunning.set(Math.max(maxRunning.get(), current));
+        }
+        try {
+          Thread.sleep(20);
+          FolderId folderId = (FolderId) invocation.getArguments()[0];
+          if ("F3".equals(folderId.getUniqueId())) {
+            throw new IOException("connection reset");
+          }
+          return changes("done", false);
+        } finally {
+          running.decrementAndGet();
+        }
+      }
+    });
+
+    MemorySyncStateStore store = new MemorySyncStateStore();
+    SyncFolderItemsEngine engine = new SyncFolderItemsEngine(store, new IItemChangeListener() {
+      @Override
+      public void itemChanged(FolderId folderId, ItemChange change) {
+      }
+    });
+    engine.setMaxConcurrentFoldersPerMailbox(2);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      engine.setExecutor(executor);
+      for (int i = 0; i < 8; i++) {
+        engine.addFolder(service, new FolderId("F" + i));
+      }
+
+      Map<FolderId, Exception> failures = engine.synchronize();
+      Assert.assertEquals(1, failures.size());
+      Assert.assertEquals("F3", failures.keySet().iterator().next().getUniqueId());
+      Assert.assertTrue(maxRunning.get() <= 2);
+      Assert.assertEquals("done", store.load("F7"));
+      Assert.assertNull(store.load("F3"));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static ChangeCollection<ItemChange> syncFolderItems(ExchangeService service,
+      String syncState) throws Exception {
+    return service.syncFolderItems(Matchers.any(FolderId.class), Matchers.any(PropertySet.class),
+        Matchers.<Iterable<ItemId>>any(), Matchers.anyInt(), Matchers.any(SyncFolderItemsScope.class),
+        syncState != null ? Matchers.eq(syncState) : Matchers.<String>any());
+  }
+
+  private static ChangeCollection<ItemChange> changes(String syncState, boolean moreChanges,
+      String... itemIds) throws Exception {
+    ChangeCollection<ItemChange> changes = new ChangeCollection<ItemChange>();
+    for (String itemId : itemIds) {
+      ItemChange change = new ItemChange();
+      change.setId(new ItemId(itemId));
+      changes.add(change);
+    }
+    changes.setSyncState(syncState);
+    changes.setMoreChangesAvailable(moreChanges);
+    return changes;
+  }
+
+
+  private static final class MemorySyncStateStore implements SyncStateStore {
+
+    private final Map<String, String> states = Collections.synchronizedMap(new HashMap<String, String>());
+
+    @Override
+    public String load(String key) {
+      return states.get(key);
+    }
+
+    @Override
+    public void save(String key, String syncState) {
+      states.put(key, syncState);
+    }
+  }
+
+
+  private static final class DirectExecutor implements Executor {
+
+    @Override
+    public void execute(Runnable command) {
+      command.run();
+    }
+  }
+
+}
@@ -25,14 +25,20 @@ package microsoft.exchange.webservices.data.util;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.Random;
 import java.util.TimeZone;
 
 @RunWith(JUnit4.class)
@@ -245,4 +251,77 @@ public class DateTimeUtilsTest {
     assertEquals(0, calendar.get(Calendar.MINUTE));
     assertEquals(0, calendar.get(Calendar.SECOND));
   }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDateOnlyRejectsTime() {
+    DateTimeUtils.convertDateStringToDate("2015-01-08T10:11:12Z");
+  }
+
+  @Test
+  public void testInvalidDateTimes() {
+    String[] values = {"2015-1-08", "2015-02-29T10:11:12Z", "2015-01-08T24:00:00Z",
+        "2015-01-08T10:11:12.Z", "2015-01-08T10:11:12+2", "2015-01-08T10:11:12Zulu",
+        "2015-01-08 10:11:12", "2015-13-01", "garbage"};
+    for (String value : values) {
+      try {
+        DateTimeUtils.convertDateTimeStringToDate(value);
+        fail("Parsed " + value);
+      } catch (IllegalArgumentException e) {
+        // Expected.
+      }
+    }
+  }
+
+  @Test
+  public void testDateTimeFractionDigits() {
+    assertEquals(1420711872100L,
+        DateTimeUtils.convertDateTimeStringToDate("2015-01-08T10:11:12.1Z").getTime());
+    assertEquals(1420711872123L,
+        DateTimeUtils.convertDateTimeStringToDate("2015-01-08T10:11:12.1234567Z").getTime());
+  }
+
+  @Test
+  public void testUnbiasedDateTimeIgnoresZone() {
+    assertEquals(1420711872000L,
+        DateTimeUtils.convertUnbiasedDateTimeStringToDate("2015-01-08T10:11:12").getTime());
+    assertEquals(1420711872500L,
+        DateTimeUtils.convertUnbiasedDateTimeStringToDate("2015-01-08T10:11:12.500-08:00")
+            .getTime());
+  }
+
+  @Test
+  public void testMatchesJodaFormatters() {
+    String[] patterns = {"yyyy-MM-dd'T'HH:mm:ssZ", "yyyy-MM-dd'T'HH:mm:ss.SSSZZ",
+        "yyyy-MM-dd'T'HH:mm:ss.SSS", "yyyy-MM-ddZZ", "yyyy-MM-dd"};
+    Random random = new Random(42);
+    for (int i = 0; i < 2000; i++) {
+      DateTime dateTime = new DateTime(random.nextLong() % 200000000000000L,
+          DateTimeZone.forOffsetMillis((random.nextInt(48) - 24) * 30 * 60000));
+      if (dateTime.getYear() < 1) {
+        continue;
+      }
+      for (String pattern : patterns) {
+        String value = DateTimeFormat.forPattern(pattern).print(dateTime);
+        assertEquals(value,
+            DateTimeFormat.forPattern(pattern).withZoneUTC().parseDateTime(value).toDate(),
+            DateTimeUtils.convertDateTimeStringToDate(value));
+      }
+    }
+  }
+
+  @Test
+  public void testFormatMatchesSimpleDateFormat() {
+    SimpleDateFormat dateTimeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+    dateTimeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'Z'");
+    dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    Random random = new Random(42);
+    for (int i = 0; i < 2000; i++) {
+      Date date = new Date(random.nextLong() % 300000000000000L);
+      assertEquals(dateTimeFormat.format(date), DateTimeUtils.formatUniversalDateTime(date));
+      assertEquals(dateFormat.format(date), DateTimeUtils.formatUniversalDate(date));
+    }
+    assertEquals("1970-01-01T00:00:00Z", DateTimeUtils.formatUniversalDateTime(new Date(0)));
+    assertEquals("1969-12-31T23:59:59Z", DateTimeUtils.formatUniversalDateTime(new Date(-1)));
+  }
 }